@@ -0,0 +1,385 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA, 
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cumulocity.mibparser.service;
+
+import com.cumulocity.mibparser.model.Register;
+
+import lombok.extern.slf4j.Slf4j;
+import net.percederberg.mibble.Mib;
+import net.percederberg.mibble.MibLoader;
+import net.percederberg.mibble.MibLoaderException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static com.cumulocity.mibparser.utils.Constants.*;
+import static com.cumulocity.mibparser.utils.MibParserUtil.*;
+
+/**
+ * Compiles the main MIBs of an uploaded Zip file into registers.
+ * <ul>
+ * <li>The module definitions and imports of the MIB files are scanned up front. Main MIBs sharing no
+ * dependencies are loaded in parallel, each group with its own {@link MibLoader}, and the main MIBs of
+ * a group are loaded in their dependency order.</li>
+ * <li>The registers of a main MIB are cached by the content hashes of the MIB and of all its dependencies
+ * found in the Zip file, so that uploading the same MIBs again does not load them again. The scanned
+ * declarations are cached by the content hash of the file as well.</li>
+ * </ul>
+ */
+@Slf4j
+@Service
+public class MibCompilationService {
+
+    private static final int MAX_CACHED_MIBS = 1000;
+
+    private static final int MAX_CACHED_DECLARATIONS = 10_000;
+
+    @Autowired
+    RegisterConversionService registerConversionService;
+
+    private final ExecutorService executorService = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), runnable -> {
+                Thread thread = new Thread(runnable, "mib-compilation");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private final Map<String, List<Register>> compiledMibs = newCache(MAX_CACHED_MIBS);
+
+    private final Map<String, ModuleDeclarations> scannedDeclarations = newCache(MAX_CACHED_DECLARATIONS);
+
+    @PreDestroy
+    void shutdown() {
+        executorService.shutdownNow();
+    }
+
+    /**
+     * @param mibFiles      all files of the Zip file by their names
+     * @param mainFileNames names of the main MIB files, whose registers are returned
+     * @return the registers of the main MIBs, in the order of the main MIB files
+     */
+    public List<Register> compile(Map<String, MibFile> mibFiles, List<String> mainFileNames)
+            throws MibLoaderException, IOException {
+        Map<String, MibFile> mainFiles = new LinkedHashMap<>();
+        for (String mainFileName : mainFileNames) {
+            MibFile mainFile = mibFiles.get(mainFileName);
+            if (mainFile == null) {
+                log.error(NO_MIB_FOUND_IN_ZIP_FILE);
+                throw new IllegalArgumentException(NO_MIB_FOUND_IN_ZIP_FILE);
+            }
+
+            mainFiles.put(mainFileName, mainFile);
+        }
+
+        Map<MibFile, ModuleDeclarations> declarations = new HashMap<>();
+        Map<String, MibFile> moduleFiles = new HashMap<>(mibFiles);
+        for (MibFile mibFile : mibFiles.values()) {
+            ModuleDeclarations moduleDeclarations = scannedDeclarations.get(mibFile.getContentHash());
+            if (moduleDeclarations == null) {
+                moduleDeclarations = ModuleDeclarations.scan(mibFile.getFile());
+                scannedDeclarations.put(mibFile.getContentHash(), moduleDeclarations);
+            }
+            declarations.put(mibFile, moduleDeclarations);
+            moduleDeclarations.modules.forEach(module -> moduleFiles.put(module, mibFile));
+        }
+
+        Map<String, List<Register>> registers = new HashMap<>();
+        List<MibGroup> groups = new ArrayList<>();
+        for (Map.Entry<String, MibFile> mainFile : mainFiles.entrySet()) {
+            MainMib mainMib = new MainMib(mainFile.getKey(), mainFile.getValue(),
+                    dependencies(mainFile.getValue(), moduleFiles, declarations));
+
+            List<Register> cachedRegisters = compiledMibs.get(mainMib.cacheKey);
+            if (cachedRegisters != null) {
+                log.debug("Registers of main MIB file {} found in the cache", mainMib.name);
+                registers.put(mainMib.name, cachedRegisters);
+            } else {
+                addToGroup(groups, mainMib);
+            }
+        }
+
+        log.info("Compiling {} main MIB(s) in {} independent group(s), {} found in the cache",
+                mainFiles.size() - registers.size(), groups.size(), registers.size());
+        registers.putAll(load(groups));
+
+        List<Register> allRegisters = new ArrayList<>();
+        for (String mainFileName : mainFiles.keySet()) {
+            allRegisters.addAll(registers.get(mainFileName));
+        }
+
+        return allRegisters;
+    }
+
+    private Map<String, List<Register>> load(List<MibGroup> groups) throws MibLoaderException, IOException {
+        Map<String, List<Register>> registers = new HashMap<>();
+        if (groups.size() == 1) {
+            registers.putAll(load(groups.get(0)));
+            return registers;
+        }
+
+        List<Future<Map<String, List<Register>>>> futures = new ArrayList<>(groups.size());
+        for (MibGroup group : groups) {
+            futures.add(executorService.submit(() -> load(group)));
+        }
+
+        try {
+            for (Future<Map<String, List<Register>>> future : futures) {
+                registers.putAll(future.get());
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof MibLoaderException) {
+                throw (MibLoaderException) cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while loading the MIB files");
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+
+        return registers;
+    }
+
+    private Map<String, List<Register>> load(MibGroup group) throws MibLoaderException, IOException {
+        MibLoader mibLoader = new MibLoader();
+        try {
+            Map<String, List<Register>> registers = new HashMap<>();
+            for (MainMib mainMib : group.getMainMibsInDependencyOrder()) {
+                File file = mainMib.mibFile.getFile();
+                log.debug("Loading main MIB file " + file.getName());
+                mibLoader.addDir(file.getParentFile());
+
+                List<Register> mibRegisters = Collections.unmodifiableList(extractMibInformation(mibLoader.load(file)));
+                compiledMibs.put(mainMib.cacheKey, mibRegisters);
+                registers.put(mainMib.name, mibRegisters);
+            }
+
+            return registers;
+        } finally {
+            mibLoader.unloadAll();
+            mibLoader.removeAllDirs();
+        }
+    }
+
+    private List<Register> extractMibInformation(Mib mib) {
+        if (mib == null) {
+            return Collections.<Register>emptyList();
+        }
+
+        log.debug("Processing MIB component of " + mib.getName());
+        return registerConversionService.convertSnmpObjectToRegister(mib.getAllSymbols());
+    }
+
+    private static <V> Map<String, V> newCache(int maxSize) {
+        return Collections.synchronizedMap(new LinkedHashMap<String, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+
+    static void addToGroup(List<MibGroup> groups, MainMib mainMib) {
+        MibGroup group = new MibGroup();
+        group.add(mainMib);
+
+        // Main MIBs sharing a dependency are loaded by one MibLoader, so that the dependency is loaded only once
+        Iterator<MibGroup> iterator = groups.iterator();
+        while (iterator.hasNext()) {
+            MibGroup otherGroup = iterator.next();
+            if (!Collections.disjoint(group.mibFiles, otherGroup.mibFiles)) {
+                otherGroup.mainMibs.forEach(group::add);
+                iterator.remove();
+            }
+        }
+
+        groups.add(group);
+    }
+
+    /**
+     * @return the MIB file and all the MIB files of the Zip file it imports, directly or indirectly
+     */
+    private static Set<MibFile> dependencies(MibFile mibFile, Map<String, MibFile> moduleFiles,
+            Map<MibFile, ModuleDeclarations> declarations) {
+        Set<MibFile> dependencies = new HashSet<>();
+        Deque<MibFile> pending = new ArrayDeque<>();
+        pending.add(mibFile);
+
+        while (!pending.isEmpty()) {
+            MibFile dependency = pending.poll();
+            if (dependencies.add(dependency)) {
+                for (String importedModule : declarations.get(dependency).imports) {
+                    MibFile importedFile = moduleFiles.get(importedModule);
+                    if (importedFile != null) {
+                        pending.add(importedFile);
+                    }
+                }
+            }
+        }
+
+        return dependencies;
+    }
+
+    static final class MainMib {
+
+        final String name;
+
+        private final MibFile mibFile;
+
+        private final Set<MibFile> dependencies;
+
+        private final String cacheKey;
+
+        MainMib(String name, MibFile mibFile, Set<MibFile> dependencies) {
+            this.name = name;
+            this.mibFile = mibFile;
+            this.dependencies = dependencies;
+
+            String dependencyHashes = dependencies.stream()
+                    .map(MibFile::getContentHash)
+                    .sorted()
+                    .collect(Collectors.joining(","));
+            this.cacheKey = mibFile.getContentHash() + "/" + toHex(newContentDigest()
+                    .digest(dependencyHashes.getBytes(StandardCharsets.US_ASCII)));
+        }
+    }
+
+    /**
+     * Main MIBs, which share dependencies, and all the MIB files they depend on.
+     */
+    static final class MibGroup {
+
+        final List<MainMib> mainMibs = new ArrayList<>();
+
+        private final Set<MibFile> mibFiles = new HashSet<>();
+
+        private void add(MainMib mainMib) {
+            mainMibs.add(mainMib);
+            mibFiles.addAll(mainMib.dependencies);
+        }
+
+        /**
+         * A main MIB importing another one has more dependencies than the imported MIB, so it is loaded after it.
+         */
+        private List<MainMib> getMainMibsInDependencyOrder() {
+            List<MainMib> orderedMainMibs = new ArrayList<>(mainMibs);
+            orderedMainMibs.sort(Comparator.comparingInt(mainMib -> mainMib.dependencies.size()));
+            return orderedMainMibs;
+        }
+    }
+
+    /**
+     * Names of the modules defined in a MIB file and of the modules they import, read without parsing the file.
+     */
+    static final class ModuleDeclarations {
+
+        final Set<String> modules = new HashSet<>();
+
+        final Set<String> imports = new HashSet<>();
+
+        private boolean inString;
+
+        private boolean inImports;
+
+        private String previousToken;
+
+        private static ModuleDeclarations scan(File file) throws IOException {
+            ModuleDeclarations declarations = new ModuleDeclarations();
+            try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.ISO_8859_1)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    declarations.scanLine(line);
+                }
+            }
+
+            return declarations;
+        }
+
+        void scanLine(String line) {
+            StringBuilder token = new StringBuilder();
+            boolean inComment = false;
+
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                boolean isDoubleHyphen = c == '-' && i + 1 < line.length() && line.charAt(i + 1) == '-';
+
+                if (inString) {
+                    inString = c != '"';
+                } else if (inComment) {
+                    // A comment ends with the next double hyphen or at the end of the line
+                    if (isDoubleHyphen) {
+                        inComment = false;
+                        i++;
+                    }
+                } else if (isDoubleHyphen || c == '"' || c == ';' || c == ',' || c == '{' || c == '}'
+                        || Character.isWhitespace(c)) {
+                    endToken(token);
+                    inComment = isDoubleHyphen;
+                    inString = c == '"';
+                    i += isDoubleHyphen ? 1 : 0;
+                    if (c == ';') {
+                        inImports = false;
+                    }
+                } else {
+                    token.append(c);
+                }
+            }
+
+            endToken(token);
+        }
+
+        private void endToken(StringBuilder token) {
+            if (token.length() == 0) {
+                return;
+            }
+
+            String currentToken = token.toString();
+            token.setLength(0);
+
+            if ("DEFINITIONS".equals(currentToken) && previousToken != null) {
+                modules.add(previousToken);
+            } else if ("IMPORTS".equals(currentToken)) {
+                inImports = true;
+            } else if (inImports && "FROM".equals(previousToken)) {
+                imports.add(currentToken);
+            }
+
+            previousToken = currentToken;
+        }
+    }
+}
@@ -23,8 +23,6 @@ import com.cumulocity.mibparser.model.MibUploadResult;
 import com.cumulocity.mibparser.model.Register;
 
 import lombok.extern.slf4j.Slf4j;
-import net.percederberg.mibble.Mib;
-import net.percederberg.mibble.MibLoader;
 import net.percederberg.mibble.MibLoaderException;
 import net.percederberg.mibble.MibLoaderLog;
 import org.apache.tomcat.util.http.fileupload.FileUtils;
@@ -34,9 +32,12 @@ import org.springframework.util.CollectionUtils;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.util.*;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
@@ -49,16 +50,16 @@ import static com.cumulocity.mibparser.utils.MibParserUtil.*;
 public class MibParserService {
 
     @Autowired
-    RegisterConversionService registerConversionService;
+    MibCompilationService mibCompilationService;
 
     public MibUploadResult processMibZipFile(MultipartFile multipartFile, String tenant, String username) {
-        MibLoader mibLoader = new MibLoader();
         String path = getTempDirectoryPath(multipartFile.getOriginalFilename(), tenant, username);
         File parentFile = createTempDirectory(path);
 
         try {
-            List<Mib> mibs = extractAndLoadMainMibs(multipartFile.getInputStream(), path, mibLoader);
-            return extractMibInformation(mibs);
+            Map<String, MibFile> mibFiles = extractMibFiles(multipartFile.getInputStream(), parentFile);
+            List<String> mainFiles = examineManifestFile(mibFiles);
+            return createMibUploadResult(mibCompilationService.compile(mibFiles, mainFiles));
         } catch (MibLoaderException e) {
             log.error(MISSING_MIB_DEPENDENCIES, e);
             Iterator<MibLoaderLog.LogEntry> it = e.getLog().entries();
@@ -76,71 +77,40 @@ public class MibParserService {
             } catch (IOException e) {
                 log.error(FAILED_TO_DELETE_TMP_DIR, e);
             }
-
-            mibLoader.unloadAll();
-            mibLoader.removeAllDirs();
         }
     }
 
-    private List<Mib> extractAndLoadMainMibs(InputStream inputStream, String tmpDirPath, MibLoader mibLoader)
-            throws MibLoaderException, IOException {
+    /**
+     * Streams the entries of the Zip file to the temp directory, hashing their content on the way.
+     */
+    private Map<String, MibFile> extractMibFiles(InputStream inputStream, File tmpDir) throws IOException {
         log.info("Extracting all files from Zip...");
 
-        List<Mib> mibs = new ArrayList<>();
         try (ZipInputStream zipInputStream = new ZipInputStream(inputStream)) {
-            Map<String, File> fileMap = new HashMap<>();
+            Map<String, MibFile> mibFiles = new HashMap<>();
             ZipEntry zipEntry = zipInputStream.getNextEntry();
 
             while (zipEntry != null) {
-                if (zipEntry.isDirectory()) {
+                File mibfile = new File(tmpDir, zipEntry.getName());
+                if (zipEntry.isDirectory() || !tmpDir.equals(mibfile.getParentFile())) {
                     log.error(DIR_NOT_ALLOWED);
                     throw new IllegalArgumentException(DIR_NOT_ALLOWED);
                 }
 
-                File mibfile = new File(tmpDirPath + File.separator + zipEntry.getName());
-                try (FileOutputStream fos = new FileOutputStream(mibfile)) {
-                    byte[] bytes = new byte[(int) zipEntry.getSize()];
-                    int length;
-                    while ((length = zipInputStream.read(bytes)) > 0) {
-                        fos.write(bytes, 0, length);
-                    }
-
-                    fileMap.put(mibfile.getName(), mibfile);
-                }
+                MessageDigest contentDigest = newContentDigest();
+                Files.copy(new DigestInputStream(zipInputStream, contentDigest), mibfile.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+                mibFiles.put(mibfile.getName(), new MibFile(mibfile, toHex(contentDigest.digest())));
 
                 zipInputStream.closeEntry();
                 zipEntry = zipInputStream.getNextEntry();
             }
 
-            List<String> mainFiles = examineManifestFile(fileMap);
-            for (String mainFileName : mainFiles) {
-                mibs.add(loadMib(fileMap.get(mainFileName), mibLoader));
-            }
-
-            return mibs;
+            return mibFiles;
         }
     }
 
-    private Mib loadMib(File file, MibLoader mibLoader) throws IOException, MibLoaderException {
-        if (file == null) {
-            log.error(NO_MIB_FOUND_IN_ZIP_FILE);
-            throw new IllegalArgumentException(NO_MIB_FOUND_IN_ZIP_FILE);
-        }
-
-        log.debug("Loading main MIB file " + file.getName());
-        mibLoader.addDir(file.getParentFile());
-
-        return mibLoader.load(file);
-    }
-
-    private MibUploadResult extractMibInformation(List<Mib> mibs) {
-        log.debug("Extracting MIB information");
-
-        List<Register> registers = new ArrayList<>();
-        for (Mib mib : mibs) {
-            registers.addAll(extractMibInformation(mib));
-        }
-
+    private MibUploadResult createMibUploadResult(List<Register> registers) {
         if (CollectionUtils.isEmpty(registers)) {
             log.error(NO_MIB_INFO_FOUND_IN_ZIP_FILE);
             throw new IllegalArgumentException(NO_MIB_INFO_FOUND_IN_ZIP_FILE);
@@ -151,24 +121,15 @@ public class MibParserService {
         return new MibUploadResult(new DeviceType(FIELD_BUS_TYPE), registers);
     }
 
-    private List<Register> extractMibInformation(Mib mib) {
-        if (mib == null) {
-            return Collections.<Register>emptyList();
-        }
-
-        log.debug("Processing MIB component of " + mib.getName());
-        return registerConversionService.convertSnmpObjectToRegister(mib.getAllSymbols());
-    }
-
-    private List<String> examineManifestFile(Map<String, File> fileMap) throws IOException {
+    private List<String> examineManifestFile(Map<String, MibFile> mibFiles) throws IOException {
         log.debug("Examining all MIB files");
 
-        if (!fileMap.containsKey(MANIFEST_FILENAME)) {
+        if (!mibFiles.containsKey(MANIFEST_FILENAME)) {
             log.error(NO_MANIFEST_FILE_FOUND);
             throw new IllegalArgumentException(NO_MANIFEST_FILE_FOUND);
         }
 
-        List<String> mainFiles = readMainFile(fileMap.get(MANIFEST_FILENAME));
+        List<String> mainFiles = readMainFile(mibFiles.get(MANIFEST_FILENAME).getFile());
         if (CollectionUtils.isEmpty(mainFiles)) {
             log.error(NO_MAIN_MIB_FOUND);
             throw new IllegalArgumentException(NO_MAIN_MIB_FOUND);
@@ -23,9 +23,12 @@ import static com.cumulocity.mibparser.utils.Constants.TEMP_DIR_NAME;
 
 import java.io.File;
 import java.io.IOException;
+import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.List;
 
 import lombok.extern.slf4j.Slf4j;
@@ -60,4 +63,17 @@ public class MibParserUtil {
     public static List<String> readMainFile(File file) throws IOException {
         return Files.readAllLines(Paths.get(file.toURI()), StandardCharsets.UTF_8);
     }
+
+    public static MessageDigest newContentDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform supports SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static String toHex(byte[] digest) {
+        return String.format("%0" + (digest.length * 2) + "x", new BigInteger(1, digest));
+    }
 }
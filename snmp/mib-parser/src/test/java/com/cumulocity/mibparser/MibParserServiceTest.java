@@ -18,9 +18,12 @@
 
 package com.cumulocity.mibparser;
 
+import com.cumulocity.mibparser.model.MibUploadResult;
+import com.cumulocity.mibparser.service.MibCompilationService;
 import com.cumulocity.mibparser.service.MibParserService;
 import com.cumulocity.mibparser.service.RegisterConversionService;
 
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
@@ -28,13 +31,25 @@ import org.mockito.Spy;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static com.cumulocity.mibparser.utils.Constants.DIR_NOT_ALLOWED;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 @RunWith(MockitoJUnitRunner.class)
 @TestPropertySource(value = "/application.properties", properties = {"logging.config="})
@@ -43,6 +58,9 @@ public class MibParserServiceTest {
     @Spy
     private RegisterConversionService registerConversionService;
 
+    @Spy
+    private MibCompilationService mibCompilationService;
+
     @InjectMocks
     private MibParserService mibParserService;
 
@@ -50,6 +68,11 @@ public class MibParserServiceTest {
 
     private String username = "testusername";
 
+    @Before
+    public void setup() {
+        ReflectionTestUtils.setField(mibCompilationService, "registerConversionService", registerConversionService);
+    }
+
     @Test(expected = NullPointerException.class)
     public void shouldThrowNullPointerExceptionWhileProcessMibZipFile() throws IOException, IllegalArgumentException {
         mibParserService.processMibZipFile(mock(MultipartFile.class), tenant, username);
@@ -102,10 +125,45 @@ public class MibParserServiceTest {
         mibParserService.processMibZipFile(file, tenant, username);
     }
 
+    @Test
+    public void shouldRejectZipEntryOutsideOfTheTempDirectory() throws IOException {
+        String escapedFileName = "zip-slip-" + System.nanoTime() + ".mib";
+        ByteArrayOutputStream zipContent = new ByteArrayOutputStream();
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(zipContent)) {
+            zipOutputStream.putNextEntry(new ZipEntry("../" + escapedFileName));
+            zipOutputStream.write("ESCAPED-MIB DEFINITIONS ::= BEGIN END".getBytes(StandardCharsets.US_ASCII));
+            zipOutputStream.closeEntry();
+        }
+        MultipartFile file = new MockMultipartFile("Test_MIB_Zip_Slip.zip", zipContent.toByteArray());
+
+        try {
+            mibParserService.processMibZipFile(file, tenant, username);
+            fail("Zip entry outside of the temp directory accepted");
+        } catch (IllegalArgumentException e) {
+            assertEquals(DIR_NOT_ALLOWED, e.getMessage());
+        }
+
+        assertFalse(new File(System.getProperty("java.io.tmpdir"), escapedFileName).exists());
+    }
+
     @Test
     public void shouldProcessMibZipFileSuccessfully() throws IOException, IllegalArgumentException {
         MultipartFile file = new MockMultipartFile("Test_MIB.zip", new FileInputStream(
                 new File(System.getProperties().get("user.dir") + "/src/test/resources/Test_MIB.zip")));
         mibParserService.processMibZipFile(file, tenant, username);
     }
+
+    @Test
+    public void shouldTakeRegistersOfSameMibsFromCache() throws IOException, IllegalArgumentException {
+        MultipartFile file = new MockMultipartFile("Test_MIB.zip", new FileInputStream(
+                new File(System.getProperties().get("user.dir") + "/src/test/resources/Test_MIB.zip")));
+        MibUploadResult firstResult = mibParserService.processMibZipFile(file, tenant, username);
+
+        MibUploadResult secondResult = mibParserService.processMibZipFile(file, tenant, username);
+
+        // The 3 main MIBs of the manifest are converted only once
+        verify(registerConversionService, times(3)).convertSnmpObjectToRegister(anyList());
+        assertFalse(secondResult.getRegisters().isEmpty());
+        assertEquals(firstResult.getRegisters(), secondResult.getRegisters());
+    }
 }
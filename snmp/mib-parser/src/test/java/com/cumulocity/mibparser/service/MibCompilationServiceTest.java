@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA, 
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cumulocity.mibparser.service;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+public class MibCompilationServiceTest {
+
+    private final MibFile mibA = new MibFile(new File("A-MIB.mib"), "a");
+
+    private final MibFile mibB = new MibFile(new File("B-MIB.mib"), "b");
+
+    private final MibFile mibC = new MibFile(new File("C-MIB.mib"), "c");
+
+    private final MibFile sharedMib = new MibFile(new File("SHARED-MIB.mib"), "shared");
+
+    @Test
+    public void shouldScanModuleNameAndImports() {
+        MibCompilationService.ModuleDeclarations declarations = scan(
+                "IF-MIB DEFINITIONS ::= BEGIN",
+                "IMPORTS",
+                "    MODULE-IDENTITY, Counter32 FROM SNMPv2-SMI",
+                "    DisplayString FROM SNMPv2-TC;",
+                "ifNumber OBJECT-TYPE FROM NOT-AN-IMPORT");
+
+        assertEquals(Collections.singleton("IF-MIB"), declarations.modules);
+        assertEquals(new HashSet<>(Arrays.asList("SNMPv2-SMI", "SNMPv2-TC")), declarations.imports);
+    }
+
+    @Test
+    public void shouldIgnoreDeclarationsInComments() {
+        MibCompilationService.ModuleDeclarations declarations = scan(
+                "-- COMMENTED-MIB DEFINITIONS ::= BEGIN",
+                "REAL-MIB DEFINITIONS ::= BEGIN",
+                "IMPORTS",
+                "    Counter32 -- FROM COMMENTED-SMI",
+                "    FROM SNMPv2-SMI -- inline comment -- DisplayString FROM SNMPv2-TC;");
+
+        assertEquals(Collections.singleton("REAL-MIB"), declarations.modules);
+        assertEquals(new HashSet<>(Arrays.asList("SNMPv2-SMI", "SNMPv2-TC")), declarations.imports);
+    }
+
+    @Test
+    public void shouldNotTakeDoubleHyphenInQuotedStringAsComment() {
+        MibCompilationService.ModuleDeclarations declarations = scan(
+                "FIRST-MIB DEFINITIONS ::= BEGIN",
+                "DESCRIPTION \"not -- a comment\" SECOND-MIB DEFINITIONS ::= BEGIN",
+                "DESCRIPTION \"spanning -- lines",
+                "QUOTED-MIB DEFINITIONS -- still quoted\"",
+                "THIRD-MIB DEFINITIONS ::= BEGIN");
+
+        assertEquals(new HashSet<>(Arrays.asList("FIRST-MIB", "SECOND-MIB", "THIRD-MIB")), declarations.modules);
+    }
+
+    @Test
+    public void shouldGroupMainMibsSharingDependencies() {
+        List<MibCompilationService.MibGroup> groups = new ArrayList<>();
+
+        // Action
+        MibCompilationService.addToGroup(groups, mainMib("A", mibA, sharedMib));
+        MibCompilationService.addToGroup(groups, mainMib("C", mibC));
+        MibCompilationService.addToGroup(groups, mainMib("B", mibB, sharedMib));
+
+        assertEquals(2, groups.size());
+        assertEquals(new HashSet<>(Arrays.asList(
+                new HashSet<>(Arrays.asList("A", "B")),
+                Collections.singleton("C"))), groupedNames(groups));
+    }
+
+    @Test
+    public void shouldKeepMainMibsWithoutSharedDependenciesIndependent() {
+        List<MibCompilationService.MibGroup> groups = new ArrayList<>();
+
+        // Action
+        MibCompilationService.addToGroup(groups, mainMib("A", mibA));
+        MibCompilationService.addToGroup(groups, mainMib("B", mibB));
+        MibCompilationService.addToGroup(groups, mainMib("C", mibC));
+
+        assertEquals(3, groups.size());
+    }
+
+    @Test
+    public void shouldMergeGroupsJoinedByMainMibDependingOnBoth() {
+        List<MibCompilationService.MibGroup> groups = new ArrayList<>();
+        MibCompilationService.addToGroup(groups, mainMib("A", mibA));
+        MibCompilationService.addToGroup(groups, mainMib("B", mibB));
+
+        // Action
+        MibCompilationService.addToGroup(groups, mainMib("C", mibC, mibA, mibB));
+
+        assertEquals(Collections.singleton(new HashSet<>(Arrays.asList("A", "B", "C"))), groupedNames(groups));
+    }
+
+    private static MibCompilationService.ModuleDeclarations scan(String... lines) {
+        MibCompilationService.ModuleDeclarations declarations = new MibCompilationService.ModuleDeclarations();
+        for (String line : lines) {
+            declarations.scanLine(line);
+        }
+        return declarations;
+    }
+
+    private static MibCompilationService.MainMib mainMib(String name, MibFile mibFile, MibFile... dependencies) {
+        Set<MibFile> allDependencies = new HashSet<>(Arrays.asList(dependencies));
+        allDependencies.add(mibFile);
+        return new MibCompilationService.MainMib(name, mibFile, allDependencies);
+    }
+
+    private static Set<Set<String>> groupedNames(List<MibCompilationService.MibGroup> groups) {
+        return groups.stream()
+                .map(group -> group.mainMibs.stream().map(mainMib -> mainMib.name).collect(Collectors.toSet()))
+                .collect(Collectors.toSet());
+    }
+}
@@ -59,6 +59,54 @@ public class GatewayProperties {
 	@Value("#{'${gateway.publish.retryLimit:5}'.trim()}")
 	private short gatewayPublishRetryLimit;
 
+	@Value("#{'${gateway.publish.retryDelay:5000}'.trim()}")
+	private long gatewayPublishRetryDelay;
+
+	@Value("#{'${gateway.publish.maxRetryDelay:300000}'.trim()}")
+	private long gatewayPublishMaxRetryDelay;
+
+	@Value("#{'${gateway.publish.replayDeadLetters:false}'.trim()}")
+	private boolean gatewayPublishReplayDeadLetters;
+
+	@Value("#{'${gateway.publish.adaptive:true}'.trim()}")
+	private boolean gatewayPublishAdaptive;
+
+	@Value("#{'${gateway.publish.targetLatency:2000}'.trim()}")
+	private long gatewayPublishTargetLatency;
+
+	@Value("#{'${gateway.circuitBreaker.failureRateThreshold:50}'.trim()}")
+	private int circuitBreakerFailureRateThreshold;
+
+	@Value("#{'${gateway.circuitBreaker.windowSize:20}'.trim()}")
+	private int circuitBreakerWindowSize;
+
+	@Value("#{'${gateway.circuitBreaker.minimumCalls:5}'.trim()}")
+	private int circuitBreakerMinimumCalls;
+
+	@Value("#{'${gateway.circuitBreaker.openDuration:10000}'.trim()}")
+	private long circuitBreakerOpenDuration;
+
+	@Value("#{'${gateway.circuitBreaker.maxOpenDuration:300000}'.trim()}")
+	private long circuitBreakerMaxOpenDuration;
+
+	@Value("#{'${gateway.metrics.interval:60}'.trim()}")
+	private int gatewayMetricsInterval;
+
+	@Value("#{'${gateway.queue.binaryFormat:false}'.trim()}")
+	private boolean gatewayQueueBinaryFormat;
+
+	@Value("#{'${gateway.queue.compression:}'.trim()}")
+	private String gatewayQueueCompression;
+
+	@Value("#{'${gateway.alarmSuppression.window:300}'.trim()}")
+	private int gatewayAlarmSuppressionWindow;
+
+	@Value("#{'${gateway.alarmSuppression.rateLimit:10}'.trim()}")
+	private int gatewayAlarmSuppressionRateLimit;
+
+	@Value("#{'${gateway.alarmSuppression.overrides:}'.trim()}")
+	private String gatewayAlarmSuppressionOverrides;
+
 	@Value("#{'${gateway.bootstrap.force:false}'.trim()}")
 	private boolean forcedBootstrap;
 
@@ -68,6 +116,61 @@ public class GatewayProperties {
 	@Value("#{'${C8Y.forceInitialHost:true}'.trim()}")
 	private boolean forceInitialHost;
 
+	public boolean isGatewayQueueCompressed(String queueName) {
+		if (gatewayQueueCompression == null) {
+			return false;
+		}
+
+		for (String compressedQueueName : gatewayQueueCompression.split(",")) {
+			if (compressedQueueName.trim().equalsIgnoreCase(queueName)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * @return suppression window in seconds for the alarms of the given type,
+	 *         taken from {@code gateway.alarmSuppression.overrides} if configured there
+	 */
+	public int getAlarmSuppressionWindow(String alarmType) {
+		String[] override = findAlarmSuppressionOverride(alarmType);
+		return (override != null) ? Integer.parseInt(override[1].trim()) : gatewayAlarmSuppressionWindow;
+	}
+
+	/**
+	 * @return maximum number of alarms of the given type published per minute,
+	 *         taken from {@code gateway.alarmSuppression.overrides} if configured there
+	 */
+	public int getAlarmSuppressionRateLimit(String alarmType) {
+		String[] override = findAlarmSuppressionOverride(alarmType);
+		return (override != null) ? Integer.parseInt(override[2].trim()) : gatewayAlarmSuppressionRateLimit;
+	}
+
+	/**
+	 * @return true if {@code gateway.alarmSuppression.overrides} configures the alarms of the given type
+	 */
+	public boolean hasAlarmSuppressionOverride(String alarmType) {
+		return findAlarmSuppressionOverride(alarmType) != null;
+	}
+
+	private String[] findAlarmSuppressionOverride(String alarmType) {
+		if (gatewayAlarmSuppressionOverrides == null) {
+			return null;
+		}
+
+		// Format: <alarm type>:<window>:<rate limit>,<alarm type>:<window>:<rate limit>,...
+		for (String override : gatewayAlarmSuppressionOverrides.split(",")) {
+			String[] parts = override.split(":");
+			if (parts.length == 3 && parts[0].trim().equalsIgnoreCase(alarmType)) {
+				return parts;
+			}
+		}
+
+		return null;
+	}
+
 	public int getThreadPoolSizeForTrapProcessing() {
 		// Using 20% of the total threads configured for gateway to Trap listening
 		int poolSize = getGatewayThreadPoolSize() * 20 / 100;
@@ -106,9 +209,27 @@ public class GatewayProperties {
 		@Value("#{'${snmp.polling.version:0}'.trim()}")
 		private int pollingVersion;
 
+		@Value("#{'${snmp.polling.maxInFlightRequests:500}'.trim()}")
+		private int pollingMaxInFlightRequests;
+
+		@Value("#{'${snmp.polling.maxVariableBindingsPerRequest:50}'.trim()}")
+		private int pollingMaxVariableBindingsPerRequest;
+
+		@Value("#{'${snmp.polling.maxRepetitions:50}'.trim()}")
+		private int pollingMaxRepetitions;
+
+		@Value("#{'${snmp.polling.engineIdAuthoritative:false}'.trim()}")
+		private boolean pollingEngineIdAuthoritative;
+
 		@Value("#{'${snmp.autodiscovery.devicePingTimeoutPeriod:3}'.trim()}")
 		private int autoDiscoveryDevicePingTimeoutPeriod;
 
+		@Value("#{'${snmp.autodiscovery.maxInFlightRequests:1000}'.trim()}")
+		private int autoDiscoveryMaxInFlightRequests;
+
+		@Value("#{'${snmp.autodiscovery.rateLimit:500}'.trim()}")
+		private int autoDiscoveryRateLimit;
+
 		public boolean isTrapListenerProtocolUdp() {
 			return "UDP".equalsIgnoreCase(trapListenerProtocol);
 		}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA, 
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cumulocity.agent.snmp.device.repository;
+
+import com.cumulocity.agent.snmp.config.GatewayProperties;
+import com.cumulocity.agent.snmp.persistence.AbstractMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Repository;
+
+import java.nio.file.Paths;
+
+/**
+ * Progress of the auto-discovery device scans, so that an interrupted scan resumes where it stopped.
+ * The key identifies the scanned IP ranges and port, the value is the number of addresses already scanned.
+ * Only the progress of the latest scan is kept, a scan removes the progress of the scans of other IP ranges.
+ */
+@Repository
+public class DiscoveryProgressStore extends AbstractMap<String, Long> {
+
+    private static final String DISCOVERY_PROGRESS_STORE = "discovery-progress-store";
+
+    @Autowired
+    DiscoveryProgressStore(GatewayProperties gatewayProperties) {
+        super(DISCOVERY_PROGRESS_STORE,
+                String.class,
+                200,
+                Long.class,
+                8,
+                100, // One entry of the latest scan, the other entries are removed when a scan starts
+                Paths.get(
+                        gatewayProperties.getGatewayDatabaseBaseDir(),
+                        ".snmp",
+                        gatewayProperties.getGatewayIdentifier().toLowerCase(),
+                        "chronicle",
+                        "maps",
+                        DISCOVERY_PROGRESS_STORE.toLowerCase() + ".dat").toFile()
+        );
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA, 
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cumulocity.agent.snmp.device.repository;
+
+import com.cumulocity.agent.snmp.config.GatewayProperties;
+import com.cumulocity.agent.snmp.persistence.AbstractMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Repository;
+
+import java.nio.file.Paths;
+
+/**
+ * State of the reporting policies of the polled registers, so that the filtering and the aggregation
+ * continue after a restart. The key is the IP address of the device and the OID of the polled value.
+ */
+@Repository
+public class PolledValueStore extends AbstractMap<String, String> {
+
+    private static final String POLLED_VALUE_STORE = "polled-value-store";
+
+    // One entry per polled value of a register with a reporting policy
+    private static final long MAX_ENTRIES = 100_000;
+
+    @Autowired
+    PolledValueStore(GatewayProperties gatewayProperties) {
+        super(POLLED_VALUE_STORE,
+                String.class,
+                50,
+                String.class,
+                80,
+                MAX_ENTRIES,
+                Paths.get(
+                        gatewayProperties.getGatewayDatabaseBaseDir(),
+                        ".snmp",
+                        gatewayProperties.getGatewayIdentifier().toLowerCase(),
+                        "chronicle",
+                        "maps",
+                        POLLED_VALUE_STORE.toLowerCase() + ".dat").toFile()
+        );
+    }
+
+    /**
+     * @return true if the store holds as many entries as it was sized for, adding more would fail eventually
+     */
+    public boolean isFull() {
+        return size() >= MAX_ENTRIES;
+    }
+}
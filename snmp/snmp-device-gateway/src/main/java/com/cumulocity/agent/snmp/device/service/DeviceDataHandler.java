@@ -23,9 +23,12 @@ import com.cumulocity.agent.snmp.platform.model.*;
 import com.cumulocity.agent.snmp.platform.pubsub.publisher.AlarmPublisher;
 import com.cumulocity.agent.snmp.platform.pubsub.publisher.EventPublisher;
 import com.cumulocity.agent.snmp.platform.pubsub.publisher.MeasurementPublisher;
+import com.cumulocity.agent.snmp.platform.service.AlarmSuppressionService;
 import com.cumulocity.agent.snmp.platform.service.GatewayDataProvider;
 import com.cumulocity.agent.snmp.util.IpAddressUtil;
+import com.cumulocity.rest.representation.inventory.ManagedObjectRepresentation;
 import lombok.extern.slf4j.Slf4j;
+import org.joda.time.DateTime;
 import org.snmp4j.CommandResponder;
 import org.snmp4j.CommandResponderEvent;
 import org.snmp4j.PDU;
@@ -38,6 +41,7 @@ import org.springframework.stereotype.Component;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.List;
 import java.util.Map;
 
 @Slf4j
@@ -62,12 +66,18 @@ public class DeviceDataHandler implements CommandResponder {
 	@Autowired
 	private AlarmPublisher alarmPublisher;
 
+	@Autowired
+	private AlarmSuppressionService alarmSuppressionService;
+
 	@Autowired
 	private EventPublisher eventPublisher;
 
 	@Autowired
 	private MeasurementPublisher measurementPublisher;
 
+	@Autowired
+	private ReportingPolicyService reportingPolicyService;
+
 	@Override
 	public void processPdu(CommandResponderEvent event) {
 		String community = new String(event.getSecurityName());
@@ -92,7 +102,6 @@ public class DeviceDataHandler implements CommandResponder {
 		}
 
 		if (!dataProvider.getSnmpDeviceMap().containsKey(deviceIp)) {
-			log.error("Trap received from an unknown device with IP Address {}", deviceIp);
 			handleUnknownDevice(deviceIp);
 			return;
 		}
@@ -123,10 +132,27 @@ public class DeviceDataHandler implements CommandResponder {
 		alarmMapping.setType(AlarmMapping.c8y_TRAPReceivedFromUnknownDevice + deviceIp);
 		alarmMapping.setText("Trap received from an unknown device with IP address : " + deviceIp);
 
-		alarmPublisher.publish(alarmMapping.buildAlarmRepresentation(dataProvider.getGatewayDevice().getManagedObject()));
+		// Repeated traps of the same device only increment the count of the suppressed alarms
+		if (alarmSuppressionService.publish(alarmMapping)) {
+			log.error("Trap received from an unknown device with IP Address {}", deviceIp);
+		} else {
+			log.debug("Trap received from an unknown device with IP Address {}", deviceIp);
+		}
 	}
 
 	protected void processDevicePdu(String deviceIp, PDU pdu) {
+		processDevicePdu(deviceIp, pdu, false);
+	}
+
+	/**
+	 * Processes the values polled from the device. The measurements are published according to
+	 * the reporting policies of the registers, see {@link ReportingPolicyService}.
+	 */
+	protected void processPolledPdu(String deviceIp, PDU pdu) {
+		processDevicePdu(deviceIp, pdu, true);
+	}
+
+	private void processDevicePdu(String deviceIp, PDU pdu, boolean polled) {
 		if (pdu.getVariableBindings() == null || pdu.getVariableBindings().size() == 0) {
 			log.debug("No OID found in the received trap");
 			return;
@@ -144,23 +170,36 @@ public class DeviceDataHandler implements CommandResponder {
 		}
 
 		boolean isMappingFound = false;
-		Map<OID, Register> oidMap = deviceProtocolWrapper.getOidMap();
+		RegisterTrie registerTrie = deviceProtocolWrapper.getRegisterTrie();
+		ManagedObjectRepresentation source = deviceMo.getSource();
+		DateTime dateTime = DateTime.now();
+		long timestamp = dateTime.getMillis();
 
 		for (VariableBinding binding : pdu.getVariableBindings()) {
-			OID oid = binding.getOid();
-			if (oidMap.containsKey(oid)) {
-				Register register = oidMap.get(oid);
+			// Only table cells are matched by their column register, see processDeviceTableCells
+			RegisterTemplate register = registerTrie.get(binding.getOid());
+			if (register != null) {
+				register.countDispatch();
 
-				if(register.getAlarmMapping() != null) {
-					alarmPublisher.publish(register.getAlarmMapping().buildAlarmRepresentation(deviceMo.getManagedObject()));
+				if(register.hasAlarmMapping()) {
+					alarmPublisher.publish(register.buildAlarmRepresentation(source, dateTime));
 				}
 
-				if(register.getEventMapping() != null) {
-					eventPublisher.publish(register.getEventMapping().buildEventRepresentation(deviceMo.getManagedObject()));
+				if(register.hasEventMapping()) {
+					eventPublisher.publish(register.buildEventRepresentation(source, dateTime));
 				}
 
-				if(register.getMeasurementMapping() != null) {
-					measurementPublisher.publish(register.getMeasurementMapping().buildMeasurementRepresentation(deviceMo.getManagedObject(), parse(binding.getVariable()), register.getUnit()));
+				if(register.hasMeasurementMapping()) {
+					Object value = parse(binding.getVariable());
+					boolean isReported = true;
+					if (polled && value != null && register.getReportingPolicy() != null) {
+						value = reportingPolicyService.apply(deviceIp, binding.getOid(), register.getReportingPolicy(),
+								value, timestamp);
+						isReported = value != null;
+					}
+					if (isReported) {
+						measurementPublisher.publish(register.buildMeasurementRepresentation(source, dateTime, value));
+					}
 				}
 
 				isMappingFound = true;
@@ -170,7 +209,58 @@ public class DeviceDataHandler implements CommandResponder {
 		}
 
 		if (!isMappingFound) {
-			log.debug("No configuration mappings found for received trap from the device {}", deviceMo.getProperties().getIpAddress());
+			log.debug("No configuration mappings found for received trap from the device {}", deviceIp);
+		}
+	}
+
+	/**
+	 * Publishes the measurements of the table cells walked while polling the device, one per table row.
+	 * Counters are published as rates and cells only if their value changed, see {@link TableCellHistory},
+	 * unless the register has a reporting policy, which then decides about publishing the cell.
+	 */
+	protected void processDeviceTableCells(String deviceIp, List<VariableBinding> cells, TableCellHistory history) {
+		DeviceManagedObjectWrapper deviceMo = dataProvider.getSnmpDeviceMap().get(deviceIp);
+		if (deviceMo == null) {
+			return;
+		}
+
+		String deviceProtocol = deviceMo.getDeviceProtocol();
+		DeviceProtocolManagedObjectWrapper deviceProtocolWrapper = dataProvider.getProtocolMap().get(deviceProtocol);
+		if (deviceProtocolWrapper == null) {
+			log.error("{} device protocol object not found at the gateway for the device with IP Address {}",
+					deviceProtocol, deviceIp);
+			return;
+		}
+
+		RegisterTrie registerTrie = deviceProtocolWrapper.getRegisterTrie();
+		ManagedObjectRepresentation source = deviceMo.getSource();
+		DateTime dateTime = DateTime.now();
+		long timestamp = dateTime.getMillis();
+
+		for (VariableBinding cell : cells) {
+			OID cellOid = cell.getOid();
+			RegisterTemplate register = registerTrie.lookup(cellOid);
+			if (register == null || !register.hasMeasurementMapping() || cellOid.size() <= register.getOid().size()) {
+				log.debug("{} OID walked for the device {} has no measurement mapping in the {} device protocol",
+						cellOid, deviceIp, deviceProtocol);
+				continue;
+			}
+
+			register.countDispatch();
+
+			Variable variable = cell.getVariable();
+			ReportingPolicy reportingPolicy = register.getReportingPolicy();
+			Object value = history.toReportedValue(cellOid, variable, parse(variable), timestamp,
+					reportingPolicy == null);
+			if (value != null && reportingPolicy != null) {
+				value = reportingPolicyService.apply(deviceIp, cellOid, reportingPolicy, value, timestamp);
+			}
+			if (value != null) {
+				OID rowIndex = new OID(cellOid.getValue(), register.getOid().size(),
+						cellOid.size() - register.getOid().size());
+				measurementPublisher.publish(register.buildRowMeasurementRepresentation(source, dateTime, rowIndex,
+						value, TableCellHistory.isCounter(variable)));
+			}
 		}
 	}
 
@@ -21,8 +21,9 @@ package com.cumulocity.agent.snmp.device.service;
 import c8y.RequiredAvailability;
 import com.cumulocity.agent.snmp.bootstrap.model.BootstrapReadyEvent;
 import com.cumulocity.agent.snmp.config.GatewayProperties;
+import com.cumulocity.agent.snmp.device.repository.DiscoveryProgressStore;
 import com.cumulocity.agent.snmp.platform.model.*;
-import com.cumulocity.agent.snmp.platform.pubsub.publisher.AlarmPublisher;
+import com.cumulocity.agent.snmp.platform.service.AlarmSuppressionService;
 import com.cumulocity.agent.snmp.platform.service.GatewayDataProvider;
 import com.cumulocity.agent.snmp.util.IpAddressUtil;
 import com.cumulocity.rest.representation.inventory.ManagedObjectReferenceRepresentation;
@@ -41,11 +42,13 @@ import org.snmp4j.PDU;
 import org.snmp4j.Snmp;
 import org.snmp4j.TransportMapping;
 import org.snmp4j.event.ResponseEvent;
+import org.snmp4j.event.ResponseListener;
 import org.snmp4j.mp.SnmpConstants;
+import org.snmp4j.smi.OID;
 import org.snmp4j.smi.OctetString;
 import org.snmp4j.smi.TcpAddress;
-import org.snmp4j.smi.TransportIpAddress;
 import org.snmp4j.smi.UdpAddress;
+import org.snmp4j.smi.VariableBinding;
 import org.snmp4j.transport.DefaultTcpTransportMapping;
 import org.snmp4j.transport.DefaultUdpTransportMapping;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -53,14 +56,17 @@ import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.TaskScheduler;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PreDestroy;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import static com.cumulocity.agent.snmp.platform.model.AlarmMapping.c8y_DeviceNotResponding;
-import static com.cumulocity.agent.snmp.platform.model.AlarmMapping.c8y_DeviceSnmpNotEnabled;
 import static com.cumulocity.agent.snmp.platform.model.AlarmSeverity.MAJOR;
 import static com.cumulocity.agent.snmp.platform.model.DeviceManagedObjectWrapper.*;
 import static com.cumulocity.agent.snmp.platform.model.ReceivedOperationForGatewayEvent.C8Y_SNMP_AUTO_DISCOVERY_FRAGMENT_KEY;
@@ -70,6 +76,12 @@ import static com.cumulocity.rest.representation.inventory.InventoryMediaType.MA
 
 /**
  * SNMP Device auto-discovery service
+ *
+ * Scans the IP ranges by sending an SNMP GET of the sysObjectID to each address asynchronously,
+ * all through one SNMP session. At most {@code snmp.autodiscovery.maxInFlightRequests} requests are pending
+ * and at most {@code snmp.autodiscovery.rateLimit} requests are sent per second. The devices found are created
+ * as soon as they respond and published to the gateway periodically during the scan. The progress is saved
+ * in the {@link DiscoveryProgressStore}, so that a scan interrupted by a restart resumes where it stopped.
  */
 
 @Slf4j
@@ -78,6 +90,12 @@ public class DeviceDiscoveryService {
 
     private static final int DEFAULT_CONNECTION_INTERVAL_IN_MINUTES = 10;
 
+    private static final OID SYS_OBJECT_ID = new OID("1.3.6.1.2.1.1.2.0");
+
+    private static final long RESPONSE_POLL_INTERVAL_IN_MILLIS = 100;
+
+    private static final long PROGRESS_CHECKPOINT_INTERVAL_IN_MILLIS = 10_000;
+
     @Autowired
     private GatewayProperties.SnmpProperties snmpProperties;
 
@@ -97,7 +115,10 @@ public class DeviceDiscoveryService {
     private DeviceControlApi deviceControlApi;
 
     @Autowired
-    private AlarmPublisher alarmPublisher;
+    private AlarmSuppressionService alarmSuppressionService;
+
+    @Autowired
+    private DiscoveryProgressStore discoveryProgressStore;
 
     private ScheduledFuture<?> autoDiscoverySchedule;
 
@@ -107,6 +128,10 @@ public class DeviceDiscoveryService {
 
     private long autoDiscoveryScheduleInterval;
 
+    Snmp snmp = null;
+
+    private boolean snmpSessionUdp;
+
 
     @EventListener(BootstrapReadyEvent.class)
     void scheduleAutoDiscoveryProcess() {
@@ -197,94 +222,118 @@ public class DeviceDiscoveryService {
     }
 
     synchronized void scanForSnmpDevicesAndCreateChildDevices(List<InetAddress[]> ipRangesList, int port, boolean isProtocolUdp, int pingTimeoutInSeconds, String communityTarget) {
-        Map<String, DeviceManagedObjectWrapper> existingDeviceMap = gatewayDataProvider.getSnmpDeviceMap();
+        Snmp session;
+        try {
+            session = openSession(isProtocolUdp, pingTimeoutInSeconds * 1000L);
+        } catch (IOException e) {
+            log.error("Failed to open the SNMP session for the auto-discovery device scan.", e);
+            return;
+        }
+
+        String progressKey = toProgressKey(ipRangesList, port);
+        removeProgressOfOtherScans(progressKey);
+        long scannedBefore = discoveryProgressStore.getOrDefault(progressKey, 0L);
+        if (scannedBefore > 0) {
+            log.info("Resuming the auto-discovery device scan of the IP ranges {} after {} already scanned IP Addresses.", progressKey, scannedBefore);
+        }
+
+        DiscoveryScan scan = new DiscoveryScan(session, gatewayDataProvider.getSnmpDeviceMap(), port, isProtocolUdp, pingTimeoutInSeconds * 1000L, communityTarget, progressKey);
         Set<String> ipAlreadyScannedInThisRun = new HashSet<>();
-        boolean newDeviceFoundInThisRun = false;
-
-        int timeoutInMilliseconds = pingTimeoutInSeconds * 1000;
-        for(InetAddress[] oneIpRange : ipRangesList) {
-            InetAddress currentIp = oneIpRange[0];
-            String currentIpString = currentIp.getHostAddress();
-            InetAddress endIp = InetAddresses.increment(oneIpRange[1]);
-            while(!currentIp.equals(endIp)) {
-                try {
-                    if(!ipAlreadyScannedInThisRun.contains(currentIpString)) { // Skip the IP Addresses which are already scanned in this run
-                        ipAlreadyScannedInThisRun.add(currentIpString);
-
-                        log.debug("Trying to find an SNMP device at IP Address <{}> during auto-discovery device scan.", currentIpString);
-
-                        if (currentIp.isReachable(timeoutInMilliseconds)) {
-                            boolean isDeviceSnmpEnabled = isDeviceSnmpEnabled(currentIp, port, isProtocolUdp, communityTarget);
-                            if (isDeviceSnmpEnabled && !existingDeviceMap.containsKey(currentIpString)) {
-                                log.info("A new SNMP enabled device is found with IP Address {} by auto-discovery device scan.", currentIpString);
-
-                                // Create a new Child Device
-                                createAndRegisterAChildDevice(currentIpString, port);
-                                newDeviceFoundInThisRun = true;
-                            } else if (!isDeviceSnmpEnabled) {
-                                handleNoResponseFromDevice(c8y_DeviceSnmpNotEnabled + currentIpString, "A device with IP Address <" + currentIpString + ">, which is not SNMP enabled is found during auto-discovery device scan.");
-                            }
-                        } else {
-                            if (existingDeviceMap.containsKey(currentIpString)) {
-                                handleNoResponseFromDevice(c8y_DeviceNotResponding + currentIpString, "Existing SNMP device with IP Address <" + currentIpString + "> didn't respond during auto-discovery device scan.");
-                            } else {
-                                log.debug("No device is found at IP Address <{}> during auto-discovery device scan.", currentIpString);
-                            }
+        long sequence = 0;
+        try {
+            for (InetAddress[] oneIpRange : ipRangesList) {
+                InetAddress currentIp = oneIpRange[0];
+                InetAddress endIp = InetAddresses.increment(oneIpRange[1]);
+                while (!currentIp.equals(endIp)) {
+                    String currentIpString = currentIp.getHostAddress();
+                    // Skip the IP Addresses which are already scanned in this run, or before the scan was interrupted
+                    if (ipAlreadyScannedInThisRun.add(currentIpString)) {
+                        if (sequence >= scannedBefore) {
+                            scan.send(sequence, currentIpString);
                         }
+                        sequence++;
                     }
-                } catch (IOException e) {
-                    // Ignore this exception and continue
-                    log.warn("Unexpected error while pinging the IP Address {}.", currentIpString, e);
-                }
 
-                currentIp = InetAddresses.increment(currentIp);
-                currentIpString = currentIp.getHostAddress();
+                    currentIp = InetAddresses.increment(currentIp);
+                }
             }
-        }
 
-        if(newDeviceFoundInThisRun) {
-            // Refresh the locally maintained Gateway Objects when
-            // a new child device is found and created
-            gatewayDataProvider.refreshGatewayObjects();
+            scan.awaitResponses();
+            discoveryProgressStore.remove(progressKey);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            scan.saveProgress();
+            log.info("Auto-discovery device scan of the IP ranges {} is interrupted, it will resume from where it stopped.", progressKey);
+        } finally {
+            scan.refreshGatewayObjectsIfNewDeviceFound();
         }
     }
 
-    boolean isDeviceSnmpEnabled(InetAddress ipAddress, int port, boolean isProtocolUdp, String communityTarget) {
+    Snmp openSession(boolean isProtocolUdp, long timeoutInMillis) throws IOException {
+        if (snmp != null && snmpSessionUdp == isProtocolUdp) {
+            return snmp;
+        }
+        stop();
+
+        TransportMapping<?> transport;
+        if (isProtocolUdp) {
+            transport = new DefaultUdpTransportMapping();
+        } else {
+            DefaultTcpTransportMapping tcpTransport = new DefaultTcpTransportMapping();
+            // Close the connections to the scanned devices soon, so that the sockets are not kept open
+            tcpTransport.setConnectionTimeout(timeoutInMillis);
+            transport = tcpTransport;
+        }
 
-        try {
-            TransportMapping<?> transport;
-            TransportIpAddress transportIpAddress;
+        Snmp session = new Snmp(transport);
+        session.listen();
+        snmp = session;
+        snmpSessionUdp = isProtocolUdp;
 
-            String url = ipAddress.getHostAddress() + "/" + String.valueOf(port);
-            if(isProtocolUdp) {
-                transportIpAddress = new UdpAddress(url);
+        log.info("Opened SNMP session for the auto-discovery device scan at {}", transport.getListenAddress());
 
-                transport = new DefaultUdpTransportMapping();
-            } else {
-                transportIpAddress = new TcpAddress(url);
+        return snmp;
+    }
 
-                transport = new DefaultTcpTransportMapping();
+    @PreDestroy
+    void stop() {
+        try {
+            if (snmp != null) {
+                snmp.close();
             }
+        } catch (IOException e) {
+            log.error("Failed to close the SNMP session used for the auto-discovery device scan.", e);
+        } finally {
+            snmp = null;
+        }
+    }
 
-            PDU pdu = new PDU();
-            pdu.setType(PDU.GET);
-
-            CommunityTarget target = new CommunityTarget();
-            target.setCommunity(new OctetString(communityTarget));
-            target.setVersion(SnmpConstants.version1);
-            target.setAddress(transportIpAddress);
-
-            transport.listen();
-            Snmp snmp = new Snmp(transport);
-
-            ResponseEvent responseEvent = snmp.send(pdu, target);
+    /**
+     * Only a scan of the same IP ranges and port resumes. The progress of interrupted scans of other IP ranges
+     * is dropped, otherwise it would be kept forever and fill up the {@link DiscoveryProgressStore}.
+     */
+    private void removeProgressOfOtherScans(String progressKey) {
+        try {
+            for (String otherProgressKey : new ArrayList<>(discoveryProgressStore.keySet())) {
+                if (!otherProgressKey.equals(progressKey)) {
+                    discoveryProgressStore.remove(otherProgressKey);
+                }
+            }
+        } catch (Throwable t) {
+            log.warn("Failed to remove the progress of the earlier auto-discovery device scans.", t);
+        }
+    }
 
-            return responseEvent.getResponse() != null;
-        } catch (IOException e) {
-            log.warn("Exception while processing SNMP compatibility check during auto-discovery device scan.", e);
+    private static String toProgressKey(List<InetAddress[]> ipRangesList, int port) {
+        StringBuilder progressKey = new StringBuilder();
+        for (InetAddress[] oneIpRange : ipRangesList) {
+            if (progressKey.length() > 0) {
+                progressKey.append(',');
+            }
+            progressKey.append(oneIpRange[0].getHostAddress()).append('-').append(oneIpRange[1].getHostAddress());
         }
 
-        return false;
+        return progressKey.append('/').append(port).toString();
     }
 
     List<InetAddress[]> parseIpRanges(String ipRanges) throws IllegalArgumentException {
@@ -367,13 +416,204 @@ public class DeviceDiscoveryService {
     }
 
     void handleNoResponseFromDevice(String type, String text) {
-        log.warn(text + " An alarm is published to the Platform.");
-
         AlarmMapping alarmMapping = new AlarmMapping();
         alarmMapping.setSeverity(MAJOR.name());
         alarmMapping.setType(type);
         alarmMapping.setText(text);
 
-        alarmPublisher.publish(alarmMapping.buildAlarmRepresentation(gatewayDataProvider.getGatewayDevice().getManagedObject()));
+        if (alarmSuppressionService.publish(alarmMapping)) {
+            log.warn(text + " An alarm is published to the Platform.");
+        } else {
+            log.debug(text + " The alarm is suppressed.");
+        }
+    }
+
+    /**
+     * One run of the auto-discovery device scan. The requests are sent asynchronously and their responses
+     * are queued by the SNMP transport thread, while the scanning thread handles them in between sending.
+     * The progress saved is the number of addresses before the first one, whose response is not handled yet.
+     */
+    private final class DiscoveryScan {
+
+        private final Snmp session;
+
+        private final Map<String, DeviceManagedObjectWrapper> existingDeviceMap;
+
+        private final int port;
+
+        private final boolean isProtocolUdp;
+
+        private final long timeoutInMillis;
+
+        private final OctetString community;
+
+        private final String progressKey;
+
+        private final int maxInFlightRequests;
+
+        private final long sendIntervalInNanos;
+
+        private final BlockingQueue<DiscoveryRequest> responses = new LinkedBlockingQueue<>();
+
+        // Sequence numbers of the requests sent, whose response is not handled yet
+        private final NavigableSet<Long> pendingRequests = new TreeSet<>();
+
+        private final ResponseListener responseListener = new ResponseListener() {
+            @Override
+            public void onResponse(ResponseEvent event) {
+                // Asynchronous requests have to be cancelled once the response is received, otherwise they are kept in memory
+                ((Snmp) event.getSource()).cancel(event.getRequest(), this);
+
+                DiscoveryRequest request = (DiscoveryRequest) event.getUserObject();
+                request.responded = event.getResponse() != null;
+                responses.add(request);
+            }
+        };
+
+        private long nextSequence = 0;
+
+        private long nextSendTime = System.nanoTime();
+
+        private long nextCheckpointTime = System.currentTimeMillis() + PROGRESS_CHECKPOINT_INTERVAL_IN_MILLIS;
+
+        private boolean newDeviceFound = false;
+
+        private DiscoveryScan(Snmp session, Map<String, DeviceManagedObjectWrapper> existingDeviceMap, int port, boolean isProtocolUdp, long timeoutInMillis, String communityTarget, String progressKey) {
+            this.session = session;
+            this.existingDeviceMap = existingDeviceMap;
+            this.port = port;
+            this.isProtocolUdp = isProtocolUdp;
+            this.timeoutInMillis = timeoutInMillis;
+            this.community = new OctetString(communityTarget);
+            this.progressKey = progressKey;
+            this.maxInFlightRequests = Math.max(1, snmpProperties.getAutoDiscoveryMaxInFlightRequests());
+
+            int rateLimit = snmpProperties.getAutoDiscoveryRateLimit();
+            this.sendIntervalInNanos = (rateLimit > 0) ? TimeUnit.SECONDS.toNanos(1) / rateLimit : 0;
+        }
+
+        void send(long sequence, String ipAddress) throws InterruptedException {
+            // Handle the responses while the window of requests in flight is full
+            while (pendingRequests.size() >= maxInFlightRequests) {
+                handleResponses(TimeUnit.MILLISECONDS.toNanos(RESPONSE_POLL_INTERVAL_IN_MILLIS));
+            }
+
+            // Handle the responses while waiting for the next send time of the rate limit
+            long waitTime;
+            while ((waitTime = nextSendTime - System.nanoTime()) > 0) {
+                handleResponses(waitTime);
+            }
+            nextSendTime = Math.max(nextSendTime, System.nanoTime() - sendIntervalInNanos) + sendIntervalInNanos;
+
+            log.debug("Trying to find an SNMP device at IP Address <{}> during auto-discovery device scan.", ipAddress);
+
+            DiscoveryRequest request = new DiscoveryRequest(sequence, ipAddress);
+            pendingRequests.add(sequence);
+            nextSequence = sequence + 1;
+            try {
+                session.send(createRequestPdu(), createTarget(ipAddress), request, responseListener);
+            } catch (IOException | RuntimeException e) {
+                log.warn("Unexpected error while sending the SNMP request to the IP Address {}.", ipAddress, e);
+                handleResponse(request);
+            }
+        }
+
+        void awaitResponses() throws InterruptedException {
+            while (!pendingRequests.isEmpty()) {
+                handleResponses(TimeUnit.MILLISECONDS.toNanos(RESPONSE_POLL_INTERVAL_IN_MILLIS));
+            }
+        }
+
+        void saveProgress() {
+            long scanned = pendingRequests.isEmpty() ? nextSequence : pendingRequests.first();
+            try {
+                discoveryProgressStore.put(progressKey, scanned);
+            } catch (Throwable t) {
+                log.warn("Failed to save the progress of the auto-discovery device scan of the IP ranges {}.", progressKey, t);
+            }
+        }
+
+        void refreshGatewayObjectsIfNewDeviceFound() {
+            if (newDeviceFound) {
+                // Refresh the locally maintained Gateway Objects when
+                // a new child device is found and created
+                gatewayDataProvider.refreshGatewayObjects();
+                newDeviceFound = false;
+            }
+        }
+
+        private void handleResponses(long timeoutInNanos) throws InterruptedException {
+            DiscoveryRequest request = responses.poll(timeoutInNanos, TimeUnit.NANOSECONDS);
+            while (request != null) {
+                handleResponse(request);
+                request = responses.poll();
+            }
+
+            if (System.currentTimeMillis() >= nextCheckpointTime) {
+                nextCheckpointTime = System.currentTimeMillis() + PROGRESS_CHECKPOINT_INTERVAL_IN_MILLIS;
+
+                saveProgress();
+                // Publish the devices found so far, instead of waiting until the whole scan completes
+                refreshGatewayObjectsIfNewDeviceFound();
+            }
+        }
+
+        private void handleResponse(DiscoveryRequest request) {
+            String ipAddress = request.ipAddress;
+            try {
+                if (request.responded) {
+                    if (!existingDeviceMap.containsKey(ipAddress)) {
+                        log.info("A new SNMP enabled device is found with IP Address {} by auto-discovery device scan.", ipAddress);
+
+                        // Create a new Child Device
+                        createAndRegisterAChildDevice(ipAddress, port);
+                        newDeviceFound = true;
+                    }
+                } else if (existingDeviceMap.containsKey(ipAddress)) {
+                    handleNoResponseFromDevice(c8y_DeviceNotResponding + ipAddress, "Existing SNMP device with IP Address <" + ipAddress + "> didn't respond during auto-discovery device scan.");
+                } else {
+                    log.debug("No SNMP device is found at IP Address <{}> during auto-discovery device scan.", ipAddress);
+                }
+            } catch (Throwable t) {
+                log.error("Unexpected error while handling the auto-discovery device scan result of the IP Address {}.", ipAddress, t);
+            } finally {
+                pendingRequests.remove(request.sequence);
+            }
+        }
+
+        private PDU createRequestPdu() {
+            PDU pdu = new PDU();
+            pdu.setType(PDU.GET);
+            pdu.add(new VariableBinding(SYS_OBJECT_ID));
+
+            return pdu;
+        }
+
+        private CommunityTarget createTarget(String ipAddress) {
+            String url = ipAddress + "/" + port;
+
+            CommunityTarget target = new CommunityTarget();
+            target.setCommunity(community);
+            target.setVersion(SnmpConstants.version1);
+            target.setAddress(isProtocolUdp ? new UdpAddress(url) : new TcpAddress(url));
+            target.setTimeout(timeoutInMillis);
+            target.setRetries(0);
+
+            return target;
+        }
+    }
+
+    private static final class DiscoveryRequest {
+
+        private final long sequence;
+
+        private final String ipAddress;
+
+        private volatile boolean responded;
+
+        private DiscoveryRequest(long sequence, String ipAddress) {
+            this.sequence = sequence;
+            this.ipAddress = ipAddress;
+        }
     }
 }
@@ -18,42 +18,25 @@
 
 package com.cumulocity.agent.snmp.device.service;
 
-import static com.cumulocity.agent.snmp.util.SnmpUtil.getAuthProtocolOid;
-import static com.cumulocity.agent.snmp.util.SnmpUtil.getPrivacyProtocolOid;
-
 import java.io.IOException;
 import java.net.BindException;
 import java.net.ProtocolException;
-import java.time.Duration;
-import java.time.Instant;
-import java.util.List;
-import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ScheduledFuture;
 
 import javax.annotation.PreDestroy;
 
 import org.snmp4j.MessageDispatcher;
 import org.snmp4j.MessageDispatcherImpl;
-import org.snmp4j.PDU;
 import org.snmp4j.Snmp;
 import org.snmp4j.TransportMapping;
-import org.snmp4j.event.ResponseEvent;
 import org.snmp4j.mp.MPv1;
 import org.snmp4j.mp.MPv2c;
 import org.snmp4j.mp.MPv3;
-import org.snmp4j.mp.SnmpConstants;
-import org.snmp4j.security.SecurityLevel;
-import org.snmp4j.security.SecurityModels;
-import org.snmp4j.security.SecurityProtocols;
-import org.snmp4j.security.USM;
-import org.snmp4j.security.UsmUser;
 import org.snmp4j.smi.Address;
 import org.snmp4j.smi.GenericAddress;
-import org.snmp4j.smi.OID;
-import org.snmp4j.smi.OctetString;
 import org.snmp4j.smi.TcpAddress;
 import org.snmp4j.smi.UdpAddress;
-import org.snmp4j.smi.VariableBinding;
 import org.snmp4j.transport.DefaultTcpTransportMapping;
 import org.snmp4j.transport.DefaultUdpTransportMapping;
 import org.snmp4j.util.MultiThreadedMessageDispatcher;
@@ -65,10 +48,7 @@ import org.springframework.stereotype.Service;
 
 import com.cumulocity.agent.snmp.bootstrap.model.BootstrapReadyEvent;
 import com.cumulocity.agent.snmp.config.GatewayProperties;
-import com.cumulocity.agent.snmp.platform.model.DeviceManagedObjectWrapper;
-import com.cumulocity.agent.snmp.platform.model.DeviceManagedObjectWrapper.DeviceAuthentication;
-import com.cumulocity.agent.snmp.platform.model.DeviceManagedObjectWrapper.SnmpDeviceProperties;
-import com.cumulocity.agent.snmp.platform.model.DeviceProtocolManagedObjectWrapper;
+import com.cumulocity.agent.snmp.platform.model.GatewayDataChangedEvent;
 import com.cumulocity.agent.snmp.platform.model.GatewayDataRefreshedEvent;
 import com.cumulocity.agent.snmp.platform.service.GatewayDataProvider;
 import com.cumulocity.agent.snmp.util.IpAddressUtil;
@@ -94,31 +74,46 @@ public class DeviceListenerService {
 	@Autowired
 	private DeviceDataHandler deviceDataHandler;
 
+	@Autowired
+	private DevicePollingService devicePollingService;
+
+	@Autowired
+	private UserSecurityModelService userSecurityModelService;
+
 	Snmp snmp = null;
 
 	private ScheduledFuture<?> snmpDevicePoller;
 
-	private long pollingRateInSeconds = -1;
-
 	@EventListener(BootstrapReadyEvent.class)
 	private void onBootstrapReady() {
 		createSnmpDeviceListener();
 
+		devicePollingService.refreshDevicePollers();
 		createSnmpDevicePoller();
 	}
 
 	@EventListener(GatewayDataRefreshedEvent.class)
 	private void onGatewayDataRefresh() {
-		// Re-Configure user security model
-		configureUserSecurityModel();
-
-		// Re-schedule poller (only if configuration changed
+		// Reschedule the devices polled at the rate of the gateway (only if the rate changed)
 		createSnmpDevicePoller();
 	}
 
+	@EventListener(GatewayDataChangedEvent.class)
+	private void onGatewayDataChanged(GatewayDataChangedEvent event) {
+		if (snmp == null) {
+			// Not listening yet, all the devices are configured once the bootstrap is ready
+			return;
+		}
+
+		Set<String> affectedDevices = event.getAffectedDevices();
+
+		userSecurityModelService.updateUsers(affectedDevices);
+		devicePollingService.refreshDevicePollers(affectedDevices);
+	}
+
 	protected void createSnmpDeviceListener() {
 		try {
-			configureUserSecurityModel();
+			userSecurityModelService.refreshUsers();
 
 			int poolSize = gatewayProperties.getThreadPoolSizeForTrapProcessing();
 			ThreadPool threadPool = ThreadPool.create("snmp-dispatcher-thread", poolSize);
@@ -157,84 +152,21 @@ public class DeviceListenerService {
 	}
 
 	protected void createSnmpDevicePoller() {
-		long newPollingRateInSeconds = gatewayDataProvider.getGatewayDevice().getSnmpCommunicationProperties()
-				.getPollingRate();
+		devicePollingService.setDefaultPollingRate(
+				gatewayDataProvider.getGatewayDevice().getSnmpCommunicationProperties().getPollingRate());
 
-		if (snmpDevicePoller != null && !snmpDevicePoller.isDone() && pollingRateInSeconds == newPollingRateInSeconds) {
+		if (snmpDevicePoller != null && !snmpDevicePoller.isDone()) {
 			return;
 		}
 
-		if (snmpDevicePoller != null) {
-			snmpDevicePoller.cancel(true);
-		}
-
-		pollingRateInSeconds = newPollingRateInSeconds;
-
-		if (pollingRateInSeconds <= 0) {
-			return;
-		}
-		snmpDevicePoller = taskScheduler.scheduleWithFixedDelay(() -> {
+		// Every device is polled at its own interval and phase, the ticks only check which devices are due
+		snmpDevicePoller = taskScheduler.scheduleAtFixedRate(() -> {
 			try {
-				Map<String, DeviceManagedObjectWrapper> snmpDeviceMap = gatewayDataProvider.getSnmpDeviceMap();
-				Map<String, DeviceProtocolManagedObjectWrapper> protocolMap = gatewayDataProvider.getProtocolMap();
-
-				snmpDeviceMap.forEach((deviceIp, deviceWrapper) -> {
-					String deviceProtocolName = deviceWrapper.getDeviceProtocol();
-
-					if (protocolMap.containsKey(deviceProtocolName)) {
-						DeviceProtocolManagedObjectWrapper deviceProtocolWrapper = protocolMap.get(deviceProtocolName);
-						List<VariableBinding> varibleBindingList = deviceProtocolWrapper
-								.getMeasurementVariableBindingList();
-
-						if (varibleBindingList.size() > 0) {
-
-							taskScheduler.schedule(() -> {
-								SnmpDevicePoller devicePoller = null;
-
-								try {
-									log.info("SNMP Props: {}, Device Wrapper: {}, VaribleBindingList: {}", snmpProperties, deviceWrapper, varibleBindingList);
-									devicePoller = new SnmpDevicePoller(snmpProperties, deviceWrapper,
-											varibleBindingList);
-									ResponseEvent responseEvent = devicePoller.poll();
-
-									PDU responsePDU = responseEvent.getResponse();
-									if (responsePDU == null) {
-										log.error("Empty response was received while polling for device with IP Address {} and OIDs {}",
-												deviceIp, responseEvent.getRequest());
-									} else if (responsePDU.getErrorStatus() == PDU.noError) {
-										if (responsePDU.getVariableBindings().size() == 0) {
-											log.error("No data found after successful device polling");
-											return;
-										}
-
-										deviceDataHandler.processDevicePdu(deviceIp, responsePDU);
-									} else {
-										log.error(
-												"Error while polling device {} OIDs.\n"
-														+ "Error index {} | Error status {} | Error text {} ",
-												deviceIp, responsePDU.getErrorIndex(), responsePDU.getErrorStatus(),
-												responsePDU.getErrorStatusText());
-									}
-
-								} catch (IOException e) {
-									log.error("Failed while polling variables for the device with IP Address {} and {} protocol",
-											deviceIp, deviceWrapper.getDeviceProtocol(), e);
-								} finally {
-									if (devicePoller != null) {
-										devicePoller.close();
-									}
-								}
-							}, Instant.now());
-
-						}
-					} else {
-						log.debug("{} device is not configured with device protocol", deviceIp);
-					}
-				});
+				devicePollingService.pollDueDevices();
 			} catch (Throwable t) {
 				log.error("Error while polling SNMP devices.", t);
 			}
-		}, Duration.ofSeconds(pollingRateInSeconds));
+		}, DevicePollingService.POLL_TICK);
 	}
 
 	@PreDestroy
@@ -248,60 +180,6 @@ public class DeviceListenerService {
 		}
 	}
 
-	private void configureUserSecurityModel() {
-		SecurityProtocols securityProtocols = SecurityProtocols.getInstance();
-		securityProtocols.addDefaultProtocols();
-
-		USM usm = new USM(securityProtocols, new OctetString(MPv3.createLocalEngineID()), 0);
-		addCredentials(usm);
-
-		SecurityModels.getInstance().addSecurityModel(usm);
-	}
-
-	private void addCredentials(USM usm) {
-		Map<String, DeviceManagedObjectWrapper> snmpDeviceMap = gatewayDataProvider.getSnmpDeviceMap();
-		snmpDeviceMap.forEach((deviceIP, managedObject) -> {
-			SnmpDeviceProperties properties = managedObject.getProperties();
-
-			if (properties.getVersion() == SnmpConstants.version3) {
-				DeviceAuthentication authDetails = properties.getAuth();
-				UsmUser usmUser = createUser(authDetails);
-
-				if (usmUser != null) {
-					OctetString userName = new OctetString(authDetails.getUsername());
-					OctetString engineID = new OctetString(authDetails.getEngineId());
-					usm.addUser(userName, engineID, usmUser);
-				}
-			}
-		});
-	}
-
-	private UsmUser createUser(DeviceAuthentication authDetails) {
-		OctetString userName = new OctetString(authDetails.getUsername());
-
-		switch (authDetails.getSecurityLevel()) {
-		case SecurityLevel.NOAUTH_NOPRIV:
-			return new UsmUser(userName, null, null, null, null);
-
-		case SecurityLevel.AUTH_NOPRIV:
-			OID authProtocolOid = getAuthProtocolOid(authDetails.getAuthProtocol());
-			OctetString authPassword = new OctetString(authDetails.getAuthPassword());
-			return new UsmUser(userName, authProtocolOid, authPassword, null, null);
-
-		case SecurityLevel.AUTH_PRIV:
-			authProtocolOid = getAuthProtocolOid(authDetails.getAuthProtocol());
-			authPassword = new OctetString(authDetails.getAuthPassword());
-			OID privacyProtocolOid = getPrivacyProtocolOid(authDetails.getPrivProtocol());
-			OctetString privacyPassword = new OctetString(authDetails.getPrivPassword());
-			return new UsmUser(userName, authProtocolOid, authPassword, privacyProtocolOid, privacyPassword);
-
-		default:
-			log.error("Unsupported {} Security level found in {} user, configured for device having {} as engine id",
-					authDetails.getSecurityLevel(), userName, authDetails.getEngineId());
-			return null;
-		}
-	}
-
 	TransportMapping<? extends Address> createTransportMapping(String protocol, int port, String bindingAddress)
 			throws IOException {
 		Address snmpListeningAddress = GenericAddress.parse(protocol + ":" + bindingAddress + "/" + port);
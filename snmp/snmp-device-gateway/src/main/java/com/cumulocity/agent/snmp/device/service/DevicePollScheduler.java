@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA, 
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cumulocity.agent.snmp.device.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hashed timing wheel telling which devices are due for polling. Every device is polled at its own interval,
+ * at a phase derived from its IP Address, so that the polls are spread across the interval instead of all
+ * devices being polled at the same instant. As the phase does not depend on the time a device is scheduled,
+ * it is kept when the device is rescheduled after a change of the gateway data.
+ * <p>
+ * Deadlines which passed entirely while the wheel was not advanced, e.g. because the polling thread was blocked,
+ * are skipped and counted as missed. The scheduler is not thread safe, {@link DevicePollingService}
+ * synchronizes the access.
+ * <p>
+ * The times passed in are milliseconds of a monotonic, non-negative clock, so that a wall clock adjustment
+ * neither skips nor bursts the polls.
+ */
+class DevicePollScheduler {
+
+	private final long tickInMillis;
+
+	private final List<List<ScheduledPoll>> wheel;
+
+	private final Map<String, ScheduledPoll> scheduledPolls = new HashMap<>();
+
+	private final LongAdder missedDeadlines;
+
+	private long currentTick = -1;
+
+	DevicePollScheduler(long tickInMillis, int wheelSize, LongAdder missedDeadlines) {
+		this.tickInMillis = tickInMillis;
+		this.missedDeadlines = missedDeadlines;
+		this.wheel = new ArrayList<>(wheelSize);
+		for (int i = 0; i < wheelSize; i++) {
+			wheel.add(new ArrayList<>());
+		}
+	}
+
+	/**
+	 * Schedules the device to be polled every given interval, replacing its previous schedule.
+	 */
+	void schedule(String deviceIp, long intervalInMillis, long now) {
+		cancel(deviceIp);
+
+		long nowTick = now / tickInMillis;
+		long intervalInTicks = Math.max(1, intervalInMillis / tickInMillis);
+
+		// First tick after now, which is at the phase of the device within its interval
+		long deadline = nowTick - Math.floorMod(nowTick, intervalInTicks) + phaseOf(deviceIp, intervalInTicks);
+		if (deadline <= nowTick) {
+			deadline += intervalInTicks;
+		}
+
+		ScheduledPoll scheduledPoll = new ScheduledPoll(deviceIp, intervalInTicks, deadline);
+		scheduledPolls.put(deviceIp, scheduledPoll);
+		slotOf(deadline).add(scheduledPoll);
+
+		if (currentTick < 0) {
+			currentTick = nowTick;
+		}
+	}
+
+	void cancel(String deviceIp) {
+		ScheduledPoll scheduledPoll = scheduledPolls.remove(deviceIp);
+		if (scheduledPoll != null) {
+			slotOf(scheduledPoll.deadline).remove(scheduledPoll);
+		}
+	}
+
+	void clear() {
+		scheduledPolls.clear();
+		wheel.forEach(List::clear);
+	}
+
+	int size() {
+		return scheduledPolls.size();
+	}
+
+	/**
+	 * Advances the wheel up to the given time and schedules the next polls of the devices which are due.
+	 *
+	 * @return IP Addresses of the devices due for polling
+	 */
+	List<String> advance(long now) {
+		long nowTick = now / tickInMillis;
+		if (currentTick < 0) {
+			currentTick = nowTick - 1;
+		}
+
+		List<String> dueDevices = new ArrayList<>();
+		List<ScheduledPoll> nextPolls = new ArrayList<>();
+
+		// A slot holds the deadlines of all rotations, so one rotation covers any number of passed ticks
+		long ticks = Math.min(nowTick - currentTick, wheel.size());
+		for (long tick = nowTick - ticks + 1; tick <= nowTick; tick++) {
+			Iterator<ScheduledPoll> iterator = slotOf(tick).iterator();
+			while (iterator.hasNext()) {
+				ScheduledPoll scheduledPoll = iterator.next();
+				if (scheduledPoll.deadline > nowTick) {
+					continue;
+				}
+
+				iterator.remove();
+				dueDevices.add(scheduledPoll.deviceIp);
+
+				long passedDeadlines = (nowTick - scheduledPoll.deadline) / scheduledPoll.intervalInTicks;
+				if (passedDeadlines > 0) {
+					missedDeadlines.add(passedDeadlines);
+				}
+				scheduledPoll.deadline += (passedDeadlines + 1) * scheduledPoll.intervalInTicks;
+				nextPolls.add(scheduledPoll);
+			}
+		}
+
+		for (ScheduledPoll scheduledPoll : nextPolls) {
+			slotOf(scheduledPoll.deadline).add(scheduledPoll);
+		}
+		currentTick = Math.max(currentTick, nowTick);
+
+		return dueDevices;
+	}
+
+	private List<ScheduledPoll> slotOf(long tick) {
+		return wheel.get((int) Math.floorMod(tick, (long) wheel.size()));
+	}
+
+	private static long phaseOf(String deviceIp, long intervalInTicks) {
+		// Mix the bits of the hash code, as the hash codes of similar IP Addresses differ only slightly
+		long hash = deviceIp.hashCode() * 0x9E3779B97F4A7C15L;
+		hash ^= (hash >>> 32);
+
+		return Math.floorMod(hash, intervalInTicks);
+	}
+
+	private static final class ScheduledPoll {
+
+		private final String deviceIp;
+
+		private final long intervalInTicks;
+
+		private long deadline;
+
+		private ScheduledPoll(String deviceIp, long intervalInTicks, long deadline) {
+			this.deviceIp = deviceIp;
+			this.intervalInTicks = intervalInTicks;
+			this.deadline = deadline;
+		}
+	}
+}
@@ -0,0 +1,506 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA,
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cumulocity.agent.snmp.device.service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.snmp4j.PDU;
+import org.snmp4j.Snmp;
+import org.snmp4j.TransportMapping;
+import org.snmp4j.event.ResponseEvent;
+import org.snmp4j.event.ResponseListener;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.VariableBinding;
+import org.snmp4j.transport.DefaultTcpTransportMapping;
+import org.snmp4j.transport.DefaultUdpTransportMapping;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+
+import com.cumulocity.agent.snmp.config.GatewayProperties;
+import com.cumulocity.agent.snmp.platform.model.DeviceManagedObjectWrapper;
+import com.cumulocity.agent.snmp.platform.model.DeviceProtocolManagedObjectWrapper;
+import com.cumulocity.agent.snmp.platform.service.GatewayDataProvider;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Polls all SNMP devices through one long-lived SNMP session. The requests of a device are sent asynchronously
+ * without waiting for each other, and at most {@code snmp.polling.maxInFlightRequests} are pending in total.
+ * A device is not polled again before all requests of its previous poll completed, such a skipped poll
+ * counts as a missed deadline.
+ * The targets and PDUs of the devices are cached and rebuilt only for the devices changed in the gateway data.
+ * <p>
+ * The tables of a device are walked within its poll, see {@link DeviceTableWalk}. The next request of a walk
+ * is sent once the response to the previous one is processed, and the poll completes with the walk.
+ * <p>
+ * Each device is polled at the polling rate of its own, of its device protocol or of the gateway, in this order.
+ * The polls are spread across the interval by the {@link DevicePollScheduler}, which is advanced every
+ * {@link #POLL_TICK} by {@link #pollDueDevices()}.
+ */
+@Slf4j
+@Service
+public class DevicePollingService {
+
+	@Autowired
+	private GatewayProperties.SnmpProperties snmpProperties;
+
+	@Autowired
+	private GatewayDataProvider gatewayDataProvider;
+
+	@Autowired
+	private TaskScheduler taskScheduler;
+
+	@Autowired
+	private DeviceDataHandler deviceDataHandler;
+
+	@Autowired
+	private ReportingPolicyService reportingPolicyService;
+
+	static final Duration POLL_TICK = Duration.ofMillis(100);
+
+	// With the tick of 100 milli seconds, one rotation of the wheel takes about 100 seconds
+	private static final int POLL_WHEEL_SIZE = 1024;
+
+	Snmp snmp = null;
+
+	private final LongAdder missedPollDeadlines = new LongAdder();
+
+	private final DevicePollScheduler pollScheduler = new DevicePollScheduler(POLL_TICK.toMillis(), POLL_WHEEL_SIZE,
+			missedPollDeadlines);
+
+	private final long clockOriginInNanos = System.nanoTime();
+
+	private long defaultPollingRateInSeconds;
+
+	private volatile Map<String, SnmpDevicePoller> devicePollers = Collections.emptyMap();
+
+	private final ConcurrentMap<String, DevicePoll> pendingPolls = new ConcurrentHashMap<>();
+
+	private Semaphore inFlightRequests;
+
+	private final ResponseListener responseListener = new ResponseListener() {
+		@Override
+		public void onResponse(ResponseEvent event) {
+			// Asynchronous requests have to be cancelled once the response is received, otherwise they are kept in memory
+			((Snmp) event.getSource()).cancel(event.getRequest(), this);
+
+			inFlightRequests.release();
+
+			// Free the transport listener thread for the next responses
+			DevicePoll devicePoll = (DevicePoll) event.getUserObject();
+			taskScheduler.execute(() -> handleResponse(devicePoll, event));
+		}
+	};
+
+	@PostConstruct
+	private void init() {
+		inFlightRequests = new Semaphore(Math.max(1, snmpProperties.getPollingMaxInFlightRequests()));
+	}
+
+	/**
+	 * Rebuilds the targets and PDUs of all devices from the current gateway data.
+	 */
+	public synchronized void refreshDevicePollers() {
+		Snmp session;
+		try {
+			session = openSession();
+		} catch (IOException e) {
+			log.error("Failed to open the SNMP session for polling the devices", e);
+			return;
+		}
+
+		Map<String, SnmpDevicePoller> newDevicePollers = new HashMap<>();
+		Map<String, DeviceManagedObjectWrapper> snmpDeviceMap = gatewayDataProvider.getSnmpDeviceMap();
+		Map<String, DeviceProtocolManagedObjectWrapper> protocolMap = gatewayDataProvider.getProtocolMap();
+		long now = monotonicMillis();
+
+		pollScheduler.clear();
+		snmpDeviceMap.forEach((deviceIp, deviceWrapper) -> {
+			SnmpDevicePoller devicePoller = createDevicePoller(session, deviceIp, deviceWrapper, protocolMap);
+			if (devicePoller != null) {
+				newDevicePollers.put(deviceIp, devicePoller);
+				schedulePolling(deviceIp, deviceWrapper, protocolMap, now);
+			}
+		});
+
+		devicePollers = newDevicePollers;
+		log.debug("Polling configured for {} device(s)", newDevicePollers.size());
+
+		reportingPolicyService.retainDevices(snmpDeviceMap.keySet());
+	}
+
+	/**
+	 * Rebuilds the targets and PDUs of the given devices from the current gateway data,
+	 * keeping the ones of all the other devices.
+	 *
+	 * @param deviceIps IP Addresses of the added, changed and removed devices
+	 */
+	public synchronized void refreshDevicePollers(Collection<String> deviceIps) {
+		Snmp session;
+		try {
+			session = openSession();
+		} catch (IOException e) {
+			log.error("Failed to open the SNMP session for polling the devices", e);
+			return;
+		}
+
+		Map<String, SnmpDevicePoller> newDevicePollers = new HashMap<>(devicePollers);
+		Map<String, DeviceManagedObjectWrapper> snmpDeviceMap = gatewayDataProvider.getSnmpDeviceMap();
+		Map<String, DeviceProtocolManagedObjectWrapper> protocolMap = gatewayDataProvider.getProtocolMap();
+		long now = monotonicMillis();
+
+		for (String deviceIp : deviceIps) {
+			newDevicePollers.remove(deviceIp);
+			pollScheduler.cancel(deviceIp);
+
+			DeviceManagedObjectWrapper deviceWrapper = snmpDeviceMap.get(deviceIp);
+			if (deviceWrapper != null) {
+				SnmpDevicePoller devicePoller = createDevicePoller(session, deviceIp, deviceWrapper, protocolMap);
+				if (devicePoller != null) {
+					newDevicePollers.put(deviceIp, devicePoller);
+					schedulePolling(deviceIp, deviceWrapper, protocolMap, now);
+				}
+			} else {
+				reportingPolicyService.removeDevice(deviceIp);
+			}
+		}
+
+		devicePollers = newDevicePollers;
+		log.debug("Polling reconfigured for {} device(s), configured for {} device(s)", deviceIps.size(),
+				newDevicePollers.size());
+	}
+
+	/**
+	 * Reschedules the polling of the devices, which have no polling rate of their own or of their device protocol.
+	 *
+	 * @param pollingRateInSeconds polling rate of the gateway, 0 disables the polling of these devices
+	 */
+	public synchronized void setDefaultPollingRate(long pollingRateInSeconds) {
+		if (defaultPollingRateInSeconds == pollingRateInSeconds) {
+			return;
+		}
+
+		defaultPollingRateInSeconds = pollingRateInSeconds;
+
+		Map<String, DeviceManagedObjectWrapper> snmpDeviceMap = gatewayDataProvider.getSnmpDeviceMap();
+		Map<String, DeviceProtocolManagedObjectWrapper> protocolMap = gatewayDataProvider.getProtocolMap();
+		long now = monotonicMillis();
+
+		for (String deviceIp : devicePollers.keySet()) {
+			DeviceManagedObjectWrapper deviceWrapper = snmpDeviceMap.get(deviceIp);
+			if (deviceWrapper != null) {
+				schedulePolling(deviceIp, deviceWrapper, protocolMap, now);
+			}
+		}
+	}
+
+	/**
+	 * @return milliseconds elapsed since this service was created, unaffected by adjustments of the wall clock
+	 */
+	long monotonicMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - clockOriginInNanos);
+	}
+
+	/**
+	 * Sends the polling requests to the devices, whose polling is due. Blocks while the maximum number of requests
+	 * is in flight.
+	 */
+	public void pollDueDevices() {
+		List<String> dueDevices;
+		synchronized (this) {
+			dueDevices = pollScheduler.advance(monotonicMillis());
+		}
+
+		for (String deviceIp : dueDevices) {
+			if (!pollDevice(deviceIp)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @return number of polls skipped, as the previous poll of the device was still pending or the polling
+	 *         fell behind the schedule
+	 */
+	public long getMissedPollDeadlines() {
+		return missedPollDeadlines.sum();
+	}
+
+	/**
+	 * @return false if the thread was interrupted while waiting for a free request slot
+	 */
+	boolean pollDevice(String deviceIp) {
+		SnmpDevicePoller devicePoller = devicePollers.get(deviceIp);
+		if (devicePoller == null) {
+			return true;
+		}
+
+		DevicePoll devicePoll = new DevicePoll(deviceIp, devicePoller);
+		if (pendingPolls.putIfAbsent(deviceIp, devicePoll) != null) {
+			missedPollDeadlines.increment();
+			log.warn("Skipping polling of the device with IP Address {} as the previous requests are still pending",
+					deviceIp);
+			return true;
+		}
+
+		List<PDU> requests = devicePoller.getRequests();
+		if (devicePoll.tableWalk != null) {
+			requests = new ArrayList<>(requests);
+			requests.add(devicePoller.createWalkRequest(devicePoll.tableWalk));
+		}
+
+		return sendRequests(devicePoll, requests);
+	}
+
+	@PreDestroy
+	private void stop() {
+		try {
+			if (snmp != null) {
+				snmp.close();
+			}
+		} catch (IOException ex) {
+			log.error("Failed to close the SNMP session used for polling", ex);
+		}
+	}
+
+	private Snmp openSession() throws IOException {
+		if (snmp == null) {
+			TransportMapping<?> transport;
+			if (snmpProperties.isTrapListenerProtocolTcp()) {
+				transport = new DefaultTcpTransportMapping();
+			} else {
+				transport = new DefaultUdpTransportMapping();
+			}
+
+			Snmp session = new Snmp(transport);
+			session.listen();
+			snmp = session;
+
+			log.info("Opened SNMP session for polling the devices at {}", transport.getListenAddress());
+		}
+
+		return snmp;
+	}
+
+	private void schedulePolling(String deviceIp, DeviceManagedObjectWrapper deviceWrapper,
+			Map<String, DeviceProtocolManagedObjectWrapper> protocolMap, long now) {
+		long pollingRateInSeconds = deviceWrapper.getProperties().getPollingRate();
+		if (pollingRateInSeconds <= 0) {
+			DeviceProtocolManagedObjectWrapper deviceProtocolWrapper = protocolMap.get(deviceWrapper.getDeviceProtocol());
+			pollingRateInSeconds = (deviceProtocolWrapper != null) ? deviceProtocolWrapper.getPollingRate() : 0;
+		}
+		if (pollingRateInSeconds <= 0) {
+			pollingRateInSeconds = defaultPollingRateInSeconds;
+		}
+
+		if (pollingRateInSeconds > 0) {
+			pollScheduler.schedule(deviceIp, pollingRateInSeconds * 1000, now);
+		} else {
+			pollScheduler.cancel(deviceIp);
+		}
+	}
+
+	/**
+	 * @return null if the device has nothing to poll or is not configured properly
+	 */
+	private SnmpDevicePoller createDevicePoller(Snmp session, String deviceIp, DeviceManagedObjectWrapper deviceWrapper,
+			Map<String, DeviceProtocolManagedObjectWrapper> protocolMap) {
+		DeviceProtocolManagedObjectWrapper deviceProtocolWrapper = protocolMap.get(deviceWrapper.getDeviceProtocol());
+		if (deviceProtocolWrapper == null) {
+			log.debug("{} device is not configured with device protocol", deviceIp);
+			return null;
+		}
+
+		List<VariableBinding> variableBindingList = deviceProtocolWrapper.getMeasurementVariableBindingList();
+		List<OID> tableOidList = deviceProtocolWrapper.getTableOidList();
+		if (variableBindingList.isEmpty() && tableOidList.isEmpty()) {
+			return null;
+		}
+
+		SnmpDevicePoller devicePoller = new SnmpDevicePoller(session, snmpProperties, deviceWrapper,
+				variableBindingList, tableOidList);
+		return devicePoller.isValid() ? devicePoller : null;
+	}
+
+	/**
+	 * @return false if the thread was interrupted while waiting for a free request slot
+	 */
+	private boolean sendRequests(DevicePoll devicePoll, List<PDU> requests) {
+		// Count all requests upfront, so that early responses do not complete the poll
+		devicePoll.pendingRequests.addAndGet(requests.size());
+
+		for (int i = 0; i < requests.size(); i++) {
+			try {
+				inFlightRequests.acquire();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				for (int j = i; j < requests.size(); j++) {
+					requestCompleted(devicePoll);
+				}
+				return false;
+			}
+
+			try {
+				devicePoll.devicePoller.send(requests.get(i), devicePoll, responseListener);
+			} catch (IOException | RuntimeException e) {
+				inFlightRequests.release();
+				requestCompleted(devicePoll);
+				log.error("Failed while polling variables for the device with IP Address {}", devicePoll.deviceIp, e);
+			}
+		}
+
+		return true;
+	}
+
+	private void requestCompleted(DevicePoll devicePoll) {
+		if (devicePoll.pendingRequests.decrementAndGet() == 0) {
+			pendingPolls.remove(devicePoll.deviceIp, devicePoll);
+		}
+	}
+
+	private void handleResponse(DevicePoll devicePoll, ResponseEvent responseEvent) {
+		if (isWalkRequest(responseEvent.getRequest())) {
+			handleWalkResponse(devicePoll, responseEvent);
+			return;
+		}
+
+		String deviceIp = devicePoll.deviceIp;
+		try {
+			PDU responsePDU = responseEvent.getResponse();
+			if (responsePDU != null && responsePDU.getErrorStatus() == PDU.tooBig) {
+				List<PDU> smallerRequests = devicePoll.devicePoller.split(responseEvent.getRequest());
+				if (smallerRequests.isEmpty()) {
+					log.error("Response of device {} for OID {} exceeds the maximum message size", deviceIp,
+							responseEvent.getRequest().getVariableBindings());
+				} else {
+					sendRequests(devicePoll, smallerRequests);
+				}
+			} else if (responseEvent.getError() != null) {
+				log.error("Failed while polling variables for the device with IP Address {}", deviceIp,
+						responseEvent.getError());
+			} else if (responsePDU == null) {
+				log.error("Empty response was received while polling for device with IP Address {} and OIDs {}",
+						deviceIp, responseEvent.getRequest());
+			} else if (responsePDU.getErrorStatus() == PDU.noError) {
+				if (responsePDU.getVariableBindings().size() == 0) {
+					log.error("No data found after successful device polling");
+					return;
+				}
+
+				deviceDataHandler.processPolledPdu(deviceIp, responsePDU);
+			} else {
+				log.error("Error while polling device {} OIDs.\n" + "Error index {} | Error status {} | Error text {} ",
+						deviceIp, responsePDU.getErrorIndex(), responsePDU.getErrorStatus(),
+						responsePDU.getErrorStatusText());
+			}
+		} catch (Throwable t) {
+			log.error("Error while processing the polled data of the device with IP Address {}", deviceIp, t);
+		} finally {
+			requestCompleted(devicePoll);
+		}
+	}
+
+	private void handleWalkResponse(DevicePoll devicePoll, ResponseEvent responseEvent) {
+		String deviceIp = devicePoll.deviceIp;
+		DeviceTableWalk tableWalk = devicePoll.tableWalk;
+		try {
+			PDU responsePDU = responseEvent.getResponse();
+			if (responseEvent.getError() != null) {
+				log.error("Failed while walking the tables of the device with IP Address {}", deviceIp,
+						responseEvent.getError());
+			} else if (responsePDU == null) {
+				log.error("Empty response was received while walking the tables of the device with IP Address {}",
+						deviceIp);
+			} else if (responsePDU.getErrorStatus() == PDU.tooBig) {
+				if (devicePoll.devicePoller.lowerMaxRepetitions(responseEvent.getRequest())) {
+					continueTableWalk(devicePoll);
+				} else {
+					log.error("Response of device {} for the table rows of OID {} exceeds the maximum message size",
+							deviceIp, responseEvent.getRequest().getVariableBindings());
+				}
+			} else if (responsePDU.getErrorStatus() == PDU.noSuchName) {
+				// End of the MIB view of a SNMP version 1 device
+				tableWalk.endTable(responsePDU.getErrorIndex());
+				continueTableWalk(devicePoll);
+			} else if (responsePDU.getErrorStatus() == PDU.noError) {
+				List<VariableBinding> cells = tableWalk.processResponse(responsePDU);
+				if (!cells.isEmpty()) {
+					deviceDataHandler.processDeviceTableCells(deviceIp, cells,
+							devicePoll.devicePoller.getTableCellHistory());
+				}
+
+				continueTableWalk(devicePoll);
+			} else {
+				log.error("Error while walking the tables of device {}.\n"
+						+ "Error index {} | Error status {} | Error text {} ", deviceIp, responsePDU.getErrorIndex(),
+						responsePDU.getErrorStatus(), responsePDU.getErrorStatusText());
+			}
+		} catch (Throwable t) {
+			log.error("Error while processing the table rows of the device with IP Address {}", deviceIp, t);
+		} finally {
+			requestCompleted(devicePoll);
+		}
+	}
+
+	private void continueTableWalk(DevicePoll devicePoll) {
+		if (!devicePoll.tableWalk.isDone()) {
+			sendRequests(devicePoll,
+					Collections.singletonList(devicePoll.devicePoller.createWalkRequest(devicePoll.tableWalk)));
+		}
+	}
+
+	private static boolean isWalkRequest(PDU request) {
+		return request != null && (request.getType() == PDU.GETBULK || request.getType() == PDU.GETNEXT);
+	}
+
+	private static final class DevicePoll {
+
+		private final String deviceIp;
+
+		private final SnmpDevicePoller devicePoller;
+
+		private final AtomicInteger pendingRequests = new AtomicInteger();
+
+		// Null if the device protocol has no tables
+		private final DeviceTableWalk tableWalk;
+
+		private DevicePoll(String deviceIp, SnmpDevicePoller devicePoller) {
+			this.deviceIp = deviceIp;
+			this.devicePoller = devicePoller;
+			this.tableWalk = devicePoller.startTableWalk();
+		}
+	}
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA, 
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cumulocity.agent.snmp.device.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.snmp4j.PDU;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.VariableBinding;
+
+/**
+ * Walk of the tables of a device within one poll. All tables are walked side by side: each request continues
+ * every table not walked to its end yet from the last cell received for it, so a request with GETBULK returns
+ * the next rows of all these tables at once.
+ * <p>
+ * A table ends with the first OID outside of its subtree, with an exception value like endOfMibView, or with
+ * an OID not increasing, which protects against looping devices. Only one request of a walk is sent at a time.
+ */
+final class DeviceTableWalk {
+
+	private final OID[] tableOids;
+
+	// Last OID received for each table, null once the table is walked to its end
+	private final OID[] positions;
+
+	DeviceTableWalk(List<OID> tableOids) {
+		this.tableOids = tableOids.toArray(new OID[0]);
+		this.positions = tableOids.toArray(new OID[0]);
+	}
+
+	boolean isDone() {
+		for (OID position : positions) {
+			if (position != null) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * @return the OIDs of the next request, one per table not walked to its end
+	 */
+	List<VariableBinding> nextVariableBindings() {
+		List<VariableBinding> variableBindings = new ArrayList<>(positions.length);
+		for (OID position : positions) {
+			if (position != null) {
+				variableBindings.add(new VariableBinding(position));
+			}
+		}
+
+		return variableBindings;
+	}
+
+	/**
+	 * Advances the walk with the response to the request of {@link #nextVariableBindings()}.
+	 *
+	 * @return the cells of the walked tables found in the response
+	 */
+	List<VariableBinding> processResponse(PDU response) {
+		int[] walkedTables = getWalkedTables();
+		List<? extends VariableBinding> variableBindings = response.getVariableBindings();
+
+		if (walkedTables.length == 0 || variableBindings.isEmpty()) {
+			// Nothing returned, the walk would not make any progress
+			endAll();
+			return new ArrayList<>(0);
+		}
+
+		// The response holds the next cell of each requested table, repeated for the following rows
+		List<VariableBinding> cells = new ArrayList<>(variableBindings.size());
+		for (int i = 0; i < variableBindings.size(); i++) {
+			int table = walkedTables[i % walkedTables.length];
+			OID position = positions[table];
+			if (position == null) {
+				continue;
+			}
+
+			VariableBinding variableBinding = variableBindings.get(i);
+			OID oid = variableBinding.getOid();
+			if (variableBinding.isException() || oid == null || !oid.startsWith(tableOids[table])
+					|| oid.compareTo(position) <= 0) {
+				positions[table] = null;
+			} else {
+				positions[table] = oid;
+				cells.add(variableBinding);
+			}
+		}
+
+		return cells;
+	}
+
+	/**
+	 * Ends the table of the variable binding a SNMP version 1 device answered with {@code noSuchName},
+	 * which is the end of the MIB view for this version.
+	 *
+	 * @param errorIndex 1 based index of the variable binding in the request
+	 */
+	void endTable(int errorIndex) {
+		int[] walkedTables = getWalkedTables();
+		if (errorIndex >= 1 && errorIndex <= walkedTables.length) {
+			positions[walkedTables[errorIndex - 1]] = null;
+		} else {
+			endAll();
+		}
+	}
+
+	private void endAll() {
+		for (int i = 0; i < positions.length; i++) {
+			positions[i] = null;
+		}
+	}
+
+	private int[] getWalkedTables() {
+		int count = 0;
+		for (OID position : positions) {
+			if (position != null) {
+				count++;
+			}
+		}
+
+		int[] walkedTables = new int[count];
+		for (int i = 0, j = 0; i < positions.length; i++) {
+			if (positions[i] != null) {
+				walkedTables[j++] = i;
+			}
+		}
+
+		return walkedTables;
+	}
+}
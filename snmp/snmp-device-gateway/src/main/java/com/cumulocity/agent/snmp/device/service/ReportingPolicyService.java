@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA, 
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cumulocity.agent.snmp.device.service;
+
+import com.cumulocity.agent.snmp.device.repository.PolledValueStore;
+import com.cumulocity.agent.snmp.platform.model.ReportingPolicy;
+import lombok.extern.slf4j.Slf4j;
+import org.snmp4j.smi.OID;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Predicate;
+
+/**
+ * Evaluates the {@link ReportingPolicy} of the polled registers, so that only the values worth reporting
+ * are published:
+ * <ul>
+ * <li>With an aggregation, the numeric values of aggregationPolls polls are collected and only their
+ * minimum, maximum or average is reported.</li>
+ * <li>With onChange or a deadband, a value is reported only if it differs from the last reported value,
+ * by more than the deadband for numeric values, or if no value was reported for maxSilence seconds.</li>
+ * </ul>
+ * The last reported values and the collected values are kept in the {@link PolledValueStore},
+ * so that they survive restarts. If the store fails or is full, the policies keep working in memory.
+ * The state of the devices removed from the gateway, also while the agent was not running, is purged
+ * with {@link #retainDevices(Set)}.
+ */
+@Slf4j
+@Service
+public class ReportingPolicyService {
+
+	private static final String SEPARATOR = ";";
+
+	@Autowired
+	private PolledValueStore polledValueStore;
+
+	private final ConcurrentMap<String, PolledValue> polledValues = new ConcurrentHashMap<>();
+
+	private volatile boolean storeFullReported;
+
+	/**
+	 * @param value     the parsed value of the polled variable
+	 * @param timestamp time of polling the value in milli seconds
+	 * @return the value to report, which is the aggregate for aggregating policies, or null if there is
+	 *         nothing to report
+	 */
+	public Object apply(String deviceIp, OID oid, ReportingPolicy policy, Object value, long timestamp) {
+		if (policy == null || !policy.isActive() || value == null) {
+			return value;
+		}
+
+		String key = deviceIp + "/" + oid.toDottedString();
+		PolledValue polledValue = polledValues.computeIfAbsent(key, this::load);
+		synchronized (polledValue) {
+			Object reportedValue = value;
+			if (policy.isAggregating() && value instanceof Number) {
+				polledValue.aggregate(((Number) value).doubleValue());
+				if (polledValue.count < policy.getAggregationPolls()) {
+					save(key, polledValue);
+					return null;
+				}
+
+				reportedValue = polledValue.aggregated(policy.getAggregationType());
+				polledValue.resetAggregation();
+			}
+
+			if (policy.isFiltering() && !polledValue.isReportable(reportedValue, policy, timestamp)) {
+				if (policy.isAggregating()) {
+					save(key, polledValue);
+				}
+				return null;
+			}
+
+			polledValue.reportedValue = String.valueOf(reportedValue);
+			polledValue.reportedAt = timestamp;
+			save(key, polledValue);
+
+			return reportedValue;
+		}
+	}
+
+	/**
+	 * Forgets the state of the polled values of the device, e.g. after the device was removed.
+	 */
+	public void removeDevice(String deviceIp) {
+		String prefix = deviceIp + "/";
+		remove(key -> key.startsWith(prefix));
+	}
+
+	/**
+	 * Forgets the state of the polled values of all devices, except the given ones. Purges the state of the devices
+	 * removed while the agent was not running, as {@link #removeDevice(String)} is only called for the removals seen.
+	 *
+	 * @param deviceIps IP Addresses of all devices of the gateway
+	 */
+	public void retainDevices(Set<String> deviceIps) {
+		remove(key -> !deviceIps.contains(getDeviceIp(key)));
+	}
+
+	private void remove(Predicate<String> keyFilter) {
+		polledValues.keySet().removeIf(keyFilter);
+
+		try {
+			if (polledValueStore.keySet().removeIf(keyFilter)) {
+				storeFullReported = false;
+			}
+		} catch (RuntimeException e) {
+			log.debug("Failed to remove the reporting state of the removed devices", e);
+		}
+	}
+
+	private static String getDeviceIp(String key) {
+		int index = key.indexOf('/');
+		return (index >= 0) ? key.substring(0, index) : key;
+	}
+
+	private PolledValue load(String key) {
+		String value;
+		try {
+			value = polledValueStore.get(key);
+		} catch (RuntimeException e) {
+			log.debug("Failed to load the reporting state of {}", key, e);
+			value = null;
+		}
+
+		if (value == null) {
+			return new PolledValue();
+		}
+
+		PolledValue polledValue = PolledValue.parse(value);
+		if (polledValue == null) {
+			log.debug("Discarding the invalid reporting state {} of {}", value, key);
+			return new PolledValue();
+		}
+
+		return polledValue;
+	}
+
+	private void save(String key, PolledValue polledValue) {
+		try {
+			if (!polledValueStore.containsKey(key) && polledValueStore.isFull()) {
+				if (!storeFullReported) {
+					storeFullReported = true;
+					log.warn("The reporting state of further polled values is kept in memory only, as the {} is full",
+							polledValueStore.getName());
+				}
+				return;
+			}
+
+			polledValueStore.put(key, polledValue.format());
+		} catch (RuntimeException e) {
+			// The policy keeps working in memory, only a restart would reset it
+			log.debug("Failed to save the reporting state of {}", key, e);
+		}
+	}
+
+	/**
+	 * Last reported value and the values collected for the next aggregate of one polled variable.
+	 */
+	private static final class PolledValue {
+
+		private String reportedValue;
+
+		private long reportedAt;
+
+		private int count;
+
+		private double min;
+
+		private double max;
+
+		private double sum;
+
+		private void aggregate(double value) {
+			min = (count == 0) ? value : Math.min(min, value);
+			max = (count == 0) ? value : Math.max(max, value);
+			sum += value;
+			count++;
+		}
+
+		private double aggregated(ReportingPolicy.AggregationType aggregationType) {
+			switch (aggregationType) {
+			case MIN:
+				return min;
+			case MAX:
+				return max;
+			default:
+				return sum / count;
+			}
+		}
+
+		private void resetAggregation() {
+			count = 0;
+			min = 0;
+			max = 0;
+			sum = 0;
+		}
+
+		private boolean isReportable(Object value, ReportingPolicy policy, long timestamp) {
+			if (reportedValue == null) {
+				return true;
+			}
+
+			if (policy.getMaxSilence() > 0 && timestamp - reportedAt >= policy.getMaxSilence() * 1000) {
+				return true;
+			}
+
+			if (value instanceof Number) {
+				try {
+					double difference = Math.abs(((Number) value).doubleValue() - Double.parseDouble(reportedValue));
+					return difference > policy.getDeadband();
+				} catch (NumberFormatException e) {
+					return true;
+				}
+			}
+
+			return !reportedValue.equals(String.valueOf(value));
+		}
+
+		private String format() {
+			// The reported value is last, as it may contain the separator
+			return reportedAt + SEPARATOR + count + SEPARATOR + min + SEPARATOR + max + SEPARATOR + sum
+					+ SEPARATOR + (reportedValue == null ? "" : reportedValue);
+		}
+
+		private static PolledValue parse(String value) {
+			String[] parts = value.split(SEPARATOR, 6);
+			if (parts.length != 6) {
+				return null;
+			}
+
+			try {
+				PolledValue polledValue = new PolledValue();
+				polledValue.reportedAt = Long.parseLong(parts[0]);
+				polledValue.count = Integer.parseInt(parts[1]);
+				polledValue.min = Double.parseDouble(parts[2]);
+				polledValue.max = Double.parseDouble(parts[3]);
+				polledValue.sum = Double.parseDouble(parts[4]);
+				polledValue.reportedValue = (polledValue.reportedAt == 0) ? null : parts[5];
+				return polledValue;
+			} catch (NumberFormatException e) {
+				return null;
+			}
+		}
+	}
+}
@@ -18,15 +18,15 @@
 
 package com.cumulocity.agent.snmp.device.service;
 
-import static com.cumulocity.agent.snmp.util.SnmpUtil.getAuthProtocolOid;
-import static com.cumulocity.agent.snmp.util.SnmpUtil.getPrivacyProtocolOid;
 import static com.cumulocity.agent.snmp.util.SnmpUtil.isValidAuthProtocol;
 import static com.cumulocity.agent.snmp.util.SnmpUtil.isValidPrivacyProtocol;
 import static com.cumulocity.agent.snmp.util.SnmpUtil.isValidSnmpVersion;
-import static org.snmp4j.mp.MPv3.createLocalEngineID;
+import static org.snmp4j.mp.SnmpConstants.version1;
 import static org.snmp4j.mp.SnmpConstants.version3;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.snmp4j.CommunityTarget;
@@ -34,22 +34,15 @@ import org.snmp4j.PDU;
 import org.snmp4j.ScopedPDU;
 import org.snmp4j.Snmp;
 import org.snmp4j.Target;
-import org.snmp4j.TransportMapping;
 import org.snmp4j.UserTarget;
-import org.snmp4j.event.ResponseEvent;
+import org.snmp4j.event.ResponseListener;
 import org.snmp4j.security.SecurityLevel;
-import org.snmp4j.security.SecurityModels;
-import org.snmp4j.security.SecurityProtocols;
-import org.snmp4j.security.USM;
-import org.snmp4j.security.UsmUser;
 import org.snmp4j.smi.OID;
 import org.snmp4j.smi.OctetString;
 import org.snmp4j.smi.TcpAddress;
 import org.snmp4j.smi.TransportIpAddress;
 import org.snmp4j.smi.UdpAddress;
 import org.snmp4j.smi.VariableBinding;
-import org.snmp4j.transport.DefaultTcpTransportMapping;
-import org.snmp4j.transport.DefaultUdpTransportMapping;
 
 import com.cumulocity.agent.snmp.config.GatewayProperties;
 import com.cumulocity.agent.snmp.platform.model.DeviceManagedObjectWrapper;
@@ -58,6 +51,19 @@ import com.cumulocity.agent.snmp.util.IpAddressUtil;
 
 import lombok.extern.slf4j.Slf4j;
 
+/**
+ * Target and request PDUs used to poll a single device, built once per gateway data refresh.
+ * The requests are sent asynchronously through the SNMP session shared by all devices
+ * (see {@link DevicePollingService}), so the poller does not own any transport or thread.
+ * <p>
+ * The variable bindings are split into requests of at most {@code snmp.polling.maxVariableBindingsPerRequest}
+ * bindings. When the device answers with {@code tooBig}, the limit of the device is lowered and the
+ * request is split further, so following polling cycles use requests the device can answer.
+ * <p>
+ * The tables of the device protocol are walked with GETBULK requests asking for
+ * {@code snmp.polling.maxRepetitions} rows per table, which is lowered the same way on {@code tooBig}.
+ * SNMP version 1 devices are walked with GETNEXT.
+ */
 @Slf4j
 public class SnmpDevicePoller {
 
@@ -67,64 +73,181 @@ public class SnmpDevicePoller {
 
 	private List<VariableBinding> variableBindingList;
 
+	private List<OID> tableOidList;
+
 	private DeviceAuthentication deviceAuth;
 
 	private PDU pdu;
 
+	private volatile int maxVariableBindingsPerRequest;
+
+	private volatile List<PDU> requests;
+
+	private volatile int maxRepetitions;
+
+	private final TableCellHistory tableCellHistory = new TableCellHistory();
+
 	private Snmp snmp;
 
 	private Target target;
 
 	private TransportIpAddress address;
 
-	private TransportMapping<?> transport;
-
-	public SnmpDevicePoller(GatewayProperties.SnmpProperties snmpProperties, DeviceManagedObjectWrapper deviceWrapper,
-			List<VariableBinding> variableBindingList) throws IOException {
+	public SnmpDevicePoller(Snmp snmp, GatewayProperties.SnmpProperties snmpProperties,
+			DeviceManagedObjectWrapper deviceWrapper, List<VariableBinding> variableBindingList,
+			List<OID> tableOidList) {
+		this.snmp = snmp;
 		this.deviceWrapper = deviceWrapper;
 		this.snmpProperties = snmpProperties;
 		this.variableBindingList = variableBindingList;
+		this.tableOidList = tableOidList;
 		this.deviceAuth = deviceWrapper.getProperties().getAuth();
+		this.maxVariableBindingsPerRequest = snmpProperties.getPollingMaxVariableBindingsPerRequest();
+		this.maxRepetitions = snmpProperties.getPollingMaxRepetitions();
 
 		init();
 	}
 
-	public ResponseEvent poll() throws IOException {
-		return snmp.send(pdu, target);
+	/**
+	 * @return requests polling all variable bindings of the device, sized according to the current limit
+	 */
+	public List<PDU> getRequests() {
+		List<PDU> currentRequests = requests;
+		if (currentRequests == null) {
+			currentRequests = createRequests(pdu.getVariableBindings(), maxVariableBindingsPerRequest);
+			requests = currentRequests;
+		}
+
+		return currentRequests;
+	}
+
+	/**
+	 * Lowers the limit of variable bindings per request after the device answered the given request with
+	 * {@code tooBig} and splits the request accordingly.
+	 *
+	 * @return the smaller requests, or an empty list if the request cannot be split any further
+	 */
+	public synchronized List<PDU> split(PDU tooBigRequest) {
+		int size = tooBigRequest.size();
+		if (size <= 1) {
+			return Collections.emptyList();
+		}
+
+		int newLimit = size / 2;
+		if (maxVariableBindingsPerRequest <= 0 || newLimit < maxVariableBindingsPerRequest) {
+			log.info("Lowering the number of variable bindings per polling request for device {} to {}",
+					deviceWrapper.getProperties().getIpAddress(), newLimit);
+
+			maxVariableBindingsPerRequest = newLimit;
+			requests = null;
+		}
+
+		return createRequests(tooBigRequest.getVariableBindings(), Math.min(newLimit, maxVariableBindingsPerRequest));
+	}
+
+	/**
+	 * @return a new walk of the tables of the device protocol, or null if there are no tables to walk
+	 */
+	DeviceTableWalk startTableWalk() {
+		return tableOidList.isEmpty() ? null : new DeviceTableWalk(tableOidList);
+	}
+
+	/**
+	 * @return the request continuing the walk, GETBULK for SNMP version 2c and 3, GETNEXT for SNMP version 1
+	 */
+	PDU createWalkRequest(DeviceTableWalk tableWalk) {
+		PDU request = (PDU) pdu.clone();
+		request.setVariableBindings(tableWalk.nextVariableBindings());
+
+		if (deviceWrapper.getProperties().getVersion() == version1) {
+			request.setType(PDU.GETNEXT);
+		} else {
+			request.setType(PDU.GETBULK);
+			request.setNonRepeaters(0);
+			request.setMaxRepetitions(Math.max(1, maxRepetitions));
+		}
+
+		return request;
+	}
+
+	/**
+	 * Lowers the number of rows requested per table after the device answered the given walk request
+	 * with {@code tooBig}.
+	 *
+	 * @return false if the number of rows cannot be lowered any further
+	 */
+	synchronized boolean lowerMaxRepetitions(PDU tooBigRequest) {
+		int repetitions = (tooBigRequest.getType() == PDU.GETBULK) ? tooBigRequest.getMaxRepetitions() : 1;
+		if (repetitions <= 1) {
+			return false;
+		}
+
+		int newLimit = repetitions / 2;
+		if (newLimit < maxRepetitions) {
+			log.info("Lowering the number of table rows per polling request for device {} to {}",
+					deviceWrapper.getProperties().getIpAddress(), newLimit);
+
+			maxRepetitions = newLimit;
+		}
+
+		return true;
+	}
+
+	TableCellHistory getTableCellHistory() {
+		return tableCellHistory;
+	}
+
+	/**
+	 * Sends the request without waiting for the response, which is passed to the listener together
+	 * with the given user handle. The listener has to cancel the request once the response arrived.
+	 */
+	public void send(PDU request, Object userHandle, ResponseListener listener) throws IOException {
+		snmp.send(request, target, userHandle, listener);
+	}
+
+	public boolean isValid() {
+		return pdu != null && target != null;
 	}
 
-	private void init() throws IOException {
+	private void init() {
 		if (!isValidSnmpVersion(deviceWrapper.getProperties().getVersion())) {
 			log.error("Invalid SNMP Version assigned to device {}", deviceWrapper.getProperties().getIpAddress());
 			return;
 		}
 
-		createTransportMapping();
-		transport.listen();
-
-		snmp = new Snmp(transport);
+		createAddress();
 
 		createPDU();
 	}
 
-	private void createTransportMapping() throws IOException {
-		String trapListenerBindingAddress = IpAddressUtil.sanitizeIpAddress(deviceWrapper.getProperties().getIpAddress(), true);
-		String addressString = trapListenerBindingAddress + "/" + deviceWrapper.getProperties().getPort();
+	private List<PDU> createRequests(List<? extends VariableBinding> variableBindings, int limit) {
+		int requestSize = limit > 0 ? limit : Math.max(1, variableBindings.size());
+
+		List<PDU> newRequests = new ArrayList<>();
+		for (int from = 0; from < variableBindings.size(); from += requestSize) {
+			PDU request = (PDU) pdu.clone();
+			request.setVariableBindings(
+					new ArrayList<>(variableBindings.subList(from, Math.min(from + requestSize, variableBindings.size()))));
+			newRequests.add(request);
+		}
+
+		return Collections.unmodifiableList(newRequests);
+	}
+
+	private void createAddress() {
+		String deviceAddress = IpAddressUtil.sanitizeIpAddress(deviceWrapper.getProperties().getIpAddress(), true);
+		String addressString = deviceAddress + "/" + deviceWrapper.getProperties().getPort();
 
 		if (snmpProperties.isTrapListenerProtocolTcp()) {
 			address = new TcpAddress(addressString);
-			transport = new DefaultTcpTransportMapping();
 		} else {
 			address = new UdpAddress(addressString);
-			transport = new DefaultUdpTransportMapping();
 		}
 	}
 
 	private void createPDU() {
 		if (deviceWrapper.getProperties().getVersion() == version3) {
-			USM usm = new USM(SecurityProtocols.getInstance(), new OctetString(createLocalEngineID()), 0);
-			SecurityModels.getInstance().addSecurityModel(usm);
-
+			// The users are added to the USM shared with the trap listener, see UserSecurityModelService
 			pdu = new ScopedPDU();
 
 			OctetString engineId = new OctetString(deviceWrapper.getProperties().getAuth().getEngineId());
@@ -132,7 +255,7 @@ public class SnmpDevicePoller {
 
 			switch (deviceWrapper.getProperties().getAuth().getSecurityLevel()) {
 				case SecurityLevel.NOAUTH_NOPRIV:
-					target = getV3TargetForNoAuthNoPriv();
+					target = createV3Target(SecurityLevel.NOAUTH_NOPRIV);
 					break;
 	
 				case SecurityLevel.AUTH_NOPRIV:
@@ -142,7 +265,7 @@ public class SnmpDevicePoller {
 						return;
 					}
 	
-					target = getV3TargetForAuthNoPriv();
+					target = createV3Target(SecurityLevel.AUTH_NOPRIV);
 					break;
 	
 				case SecurityLevel.AUTH_PRIV:
@@ -153,7 +276,7 @@ public class SnmpDevicePoller {
 						return;
 					}
 	
-					target = getV3TargetForAuthPriv();
+					target = createV3Target(SecurityLevel.AUTH_PRIV);
 					break;
 	
 				default:
@@ -170,44 +293,6 @@ public class SnmpDevicePoller {
 		variableBindingList.forEach(pdu::add);
 	}
 
-	private Target getV3TargetForNoAuthNoPriv() {
-		String usernameStr = deviceAuth.getUsername();
-		OctetString username = new OctetString(usernameStr);
-
-		UsmUser user = new UsmUser(username, null, null, null, null);
-		snmp.getUSM().addUser(new OctetString(username), user);
-
-		return createV3Target(deviceWrapper.getProperties().getVersion(), address, username, SecurityLevel.NOAUTH_NOPRIV); 
-	}
-
-	private Target getV3TargetForAuthNoPriv() {
-		String usernameStr = deviceAuth.getUsername();
-		OctetString username = new OctetString(usernameStr);
-		OctetString authPassword = new OctetString(deviceAuth.getAuthPassword());
-		OID authProtocol = getAuthProtocolOid(deviceAuth.getAuthProtocol());
-		
-		UsmUser user = new UsmUser(username, authProtocol, authPassword, null, null);
-		snmp.getUSM().addUser(username, user);
-
-		return createV3Target(deviceWrapper.getProperties().getVersion(), address, username, SecurityLevel.AUTH_NOPRIV);
-	}
-
-	private Target getV3TargetForAuthPriv() {
-		String usernameStr = deviceAuth.getUsername();
-		OctetString username = new OctetString(usernameStr);
-		
-		OctetString authPassword = new OctetString(deviceAuth.getAuthPassword());
-		OctetString privatePassword = new OctetString(deviceAuth.getPrivPassword());
-		
-		OID authProtocol = getAuthProtocolOid(deviceAuth.getAuthProtocol());
-		OID privateProtocol = getPrivacyProtocolOid(deviceAuth.getPrivProtocol());
-
-		UsmUser user = new UsmUser(username, authProtocol, authPassword, privateProtocol, privatePassword);
-		snmp.getUSM().addUser(new OctetString(usernameStr), user);
-
-		return createV3Target(deviceWrapper.getProperties().getVersion(), address, username, SecurityLevel.AUTH_PRIV);
-	}
-
 	private Target createV1V2Target(int snmpVersion, TransportIpAddress targetAddress) {
 		CommunityTarget target = new CommunityTarget();
 		target.setRetries(3);
@@ -219,33 +304,22 @@ public class SnmpDevicePoller {
 		return target;
 	}
 
-	private Target createV3Target(int snmpVersion, TransportIpAddress targetAddress, OctetString securityName, int securityLevel) {
+	private Target createV3Target(int securityLevel) {
 		UserTarget target = new UserTarget();
 		target.setRetries(3);
 		target.setTimeout(1000 * 5);
-		target.setVersion(snmpVersion);
-		target.setAddress(targetAddress);
-		target.setSecurityName(securityName);
+		target.setVersion(deviceWrapper.getProperties().getVersion());
+		target.setAddress(address);
+		target.setSecurityName(new OctetString(deviceAuth.getUsername()));
 		target.setSecurityLevel(securityLevel);
 
-		return target;
-	}
-
-	public void close() {
-		if (transport != null) {
-			try {
-				transport.close();
-			} catch (IOException e) {
-				log.error("Exception while closing TransportMapping ", e);
-			}
+		// The configured engine id may only be the context engine id of the device, it is used as the authoritative
+		// engine id, skipping the engine discovery, only if configured so
+		String engineId = deviceAuth.getEngineId();
+		if (engineId != null && !engineId.isEmpty() && snmpProperties.isPollingEngineIdAuthoritative()) {
+			target.setAuthoritativeEngineID(new OctetString(engineId).getValue());
 		}
 
-		if (snmp != null) {
-			try {
-				snmp.close();
-			} catch (IOException e) {
-				log.error("Exception while closing SNMP session ", e);
-			}
-		}
+		return target;
 	}
 }
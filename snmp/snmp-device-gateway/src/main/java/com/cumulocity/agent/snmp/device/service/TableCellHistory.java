@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA, 
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cumulocity.agent.snmp.device.service;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.snmp4j.smi.Counter32;
+import org.snmp4j.smi.Counter64;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.Variable;
+
+/**
+ * Values of the table cells of one device, as last received and reported. Counters are reported as rates
+ * per second between two polls, and by default a cell is reported only if its value changed since it was
+ * last reported.
+ */
+final class TableCellHistory {
+
+	private final Map<OID, Cell> cells = new ConcurrentHashMap<>();
+
+	static boolean isCounter(Variable variable) {
+		return variable instanceof Counter32 || variable instanceof Counter64;
+	}
+
+	/**
+	 * @param value     the parsed value of the variable
+	 * @param timestamp time of receiving the value in milli seconds
+	 * @return the value to report, which is the rate per second for counters, or null if there is nothing to report
+	 */
+	Object toReportedValue(OID cellOid, Variable variable, Object value, long timestamp) {
+		return toReportedValue(cellOid, variable, value, timestamp, true);
+	}
+
+	/**
+	 * @param onChange false for reporting the value even if it did not change, e.g. because a reporting policy
+	 *                 decides about it
+	 */
+	Object toReportedValue(OID cellOid, Variable variable, Object value, long timestamp, boolean onChange) {
+		Cell cell = cells.computeIfAbsent(cellOid, oid -> new Cell());
+		synchronized (cell) {
+			Object reportedValue = isCounter(variable) ? cell.toRate(variable, timestamp) : value;
+			if (reportedValue == null || (onChange && Objects.equals(reportedValue, cell.reportedValue))) {
+				return null;
+			}
+
+			cell.reportedValue = reportedValue;
+			return reportedValue;
+		}
+	}
+
+	int size() {
+		return cells.size();
+	}
+
+	private static final class Cell {
+
+		private boolean hasCounter;
+
+		private long counter;
+
+		private long timestamp;
+
+		private Object reportedValue;
+
+		/**
+		 * @return null for the first value of the counter, or if the counter was reset
+		 */
+		private Double toRate(Variable variable, long now) {
+			long current = variable.toLong();
+			Double rate = null;
+
+			if (hasCounter && now > timestamp) {
+				long delta = current - counter;
+				if (variable instanceof Counter32 && delta < 0) {
+					// Counter32 wraps at 2^32, Counter64 wraps with the arithmetic of long. A decrease wrapping
+					// by more than half the range is implausible within a poll interval, the counter was reset
+					delta &= 0xFFFFFFFFL;
+					if (delta > Integer.MAX_VALUE) {
+						delta = -1;
+					}
+				}
+				if (delta >= 0) {
+					rate = delta * 1000.0 / (now - timestamp);
+				}
+			}
+
+			hasCounter = true;
+			counter = current;
+			timestamp = now;
+
+			return rate;
+		}
+	}
+}
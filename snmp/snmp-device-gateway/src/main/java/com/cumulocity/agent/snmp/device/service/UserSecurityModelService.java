@@ -0,0 +1,338 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA, 
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cumulocity.agent.snmp.device.service;
+
+import static com.cumulocity.agent.snmp.util.SnmpUtil.getAuthProtocolOid;
+import static com.cumulocity.agent.snmp.util.SnmpUtil.getPrivacyProtocolOid;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.snmp4j.mp.MPv3;
+import org.snmp4j.mp.SnmpConstants;
+import org.snmp4j.security.SecurityLevel;
+import org.snmp4j.security.SecurityModel;
+import org.snmp4j.security.SecurityModels;
+import org.snmp4j.security.SecurityProtocols;
+import org.snmp4j.security.USM;
+import org.snmp4j.security.UsmUser;
+import org.snmp4j.security.UsmUserEntry;
+import org.snmp4j.smi.Integer32;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.OctetString;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.cumulocity.agent.snmp.platform.model.DeviceManagedObjectWrapper;
+import com.cumulocity.agent.snmp.platform.model.DeviceManagedObjectWrapper.DeviceAuthentication;
+import com.cumulocity.agent.snmp.platform.service.GatewayDataProvider;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps the SNMPv3 users of all devices in one long-lived USM, which is shared by the trap listener
+ * ({@link DeviceListenerService}) and the polling of the devices ({@link DevicePollingService}).
+ * <p>
+ * The keys of a user are localized once, when the user is added for its user name and engine ID. On a change
+ * of the gateway data only the users of the changed devices are updated, and a user is re-added only if its
+ * credentials changed. Devices sharing a user name and engine ID share one user, which is removed from the USM
+ * with the last of these devices.
+ * <p>
+ * Each user name is also added without engine ID, as the configured engine ID may only be the context engine ID
+ * of the device. The USM localizes the keys of such a user for the authoritative engine ID found on engine
+ * discovery or in a received message. Devices sharing a user name with different credentials share this user too,
+ * it takes the credentials of the lowest engine ID.
+ */
+@Slf4j
+@Service
+public class UserSecurityModelService {
+
+	private static final Integer32 USM_SECURITY_MODEL_ID = new Integer32(SecurityModel.SECURITY_MODEL_USM);
+
+	@Autowired
+	private GatewayDataProvider gatewayDataProvider;
+
+	private USM usm;
+
+	// Users in the USM by user name and engine ID
+	private final Map<UserKey, User> users = new HashMap<>();
+
+	// User of each SNMPv3 device, by the IP Address of the device
+	private final Map<String, UserKey> deviceUsers = new HashMap<>();
+
+	// Credentials of the user without engine ID in the USM, by user name
+	private final Map<String, DeviceAuthentication> credentialsWithoutEngineId = new HashMap<>();
+
+	/**
+	 * @return the USM shared by the trap listener and the polling, registered with the {@link SecurityModels}
+	 */
+	public synchronized USM getUsm() {
+		if (usm == null) {
+			SecurityProtocols securityProtocols = SecurityProtocols.getInstance();
+			securityProtocols.addDefaultProtocols();
+
+			usm = new USM(securityProtocols, new OctetString(MPv3.createLocalEngineID()), 0);
+		}
+
+		if (SecurityModels.getInstance().getSecurityModel(USM_SECURITY_MODEL_ID) != usm) {
+			SecurityModels.getInstance().addSecurityModel(usm);
+		}
+
+		return usm;
+	}
+
+	/**
+	 * Brings the users of all devices up to date with the current gateway data.
+	 */
+	public synchronized void refreshUsers() {
+		Set<String> deviceIps = new HashSet<>(deviceUsers.keySet());
+		deviceIps.addAll(gatewayDataProvider.getSnmpDeviceMap().keySet());
+
+		updateUsers(deviceIps);
+	}
+
+	/**
+	 * Brings the users of the given devices up to date with the current gateway data, leaving the users
+	 * of all the other devices untouched.
+	 *
+	 * @param deviceIps IP Addresses of the added, changed and removed devices
+	 */
+	public synchronized void updateUsers(Collection<String> deviceIps) {
+		getUsm();
+
+		Map<String, DeviceManagedObjectWrapper> snmpDeviceMap = gatewayDataProvider.getSnmpDeviceMap();
+		for (String deviceIp : deviceIps) {
+			DeviceManagedObjectWrapper deviceWrapper = snmpDeviceMap.get(deviceIp);
+			if (deviceWrapper != null && deviceWrapper.getProperties().getVersion() == SnmpConstants.version3
+					&& deviceWrapper.getProperties().getAuth() != null) {
+				updateUser(deviceIp, deviceWrapper.getProperties().getAuth());
+			} else {
+				releaseUser(deviceIp);
+			}
+		}
+	}
+
+	private void updateUser(String deviceIp, DeviceAuthentication authDetails) {
+		UserKey userKey = new UserKey(authDetails.getUsername(), authDetails.getEngineId());
+		User user = users.get(userKey);
+
+		if (userKey.equals(deviceUsers.get(deviceIp)) && user.authDetails.equals(authDetails)) {
+			// Unchanged, the localized keys are kept
+			return;
+		}
+
+		releaseUser(deviceIp);
+
+		user = users.get(userKey);
+		if (user == null || !user.authDetails.equals(authDetails)) {
+			UsmUser usmUser = createUser(authDetails);
+			if (usmUser == null) {
+				return;
+			}
+
+			if (user != null) {
+				log.warn("Devices share the user {} with engine id {}, but not its credentials. Using the credentials "
+						+ "of the device with IP Address {}", authDetails.getUsername(), authDetails.getEngineId(), deviceIp);
+			} else {
+				user = new User();
+				users.put(userKey, user);
+			}
+
+			user.authDetails = authDetails;
+			user.usmUser = usmUser;
+			if (userKey.getEngineId() != null) {
+				// Adding the user with the engine id localizes its keys, replacing the ones of the previous credentials
+				usm.addUser(usmUser.getSecurityName(), userKey.getEngineId(), usmUser);
+			}
+			updateUserWithoutEngineId(userKey.username);
+
+			log.debug("Added user {} with engine id {} to the USM", authDetails.getUsername(), authDetails.getEngineId());
+		}
+
+		user.deviceIps.add(deviceIp);
+		deviceUsers.put(deviceIp, userKey);
+	}
+
+	private void releaseUser(String deviceIp) {
+		UserKey userKey = deviceUsers.remove(deviceIp);
+		if (userKey == null) {
+			return;
+		}
+
+		User user = users.get(userKey);
+		user.deviceIps.remove(deviceIp);
+		if (user.deviceIps.isEmpty()) {
+			users.remove(userKey);
+			if (userKey.getEngineId() != null) {
+				usm.removeAllUsers(new OctetString(userKey.username), userKey.getEngineId());
+			}
+			updateUserWithoutEngineId(userKey.username);
+
+			log.debug("Removed user {} with engine id {} from the USM", userKey.username, userKey.engineId);
+		}
+	}
+
+	/**
+	 * Brings the user without engine ID of the given user name up to date. It has the credentials of the user with
+	 * the lowest engine ID, a user without configured engine ID coming first, so that the choice does not depend on
+	 * the order of the updates. It is only replaced, dropping the keys localized from it on engine discovery,
+	 * if these credentials change.
+	 */
+	private void updateUserWithoutEngineId(String username) {
+		UserKey chosenKey = null;
+		for (UserKey userKey : users.keySet()) {
+			if (userKey.username.equals(username) && (chosenKey == null || userKey.compareEngineId(chosenKey) < 0)) {
+				chosenKey = userKey;
+			}
+		}
+
+		OctetString securityName = new OctetString(username);
+		if (chosenKey == null) {
+			if (credentialsWithoutEngineId.remove(username) != null) {
+				// Also removes the keys localized on engine discovery
+				usm.removeAllUsers(securityName);
+			}
+			return;
+		}
+
+		User chosenUser = users.get(chosenKey);
+		DeviceAuthentication currentCredentials = credentialsWithoutEngineId.get(username);
+		if (currentCredentials != null && hasSameCredentials(currentCredentials, chosenUser.authDetails)) {
+			return;
+		}
+
+		removeUsersLocalizedOnDiscovery(securityName);
+		usm.addUser(securityName, chosenUser.usmUser);
+		credentialsWithoutEngineId.put(username, chosenUser.authDetails);
+	}
+
+	private void removeUsersLocalizedOnDiscovery(OctetString securityName) {
+		Set<OctetString> configuredEngineIds = new HashSet<>();
+		users.keySet().forEach(userKey -> {
+			if (userKey.username.equals(securityName.toString()) && userKey.getEngineId() != null) {
+				configuredEngineIds.add(userKey.getEngineId());
+			}
+		});
+
+		List<OctetString> discoveredEngineIds = new ArrayList<>();
+		for (UsmUserEntry userEntry : usm.getUserTable().getUserEntries()) {
+			if (securityName.equals(userEntry.getUserName()) && userEntry.getEngineID().length() > 0
+					&& !configuredEngineIds.contains(userEntry.getEngineID())) {
+				discoveredEngineIds.add(userEntry.getEngineID());
+			}
+		}
+
+		discoveredEngineIds.forEach(engineId -> usm.removeAllUsers(securityName, engineId));
+	}
+
+	private static boolean hasSameCredentials(DeviceAuthentication authDetails, DeviceAuthentication other) {
+		return authDetails.getSecurityLevel() == other.getSecurityLevel()
+				&& authDetails.getAuthProtocol() == other.getAuthProtocol()
+				&& authDetails.getPrivProtocol() == other.getPrivProtocol()
+				&& Objects.equals(authDetails.getAuthPassword(), other.getAuthPassword())
+				&& Objects.equals(authDetails.getPrivPassword(), other.getPrivPassword());
+	}
+
+	private UsmUser createUser(DeviceAuthentication authDetails) {
+		OctetString userName = new OctetString(authDetails.getUsername());
+
+		switch (authDetails.getSecurityLevel()) {
+		case SecurityLevel.NOAUTH_NOPRIV:
+			return new UsmUser(userName, null, null, null, null);
+
+		case SecurityLevel.AUTH_NOPRIV:
+			OID authProtocolOid = getAuthProtocolOid(authDetails.getAuthProtocol());
+			OctetString authPassword = new OctetString(authDetails.getAuthPassword());
+			return new UsmUser(userName, authProtocolOid, authPassword, null, null);
+
+		case SecurityLevel.AUTH_PRIV:
+			authProtocolOid = getAuthProtocolOid(authDetails.getAuthProtocol());
+			authPassword = new OctetString(authDetails.getAuthPassword());
+			OID privacyProtocolOid = getPrivacyProtocolOid(authDetails.getPrivProtocol());
+			OctetString privacyPassword = new OctetString(authDetails.getPrivPassword());
+			return new UsmUser(userName, authProtocolOid, authPassword, privacyProtocolOid, privacyPassword);
+
+		default:
+			log.error("Unsupported {} Security level found in {} user, configured for device having {} as engine id",
+					authDetails.getSecurityLevel(), userName, authDetails.getEngineId());
+			return null;
+		}
+	}
+
+	private static final class UserKey {
+
+		private final String username;
+
+		private final String engineId;
+
+		private UserKey(String username, String engineId) {
+			this.username = username;
+			this.engineId = engineId;
+		}
+
+		/**
+		 * @return null if the engine id is not configured, then the keys are localized on engine discovery
+		 */
+		private OctetString getEngineId() {
+			return (engineId == null || engineId.isEmpty()) ? null : new OctetString(engineId);
+		}
+
+		/**
+		 * Orders a user without engine id first, the others by their engine id.
+		 */
+		private int compareEngineId(UserKey other) {
+			String thisEngineId = (engineId == null) ? "" : engineId;
+			String otherEngineId = (other.engineId == null) ? "" : other.engineId;
+			return thisEngineId.compareTo(otherEngineId);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof UserKey)) {
+				return false;
+			}
+
+			UserKey other = (UserKey) o;
+			return Objects.equals(username, other.username) && Objects.equals(engineId, other.engineId);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(username, engineId);
+		}
+	}
+
+	private static final class User {
+
+		private DeviceAuthentication authDetails;
+
+		private UsmUser usmUser;
+
+		private final Set<String> deviceIps = new HashSet<>();
+	}
+}
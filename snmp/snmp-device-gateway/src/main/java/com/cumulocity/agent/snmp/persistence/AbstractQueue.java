@@ -20,41 +20,90 @@ package com.cumulocity.agent.snmp.persistence;
 
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
-import net.openhft.chronicle.queue.ChronicleQueue;
 import net.openhft.chronicle.queue.ExcerptTailer;
 import net.openhft.chronicle.queue.RollCycles;
 import net.openhft.chronicle.queue.impl.StoreFileListener;
 import net.openhft.chronicle.queue.impl.single.QueueFileShrinkManager;
+import net.openhft.chronicle.queue.impl.single.SingleChronicleQueue;
 import net.openhft.chronicle.queue.impl.single.SingleChronicleQueueBuilder;
 import net.openhft.chronicle.threads.Pauser;
 import net.openhft.chronicle.wire.DocumentContext;
-import net.openhft.chronicle.wire.NoDocumentContext;
 
 import java.io.File;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongSupplier;
+
 
 /**
- * Queue implementation backed by the persistence Chronicle Queue
+ * Queue backed by a Chronicle Queue, which can be consumed by many threads at once.
+ * <p>
+ * Every consuming thread reads through its own tailer. The consumers share only the index of the last
+ * claimed message: a consumer reads the messages following it and claims them by moving the index forward
+ * with a compare-and-set. If another consumer was faster, the messages are read again after the new index.
+ * So the consumers always get disjoint ranges of messages and never wait for each other.
+ * The tailer of a consuming thread is closed when a new consumer finds the thread terminated,
+ * or when the queue is closed.
+ * <p>
+ * The claimed index is persisted through a named tailer, which follows the claims lazily. After a restart,
+ * messages claimed but not persisted yet are delivered again (at-least-once).
+ * <p>
+ * The messages are stored in the given {@link MessageFormat}. Messages found in the persistence folder in
+ * another format are converted when the queue is loaded.
+ * <p>
+ * The depth of the queue is the distance between the Chronicle indexes of the first unclaimed and the last message.
+ * The first unclaimed message is looked up through a separate metrics tailer, as the index following the claimed one
+ * need not exist, e.g. when the queue rolled since. As the queue rolls every minute, the age of the first unclaimed
+ * message is known with a precision of a minute.
  */
-
 @Slf4j
 public abstract class AbstractQueue implements Queue {
 
     private static final int ENQUEUE_RETRY_LIMIT = 5;
 
+    // Index of the last claimed message before anything was claimed since the queue was loaded
+    private static final long NOTHING_CLAIMED = Long.MIN_VALUE;
+
+    private static final long NO_INDEX = -1;
+
+    private static final RollCycles ROLL_CYCLE = RollCycles.MINUTELY;
+
     private final String name;
     private final File persistenceFolder;
 
-    private final ChronicleQueue chronicleQueue;
+    private final MessageFormat messageFormat;
+    private final boolean compressed;
+
+    private final SingleChronicleQueue chronicleQueue;
 
     private final ExcerptTailer tailer;
+    // Position of the named Tailer when the queue was loaded: the first unread message or else the last read one
+    private final long loadedFirstUnreadIndex;
+    private final long loadedLastReadIndex;
+    private final Lock tailerLock = new ReentrantLock();
+    private long persistedIndex = NOTHING_CLAIMED;
 
-    private final ReadWriteLock LOCK_TO_ENSURE_NO_ONE_IS_ACCESSING_THE_QUEUE = new ReentrantReadWriteLock(true);
-    private final Pauser pauser = Pauser.balanced();
+    private final AtomicLong lastClaimedIndex = new AtomicLong(NOTHING_CLAIMED);
 
-    private boolean isClosed = false;
+    // Tailer looking up the first unclaimed message for the metrics, created on the first use
+    private ExcerptTailer metricsTailer;
+    private final Lock metricsTailerLock = new ReentrantLock();
+
+    private final ThreadLocal<ConsumerTailer> consumerTailer = ThreadLocal.withInitial(this::createConsumerTailer);
+    private final Collection<ConsumerTailer> consumerTailers = new ConcurrentLinkedQueue<>();
+
+    private final StampedLock lockToEnsureNoOneIsAccessingTheQueueOnClose = new StampedLock();
+
+    private volatile boolean isClosed = false;
+
+    private final QueueMetrics metrics = new QueueMetrics(this::depth, this::headAgeInMillis);
 
     static {
         // Since the rolling cycle is set to minutely and we also delete the old files periodically,
@@ -66,6 +115,10 @@ public abstract class AbstractQueue implements Queue {
     }
 
     public AbstractQueue(String queueName, File persistenceFolder) {
+        this(queueName, persistenceFolder, MessageFormat.TEXT, false);
+    }
+
+    public AbstractQueue(String queueName, File persistenceFolder, MessageFormat messageFormat, boolean compressed) {
         if (queueName == null) {
             throw new NullPointerException("queueName");
         }
@@ -79,19 +132,41 @@ public abstract class AbstractQueue implements Queue {
         }
         this.persistenceFolder = persistenceFolder;
 
-        log.info("Creating/Loading '{}' Queue, backed by the folder '{}'", this.name, persistenceFolder.getPath());
+        if (messageFormat == null) {
+            throw new NullPointerException("messageFormat");
+        }
+        this.messageFormat = messageFormat;
+        this.compressed = compressed;
+
+        log.info("Creating/Loading '{}' Queue, backed by the folder '{}', storing messages in {}{} format", this.name, persistenceFolder.getPath(),
+                messageFormat, (messageFormat == MessageFormat.BINARY && compressed) ? " compressed" : "");
+
+        new MessageFormatConverter(this.name, persistenceFolder).convertTo(messageFormat, compressed);
 
         // Create producer/consumer queue
         StoreFileListenerForDeletion storeFileListenerForDeletionOfReleasedFiles = new StoreFileListenerForDeletion(this.name);
         this.chronicleQueue = SingleChronicleQueueBuilder
                 .single(persistenceFolder)
-                .rollCycle(RollCycles.MINUTELY)
+                .rollCycle(ROLL_CYCLE)
                 .storeFileListener(storeFileListenerForDeletionOfReleasedFiles)
                 .build();
 
-        // Create a Tailer for the queue and later
-        // Queue Appenders are also acquired over the same
+        // Create a named Tailer for the queue, which persists the read position
+        // of the queue. The consumers read through their own Tailers.
         this.tailer = this.chronicleQueue.createTailer(this.name);
+        this.tailer.disableThreadSafetyCheck(true);
+
+        // The index of the named Tailer need not exist, e.g. after the last message of a cycle,
+        // so the consumers are positioned at the message it reads next
+        long firstUnreadIndex = NO_INDEX;
+        try (DocumentContext documentContext = this.tailer.readingDocument()) {
+            if (documentContext.isPresent()) {
+                firstUnreadIndex = documentContext.index();
+                documentContext.rollbackOnClose();
+            }
+        }
+        this.loadedFirstUnreadIndex = firstUnreadIndex;
+        this.loadedLastReadIndex = (firstUnreadIndex == NO_INDEX) ? this.chronicleQueue.lastIndex() : NO_INDEX;
 
         storeFileListenerForDeletionOfReleasedFiles.setTailer(this.tailer);
     }
@@ -104,17 +179,18 @@ public abstract class AbstractQueue implements Queue {
         return this.persistenceFolder;
     }
 
+    @Override
+    public QueueMetrics getMetrics() {
+        return this.metrics;
+    }
+
     @Override
     public void enqueue(Message message) {
         if (message == null) {
             throw new NullPointerException("message");
         }
 
-        if(isClosed) {
-            throw new IllegalStateException("Cannot call enqueue as the '" + this.name + "' Queue is closed.");
-        }
-
-        LOCK_TO_ENSURE_NO_ONE_IS_ACCESSING_THE_QUEUE.readLock().lock();
+        long stamp = lockOpenQueue("enqueue");
 
         try {
 
@@ -125,7 +201,8 @@ public abstract class AbstractQueue implements Queue {
             int retryCount = 0;
             do {
                 try {
-                    chronicleQueue.acquireAppender().writeDocument(message);
+                    messageFormat.write(chronicleQueue.acquireAppender(), message, compressed);
+                    metrics.enqueued();
                     retry = false;
                 } catch(Throwable t) {
                     if(++retryCount < ENQUEUE_RETRY_LIMIT) {
@@ -138,12 +215,13 @@ public abstract class AbstractQueue implements Queue {
                         throw t;
                     }
                 }
-
-                pauser.unpause();
-
             } while(retry);
         } finally {
-            LOCK_TO_ENSURE_NO_ONE_IS_ACCESSING_THE_QUEUE.readLock().unlock();
+            lockToEnsureNoOneIsAccessingTheQueueOnClose.unlockRead(stamp);
+        }
+
+        for (ConsumerTailer consumer : consumerTailers) {
+            consumer.pauser.unpause();
         }
     }
 
@@ -154,6 +232,7 @@ public abstract class AbstractQueue implements Queue {
         }
 
         message.incrementBackoutCount();
+        metrics.backedOut();
 
         // Since Chronicle Queue doesn't support inserting message at the beginning
         // of the queue, we just enqueue the message at the end of the queue.
@@ -161,28 +240,26 @@ public abstract class AbstractQueue implements Queue {
     }
 
     @Override
-    public synchronized Message peek() {
-        if(isClosed) {
-            throw new IllegalStateException("Cannot peek as the '" + this.name + "' Queue is closed.");
-        }
+    public Message peek() {
+        long stamp = lockOpenQueue("peek");
 
         Message returnValue = null;
 
-        LOCK_TO_ENSURE_NO_ONE_IS_ACCESSING_THE_QUEUE.readLock().lock();
-
+        ConsumerTailer consumer = consumerTailer.get();
         DocumentContext documentContext = null;
         try {
-            documentContext = tailer.readingDocument();
+            documentContext = consumer.positionAfter(lastClaimedIndex.get()).readingDocument();
             if(documentContext.isPresent()) {
-                pauser.reset();
+                consumer.pauser.reset();
 
-                returnValue = new Message(documentContext.wire());
+                returnValue = messageFormat.read(documentContext);
             }
             else {
-                pauser.pause();
+                consumer.pauser.pause();
             }
         } catch (Throwable t) {
             log.error("Peek from the '{}' Queue, resulted in an unexpected error.", this.name, t);
+            consumer.invalidatePosition();
 
             returnValue = null;
         } finally {
@@ -191,121 +268,355 @@ public abstract class AbstractQueue implements Queue {
                 documentContext.close();
             }
 
-            LOCK_TO_ENSURE_NO_ONE_IS_ACCESSING_THE_QUEUE.readLock().unlock();
+            lockToEnsureNoOneIsAccessingTheQueueOnClose.unlockRead(stamp);
         }
 
         return returnValue;
     }
 
     @Override
-    public synchronized Message dequeue() {
+    public Message dequeue() {
+        List<Message> messages = new ArrayList<>(1);
+        claim(messages, 1, "dequeue");
+
+        return messages.isEmpty() ? null : messages.get(0);
+    }
+
+    @Override
+    public int drainTo(Collection<Message> collection, int maxElements) {
         if(isClosed) {
-            throw new IllegalStateException("Cannot call dequeue as the '" + this.name + "' Queue is closed.");
+            throw new IllegalStateException("Cannot call drainTo as the '" + this.name + "' Queue is closed.");
         }
 
-        Message returnValue = null;
+        if (collection == null) {
+            throw new NullPointerException("collection");
+        }
+        if (maxElements <= 0) {
+            return 0;
+        }
 
-        LOCK_TO_ENSURE_NO_ONE_IS_ACCESSING_THE_QUEUE.readLock().lock();
+        return claim(collection, maxElements, "drainTo");
+    }
 
-        DocumentContext documentContext = null;
+    @Override
+    public void close() {
+        long stamp = lockToEnsureNoOneIsAccessingTheQueueOnClose.writeLock();
         try {
-            tailer.disableThreadSafetyCheck(true);
-            documentContext = tailer.readingDocument();
-            if(documentContext.isPresent()) {
-                pauser.reset();
+            if(isClosed) {
+                log.info("'{}' Queue already closed.", this.name);
+                return;
+            }
 
-                returnValue = new Message(documentContext.wire());
+            persistReadPosition();
+
+            isClosed = true;
+
+            for (ConsumerTailer consumer : consumerTailers) {
+                consumer.close();
             }
-            else {
-                pauser.pause();
+            consumerTailers.clear();
+
+            closeMetricsTailer();
+
+            chronicleQueue.close();
+        } finally {
+            lockToEnsureNoOneIsAccessingTheQueueOnClose.unlockWrite(stamp);
+        }
+
+        log.info("'{}' Queue closed.", this.name);
+    }
+
+    /**
+     * Reads up to maxElements messages following the last claimed message and claims them.
+     *
+     * @return number of the claimed messages added to the collection
+     */
+    private int claim(Collection<Message> collection, int maxElements, String operation) {
+        long stamp = lockOpenQueue(operation);
+
+        ConsumerTailer consumer = consumerTailer.get();
+        try {
+            List<Message> messages = new ArrayList<>(Math.min(maxElements, 1024));
+            while (true) {
+                long claimedIndex = lastClaimedIndex.get();
+                ExcerptTailer consumerTailer = consumer.positionAfter(claimedIndex);
+
+                long lastReadIndex = read(consumerTailer, messages, maxElements);
+                if (messages.isEmpty()) {
+                    consumer.pauser.pause();
+                    return 0;
+                }
+                consumer.positionedAfter(lastReadIndex);
+
+                if (lastClaimedIndex.compareAndSet(claimedIndex, lastReadIndex)) {
+                    consumer.pauser.reset();
+                    collection.addAll(messages);
+                    metrics.dequeued(messages.size());
+
+                    persistReadPosition();
+
+                    return messages.size();
+                }
+
+                // Another consumer claimed the messages meanwhile, read the messages following its claim
+                messages.clear();
             }
         } catch (Throwable t) {
-            log.error("Dequeue from the '{}' Queue, resulted in an unexpected error. No message dequeued.", this.name, t);
-            if(documentContext != null) {
-                documentContext.rollbackOnClose();
-            }
+            log.error("{} from the '{}' Queue, resulted in an unexpected error. No message claimed.", operation, this.name, t);
+            consumer.invalidatePosition();
 
-            returnValue = null;
+            return 0;
         } finally {
-            if(documentContext != null) {
-                documentContext.close();
-            }
+            lockToEnsureNoOneIsAccessingTheQueueOnClose.unlockRead(stamp);
+        }
+    }
 
-            LOCK_TO_ENSURE_NO_ONE_IS_ACCESSING_THE_QUEUE.readLock().unlock();
+    private long read(ExcerptTailer consumerTailer, List<Message> messages, int maxElements) {
+        long lastReadIndex = NOTHING_CLAIMED;
+        while (messages.size() < maxElements) {
+            try (DocumentContext documentContext = consumerTailer.readingDocument()) {
+                if (!documentContext.isPresent()) {
+                    break;
+                }
+
+                messages.add(messageFormat.read(documentContext));
+                lastReadIndex = documentContext.index();
+            }
         }
 
-        return returnValue;
+        return lastReadIndex;
     }
 
-    @Override
-    public synchronized int drainTo(Collection<Message> collection, int maxElements) {
-        if(isClosed) {
-            throw new IllegalStateException("Cannot call drainTo as the '" + this.name + "' Queue is closed.");
+    /**
+     * Moves the named Tailer after the last claimed message. Skipped if another consumer is doing it already,
+     * as it will persist the same or a more recent claim.
+     */
+    private void persistReadPosition() {
+        if (!tailerLock.tryLock()) {
+            return;
         }
 
-        if (collection == null) {
-            throw new NullPointerException("collection");
-        }
-        if (maxElements <= 0) {
-            return 0;
+        try {
+            long claimedIndex = lastClaimedIndex.get();
+            if (claimedIndex == NOTHING_CLAIMED || claimedIndex == persistedIndex) {
+                return;
+            }
+
+            if (tailer.moveToIndex(claimedIndex)) {
+                // Skip the claimed message, so that the Tailer points to the message following it
+                skipDocument(tailer);
+                persistedIndex = claimedIndex;
+            }
+        } catch (Throwable t) {
+            log.warn("Failed to persist the read position of the '{}' Queue.", this.name, t);
+        } finally {
+            tailerLock.unlock();
         }
+    }
 
-        LOCK_TO_ENSURE_NO_ONE_IS_ACCESSING_THE_QUEUE.readLock().lock();
+    private long depth() {
+        return readOpenQueue(0, () -> {
+            long firstUnclaimedIndex = firstUnclaimedIndex();
+            if (firstUnclaimedIndex == NO_INDEX) {
+                return 0;
+            }
 
-        int elementCount = 0;
-        DocumentContext documentContext = null;
-        try {
-            documentContext = tailer.readingDocument();
-            if(documentContext.isPresent()) {
-                pauser.reset();
+            // The index to count to is exclusive
+            return chronicleQueue.countExcerpts(firstUnclaimedIndex, chronicleQueue.lastIndex()) + 1;
+        });
+    }
 
-                while(documentContext.isPresent()) {
-                    collection.add(new Message(documentContext.wire()));
-                    ++elementCount;
+    private long headAgeInMillis() {
+        return readOpenQueue(0, () -> {
+            long firstUnclaimedIndex = firstUnclaimedIndex();
+            if (firstUnclaimedIndex == NO_INDEX) {
+                return 0;
+            }
 
-                    documentContext.close();
-                    documentContext = NoDocumentContext.INSTANCE;
+            long cycleStartInMillis = (long) ROLL_CYCLE.toCycle(firstUnclaimedIndex) * ROLL_CYCLE.lengthInMillis();
+            return Math.max(0, System.currentTimeMillis() - cycleStartInMillis);
+        });
+    }
 
-                    if(elementCount < maxElements) {
-                        documentContext = tailer.readingDocument();
-                    }
-                }
+    /**
+     * @return index of the first message not claimed yet, {@link #NO_INDEX} if there is none. Called with the queue open.
+     */
+    private long firstUnclaimedIndex() {
+        metricsTailerLock.lock();
+        try {
+            if (metricsTailer == null) {
+                metricsTailer = chronicleQueue.createTailer();
             }
-            else {
-                pauser.pause();
+
+            long claimedIndex = lastClaimedIndex.get();
+            if (claimedIndex == NOTHING_CLAIMED) {
+                toFirstUnread(metricsTailer);
+            } else if (metricsTailer.moveToIndex(claimedIndex)) {
+                skipDocument(metricsTailer);
+            } else {
+                // The claimed message is gone, e.g. its file was deleted, so everything left is unclaimed
+                metricsTailer.toStart();
             }
-        } catch (Throwable t) {
-            log.error("Draining of the '{}' Queue, resulted in an unexpected error. Returning the messages already drained.", this.name, t);
-            if(documentContext != null) {
+
+            try (DocumentContext documentContext = metricsTailer.readingDocument()) {
+                if (!documentContext.isPresent()) {
+                    return NO_INDEX;
+                }
+
+                // Only peek at the message
                 documentContext.rollbackOnClose();
+
+                return documentContext.index();
             }
         } finally {
-            if(documentContext != null) {
-                documentContext.close();
+            metricsTailerLock.unlock();
+        }
+    }
+
+    /**
+     * Called with the queue locked for closing.
+     */
+    private void closeMetricsTailer() {
+        metricsTailerLock.lock();
+        try {
+            if (metricsTailer != null) {
+                metricsTailer.close();
+                metricsTailer = null;
             }
+        } catch (Throwable t) {
+            log.debug("Closing the metrics tailer of the '{}' Queue, resulted in an error.", this.name, t);
+        } finally {
+            metricsTailerLock.unlock();
+        }
+    }
 
-            LOCK_TO_ENSURE_NO_ONE_IS_ACCESSING_THE_QUEUE.readLock().unlock();
+    /**
+     * Reads a gauge of the queue, unless it is closed. Errors are logged and result in the given default value.
+     */
+    private long readOpenQueue(long defaultValue, LongSupplier gauge) {
+        long stamp = lockToEnsureNoOneIsAccessingTheQueueOnClose.readLock();
+        try {
+            return isClosed ? defaultValue : gauge.getAsLong();
+        } catch (Throwable t) {
+            log.debug("Reading metrics of the '{}' Queue, resulted in an error.", this.name, t);
+            return defaultValue;
+        } finally {
+            lockToEnsureNoOneIsAccessingTheQueueOnClose.unlockRead(stamp);
         }
+    }
 
-        return elementCount;
+    private static void skipDocument(ExcerptTailer tailerToMove) {
+        DocumentContext documentContext = tailerToMove.readingDocument();
+        documentContext.close();
     }
 
-    @Override
-    public void close() {
-        if(!isClosed) {
-            LOCK_TO_ENSURE_NO_ONE_IS_ACCESSING_THE_QUEUE.writeLock().lock();
-            try {
-                isClosed = true;
+    /**
+     * Positions the tailer at the first message, which was not read when the queue was loaded.
+     */
+    private void toFirstUnread(ExcerptTailer tailerToMove) {
+        if (loadedFirstUnreadIndex != NO_INDEX) {
+            if (tailerToMove.moveToIndex(loadedFirstUnreadIndex)) {
+                return;
+            }
+        } else if (loadedLastReadIndex >= 0) {
+            if (tailerToMove.moveToIndex(loadedLastReadIndex)) {
+                skipDocument(tailerToMove);
+                return;
+            }
+        }
+
+        // Nothing read yet or the read position is gone, e.g. its file was deleted, read from the first message
+        tailerToMove.toStart();
+    }
+
+    private long lockOpenQueue(String operation) {
+        long stamp = lockToEnsureNoOneIsAccessingTheQueueOnClose.readLock();
+        if (isClosed) {
+            lockToEnsureNoOneIsAccessingTheQueueOnClose.unlockRead(stamp);
+            throw new IllegalStateException("Cannot call " + operation + " as the '" + this.name + "' Queue is closed.");
+        }
+
+        return stamp;
+    }
+
+    private ConsumerTailer createConsumerTailer() {
+        releaseTailersOfTerminatedConsumers();
+
+        ConsumerTailer consumer = new ConsumerTailer(Thread.currentThread(), chronicleQueue.createTailer());
+        consumerTailers.add(consumer);
+
+        return consumer;
+    }
+
+    /**
+     * Closes the tailers of the consuming threads, which terminated. Called with the queue open.
+     */
+    private void releaseTailersOfTerminatedConsumers() {
+        for (ConsumerTailer consumer : consumerTailers) {
+            if (consumer.isTerminated() && consumerTailers.remove(consumer)) {
+                consumer.close();
+            }
+        }
+    }
+
+    /**
+     * Tailer of a single consuming thread, remembering after which claimed message it is positioned.
+     */
+    private final class ConsumerTailer {
+
+        private final WeakReference<Thread> owner;
+        private final ExcerptTailer tailer;
+        private final Pauser pauser = Pauser.balanced();
 
-                chronicleQueue.close();
-            } finally {
-                LOCK_TO_ENSURE_NO_ONE_IS_ACCESSING_THE_QUEUE.writeLock().unlock();
+        private boolean positioned = false;
+        private long positionedAfterIndex;
+
+        private ConsumerTailer(Thread owner, ExcerptTailer tailer) {
+            this.owner = new WeakReference<>(owner);
+            this.tailer = tailer;
+        }
+
+        ExcerptTailer positionAfter(long claimedIndex) {
+            if (positioned && positionedAfterIndex == claimedIndex) {
+                // Nothing was claimed by the other consumers since this consumer read last
+                return tailer;
             }
 
-            log.info("'{}' Queue closed.", this.name);
+            if (claimedIndex == NOTHING_CLAIMED) {
+                toFirstUnread(tailer);
+            } else {
+                if (!tailer.moveToIndex(claimedIndex)) {
+                    throw new IllegalStateException("Claimed message " + Long.toHexString(claimedIndex) + " not found.");
+                }
+
+                skipDocument(tailer);
+            }
+
+            positionedAfter(claimedIndex);
+
+            return tailer;
+        }
+
+        void positionedAfter(long index) {
+            positioned = true;
+            positionedAfterIndex = index;
+        }
+
+        void invalidatePosition() {
+            positioned = false;
         }
-        else {
-            log.info("'{}' Queue already closed.", this.name);
+
+        boolean isTerminated() {
+            Thread thread = owner.get();
+            return thread == null || !thread.isAlive();
+        }
+
+        void close() {
+            try {
+                tailer.close();
+            } catch (Throwable t) {
+                log.debug("Closing a consumer tailer of the '{}' Queue, resulted in an error.", name, t);
+            }
         }
     }
 
@@ -20,18 +20,40 @@ package com.cumulocity.agent.snmp.persistence;
 
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
+import lombok.Setter;
+import net.openhft.chronicle.bytes.Bytes;
 import net.openhft.chronicle.core.io.IORuntimeException;
 import net.openhft.chronicle.wire.*;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
 @EqualsAndHashCode
 public class Message implements ReadMarshallable, WriteMarshallable {
 
+    private static final byte FLAG_COMPRESSED = 1;
+
+    private static final byte FLAG_RETRY_AT = 2;
+
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED));
+
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(Inflater::new);
+
     @Getter
     private String payload;
 
     @Getter
     private short backoutCount;
 
+    // Time in milliseconds since the epoch, before which the message must not be delivered again.
+    // Zero, if the message can be delivered right away.
+    @Getter
+    @Setter
+    private long retryAt;
+
 
     Message(WireIn wire) {
         readMarshallable(wire);
@@ -56,6 +78,9 @@ public class Message implements ReadMarshallable, WriteMarshallable {
 
         backoutCount = valueIn.int16();
         payload = valueIn.text();
+
+        // Messages stored before the retry time was introduced end after the payload
+        retryAt = (wire.bytes().readRemaining() > 0) ? valueIn.int64() : 0;
     }
 
     @Override
@@ -64,5 +89,98 @@ public class Message implements ReadMarshallable, WriteMarshallable {
 
         valueOut.int16(backoutCount);
         valueOut.text(payload);
+
+        if (retryAt != 0) {
+            valueOut.int64(retryAt);
+        }
+    }
+
+    /**
+     * Writes the message in the {@link MessageFormat#BINARY} format: a flags byte, the backout count,
+     * the retry time if set and the payload as UTF-8 prefixed with its length. If compression is requested
+     * and pays off, the payload is stored deflated instead.
+     */
+    void writeBinary(Bytes<?> bytes, boolean compress) {
+        byte[] utf8 = null;
+        byte[] compressed = null;
+        if (compress) {
+            utf8 = payload.getBytes(StandardCharsets.UTF_8);
+            compressed = deflate(utf8);
+        }
+
+        byte flags = 0;
+        if (compressed != null) {
+            flags |= FLAG_COMPRESSED;
+        }
+        if (retryAt != 0) {
+            flags |= FLAG_RETRY_AT;
+        }
+
+        bytes.writeByte(flags);
+        bytes.writeShort(backoutCount);
+        if (retryAt != 0) {
+            bytes.writeLong(retryAt);
+        }
+
+        if (compressed != null) {
+            bytes.writeStopBit(utf8.length);
+            bytes.writeStopBit(compressed.length);
+            bytes.write(compressed);
+        } else {
+            bytes.writeUtf8(payload);
+        }
+    }
+
+    static Message readBinary(Bytes<?> bytes) throws IORuntimeException {
+        byte flags = bytes.readByte();
+        short backoutCount = bytes.readShort();
+        long retryAt = ((flags & FLAG_RETRY_AT) != 0) ? bytes.readLong() : 0;
+
+        String payload;
+        if ((flags & FLAG_COMPRESSED) != 0) {
+            int length = (int) bytes.readStopBit();
+            byte[] compressed = new byte[(int) bytes.readStopBit()];
+            bytes.read(compressed);
+            payload = new String(inflate(compressed, length), StandardCharsets.UTF_8);
+        } else {
+            payload = bytes.readUtf8();
+        }
+
+        Message message = new Message(payload, backoutCount);
+        message.retryAt = retryAt;
+
+        return message;
+    }
+
+    /**
+     * @return the compressed data, or null if it is not smaller than the data
+     */
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = DEFLATER.get();
+        deflater.reset();
+        deflater.setInput(data);
+        deflater.finish();
+
+        byte[] buffer = new byte[data.length];
+        int length = deflater.deflate(buffer);
+
+        return deflater.finished() && length < data.length ? Arrays.copyOf(buffer, length) : null;
+    }
+
+    private static byte[] inflate(byte[] compressed, int length) {
+        Inflater inflater = INFLATER.get();
+        inflater.reset();
+        inflater.setInput(compressed);
+
+        byte[] data = new byte[length];
+        try {
+            if (inflater.inflate(data) != length) {
+                throw new IORuntimeException("Compressed message is truncated");
+            }
+        } catch (DataFormatException e) {
+            throw new IORuntimeException(e);
+        }
+
+        return data;
     }
 }
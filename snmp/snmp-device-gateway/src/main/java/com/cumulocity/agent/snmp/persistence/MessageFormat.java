@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA, 
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cumulocity.agent.snmp.persistence;
+
+import net.openhft.chronicle.queue.ExcerptAppender;
+import net.openhft.chronicle.wire.DocumentContext;
+
+/**
+ * Format in which the messages are stored in a queue.
+ */
+public enum MessageFormat {
+
+    /**
+     * Backout count and payload marshalled as wire values.
+     */
+    TEXT {
+        @Override
+        void write(ExcerptAppender appender, Message message, boolean compress) {
+            appender.writeDocument(message);
+        }
+
+        @Override
+        Message read(DocumentContext documentContext) {
+            return new Message(documentContext.wire());
+        }
+    },
+
+    /**
+     * Payload written directly to the bytes of the document as length prefixed UTF-8, optionally compressed.
+     */
+    BINARY {
+        @Override
+        void write(ExcerptAppender appender, Message message, boolean compress) {
+            try (DocumentContext documentContext = appender.writingDocument()) {
+                try {
+                    message.writeBinary(documentContext.wire().bytes(), compress);
+                } catch (RuntimeException e) {
+                    documentContext.rollbackOnClose();
+                    throw e;
+                }
+            }
+        }
+
+        @Override
+        Message read(DocumentContext documentContext) {
+            return Message.readBinary(documentContext.wire().bytes());
+        }
+    };
+
+    abstract void write(ExcerptAppender appender, Message message, boolean compress);
+
+    abstract Message read(DocumentContext documentContext);
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA, 
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cumulocity.agent.snmp.persistence;
+
+import lombok.extern.slf4j.Slf4j;
+import net.openhft.chronicle.queue.ChronicleQueue;
+import net.openhft.chronicle.queue.ExcerptAppender;
+import net.openhft.chronicle.queue.ExcerptTailer;
+import net.openhft.chronicle.queue.RollCycles;
+import net.openhft.chronicle.queue.impl.single.SingleChronicleQueueBuilder;
+import net.openhft.chronicle.wire.DocumentContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Converts the messages of a queue folder, which were stored in another {@link MessageFormat}
+ * than the configured one.
+ * <p>
+ * The format of a queue folder is recorded in a marker file. Folders without the marker,
+ * but with data files, were written before the format became configurable and hence are {@link MessageFormat#TEXT}.
+ * The unread messages are copied into a new folder, which replaces the old one only once it is complete.
+ * If the conversion is interrupted, the old folder is restored on the next start.
+ */
+@Slf4j
+class MessageFormatConverter {
+
+    static final String MARKER_FILE_NAME = "message-format";
+
+    private static final String CONVERTING_SUFFIX = ".converting";
+
+    private static final String BACKUP_SUFFIX = ".backup";
+
+    private final String queueName;
+
+    private final File persistenceFolder;
+
+    MessageFormatConverter(String queueName, File persistenceFolder) {
+        this.queueName = queueName;
+        this.persistenceFolder = persistenceFolder;
+    }
+
+    /**
+     * Ensures that all the messages in the persistence folder are stored in the given format.
+     */
+    void convertTo(MessageFormat messageFormat, boolean compress) {
+        recoverInterruptedConversion();
+
+        MessageFormat storedFormat = readStoredFormat();
+        if (storedFormat != null && storedFormat != messageFormat) {
+            log.info("Converting the messages of the '{}' Queue from {} to {} format.", queueName, storedFormat, messageFormat);
+            convert(storedFormat, messageFormat, compress);
+        }
+
+        writeMarker(messageFormat);
+    }
+
+    private void recoverInterruptedConversion() {
+        File backupFolder = sibling(BACKUP_SUFFIX);
+        if (backupFolder.exists()) {
+            if (new File(persistenceFolder, MARKER_FILE_NAME).exists()) {
+                // The converted folder was completely in place, only the cleanup was missed
+                delete(backupFolder);
+            } else {
+                log.warn("Restoring the '{}' Queue from '{}' as its message format conversion was interrupted.", queueName, backupFolder.getPath());
+                delete(persistenceFolder);
+                rename(backupFolder, persistenceFolder);
+            }
+        }
+
+        delete(sibling(CONVERTING_SUFFIX));
+    }
+
+    private MessageFormat readStoredFormat() {
+        File markerFile = new File(persistenceFolder, MARKER_FILE_NAME);
+        if (markerFile.exists()) {
+            try {
+                return MessageFormat.valueOf(new String(Files.readAllBytes(markerFile.toPath()), StandardCharsets.UTF_8).trim());
+            } catch (IOException | IllegalArgumentException e) {
+                throw new IllegalStateException("Cannot read the message format of the '" + queueName + "' Queue from '" + markerFile.getPath() + "'.", e);
+            }
+        }
+
+        String[] dataFiles = persistenceFolder.list((dir, name) -> name.toLowerCase().endsWith(".cq4") && !name.toLowerCase().startsWith("metadata"));
+        return (dataFiles != null && dataFiles.length > 0) ? MessageFormat.TEXT : null;
+    }
+
+    private void convert(MessageFormat from, MessageFormat to, boolean compress) {
+        File convertingFolder = sibling(CONVERTING_SUFFIX);
+
+        long count = 0;
+        try (ChronicleQueue source = open(persistenceFolder);
+             ChronicleQueue target = open(convertingFolder)) {
+
+            // Only the messages not yet read through the named Tailer are copied
+            ExcerptTailer tailer = source.createTailer(queueName);
+            ExcerptAppender appender = target.acquireAppender();
+            while (true) {
+                try (DocumentContext documentContext = tailer.readingDocument()) {
+                    if (!documentContext.isPresent()) {
+                        break;
+                    }
+
+                    to.write(appender, from.read(documentContext), compress);
+                    count++;
+                }
+            }
+        }
+
+        File backupFolder = sibling(BACKUP_SUFFIX);
+        rename(persistenceFolder, backupFolder);
+        rename(convertingFolder, persistenceFolder);
+        writeMarker(to);
+        delete(backupFolder);
+
+        log.info("Converted {} message(s) of the '{}' Queue to {} format.", count, queueName, to);
+    }
+
+    private void writeMarker(MessageFormat messageFormat) {
+        try {
+            Files.write(new File(persistenceFolder, MARKER_FILE_NAME).toPath(), messageFormat.name().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write the message format of the '" + queueName + "' Queue.", e);
+        }
+    }
+
+    private File sibling(String suffix) {
+        return new File(persistenceFolder.getParentFile(), persistenceFolder.getName() + suffix);
+    }
+
+    private static ChronicleQueue open(File folder) {
+        return SingleChronicleQueueBuilder
+                .single(folder)
+                .rollCycle(RollCycles.MINUTELY)
+                .build();
+    }
+
+    private static void rename(File from, File to) {
+        if (!from.renameTo(to)) {
+            throw new IllegalStateException("Cannot rename '" + from.getPath() + "' to '" + to.getPath() + "'.");
+        }
+    }
+
+    private static void delete(File folder) {
+        if (!folder.exists()) {
+            return;
+        }
+
+        try (Stream<Path> paths = Files.walk(folder.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot delete '" + folder.getPath() + "'.", e);
+        }
+    }
+}
@@ -32,4 +32,6 @@ public interface Queue extends AutoCloseable {
     Message dequeue();
 
     int drainTo(Collection<Message> collection, int maxElements);
+
+    QueueMetrics getMetrics();
 }
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA, 
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cumulocity.agent.snmp.persistence;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Counters and gauges of a queue since it was loaded.
+ */
+public class QueueMetrics {
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder dequeued = new LongAdder();
+    private final LongAdder backedOut = new LongAdder();
+
+    private final LongSupplier depth;
+    private final LongSupplier headAgeInMillis;
+
+    public QueueMetrics(LongSupplier depth, LongSupplier headAgeInMillis) {
+        this.depth = depth;
+        this.headAgeInMillis = headAgeInMillis;
+    }
+
+    void enqueued() {
+        enqueued.increment();
+    }
+
+    void dequeued(int count) {
+        dequeued.add(count);
+    }
+
+    void backedOut() {
+        backedOut.increment();
+    }
+
+    public long getEnqueuedCount() {
+        return enqueued.sum();
+    }
+
+    public long getDequeuedCount() {
+        return dequeued.sum();
+    }
+
+    public long getBackedOutCount() {
+        return backedOut.sum();
+    }
+
+    /**
+     * @return number of the messages not claimed by any consumer yet
+     */
+    public long getDepth() {
+        return depth.getAsLong();
+    }
+
+    /**
+     * @return approximate age of the oldest message not claimed yet, zero if there is none
+     */
+    public long getHeadAgeInMillis() {
+        return headAgeInMillis.getAsLong();
+    }
+}
@@ -21,6 +21,7 @@ package com.cumulocity.agent.snmp.platform.model;
 import com.cumulocity.rest.representation.inventory.ManagedObjectRepresentation;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
@@ -39,9 +40,13 @@ public class DeviceManagedObjectWrapper extends AbstractManagedObjectWrapper {
 
 	private SnmpDeviceProperties properties;
 
+	// Reference to the device with its id only, used as the source of its alarms, events and measurements
+	private final ManagedObjectRepresentation source = new ManagedObjectRepresentation();
+
 	public DeviceManagedObjectWrapper(ManagedObjectRepresentation snmpDeviceMo) {
 		super(snmpDeviceMo);
 
+		source.setId(snmpDeviceMo.getId());
 		loadProperties();
 	}
 
@@ -68,6 +73,9 @@ public class DeviceManagedObjectWrapper extends AbstractManagedObjectWrapper {
 		
 		private String ipAddress;
 
+		// Polling interval of the device in seconds, overriding the one of its device protocol and the gateway
+		private long pollingRate;
+
 		private DeviceAuthentication auth;
 
 		public DeviceAuthentication getAuth() {
@@ -80,6 +88,7 @@ public class DeviceManagedObjectWrapper extends AbstractManagedObjectWrapper {
 	}
 
 	@Getter
+	@EqualsAndHashCode
 	@JsonIgnoreProperties(ignoreUnknown = true)
 	public static class DeviceAuthentication {
 
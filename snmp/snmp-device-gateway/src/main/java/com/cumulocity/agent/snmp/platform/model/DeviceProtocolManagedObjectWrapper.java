@@ -36,14 +36,47 @@ public class DeviceProtocolManagedObjectWrapper extends AbstractManagedObjectWra
 
 	public static final String C8Y_REGISTERS = "c8y_Registers";
 
+	public static final String C8Y_POLLING_RATE = "c8y_PollingRate";
+
 	Map<OID, Register> oidMap = new HashMap<>();
 
 	List<VariableBinding> measurementVariableBindingList = new ArrayList<>();
 
+	// Tables and table columns walked when polling, their cells are mapped by the registers of the columns
+	List<OID> tableOidList = new ArrayList<>();
+
+	// Dispatch structure for the received values, compiled once from the oidMap
+	RegisterTrie registerTrie;
+
+	// Polling interval in seconds of the devices using this protocol, 0 if the one of the gateway applies
+	long pollingRate;
+
 	public DeviceProtocolManagedObjectWrapper(ManagedObjectRepresentation deviceProtocolMO) {
 		super(deviceProtocolMO);
 
 		loadRegisters();
+		registerTrie = new RegisterTrie(oidMap);
+		loadPollingRate();
+	}
+
+	private void loadPollingRate() {
+		Object pollingRateObj = managedObject.get(C8Y_POLLING_RATE);
+		if (pollingRateObj instanceof Number) {
+			pollingRate = ((Number) pollingRateObj).longValue();
+		} else if (pollingRateObj != null) {
+			log.warn("Ignoring the invalid {} fragment {} of the device protocol {}", C8Y_POLLING_RATE, pollingRateObj,
+					getName());
+		}
+	}
+
+	private boolean isInTable(OID oid) {
+		for (OID tableOid : tableOidList) {
+			if (oid.startsWith(tableOid)) {
+				return true;
+			}
+		}
+
+		return false;
 	}
 
 	private void loadRegisters() {
@@ -57,7 +90,9 @@ public class DeviceProtocolManagedObjectWrapper extends AbstractManagedObjectWra
 					OID oid = new OID(register.getOid());
 					oidMap.put(oid, register);
 
-					if (register.getMeasurementMapping() != null) {
+					if (register.isTable()) {
+						tableOidList.add(oid);
+					} else if (register.getMeasurementMapping() != null) {
 						VariableBinding variableBinding = new VariableBinding(oid);
 						measurementVariableBindingList.add(variableBinding);
 					}
@@ -65,6 +100,9 @@ public class DeviceProtocolManagedObjectWrapper extends AbstractManagedObjectWra
 					log.error("Error while parsing the OID {} from the device protocol {}. Skipping the register.", register.getOid(), getName(), t);
 				}
 			}
+
+			// The cells of the walked tables are not polled once more
+			measurementVariableBindingList.removeIf(variableBinding -> isInTable(variableBinding.getOid()));
 		} else {
 			log.warn("Did not find {} fragment in the received gateway managed object {}", C8Y_REGISTERS,
 					managedObject.getName());
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA, 
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cumulocity.agent.snmp.platform.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Published when SNMP devices or device protocols of the gateway were added, changed or removed.
+ * Devices are identified by their IP address, device protocols by their name.
+ * A device whose device protocol changed is listed as changed device as well.
+ */
+@Data
+@AllArgsConstructor
+public final class GatewayDataChangedEvent {
+
+	private Set<String> addedDevices;
+
+	private Set<String> changedDevices;
+
+	private Set<String> removedDevices;
+
+	private Set<String> changedProtocols;
+
+	/**
+	 * @return IP addresses of all the added, changed and removed devices
+	 */
+	public Set<String> getAffectedDevices() {
+		Set<String> affectedDevices = new HashSet<>(addedDevices);
+		affectedDevices.addAll(changedDevices);
+		affectedDevices.addAll(removedDevices);
+
+		return affectedDevices;
+	}
+}
@@ -43,6 +43,8 @@ public class MeasurementMapping {
 
 	private Map<String, Map<?, ?>> staticFragmentsMap;
 
+	private ReportingPolicy reportingPolicy;
+
 	public Map<String, Map<?, ?>> getStaticFragmentsMap() {
 		return staticFragmentsMap;
 	}
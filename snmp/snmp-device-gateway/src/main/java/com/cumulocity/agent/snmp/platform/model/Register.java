@@ -41,6 +41,9 @@ public class Register {
 
 	private boolean input;
 
+	// Walks the subtree of the OID when polling, e.g. a table or a table column
+	private boolean table;
+
 	private List<String> childOids;
 
 	private AlarmMapping alarmMapping;
@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA, 
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cumulocity.agent.snmp.platform.model;
+
+import com.cumulocity.rest.representation.alarm.AlarmRepresentation;
+import com.cumulocity.rest.representation.event.EventRepresentation;
+import com.cumulocity.rest.representation.inventory.ManagedObjectRepresentation;
+import com.cumulocity.rest.representation.measurement.MeasurementRepresentation;
+import lombok.Getter;
+import org.joda.time.DateTime;
+import org.snmp4j.smi.OID;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Register of a device protocol, compiled for building its alarms, events and measurements
+ * with as little work as possible per received value.
+ */
+public final class RegisterTemplate {
+
+	@Getter
+	private final OID oid;
+
+	@Getter
+	private final Register register;
+
+	private final AlarmMapping alarmMapping;
+
+	private final EventMapping eventMapping;
+
+	private final String measurementType;
+
+	private final String measurementSeries;
+
+	private final String unit;
+
+	private final Map<String, Map<?, ?>> staticFragments;
+
+	@Getter
+	private final ReportingPolicy reportingPolicy;
+
+	private final LongAdder dispatchCount = new LongAdder();
+
+	public RegisterTemplate(OID oid, Register register) {
+		this.oid = oid;
+		this.register = register;
+		this.alarmMapping = register.getAlarmMapping();
+		this.eventMapping = register.getEventMapping();
+
+		MeasurementMapping measurementMapping = register.getMeasurementMapping();
+		if (measurementMapping != null) {
+			this.measurementType = measurementMapping.getType();
+			this.measurementSeries = measurementMapping.getSeries();
+
+			Map<String, Map<?, ?>> staticFragmentsMap = measurementMapping.getStaticFragmentsMap();
+			this.staticFragments = (staticFragmentsMap == null || staticFragmentsMap.isEmpty()) ? null
+					: Collections.unmodifiableMap(new HashMap<>(staticFragmentsMap));
+
+			ReportingPolicy policy = measurementMapping.getReportingPolicy();
+			this.reportingPolicy = (policy == null || !policy.isActive()) ? null : policy;
+		} else {
+			this.measurementType = null;
+			this.measurementSeries = null;
+			this.staticFragments = null;
+			this.reportingPolicy = null;
+		}
+
+		String registerUnit = register.getUnit();
+		this.unit = (registerUnit == null || registerUnit.isEmpty()) ? null : registerUnit;
+	}
+
+	public boolean hasMappings() {
+		return alarmMapping != null || eventMapping != null || measurementType != null;
+	}
+
+	public boolean hasAlarmMapping() {
+		return alarmMapping != null;
+	}
+
+	public boolean hasEventMapping() {
+		return eventMapping != null;
+	}
+
+	public boolean hasMeasurementMapping() {
+		return measurementType != null;
+	}
+
+	/**
+	 * Counts one received value of this register.
+	 */
+	public void countDispatch() {
+		dispatchCount.increment();
+	}
+
+	public long getDispatchCount() {
+		return dispatchCount.sum();
+	}
+
+	public AlarmRepresentation buildAlarmRepresentation(ManagedObjectRepresentation source, DateTime dateTime) {
+		AlarmRepresentation newAlarm = new AlarmRepresentation();
+		newAlarm.setSource(source);
+		newAlarm.setDateTime(dateTime);
+		newAlarm.setType(alarmMapping.getType());
+		newAlarm.setText(alarmMapping.getText());
+		newAlarm.setSeverity(alarmMapping.getSeverity());
+
+		return newAlarm;
+	}
+
+	public EventRepresentation buildEventRepresentation(ManagedObjectRepresentation source, DateTime dateTime) {
+		EventRepresentation newEvent = new EventRepresentation();
+		newEvent.setSource(source);
+		newEvent.setDateTime(dateTime);
+		newEvent.setType(eventMapping.getType());
+		newEvent.setText(eventMapping.getText());
+
+		return newEvent;
+	}
+
+	public MeasurementRepresentation buildMeasurementRepresentation(ManagedObjectRepresentation source,
+			DateTime dateTime, Object value) {
+		return buildMeasurementRepresentation(source, dateTime, measurementSeries, value, unit);
+	}
+
+	/**
+	 * Builds the measurement of a table cell, whose OID is the OID of this register followed by the row index.
+	 * The series is suffixed with the row index, e.g. ifInOctets_3, and the unit of a rate with /s.
+	 */
+	public MeasurementRepresentation buildRowMeasurementRepresentation(ManagedObjectRepresentation source,
+			DateTime dateTime, OID rowIndex, Object value, boolean rate) {
+		String rowSeries = measurementSeries + "_" + rowIndex.toDottedString().replace('.', '_');
+		String rowUnit = (rate && unit != null) ? unit + "/s" : unit;
+
+		return buildMeasurementRepresentation(source, dateTime, rowSeries, value, rowUnit);
+	}
+
+	private MeasurementRepresentation buildMeasurementRepresentation(ManagedObjectRepresentation source,
+			DateTime dateTime, String seriesName, Object value, String seriesUnit) {
+		Map<String, Object> series = new HashMap<>(4);
+		if (value != null) {
+			series.put("value", value);
+		}
+		if (seriesUnit != null) {
+			series.put("unit", seriesUnit);
+		}
+
+		MeasurementRepresentation newMeasurement = new MeasurementRepresentation();
+		newMeasurement.setSource(source);
+		newMeasurement.setDateTime(dateTime);
+		newMeasurement.setType(measurementType);
+		newMeasurement.setProperty(measurementType, Collections.singletonMap(seriesName, series));
+
+		if (staticFragments != null) {
+			newMeasurement.getAttrs().putAll(staticFragments);
+		}
+
+		return newMeasurement;
+	}
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA, 
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cumulocity.agent.snmp.platform.model;
+
+import org.snmp4j.smi.OID;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Immutable OID prefix trie of the registers of a device protocol, compiled once per device protocol.
+ * <p>
+ * The OIDs of traps and GET responses resolve to the register with the same OID only, see {@link #get(OID)}.
+ * The OIDs of walked table cells resolve to the register with the longest OID prefix having any mapping,
+ * i.e. the column register of the table, see {@link #lookup(OID)}.
+ */
+public final class RegisterTrie {
+
+	private static final int[] NO_KEYS = new int[0];
+
+	private static final Node[] NO_CHILDREN = new Node[0];
+
+	private final Node root;
+
+	private final Map<String, RegisterTemplate> registers;
+
+	private final LongAdder unmatchedCount = new LongAdder();
+
+	public RegisterTrie(Map<OID, Register> oidMap) {
+		NodeBuilder rootBuilder = new NodeBuilder();
+		Map<String, RegisterTemplate> templates = new HashMap<>(oidMap.size());
+
+		oidMap.forEach((oid, register) -> {
+			NodeBuilder nodeBuilder = rootBuilder;
+			for (int i = 0; i < oid.size(); i++) {
+				nodeBuilder = nodeBuilder.children.computeIfAbsent(oid.get(i), key -> new NodeBuilder());
+			}
+
+			nodeBuilder.register = new RegisterTemplate(oid, register);
+			templates.put(oid.toDottedString(), nodeBuilder.register);
+		});
+
+		root = rootBuilder.build();
+		registers = Collections.unmodifiableMap(templates);
+	}
+
+	/**
+	 * @return the register with exactly the given OID, or null if there is none
+	 */
+	public RegisterTemplate get(OID oid) {
+		Node node = root;
+		for (int i = 0; i < oid.size() && node != null; i++) {
+			node = node.child(oid.get(i));
+		}
+
+		RegisterTemplate match = (node != null) ? node.register : null;
+		if (match == null) {
+			unmatchedCount.increment();
+		}
+
+		return match;
+	}
+
+	/**
+	 * @return the register of the OID, or null if neither the OID nor any of its prefixes is mapped
+	 */
+	public RegisterTemplate lookup(OID oid) {
+		RegisterTemplate longestPrefixMatch = null;
+		Node node = root;
+
+		for (int i = 0; i < oid.size(); i++) {
+			if (node.register != null && node.register.hasMappings()) {
+				longestPrefixMatch = node.register;
+			}
+
+			node = node.child(oid.get(i));
+			if (node == null) {
+				break;
+			}
+		}
+
+		RegisterTemplate match = (node != null && node.register != null) ? node.register : longestPrefixMatch;
+		if (match == null) {
+			unmatchedCount.increment();
+		}
+
+		return match;
+	}
+
+	/**
+	 * @return the compiled registers by their OID in dotted notation
+	 */
+	public Map<String, RegisterTemplate> getRegisters() {
+		return registers;
+	}
+
+	/**
+	 * @return the number of OIDs looked up without finding any register
+	 */
+	public long getUnmatchedCount() {
+		return unmatchedCount.sum();
+	}
+
+	private static final class Node {
+
+		// Sorted OID sub-identifiers of the children, searched binary
+		private final int[] keys;
+
+		private final Node[] children;
+
+		private final RegisterTemplate register;
+
+		private Node(int[] keys, Node[] children, RegisterTemplate register) {
+			this.keys = keys;
+			this.children = children;
+			this.register = register;
+		}
+
+		private Node child(int key) {
+			int index = Arrays.binarySearch(keys, key);
+			return (index >= 0) ? children[index] : null;
+		}
+	}
+
+	private static final class NodeBuilder {
+
+		private final TreeMap<Integer, NodeBuilder> children = new TreeMap<>();
+
+		private RegisterTemplate register;
+
+		private Node build() {
+			if (children.isEmpty()) {
+				return new Node(NO_KEYS, NO_CHILDREN, register);
+			}
+
+			int[] keys = new int[children.size()];
+			Node[] nodes = new Node[children.size()];
+			int i = 0;
+			for (Map.Entry<Integer, NodeBuilder> child : children.entrySet()) {
+				keys[i] = child.getKey();
+				nodes[i] = child.getValue().build();
+				i++;
+			}
+
+			return new Node(keys, nodes, register);
+		}
+	}
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA, 
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cumulocity.agent.snmp.platform.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Data;
+
+/**
+ * Policy for reporting the polled values of a register, evaluated at the gateway before the measurements are
+ * published. Without a policy every polled value is reported.
+ */
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ReportingPolicy {
+
+	/**
+	 * Minimum difference to the last reported numeric value for reporting a new value
+	 */
+	private double deadband;
+
+	/**
+	 * Report a value only if it differs from the last reported value, by more than the deadband for numeric values
+	 */
+	private boolean onChange;
+
+	/**
+	 * Maximum time in seconds without a reported value, after which a value is reported even if it did not change.
+	 * 0 for no maximum.
+	 */
+	private long maxSilence;
+
+	/**
+	 * MIN, MAX or AVG, reported instead of the numeric values of every aggregationPolls polls
+	 */
+	private String aggregation;
+
+	private int aggregationPolls;
+
+	public boolean isFiltering() {
+		return onChange || deadband > 0;
+	}
+
+	public boolean isAggregating() {
+		return getAggregationType() != null && aggregationPolls > 1;
+	}
+
+	public AggregationType getAggregationType() {
+		if (aggregation == null) {
+			return null;
+		}
+
+		try {
+			return AggregationType.valueOf(aggregation.trim().toUpperCase());
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	public boolean isActive() {
+		return isFiltering() || isAggregating();
+	}
+
+	public enum AggregationType {
+		MIN, MAX, AVG
+	}
+}
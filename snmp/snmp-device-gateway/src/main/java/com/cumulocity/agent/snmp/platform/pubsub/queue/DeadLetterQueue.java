@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA, 
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cumulocity.agent.snmp.platform.pubsub.queue;
+
+import com.cumulocity.agent.snmp.config.GatewayProperties;
+import com.cumulocity.agent.snmp.persistence.AbstractQueue;
+import com.cumulocity.agent.snmp.persistence.MessageFormat;
+
+import java.nio.file.Paths;
+
+/**
+ * Holds the messages of a queue, which could not be published within the configured number of retries.
+ * The messages are kept for inspection and can be replayed into the queue they came from.
+ */
+public class DeadLetterQueue extends AbstractQueue {
+
+    public DeadLetterQueue(String queueName, GatewayProperties gatewayProperties) {
+        super(queueName + "_DEAD_LETTER",
+                Paths.get(
+                        gatewayProperties.getGatewayDatabaseBaseDir(),
+                        ".snmp",
+                        gatewayProperties.getGatewayIdentifier().toLowerCase(),
+                        "chronicle",
+                        "queues",
+                        queueName.toLowerCase() + "-dead-letter").toFile(),
+                gatewayProperties.isGatewayQueueBinaryFormat() ? MessageFormat.BINARY : MessageFormat.TEXT,
+                gatewayProperties.isGatewayQueueCompressed(queueName)
+        );
+    }
+}
@@ -20,6 +20,7 @@ package com.cumulocity.agent.snmp.platform.pubsub.queue;
 
 import com.cumulocity.agent.snmp.config.GatewayProperties;
 import com.cumulocity.agent.snmp.persistence.AbstractQueue;
+import com.cumulocity.agent.snmp.persistence.MessageFormat;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
@@ -38,7 +39,9 @@ public class EventQueue extends AbstractQueue {
                         gatewayProperties.getGatewayIdentifier().toLowerCase(),
                         "chronicle",
                         "queues",
-                        EVENT_QUEUE_NAME.toLowerCase()).toFile()
+                        EVENT_QUEUE_NAME.toLowerCase()).toFile(),
+                gatewayProperties.isGatewayQueueBinaryFormat() ? MessageFormat.BINARY : MessageFormat.TEXT,
+                gatewayProperties.isGatewayQueueCompressed(EVENT_QUEUE_NAME)
         );
     }
 }
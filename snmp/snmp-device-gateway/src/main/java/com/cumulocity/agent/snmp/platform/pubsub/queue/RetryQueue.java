@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA, 
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cumulocity.agent.snmp.platform.pubsub.queue;
+
+import com.cumulocity.agent.snmp.config.GatewayProperties;
+import com.cumulocity.agent.snmp.persistence.AbstractQueue;
+import com.cumulocity.agent.snmp.persistence.MessageFormat;
+
+import java.nio.file.Paths;
+
+/**
+ * Holds the messages of a queue, which failed to be published, until they are due for another attempt.
+ * The messages are ordered by the time they failed, each carrying the time of its next attempt.
+ * There is a retry queue per retry delay, the level of the delay is part of the name except for the first one.
+ */
+public class RetryQueue extends AbstractQueue {
+
+    public RetryQueue(String queueName, int level, GatewayProperties gatewayProperties) {
+        super(queueName + "_RETRY" + ((level == 0) ? "" : "_" + level),
+                Paths.get(
+                        gatewayProperties.getGatewayDatabaseBaseDir(),
+                        ".snmp",
+                        gatewayProperties.getGatewayIdentifier().toLowerCase(),
+                        "chronicle",
+                        "queues",
+                        queueName.toLowerCase() + "-retry" + ((level == 0) ? "" : "-" + level)).toFile(),
+                gatewayProperties.isGatewayQueueBinaryFormat() ? MessageFormat.BINARY : MessageFormat.TEXT,
+                gatewayProperties.isGatewayQueueCompressed(queueName)
+        );
+    }
+}
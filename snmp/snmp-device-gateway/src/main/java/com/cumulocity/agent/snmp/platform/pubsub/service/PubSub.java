@@ -21,21 +21,38 @@ package com.cumulocity.agent.snmp.platform.pubsub.service;
 import com.cumulocity.agent.snmp.config.GatewayProperties;
 import com.cumulocity.agent.snmp.persistence.Message;
 import com.cumulocity.agent.snmp.persistence.Queue;
+import com.cumulocity.agent.snmp.platform.pubsub.queue.DeadLetterQueue;
+import com.cumulocity.agent.snmp.platform.pubsub.queue.RetryQueue;
+import com.cumulocity.agent.snmp.platform.pubsub.service.subscription.AdaptiveFlowControl;
 import com.cumulocity.agent.snmp.platform.pubsub.service.subscription.BatchMessagesSubscription;
+import com.cumulocity.agent.snmp.platform.pubsub.service.subscription.RetryTier;
 import com.cumulocity.agent.snmp.platform.pubsub.service.subscription.SingleMessageSubscription;
 import com.cumulocity.agent.snmp.platform.pubsub.service.subscription.Subscription;
+import com.cumulocity.agent.snmp.platform.pubsub.service.subscription.SubscriptionMetrics;
 import com.cumulocity.agent.snmp.platform.pubsub.subscriber.Subscriber;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.TaskScheduler;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ScheduledFuture;
 
 /**
  * A PubSub service which is used by publisher to publish message to a queue
  * and by subscriber to subscribe to a queue.
  *
+ * Messages which failed to be published are retried from separate retry queues, one per retry delay,
+ * and end up in a dead letter queue once they exceed the retry limit.
+ *
+ * The metrics of the queues and of the deliveries are registered as an MXBean
+ * named com.cumulocity.agent.snmp:type=PubSub,name=&lt;queue name&gt;.
+ *
  * @param <Q> Queue to PubSub
  */
 
@@ -51,9 +68,46 @@ public abstract class PubSub<Q extends Queue> {
     @Autowired
     private Q queue;
 
+    private RetryTier retryTier;
+
+    private final SubscriptionMetrics subscriptionMetrics = new SubscriptionMetrics();
+
+    private PubSubMetrics metrics;
+
+    private ObjectName metricsObjectName;
+
     private ScheduledFuture<?>[] subscriptions;
 
 
+    @PostConstruct
+    void init() {
+        retryTier = new RetryTier(
+                level -> new RetryQueue(queue.getName(), level, gatewayProperties),
+                new DeadLetterQueue(queue.getName(), gatewayProperties),
+                gatewayProperties.getGatewayPublishRetryDelay(),
+                gatewayProperties.getGatewayPublishMaxRetryDelay());
+
+        metrics = new PubSubMetrics(queue, retryTier, subscriptionMetrics);
+        registerMetrics();
+
+        if(gatewayProperties.isGatewayPublishReplayDeadLetters()) {
+            replayDeadLetters();
+        }
+    }
+
+    @PreDestroy
+    void close() {
+        unregisterMetrics();
+
+        if(retryTier != null) {
+            for(Queue retryQueue : retryTier.getRetryQueues()) {
+                retryQueue.close();
+            }
+            retryTier.getDeadLetterQueue().close();
+        }
+    }
+
+
     public void publish(String message) {
         if(message == null) {
             throw new NullPointerException("message");
@@ -70,11 +124,13 @@ public abstract class PubSub<Q extends Queue> {
         Subscription newSubscription = null;
         Duration delayDuration = null;
         if(subscriber.isBatchingSupported() && subscriber.getTransmitRateInSeconds() > 0) {
-            newSubscription = new BatchMessagesSubscription(queue, subscriber, gatewayProperties.getGatewayPublishRetryLimit());
+            newSubscription = new BatchMessagesSubscription(queue, subscriber, gatewayProperties.getGatewayPublishRetryLimit(), retryTier, subscriptionMetrics,
+                    createFlowControl(subscriber.getBatchSize(), subscriber.getConcurrentSubscriptionsCount()));
             delayDuration = Duration.ofSeconds(subscriber.getTransmitRateInSeconds());
         }
         else {
-            newSubscription = new SingleMessageSubscription(queue, subscriber, gatewayProperties.getGatewayPublishRetryLimit());
+            newSubscription = new SingleMessageSubscription(queue, subscriber, gatewayProperties.getGatewayPublishRetryLimit(), retryTier, subscriptionMetrics,
+                    createFlowControl(1, subscriber.getConcurrentSubscriptionsCount()));
             delayDuration = Duration.ofMillis(1);
         }
 
@@ -102,4 +158,74 @@ public abstract class PubSub<Q extends Queue> {
 
         log.debug("{} unsubscribed to queue {}", subscriber.getClass().getName(), queue.getName());
     }
+
+    /**
+     * @return the flow control adapting the subscription to the platform, null if disabled
+     */
+    private AdaptiveFlowControl createFlowControl(int maxBatchSize, int maxConcurrency) {
+        if(!gatewayProperties.isGatewayPublishAdaptive()) {
+            return null;
+        }
+
+        // The configured batch size and concurrency are the upper limits
+        return new AdaptiveFlowControl(queue, maxBatchSize, maxConcurrency,
+                gatewayProperties.getGatewayPublishTargetLatency(), gatewayProperties.getGatewayPublishMaxRetryDelay());
+    }
+
+    public PubSubMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Moves all the messages from the dead letter queue back to the queue, with their failure count reset.
+     *
+     * @return number of the replayed messages
+     */
+    public int replayDeadLetters() {
+        if(retryTier == null) {
+            return 0;
+        }
+
+        Queue deadLetterQueue = retryTier.getDeadLetterQueue();
+
+        int replayedCount = 0;
+        List<Message> deadLetters = new ArrayList<>();
+        while(deadLetterQueue.drainTo(deadLetters, 500) > 0) {
+            for(Message deadLetter : deadLetters) {
+                queue.enqueue(new Message(deadLetter.getPayload()));
+            }
+
+            replayedCount += deadLetters.size();
+            deadLetters.clear();
+        }
+
+        if(replayedCount > 0) {
+            log.info("Replayed {} message(s) from the '{}' Queue to the '{}' Queue.", replayedCount, deadLetterQueue.getName(), queue.getName());
+        }
+
+        return replayedCount;
+    }
+
+    private void registerMetrics() {
+        try {
+            metricsObjectName = new ObjectName("com.cumulocity.agent.snmp:type=PubSub,name=" + ObjectName.quote(queue.getName()));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, metricsObjectName);
+        } catch(Exception e) {
+            log.warn("Failed to register the metrics of the '{}' Queue with JMX.", queue.getName(), e);
+            metricsObjectName = null;
+        }
+    }
+
+    private void unregisterMetrics() {
+        if(metricsObjectName == null) {
+            return;
+        }
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(metricsObjectName);
+        } catch(Exception e) {
+            log.debug("Failed to unregister the metrics of the '{}' Queue from JMX.", queue.getName(), e);
+        }
+        metricsObjectName = null;
+    }
 }
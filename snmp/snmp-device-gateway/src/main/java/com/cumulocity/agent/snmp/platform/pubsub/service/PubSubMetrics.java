@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA, 
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cumulocity.agent.snmp.platform.pubsub.service;
+
+import com.cumulocity.agent.snmp.persistence.Queue;
+import com.cumulocity.agent.snmp.persistence.QueueMetrics;
+import com.cumulocity.agent.snmp.platform.pubsub.service.subscription.RetryTier;
+import com.cumulocity.agent.snmp.platform.pubsub.service.subscription.SubscriptionMetrics;
+
+import java.util.Map;
+
+/**
+ * Metrics of a {@link PubSub}, combining the metrics of its queues and of its subscription.
+ */
+public class PubSubMetrics implements PubSubMetricsMXBean {
+
+    private final Queue queue;
+
+    private final RetryTier retryTier;
+
+    private final SubscriptionMetrics subscriptionMetrics;
+
+    private long lastSampleTime;
+    private long lastEnqueuedCount;
+    private long lastDequeuedCount;
+    private long lastDeliveredCount;
+    private long lastFailedCount;
+
+    private volatile double enqueueRate;
+    private volatile double dequeueRate;
+    private volatile double deliveryRate;
+    private volatile double failureRate;
+
+    PubSubMetrics(Queue queue, RetryTier retryTier, SubscriptionMetrics subscriptionMetrics) {
+        this.queue = queue;
+        this.retryTier = retryTier;
+        this.subscriptionMetrics = subscriptionMetrics;
+
+        this.lastSampleTime = System.currentTimeMillis();
+    }
+
+    public String getQueueName() {
+        return queue.getName();
+    }
+
+    /**
+     * Calculates the rates since the previous sample.
+     */
+    public synchronized void sample() {
+        long now = System.currentTimeMillis();
+        double seconds = Math.max(1, now - lastSampleTime) / 1000.0;
+
+        QueueMetrics queueMetrics = queue.getMetrics();
+        long enqueuedCount = queueMetrics.getEnqueuedCount();
+        long dequeuedCount = queueMetrics.getDequeuedCount();
+        long deliveredCount = subscriptionMetrics.getDeliveredCount();
+        long failedCount = subscriptionMetrics.getFailedCount();
+
+        enqueueRate = (enqueuedCount - lastEnqueuedCount) / seconds;
+        dequeueRate = (dequeuedCount - lastDequeuedCount) / seconds;
+        deliveryRate = (deliveredCount - lastDeliveredCount) / seconds;
+        failureRate = (failedCount - lastFailedCount) / seconds;
+
+        lastSampleTime = now;
+        lastEnqueuedCount = enqueuedCount;
+        lastDequeuedCount = dequeuedCount;
+        lastDeliveredCount = deliveredCount;
+        lastFailedCount = failedCount;
+    }
+
+    @Override
+    public long getQueueDepth() {
+        return queue.getMetrics().getDepth();
+    }
+
+    @Override
+    public long getQueueHeadAgeInMillis() {
+        return queue.getMetrics().getHeadAgeInMillis();
+    }
+
+    @Override
+    public long getEnqueuedCount() {
+        return queue.getMetrics().getEnqueuedCount();
+    }
+
+    @Override
+    public long getDequeuedCount() {
+        return queue.getMetrics().getDequeuedCount();
+    }
+
+    @Override
+    public double getEnqueueRatePerSecond() {
+        return enqueueRate;
+    }
+
+    @Override
+    public double getDequeueRatePerSecond() {
+        return dequeueRate;
+    }
+
+    @Override
+    public long getDeliveredCount() {
+        return subscriptionMetrics.getDeliveredCount();
+    }
+
+    @Override
+    public double getDeliveryRatePerSecond() {
+        return deliveryRate;
+    }
+
+    @Override
+    public long getFailedCount() {
+        return subscriptionMetrics.getFailedCount();
+    }
+
+    @Override
+    public double getFailureRatePerSecond() {
+        return failureRate;
+    }
+
+    @Override
+    public long getRetryQueueDepth() {
+        long depth = 0;
+        for(Queue retryQueue : retryTier.getRetryQueues()) {
+            depth += retryQueue.getMetrics().getDepth();
+        }
+        return depth;
+    }
+
+    @Override
+    public long getDeadLetteredCount() {
+        return subscriptionMetrics.getDeadLetteredCount();
+    }
+
+    @Override
+    public long getDeadLetterQueueDepth() {
+        return retryTier.getDeadLetterQueue().getMetrics().getDepth();
+    }
+
+    @Override
+    public double getAverageBatchSize() {
+        long batchCount = subscriptionMetrics.getBatchCount();
+        return (batchCount == 0) ? 0 : (double) subscriptionMetrics.getBatchedMessageCount() / batchCount;
+    }
+
+    @Override
+    public double getAverageDeliveryLatencyInMillis() {
+        return subscriptionMetrics.getAverageDeliveryLatencyInMillis();
+    }
+
+    @Override
+    public long getDeliveryLatency95thPercentileInMillis() {
+        return subscriptionMetrics.getDeliveryLatencyPercentileInMillis(95);
+    }
+
+    @Override
+    public Map<String, Long> getDeliveryLatencyHistogram() {
+        return subscriptionMetrics.getDeliveryLatencyHistogram();
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA, 
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cumulocity.agent.snmp.platform.pubsub.service;
+
+import java.util.Map;
+
+/**
+ * Metrics of a queue and the deliveries of its subscriber, exposed via JMX.
+ * The rates are calculated over the last metrics interval.
+ */
+public interface PubSubMetricsMXBean {
+
+    long getQueueDepth();
+
+    long getQueueHeadAgeInMillis();
+
+    long getEnqueuedCount();
+
+    long getDequeuedCount();
+
+    double getEnqueueRatePerSecond();
+
+    double getDequeueRatePerSecond();
+
+    long getDeliveredCount();
+
+    double getDeliveryRatePerSecond();
+
+    long getFailedCount();
+
+    double getFailureRatePerSecond();
+
+    long getRetryQueueDepth();
+
+    long getDeadLetteredCount();
+
+    long getDeadLetterQueueDepth();
+
+    double getAverageBatchSize();
+
+    double getAverageDeliveryLatencyInMillis();
+
+    long getDeliveryLatency95thPercentileInMillis();
+
+    Map<String, Long> getDeliveryLatencyHistogram();
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA, 
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cumulocity.agent.snmp.platform.pubsub.service.subscription;
+
+import com.cumulocity.agent.snmp.persistence.Queue;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Adapts the batch size, the number of concurrently delivering subscriptions and the pause between
+ * deliveries of a queue to the responses of the platform, AIMD style:
+ * <ul>
+ * <li>A successful delivery within the target latency, while the queue has a backlog, increases the batch size
+ * by a tenth of its maximum and, once per round of all the delivering subscriptions, the concurrency by one.
+ * The pause is reset.</li>
+ * <li>A delivery slower than the target latency halves the batch size.</li>
+ * <li>A 429 or 5xx response halves the batch size and the concurrency and pauses the deliveries,
+ * the pause doubling with every further congestion up to the maximum.</li>
+ * </ul>
+ * The batch size and concurrency never exceed the configured maximums.
+ */
+@Slf4j
+public class AdaptiveFlowControl {
+
+    private static final long INITIAL_PAUSE_IN_MILLIS = 1000;
+
+    private final Queue queue;
+
+    private final int maxBatchSize;
+
+    private final int maxConcurrency;
+
+    private final long targetLatencyInMillis;
+
+    private final long maxPauseInMillis;
+
+    private int batchSize;
+
+    private int concurrency;
+
+    private int activeDeliveries = 0;
+
+    private int successesSinceConcurrencyIncrease = 0;
+
+    private long pauseInMillis = 0;
+
+    private long pausedUntil = 0;
+
+    public AdaptiveFlowControl(Queue queue, int maxBatchSize, int maxConcurrency, long targetLatencyInMillis, long maxPauseInMillis) {
+        this.queue = queue;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.targetLatencyInMillis = targetLatencyInMillis;
+        this.maxPauseInMillis = Math.max(INITIAL_PAUSE_IN_MILLIS, maxPauseInMillis);
+
+        this.batchSize = this.maxBatchSize;
+        this.concurrency = this.maxConcurrency;
+    }
+
+    public synchronized int getBatchSize() {
+        return batchSize;
+    }
+
+    public synchronized int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * @return true, if the subscription may deliver now. It must call {@link #deliveryFinished()} afterwards.
+     */
+    synchronized boolean tryStartDelivery() {
+        if (isPaused() || activeDeliveries >= concurrency) {
+            return false;
+        }
+
+        activeDeliveries++;
+        return true;
+    }
+
+    synchronized void deliveryFinished() {
+        activeDeliveries--;
+    }
+
+    synchronized boolean isPaused() {
+        return System.currentTimeMillis() < pausedUntil;
+    }
+
+    synchronized void onSuccess(int deliveredCount, long latencyInMillis) {
+        pauseInMillis = 0;
+
+        if (latencyInMillis > targetLatencyInMillis) {
+            decreaseBatchSize();
+            return;
+        }
+
+        if (!hasBacklog(deliveredCount)) {
+            return;
+        }
+
+        batchSize = Math.min(maxBatchSize, batchSize + Math.max(1, maxBatchSize / 10));
+
+        if (++successesSinceConcurrencyIncrease >= concurrency) {
+            successesSinceConcurrencyIncrease = 0;
+            concurrency = Math.min(maxConcurrency, concurrency + 1);
+        }
+    }
+
+    synchronized void onCongestion(int httpStatus) {
+        decreaseBatchSize();
+        concurrency = Math.max(1, concurrency / 2);
+        successesSinceConcurrencyIncrease = 0;
+
+        pauseInMillis = (pauseInMillis == 0) ? INITIAL_PAUSE_IN_MILLIS : Math.min(maxPauseInMillis, pauseInMillis * 2);
+        pausedUntil = System.currentTimeMillis() + pauseInMillis;
+
+        log.debug("'{}' Queue backs off after the platform responded with {}. Batch size {}, concurrency {}, pause {} ms.",
+                queue.getName(), httpStatus, batchSize, concurrency, pauseInMillis);
+    }
+
+    private void decreaseBatchSize() {
+        batchSize = Math.max(1, batchSize / 2);
+    }
+
+    private boolean hasBacklog(int deliveredCount) {
+        // A full batch indicates a backlog without asking the queue
+        if (deliveredCount >= batchSize) {
+            return true;
+        }
+
+        try {
+            return queue.getMetrics().getDepth() > batchSize;
+        } catch (Throwable t) {
+            return false;
+        }
+    }
+}
@@ -35,36 +35,52 @@ public class BatchMessagesSubscription extends Subscription {
         super(queue, subscriber, retryLimit);
     }
 
+    public BatchMessagesSubscription(Queue queue, Subscriber<?> subscriber, short retryLimit, RetryTier retryTier, SubscriptionMetrics metrics, AdaptiveFlowControl flowControl) {
+        super(queue, subscriber, retryLimit, retryTier, metrics, flowControl);
+    }
+
     @Override
-    protected boolean deliver() {
+    protected boolean deliver(DeliveryRound round) {
         boolean continueDelivering = false;
 
-        int batchSize = getSubscriber().getBatchSize();
+        int batchSize = getBatchSize();
 
         Collection<Message> messagesFromQueue = new ArrayList<>(batchSize);
         int size = getQueue().drainTo(messagesFromQueue, batchSize);
         if(size > 0) {
+            getMetrics().batchDrained(size);
             try {
                 List<String> messageStringsFromQueue = messagesFromQueue.parallelStream().map(Message::getPayload).collect(Collectors.toList());
-                getSubscriber().onMessages(messageStringsFromQueue);
+                deliverToSubscriber(messageStringsFromQueue, round);
 
                 if(size >= batchSize) {
                     continueDelivering = true;
                 }
             } catch(Throwable t) {
+                if(isCongestion(t) || isNotReady(t)) {
+                    // The batch is not at fault, so do not load the congested platform with the messages individually
+                    // nor try them individually while the platform does not accept requests
+                    messagesFromQueue.forEach((oneMessageFromQueue) -> rollbackMessageToQueue(oneMessageFromQueue, t));
+                    return false;
+                }
+
                 // Try to publish them individually, to isolate and rollback only the bad one from the batch
-                messagesFromQueue.forEach((oneMessageFromQueue) -> {
-                    if(getSubscriber().isReadyToAcceptMessages()) {
+                Throwable notReady = null;
+                for(Message oneMessageFromQueue : messagesFromQueue) {
+                    if(notReady == null && getSubscriber().isReadyToAcceptMessages()) {
                         try {
-                            getSubscriber().onMessage(oneMessageFromQueue.getPayload());
+                            deliverToSubscriber(oneMessageFromQueue, round);
                         } catch (Throwable t2) {
                             rollbackMessageToQueue(oneMessageFromQueue, t2);
+                            if(isNotReady(t2)) {
+                                notReady = t2;
+                            }
                         }
                     }
                     else {
-                        rollbackMessageToQueue(oneMessageFromQueue, t);
+                        rollbackMessageToQueue(oneMessageFromQueue, (notReady != null) ? notReady : t);
                     }
-                });
+                }
             }
         }
 
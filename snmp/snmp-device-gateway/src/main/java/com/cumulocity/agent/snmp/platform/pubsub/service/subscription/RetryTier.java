@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA, 
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cumulocity.agent.snmp.platform.pubsub.service.subscription;
+
+import com.cumulocity.agent.snmp.persistence.Message;
+import com.cumulocity.agent.snmp.persistence.Queue;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Queues and delays for the messages which failed to be published.
+ *
+ * A failed message waits in a retry queue for its next attempt, the delay doubling with
+ * every failure up to a maximum. Messages exceeding the retry limit go to the dead letter queue.
+ *
+ * There is a retry queue per delay, so that the messages of each retry queue are in the order
+ * of their next attempt, as they are in the order of their failure.
+ */
+public class RetryTier {
+
+    // Shift of the initial delay limited to avoid an overflow, the delay is capped anyway
+    private static final int MAX_SHIFT = 30;
+
+    /**
+     * Retry queues by the level of their delay, the queue at level n holding the messages failed n times
+     * (the last level also those failed more often), the first one also the messages delayed by the initial delay.
+     */
+    @Getter
+    private final List<Queue> retryQueues;
+
+    @Getter
+    private final Queue deadLetterQueue;
+
+    @Getter
+    private final long initialDelayInMillis;
+
+    private final long maxDelayInMillis;
+
+
+    /**
+     * @param retryQueueOfLevel creates the retry queue for the given delay level, starting with 0
+     */
+    public RetryTier(IntFunction<Queue> retryQueueOfLevel, Queue deadLetterQueue, long initialDelayInMillis, long maxDelayInMillis) {
+        if (retryQueueOfLevel == null) {
+            throw new NullPointerException("retryQueueOfLevel");
+        }
+        if (deadLetterQueue == null) {
+            throw new NullPointerException("deadLetterQueue");
+        }
+
+        this.deadLetterQueue = deadLetterQueue;
+        this.initialDelayInMillis = Math.max(0, initialDelayInMillis);
+        this.maxDelayInMillis = Math.max(this.initialDelayInMillis, maxDelayInMillis);
+
+        List<Queue> queues = new ArrayList<>();
+        for (int shift = 0; ; shift++) {
+            Queue retryQueue = retryQueueOfLevel.apply(shift);
+            if (retryQueue == null) {
+                throw new NullPointerException("retryQueue");
+            }
+            queues.add(retryQueue);
+
+            if (delay(shift) >= this.maxDelayInMillis || this.initialDelayInMillis == 0 || shift == MAX_SHIFT) {
+                break;
+            }
+        }
+        this.retryQueues = Collections.unmodifiableList(queues);
+    }
+
+    /**
+     * @return time of the next attempt to publish the message, which failed for the given time
+     */
+    long nextAttemptAt(Message failedMessage, long now) {
+        return now + delay(failedMessage.getBackoutCount());
+    }
+
+    /**
+     * @return retry queue for the message, which failed, before its failure is counted
+     */
+    Queue retryQueueOf(Message failedMessage) {
+        return retryQueues.get(Math.min(failedMessage.getBackoutCount(), retryQueues.size() - 1));
+    }
+
+    /**
+     * @return retry queue for the messages delayed by the initial delay
+     */
+    Queue initialRetryQueue() {
+        return retryQueues.get(0);
+    }
+
+    private long delay(int failureCount) {
+        int shift = Math.min(failureCount, MAX_SHIFT);
+        return Math.min(initialDelayInMillis << shift, maxDelayInMillis);
+    }
+}
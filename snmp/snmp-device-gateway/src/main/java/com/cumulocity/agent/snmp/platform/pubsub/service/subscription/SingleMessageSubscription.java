@@ -30,14 +30,18 @@ public class SingleMessageSubscription extends Subscription {
         super(queue, subscriber, retryLimit);
     }
 
+    public SingleMessageSubscription(Queue queue, Subscriber<?> subscriber, short retryLimit, RetryTier retryTier, SubscriptionMetrics metrics, AdaptiveFlowControl flowControl) {
+        super(queue, subscriber, retryLimit, retryTier, metrics, flowControl);
+    }
+
     @Override
-    protected boolean deliver() {
+    protected boolean deliver(DeliveryRound round) {
         boolean continueDelivering = false;
 
         Message messageFromQueue = getQueue().dequeue();
         if (messageFromQueue != null) {
             try {
-                getSubscriber().onMessage(messageFromQueue.getPayload());
+                deliverToSubscriber(messageFromQueue, round);
 
                 continueDelivering = true;
             } catch(Throwable t) { // Throwable is caught to ensure that the message is not lost on any condition
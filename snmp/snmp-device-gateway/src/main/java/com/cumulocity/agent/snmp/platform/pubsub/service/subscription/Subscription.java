@@ -21,8 +21,14 @@ package com.cumulocity.agent.snmp.platform.pubsub.service.subscription;
 import com.cumulocity.agent.snmp.persistence.Message;
 import com.cumulocity.agent.snmp.persistence.Queue;
 import com.cumulocity.agent.snmp.platform.pubsub.subscriber.Subscriber;
+import com.cumulocity.agent.snmp.platform.pubsub.subscriber.SubscriberException;
+import com.cumulocity.agent.snmp.platform.pubsub.subscriber.SubscriberNotReadyException;
+import com.cumulocity.sdk.client.SDKException;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.http.HttpStatus;
+
+import java.util.Collection;
 
 /**
  * Drains the queue and delivers the messages to the subscriber.
@@ -32,11 +38,29 @@ import lombok.extern.slf4j.Slf4j;
  *
  * Rolls back the read messages if it receives a SubscriberException from Subscriber.
  *
+ * With a RetryTier, the failed messages are delayed in the retry queue of their delay instead of being put back
+ * to the queue, so that they do not hold up the other messages. The retry queues are checked for due messages
+ * at most once a second. Messages exceeding the retry limit are moved to the dead letter queue.
+ * A message failing while the Subscriber is not ready, e.g. as the circuit breaker of its Platform API opened,
+ * is delayed without counting the failure, as the message itself is not the cause.
+ * A message which the Subscriber did not send at all, as the circuit breaker denied the request, is put back
+ * without counting a failure, with or without a RetryTier.
+ *
+ * With an AdaptiveFlowControl, the subscription delivers only while the flow control allows it and
+ * reports the latency and congestion responses of the subscriber back to it. A congestion is reported at most
+ * once per delivery round, i.e. per batch or check of the retry queues, however many of its messages failed.
+ *
  */
 
 @Slf4j
 public abstract class Subscription implements Runnable {
 
+    private static final long RETRY_CHECK_INTERVAL_IN_MILLIS = 1000;
+
+    private static final int MAX_RETRIES_PER_CHECK = 100;
+
+    private static final int HTTP_STATUS_TOO_MANY_REQUESTS = 429;
+
     @Getter
     private final Queue queue;
 
@@ -46,11 +70,29 @@ public abstract class Subscription implements Runnable {
     @Getter
     private final short retryLimit;
 
+    @Getter
+    private final RetryTier retryTier;
+
+    @Getter
+    private final SubscriptionMetrics metrics;
+
+    @Getter
+    private final AdaptiveFlowControl flowControl;
+
+    private volatile long nextRetryCheck = 0;
+
 
     Subscription(Queue queue, Subscriber<?> subscriber, short retryLimit) {
+        this(queue, subscriber, retryLimit, null, new SubscriptionMetrics(), null);
+    }
+
+    Subscription(Queue queue, Subscriber<?> subscriber, short retryLimit, RetryTier retryTier, SubscriptionMetrics metrics, AdaptiveFlowControl flowControl) {
         this.queue = queue;
         this.subscriber = subscriber;
         this.retryLimit = retryLimit;
+        this.retryTier = retryTier;
+        this.metrics = metrics;
+        this.flowControl = flowControl;
     }
 
     @Override
@@ -61,9 +103,25 @@ public abstract class Subscription implements Runnable {
                 return;
             }
 
-            boolean continueDelivering = true;
-            while(!Thread.currentThread().isInterrupted() && continueDelivering) {
-                continueDelivering = deliver();
+            if(flowControl != null && !flowControl.tryStartDelivery()) {
+                // Paused or enough concurrent subscriptions delivering
+                return;
+            }
+
+            try {
+                boolean continueDelivering = true;
+                while(!Thread.currentThread().isInterrupted() && continueDelivering) {
+                    if(retryTier != null && System.currentTimeMillis() >= nextRetryCheck) {
+                        nextRetryCheck = System.currentTimeMillis() + RETRY_CHECK_INTERVAL_IN_MILLIS;
+                        deliverDueRetries(new DeliveryRound());
+                    }
+
+                    continueDelivering = deliver(new DeliveryRound()) && (flowControl == null || !flowControl.isPaused());
+                }
+            } finally {
+                if(flowControl != null) {
+                    flowControl.deliveryFinished();
+                }
             }
         } catch(Throwable t) {
             // Throwable is caught to ensure that the scheduled subscription continues. This logged and ignored.
@@ -71,12 +129,169 @@ public abstract class Subscription implements Runnable {
         }
     }
 
-    protected abstract boolean deliver();
+    /**
+     * @param round delivery round of the calling thread, the same Subscription runs on several threads at once
+     */
+    protected abstract boolean deliver(DeliveryRound round);
+
+    /**
+     * @return maximum number of messages to deliver at once
+     */
+    int getBatchSize() {
+        return (flowControl != null) ? flowControl.getBatchSize() : subscriber.getBatchSize();
+    }
+
+    void deliverToSubscriber(Message message, DeliveryRound round) throws SubscriberException {
+        long start = System.currentTimeMillis();
+        try {
+            subscriber.onMessage(message.getPayload());
+        } catch(SubscriberException e) {
+            reportCongestion(e, round);
+            throw e;
+        }
+        delivered(1, System.currentTimeMillis() - start);
+    }
+
+    void deliverToSubscriber(Collection<String> payloads, DeliveryRound round) throws SubscriberException {
+        long start = System.currentTimeMillis();
+        try {
+            subscriber.onMessages(payloads);
+        } catch(SubscriberException e) {
+            reportCongestion(e, round);
+            throw e;
+        }
+        delivered(payloads.size(), System.currentTimeMillis() - start);
+    }
+
+    private void delivered(int count, long latencyInMillis) {
+        metrics.delivered(count, latencyInMillis);
+        if(flowControl != null) {
+            flowControl.onSuccess(count, latencyInMillis);
+        }
+    }
+
+    private void reportCongestion(SubscriberException e, DeliveryRound round) {
+        if(flowControl == null || round.congestionReported || !isCongestion(e)) {
+            return;
+        }
+
+        round.congestionReported = true;
+        flowControl.onCongestion(((SDKException) e.getCause()).getHttpStatus());
+    }
+
+    /**
+     * @return true if the subscriber failed as the platform responded with 429 or 5xx
+     */
+    static boolean isCongestion(Throwable t) {
+        if(!(t instanceof SubscriberException) || !(t.getCause() instanceof SDKException)) {
+            return false;
+        }
+
+        int httpStatus = ((SDKException) t.getCause()).getHttpStatus();
+        return httpStatus == HTTP_STATUS_TOO_MANY_REQUESTS || httpStatus >= HttpStatus.SC_INTERNAL_SERVER_ERROR;
+    }
+
+    /**
+     * @return true if the subscriber did not send anything, as the platform API does not accept requests
+     */
+    static boolean isNotReady(Throwable t) {
+        return t instanceof SubscriberNotReadyException;
+    }
+
+    private void delayUntilSubscriberIsReady(Message message) {
+        try {
+            if(retryTier == null) {
+                queue.enqueue(message);
+                return;
+            }
+
+            message.setRetryAt(System.currentTimeMillis() + retryTier.getInitialDelayInMillis());
+            retryTier.initialRetryQueue().enqueue(message);
+        } catch(Throwable t) {
+            log.error("Unexpected error occurred while storing the following {} for a retry, hence it will not be retried.\n{}", getQueue().getName().toLowerCase(), message.getPayload(), t);
+        }
+    }
+
+    /**
+     * Delivers the messages from the heads of the retry queues, which are due for another attempt.
+     * All the messages of a retry queue have the same delay, so each retry queue is in the order of the
+     * next attempt and a message not yet due is followed only by messages not yet due either.
+     */
+    private void deliverDueRetries(DeliveryRound round) {
+        int budget = MAX_RETRIES_PER_CHECK;
+        for(Queue retryQueue : retryTier.getRetryQueues()) {
+            budget = deliverDueRetries(retryQueue, budget, round);
+            if(budget <= 0) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return remaining number of messages to deliver in this check
+     */
+    private int deliverDueRetries(Queue retryQueue, int budget, DeliveryRound round) {
+        while(budget > 0 && subscriber.isReadyToAcceptMessages()) {
+            Message head = retryQueue.peek();
+            if(head == null || head.getRetryAt() > System.currentTimeMillis()) {
+                return budget;
+            }
+
+            Message message = retryQueue.dequeue();
+            if(message == null) {
+                return budget;
+            }
+            if(message.getRetryAt() > System.currentTimeMillis()) {
+                // The due message was taken by a concurrent subscription meanwhile
+                retryQueue.enqueue(message);
+                return budget;
+            }
+
+            budget--;
+            try {
+                deliverToSubscriber(message, round);
+            } catch(Throwable t) { // Throwable is caught to ensure that the message is not lost on any condition
+                rollbackMessageToQueue(message, t);
+
+                if(isCongestion(t) || isNotReady(t)) {
+                    // Leave the other due messages for the next check, as the platform is congested or not ready
+                    return 0;
+                }
+            }
+        }
+
+        return 0;
+    }
 
     void rollbackMessageToQueue(Message message, Throwable throwable) {
+        if(isNotReady(throwable)) {
+            delayUntilSubscriberIsReady(message);
+            return;
+        }
+
+        metrics.failed();
+
+        if(retryTier != null && !subscriber.isReadyToAcceptMessages()) {
+            delayUntilSubscriberIsReady(message);
+            return;
+        }
+
         if(message.getBackoutCount() + 1 > getRetryLimit()) {
-            log.error("Skipped publishing the following {} to the Platform, as the failure count for publishing it has exceeded the configured retry limit. Error message: {}.\n{}", getQueue().getName().toLowerCase(), throwable.getMessage(), message.getPayload());
+            if(retryTier == null) {
+                log.error("Skipped publishing the following {} to the Platform, as the failure count for publishing it has exceeded the configured retry limit. Error message: {}.\n{}", getQueue().getName().toLowerCase(), throwable.getMessage(), message.getPayload());
+                log.debug(throwable.getMessage(), throwable);
+                return;
+            }
+
+            log.error("Moved the following {} to the '{}' Queue, as the failure count for publishing it has exceeded the configured retry limit. Error message: {}.\n{}", getQueue().getName().toLowerCase(), retryTier.getDeadLetterQueue().getName(), throwable.getMessage(), message.getPayload());
             log.debug(throwable.getMessage(), throwable);
+            try {
+                message.setRetryAt(0);
+                retryTier.getDeadLetterQueue().enqueue(message);
+                metrics.deadLettered();
+            } catch(Throwable t) {
+                log.error("Unexpected error occurred while storing the following {} in the '{}' Queue, hence it is skipped.\n{}", getQueue().getName().toLowerCase(), retryTier.getDeadLetterQueue().getName(), message.getPayload(), t);
+            }
         }
         else {
             if(message.getBackoutCount() == 0) {
@@ -85,11 +300,26 @@ public abstract class Subscription implements Runnable {
                 log.debug(throwable.getMessage(), throwable);
             }
             try {
-                queue.backout(message);
+                if(retryTier == null) {
+                    queue.backout(message);
+                }
+                else {
+                    message.setRetryAt(retryTier.nextAttemptAt(message, System.currentTimeMillis()));
+                    retryTier.retryQueueOf(message).backout(message);
+                }
             } catch(Throwable t) {
                 // Log this message string and the exception as we can't do much and continue to execute the loop
                 log.error("Unexpected error occurred while storing the following {} for a retry, hence it will not be retried.\n{}", getQueue().getName().toLowerCase(), message.getPayload(), t);
             }
         }
     }
+
+    /**
+     * State of one delivery round, i.e. of a batch or a check of the retry queues, of one thread.
+     */
+    static final class DeliveryRound {
+
+        // Whether a congestion was reported to the flow control in this round
+        private boolean congestionReported = false;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA, 
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cumulocity.agent.snmp.platform.pubsub.service.subscription;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of the deliveries of a subscription to its subscriber, kept across resubscriptions.
+ *
+ * The delivery latency is the time a call to the subscriber takes, counted in buckets by their upper bound.
+ */
+public class SubscriptionMetrics {
+
+    static final long[] LATENCY_BUCKET_BOUNDS_IN_MILLIS = {10, 50, 100, 250, 500, 1000, 2500, 5000, 10000, Long.MAX_VALUE};
+
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder deadLettered = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchedMessages = new LongAdder();
+    private final LongAdder deliveryTimeInMillis = new LongAdder();
+    private final LongAdder deliveryCalls = new LongAdder();
+    private final LongAdder[] latencyBuckets = new LongAdder[LATENCY_BUCKET_BOUNDS_IN_MILLIS.length];
+
+    public SubscriptionMetrics() {
+        for (int i = 0; i < latencyBuckets.length; i++) {
+            latencyBuckets[i] = new LongAdder();
+        }
+    }
+
+    void delivered(int count, long latencyInMillis) {
+        delivered.add(count);
+
+        deliveryCalls.increment();
+        deliveryTimeInMillis.add(latencyInMillis);
+        for (int i = 0; i < LATENCY_BUCKET_BOUNDS_IN_MILLIS.length; i++) {
+            if (latencyInMillis <= LATENCY_BUCKET_BOUNDS_IN_MILLIS[i]) {
+                latencyBuckets[i].increment();
+                break;
+            }
+        }
+    }
+
+    void batchDrained(int size) {
+        batches.increment();
+        batchedMessages.add(size);
+    }
+
+    void failed() {
+        failed.increment();
+    }
+
+    void deadLettered() {
+        deadLettered.increment();
+    }
+
+    public long getDeliveredCount() {
+        return delivered.sum();
+    }
+
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    public long getDeadLetteredCount() {
+        return deadLettered.sum();
+    }
+
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    public long getBatchedMessageCount() {
+        return batchedMessages.sum();
+    }
+
+    public double getAverageDeliveryLatencyInMillis() {
+        long calls = deliveryCalls.sum();
+        return (calls == 0) ? 0 : (double) deliveryTimeInMillis.sum() / calls;
+    }
+
+    /**
+     * @return upper bound of the latency bucket, below which the given percentage of the deliveries completed
+     */
+    public long getDeliveryLatencyPercentileInMillis(double percentage) {
+        long calls = 0;
+        long[] counts = new long[latencyBuckets.length];
+        for (int i = 0; i < latencyBuckets.length; i++) {
+            counts[i] = latencyBuckets[i].sum();
+            calls += counts[i];
+        }
+        if (calls == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(calls * percentage / 100);
+        long cumulated = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulated += counts[i];
+            if (cumulated >= rank) {
+                return LATENCY_BUCKET_BOUNDS_IN_MILLIS[i];
+            }
+        }
+
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * @return number of the deliveries per latency bucket, keyed by the bucket's upper bound
+     */
+    public Map<String, Long> getDeliveryLatencyHistogram() {
+        Map<String, Long> histogram = new LinkedHashMap<>();
+        for (int i = 0; i < latencyBuckets.length; i++) {
+            long bound = LATENCY_BUCKET_BOUNDS_IN_MILLIS[i];
+            histogram.put((bound == Long.MAX_VALUE) ? "+Inf" : "<=" + bound + "ms", latencyBuckets[i].sum());
+        }
+
+        return histogram;
+    }
+}
@@ -20,6 +20,7 @@ package com.cumulocity.agent.snmp.platform.pubsub.subscriber;
 
 import com.cumulocity.agent.snmp.config.GatewayProperties;
 import com.cumulocity.agent.snmp.platform.pubsub.service.AlarmPubSub;
+import com.cumulocity.agent.snmp.platform.service.PlatformApi;
 import com.cumulocity.sdk.client.alarm.AlarmApi;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -41,6 +42,11 @@ public class AlarmSubscriber extends Subscriber<AlarmPubSub> {
 		return (count <= 0) ? 1 : count;
 	}
 
+	@Override
+	public PlatformApi getPlatformApi() {
+		return PlatformApi.ALARM;
+	}
+
 	@Override
 	public boolean isBatchingSupported() {
 		return false;
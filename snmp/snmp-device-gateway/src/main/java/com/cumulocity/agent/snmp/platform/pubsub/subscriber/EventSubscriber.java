@@ -20,6 +20,7 @@ package com.cumulocity.agent.snmp.platform.pubsub.subscriber;
 
 import com.cumulocity.agent.snmp.config.GatewayProperties;
 import com.cumulocity.agent.snmp.platform.pubsub.service.EventPubSub;
+import com.cumulocity.agent.snmp.platform.service.PlatformApi;
 import com.cumulocity.sdk.client.event.EventApi;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -41,6 +42,11 @@ public class EventSubscriber extends Subscriber<EventPubSub> {
 		return (count <= 0) ? 1 : count;
 	}
 
+	@Override
+	public PlatformApi getPlatformApi() {
+		return PlatformApi.EVENT;
+	}
+
 	@Override
 	public boolean isBatchingSupported() {
 		return false;
@@ -20,6 +20,7 @@ package com.cumulocity.agent.snmp.platform.pubsub.subscriber;
 
 import com.cumulocity.agent.snmp.config.GatewayProperties;
 import com.cumulocity.agent.snmp.platform.pubsub.service.MeasurementPubSub;
+import com.cumulocity.agent.snmp.platform.service.PlatformApi;
 import com.cumulocity.sdk.client.measurement.MeasurementApi;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -35,6 +36,11 @@ public class MeasurementSubscriber extends Subscriber<MeasurementPubSub> {
     @Autowired
     private MeasurementApi measurementApi;
 
+    @Override
+    public PlatformApi getPlatformApi() {
+        return PlatformApi.MEASUREMENT;
+    }
+
     @Override
     public boolean isBatchingSupported() {
         return true;
@@ -22,6 +22,7 @@ import com.cumulocity.agent.snmp.bootstrap.model.BootstrapReadyEvent;
 import com.cumulocity.agent.snmp.platform.model.GatewayDataRefreshedEvent;
 import com.cumulocity.agent.snmp.platform.pubsub.service.PubSub;
 import com.cumulocity.agent.snmp.platform.service.GatewayDataProvider;
+import com.cumulocity.agent.snmp.platform.service.PlatformApi;
 import com.cumulocity.agent.snmp.platform.service.PlatformProvider;
 import com.cumulocity.sdk.client.SDKException;
 import lombok.extern.slf4j.Slf4j;
@@ -38,6 +39,11 @@ import java.util.Collection;
  * refreshes subscription on GatewayDataRefreshedEvent and
  * unsubscribes on PreDestroy Spring callback.
  *
+ * The outcomes of the requests to the Platform are recorded in the circuit breaker of the Platform API
+ * used by the subscriber, which suspends the subscriber while the API keeps failing. Every request is sent
+ * only with the permission of the circuit breaker, so that a recovering API gets a single trial request.
+ * A request denied by the circuit breaker fails with a SubscriberNotReadyException.
+ *
  * @param <PS> PubSub service to subscribe to.
  */
 @Slf4j
@@ -61,9 +67,14 @@ public abstract class Subscriber<PS extends PubSub<?>> {
     }
 
     public boolean isReadyToAcceptMessages() {
-        return platformProvider.isPlatformAvailable();
+        return platformProvider.isPlatformAvailable() && platformProvider.isPlatformAvailable(getPlatformApi());
     }
 
+    /**
+     * @return the Platform API the messages are published to
+     */
+    public abstract PlatformApi getPlatformApi();
+
     public abstract boolean isBatchingSupported();
 
     public abstract int getBatchSize();
@@ -71,33 +82,45 @@ public abstract class Subscriber<PS extends PubSub<?>> {
     public abstract int getConcurrentSubscriptionsCount();
 
     public void onMessage(String message) throws SubscriberException {
+        acquirePermission();
         try {
             handleMessage(message);
+            platformProvider.recordSuccess(getPlatformApi());
         } catch(SDKException sdke) {
-            if(sdke.getHttpStatus() >= HttpStatus.SC_INTERNAL_SERVER_ERROR) {
-                // Unable to publish as the platform is unavailable
-                platformProvider.markPlatfromAsUnavailable();
-                log.debug("'{}' Subscriber has marked the platform as unavailable.", this.getClass().getSimpleName());
-            }
-
-            throw new SubscriberException(sdke.getMessage(), sdke);
+            throw toSubscriberException(sdke);
+        } finally {
+            platformProvider.releasePermission(getPlatformApi());
         }
     }
 
     public void onMessages(Collection<String> messageCollection) throws SubscriberException {
+        acquirePermission();
         try {
             handleMessages(messageCollection);
+            platformProvider.recordSuccess(getPlatformApi());
         } catch(SDKException sdke) {
-            if(sdke.getHttpStatus() >= HttpStatus.SC_INTERNAL_SERVER_ERROR) {
-                // Unable to publish as the platform is unavailable
-                platformProvider.markPlatfromAsUnavailable();
-                log.debug("'{}' Subscriber has marked the platform as unavailable.", this.getClass().getSimpleName());
-            }
+            throw toSubscriberException(sdke);
+        } finally {
+            platformProvider.releasePermission(getPlatformApi());
+        }
+    }
 
-            throw new SubscriberException(sdke.getMessage(), sdke);
+    private void acquirePermission() throws SubscriberException {
+        if(!platformProvider.tryAcquirePermission(getPlatformApi())) {
+            throw new SubscriberNotReadyException("Platform " + getPlatformApi().name().toLowerCase() + " API does not accept requests at the moment.");
         }
     }
 
+    private SubscriberException toSubscriberException(SDKException sdke) {
+        if(sdke.getHttpStatus() >= HttpStatus.SC_INTERNAL_SERVER_ERROR) {
+            // Unable to publish as the platform API is unavailable
+            platformProvider.recordFailure(getPlatformApi());
+            log.debug("'{}' Subscriber has recorded a failure of the Platform {} API.", this.getClass().getSimpleName(), getPlatformApi().name().toLowerCase());
+        }
+
+        return new SubscriberException(sdke.getMessage(), sdke);
+    }
+
     protected abstract void handleMessage(String message);
 
     protected void handleMessages(Collection<String> messageCollection) {
@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA, 
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cumulocity.agent.snmp.platform.pubsub.subscriber;
+
+/**
+ * Thrown when the Subscriber did not send the message(s) at all, as the Platform API does not accept
+ * requests at the moment. The message(s) did not fail, so this must not count as a failure of them.
+ */
+public class SubscriberNotReadyException extends SubscriberException {
+
+    private static final long serialVersionUID = 1L;
+
+    public SubscriberNotReadyException(String message) {
+        super(message, null);
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA, 
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cumulocity.agent.snmp.platform.repository;
+
+import com.cumulocity.agent.snmp.config.GatewayProperties;
+import com.cumulocity.agent.snmp.persistence.AbstractMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Repository;
+
+import java.nio.file.Paths;
+
+/**
+ * Suppression state of the alarms raised by the gateway itself, so that the suppression windows
+ * and the number of suppressed alarms survive restarts. The key is the alarm type.
+ */
+@Repository
+public class AlarmSuppressionStore extends AbstractMap<String, String> {
+
+    private static final String ALARM_SUPPRESSION_STORE = "alarm-suppression-store";
+
+    @Autowired
+    AlarmSuppressionStore(GatewayProperties gatewayProperties) {
+        super(ALARM_SUPPRESSION_STORE,
+                String.class,
+                60,
+                String.class,
+                150,
+                10_000, // One entry per alarm type within its suppression window
+                Paths.get(
+                        gatewayProperties.getGatewayDatabaseBaseDir(),
+                        ".snmp",
+                        gatewayProperties.getGatewayIdentifier().toLowerCase(),
+                        "chronicle",
+                        "maps",
+                        ALARM_SUPPRESSION_STORE.toLowerCase() + ".dat").toFile()
+        );
+    }
+}
@@ -0,0 +1,425 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA, 
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cumulocity.agent.snmp.platform.service;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+
+import com.cumulocity.agent.snmp.bootstrap.model.BootstrapReadyEvent;
+import com.cumulocity.agent.snmp.config.GatewayProperties;
+import com.cumulocity.agent.snmp.platform.model.AlarmMapping;
+import com.cumulocity.agent.snmp.platform.model.AlarmSeverity;
+import com.cumulocity.agent.snmp.platform.pubsub.publisher.AlarmPublisher;
+import com.cumulocity.agent.snmp.platform.repository.AlarmSuppressionStore;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Publishes the alarms raised by the gateway itself, suppressing their repetitions before they are queued.
+ * <ul>
+ * <li>An alarm type is published once within {@code gateway.alarmSuppression.window} seconds, its further
+ * occurrences are only counted and published as one summary alarm when the window ends.</li>
+ * <li>At most {@code gateway.alarmSuppression.rateLimit} alarms per minute are published for all the unknown
+ * devices sending traps, i.e. for the alarm type prefix c8y_TRAPReceivedFromUnknownDevice. The alarms over the
+ * limit are published as one summary alarm of the prefix, listing the suppressed alarm type suffixes.
+ * The other alarm types, e.g. c8y_DeviceNotResponding, are only rate limited if overridden.</li>
+ * </ul>
+ * Both settings can be overridden per alarm type prefix with {@code gateway.alarmSuppression.overrides}.
+ * The summary alarms have their own type, e.g. c8y_DeviceNotResponding_Summary-192.168.0.1, as the platform
+ * would otherwise only increment the count of the still active alarm of the same type and drop the summary text.
+ * The windows and the counts are kept in the {@link AlarmSuppressionStore}, so that they survive restarts.
+ */
+@Slf4j
+@Service
+public class AlarmSuppressionService {
+
+	private static final Duration SUMMARY_INTERVAL = Duration.ofSeconds(10);
+
+	private static final String SEPARATOR = ";";
+
+	private static final String RATE_LIMITED_ALARM_TYPE_PREFIX = getAlarmTypePrefix(AlarmMapping.c8y_TRAPReceivedFromUnknownDevice);
+
+	static final String SUMMARY_TYPE_SUFFIX = "_Summary";
+
+	private static final int MAX_LISTED_SUPPRESSED_SUFFIXES = 20;
+
+	@Autowired
+	private GatewayProperties gatewayProperties;
+
+	@Autowired
+	private GatewayDataProvider gatewayDataProvider;
+
+	@Autowired
+	private AlarmPublisher alarmPublisher;
+
+	@Autowired
+	private TaskScheduler taskScheduler;
+
+	@Autowired
+	private AlarmSuppressionStore alarmSuppressionStore;
+
+	private final ConcurrentMap<String, SuppressedAlarm> suppressedAlarms = new ConcurrentHashMap<>();
+
+	private final ConcurrentMap<String, AlarmTypePolicy> policies = new ConcurrentHashMap<>();
+
+	private ScheduledFuture<?> summaryReporter;
+
+	@PostConstruct
+	void init() {
+		Map<String, String> invalidEntries = new HashMap<>();
+		alarmSuppressionStore.forEach((alarmType, value) -> {
+			SuppressedAlarm suppressedAlarm = SuppressedAlarm.parse(value);
+			if (suppressedAlarm != null) {
+				suppressedAlarms.put(alarmType, suppressedAlarm);
+			} else {
+				invalidEntries.put(alarmType, value);
+			}
+		});
+		invalidEntries.forEach(alarmSuppressionStore::remove);
+
+		if (!suppressedAlarms.isEmpty()) {
+			log.info("Restored the suppression state of {} alarm(s) raised by the gateway", suppressedAlarms.size());
+		}
+	}
+
+	@EventListener(BootstrapReadyEvent.class)
+	void scheduleSummaryReporting() {
+		if (summaryReporter == null) {
+			summaryReporter = taskScheduler.scheduleWithFixedDelay(this::reportSummaries, SUMMARY_INTERVAL);
+		}
+	}
+
+	@PreDestroy
+	void stop() {
+		if (summaryReporter != null) {
+			summaryReporter.cancel(true);
+			summaryReporter = null;
+		}
+
+		suppressedAlarms.forEach(this::save);
+	}
+
+	/**
+	 * Publishes the alarm with the gateway device as its source, unless it is suppressed.
+	 * A suppressed alarm only increments a counter.
+	 *
+	 * @return true if the alarm was published
+	 */
+	public boolean publish(AlarmMapping alarmMapping) {
+		String alarmType = alarmMapping.getType();
+
+		SuppressedAlarm suppressedAlarm = suppressedAlarms.get(alarmType);
+		if (suppressedAlarm != null) {
+			suppressedAlarm.suppressedCount.increment();
+			return false;
+		}
+
+		long now = System.currentTimeMillis();
+		AlarmTypePolicy policy = policies.computeIfAbsent(getAlarmTypePrefix(alarmType), this::createPolicy);
+		if (policy.windowInMillis <= 0) {
+			if (!policy.tryAcquire(now)) {
+				policy.recordRateLimited(alarmType);
+				return false;
+			}
+
+			publishAlarm(alarmType, alarmMapping.getSeverity(), alarmMapping.getText());
+			return true;
+		}
+
+		SuppressedAlarm newSuppressedAlarm = new SuppressedAlarm(now, now + policy.windowInMillis,
+				alarmMapping.getSeverity(), alarmMapping.getText());
+		suppressedAlarm = suppressedAlarms.putIfAbsent(alarmType, newSuppressedAlarm);
+		if (suppressedAlarm != null) {
+			// Raised concurrently by another thread
+			suppressedAlarm.suppressedCount.increment();
+			return false;
+		}
+
+		newSuppressedAlarm.published = policy.tryAcquire(now);
+		if (!newSuppressedAlarm.published) {
+			newSuppressedAlarm.suppressedCount.increment();
+		}
+		save(alarmType, newSuppressedAlarm);
+
+		if (newSuppressedAlarm.published) {
+			publishAlarm(alarmType, alarmMapping.getSeverity(), alarmMapping.getText());
+		}
+
+		return newSuppressedAlarm.published;
+	}
+
+	/**
+	 * Ends the elapsed suppression windows, publishing the summary alarms of the suppressed alarms,
+	 * and saves the counts of the other windows.
+	 */
+	void reportSummaries() {
+		try {
+			long now = System.currentTimeMillis();
+			Map<String, Long> rateLimitedCounts = new HashMap<>();
+			Map<String, Set<String>> rateLimitedTypes = new HashMap<>();
+
+			suppressedAlarms.forEach((alarmType, suppressedAlarm) -> {
+				if (now < suppressedAlarm.windowEnd) {
+					save(alarmType, suppressedAlarm);
+					return;
+				}
+
+				if (!suppressedAlarms.remove(alarmType, suppressedAlarm)) {
+					return;
+				}
+				alarmSuppressionStore.remove(alarmType);
+
+				long suppressedCount = suppressedAlarm.suppressedCount.sum();
+				if (suppressedCount == 0) {
+					return;
+				}
+
+				if (suppressedAlarm.published) {
+					publishAlarm(getSummaryAlarmType(alarmType), suppressedAlarm.severity, suppressedAlarm.text
+							+ " The alarm occurred " + suppressedCount + " more time(s) within "
+							+ (suppressedAlarm.windowEnd - suppressedAlarm.windowStart) / 1000 + " seconds.");
+				} else {
+					String alarmTypePrefix = getAlarmTypePrefix(alarmType);
+					rateLimitedCounts.merge(alarmTypePrefix, suppressedCount, Long::sum);
+					rateLimitedTypes.computeIfAbsent(alarmTypePrefix, prefix -> new TreeSet<>()).add(alarmType);
+				}
+			});
+
+			policies.forEach((alarmTypePrefix, policy) -> {
+				long rateLimitedCount = policy.rateLimitedCount.sumThenReset();
+				if (rateLimitedCount > 0) {
+					rateLimitedCounts.merge(alarmTypePrefix, rateLimitedCount, Long::sum);
+					rateLimitedTypes.computeIfAbsent(alarmTypePrefix, prefix -> new TreeSet<>()).addAll(policy.drainRateLimitedTypes());
+				}
+			});
+
+			rateLimitedCounts.forEach((alarmTypePrefix, rateLimitedCount) -> {
+				String suffixes = formatSuffixes(alarmTypePrefix, rateLimitedTypes.get(alarmTypePrefix));
+				log.warn("{} alarm(s) of type {} were suppressed by the rate limit{}", rateLimitedCount, alarmTypePrefix, suffixes);
+				publishAlarm(getSummaryAlarmType(alarmTypePrefix), AlarmSeverity.MAJOR.name(), rateLimitedCount
+						+ " alarm(s) of type " + alarmTypePrefix
+						+ " were suppressed, as the gateway raised more of them than allowed per minute." + suffixes);
+			});
+		} catch (Throwable t) {
+			log.error("Error while publishing the summary of the suppressed alarms", t);
+		}
+	}
+
+	private AlarmTypePolicy createPolicy(String alarmTypePrefix) {
+		// The default rate limit is meant for the traps of unknown devices only. Dropping e.g. the
+		// c8y_DeviceNotResponding alarms of known devices would hide which devices are down.
+		int rateLimit = 0;
+		if (RATE_LIMITED_ALARM_TYPE_PREFIX.equals(alarmTypePrefix)
+				|| gatewayProperties.hasAlarmSuppressionOverride(alarmTypePrefix)) {
+			rateLimit = gatewayProperties.getAlarmSuppressionRateLimit(alarmTypePrefix);
+		}
+
+		return new AlarmTypePolicy(gatewayProperties.getAlarmSuppressionWindow(alarmTypePrefix) * 1000L, rateLimit);
+	}
+
+	/**
+	 * @return " Suppressed: " followed by the alarm type suffixes, e.g. the device IPs, or an empty string
+	 */
+	private static String formatSuffixes(String alarmTypePrefix, Set<String> alarmTypes) {
+		if (alarmTypes == null) {
+			return "";
+		}
+
+		StringBuilder suffixes = new StringBuilder();
+		int listed = 0;
+		for (String alarmType : alarmTypes) {
+			if (alarmType.length() <= alarmTypePrefix.length() + 1) {
+				continue;
+			}
+			if (listed == MAX_LISTED_SUPPRESSED_SUFFIXES) {
+				suffixes.append(", ...");
+				break;
+			}
+
+			suffixes.append((listed == 0) ? " Suppressed: " : ", ").append(alarmType.substring(alarmTypePrefix.length() + 1));
+			listed++;
+		}
+
+		return suffixes.toString();
+	}
+
+	private void publishAlarm(String type, String severity, String text) {
+		AlarmMapping alarmMapping = new AlarmMapping();
+		alarmMapping.setType(type);
+		alarmMapping.setSeverity(severity);
+		alarmMapping.setText(text);
+
+		alarmPublisher.publish(alarmMapping.buildAlarmRepresentation(gatewayDataProvider.getGatewayDevice().getManagedObject()));
+	}
+
+	private void save(String alarmType, SuppressedAlarm suppressedAlarm) {
+		long suppressedCount = suppressedAlarm.suppressedCount.sum();
+		if (suppressedAlarm.savedCount == suppressedCount) {
+			return;
+		}
+
+		try {
+			alarmSuppressionStore.put(alarmType, suppressedAlarm.format(suppressedCount));
+			suppressedAlarm.savedCount = suppressedCount;
+		} catch (RuntimeException e) {
+			// The suppression keeps working in memory, only a restart would reset it
+			log.debug("Failed to save the suppression state of the alarm {}", alarmType, e);
+		}
+	}
+
+	/**
+	 * @return the part of the alarm type before the first '-', e.g. c8y_TRAPReceivedFromUnknownDevice
+	 *         for c8y_TRAPReceivedFromUnknownDevice-192.168.0.1
+	 */
+	static String getAlarmTypePrefix(String alarmType) {
+		int index = alarmType.indexOf('-');
+		return (index > 0) ? alarmType.substring(0, index) : alarmType;
+	}
+
+	/**
+	 * @return the type of the summary alarm, e.g. c8y_TRAPReceivedFromUnknownDevice_Summary-192.168.0.1
+	 *         for c8y_TRAPReceivedFromUnknownDevice-192.168.0.1
+	 */
+	static String getSummaryAlarmType(String alarmType) {
+		String alarmTypePrefix = getAlarmTypePrefix(alarmType);
+		return alarmTypePrefix + SUMMARY_TYPE_SUFFIX + alarmType.substring(alarmTypePrefix.length());
+	}
+
+	private static final class SuppressedAlarm {
+
+		private final long windowStart;
+
+		private final long windowEnd;
+
+		private final String severity;
+
+		private final String text;
+
+		private final LongAdder suppressedCount = new LongAdder();
+
+		private volatile boolean published;
+
+		private volatile long savedCount = -1;
+
+		private SuppressedAlarm(long windowStart, long windowEnd, String severity, String text) {
+			this.windowStart = windowStart;
+			this.windowEnd = windowEnd;
+			this.severity = severity;
+			this.text = text;
+		}
+
+		private String format(long suppressedCount) {
+			return windowStart + SEPARATOR + windowEnd + SEPARATOR + suppressedCount + SEPARATOR + published
+					+ SEPARATOR + severity + SEPARATOR + text;
+		}
+
+		private static SuppressedAlarm parse(String value) {
+			String[] parts = value.split(SEPARATOR, 6);
+			if (parts.length != 6) {
+				return null;
+			}
+
+			try {
+				SuppressedAlarm suppressedAlarm = new SuppressedAlarm(Long.parseLong(parts[0]), Long.parseLong(parts[1]),
+						parts[4], parts[5]);
+				suppressedAlarm.suppressedCount.add(Long.parseLong(parts[2]));
+				suppressedAlarm.published = Boolean.parseBoolean(parts[3]);
+				suppressedAlarm.savedCount = suppressedAlarm.suppressedCount.sum();
+				return suppressedAlarm;
+			} catch (NumberFormatException e) {
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * Suppression window and token bucket rate limit of one alarm type prefix.
+	 */
+	private static final class AlarmTypePolicy {
+
+		private final long windowInMillis;
+
+		private final int rateLimit;
+
+		private final LongAdder rateLimitedCount = new LongAdder();
+
+		private final Set<String> rateLimitedTypes = ConcurrentHashMap.newKeySet();
+
+		private double tokens;
+
+		private long lastRefill;
+
+		private AlarmTypePolicy(long windowInMillis, int rateLimit) {
+			this.windowInMillis = windowInMillis;
+			this.rateLimit = rateLimit;
+			this.tokens = rateLimit;
+		}
+
+		private void recordRateLimited(String alarmType) {
+			rateLimitedCount.increment();
+			// Only as many as listed in the summary, the count covers the rest
+			if (rateLimitedTypes.size() <= MAX_LISTED_SUPPRESSED_SUFFIXES) {
+				rateLimitedTypes.add(alarmType);
+			}
+		}
+
+		private Set<String> drainRateLimitedTypes() {
+			Set<String> drained = new TreeSet<>();
+			for (String alarmType : rateLimitedTypes) {
+				if (rateLimitedTypes.remove(alarmType)) {
+					drained.add(alarmType);
+				}
+			}
+			return drained;
+		}
+
+		private synchronized boolean tryAcquire(long now) {
+			if (rateLimit <= 0) {
+				return true;
+			}
+
+			if (lastRefill > 0) {
+				tokens = Math.min(rateLimit, tokens + (now - lastRefill) * rateLimit / 60_000d);
+			}
+			lastRefill = now;
+
+			if (tokens < 1) {
+				return false;
+			}
+
+			tokens--;
+			return true;
+		}
+	}
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA, 
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cumulocity.agent.snmp.platform.service;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Circuit breaker for the requests to one Platform API.
+ *
+ * While CLOSED, the outcomes of the last {@code windowSize} requests are recorded and the breaker opens
+ * once at least {@code minimumCalls} of them are recorded and their failure rate reaches the threshold.
+ * While OPEN, no requests are allowed. Once the open duration elapsed, the API is probed and the breaker
+ * turns HALF_OPEN on a successful probe, allowing a single trial request at a time. A successful trial request
+ * closes the breaker, a failed trial request or probe opens it again for twice the previous duration, up to the
+ * maximum. The open duration is jittered, so that several gateways do not probe the Platform at once.
+ * <p>
+ * A request is sent only after {@link #tryAcquirePermission()} granted it, and the permission is released once
+ * its outcome is known, recorded or not.
+ */
+@Slf4j
+public class CircuitBreaker {
+
+	public enum State {
+		CLOSED,
+		OPEN,
+		HALF_OPEN
+	}
+
+	/**
+	 * Notified of the state transitions, while the breaker is locked.
+	 */
+	public interface StateListener {
+
+		void onStateChange(CircuitBreaker circuitBreaker, State fromState, State toState);
+	}
+
+	@Getter
+	private final String name;
+
+	private final int failureRateThreshold;
+
+	private final int minimumCalls;
+
+	private final long openDuration;
+
+	private final long maxOpenDuration;
+
+	// Ring buffer of the outcomes of the last requests, true for a failure
+	private final boolean[] outcomes;
+
+	private int nextOutcome = 0;
+
+	private int recordedOutcomes = 0;
+
+	private int recordedFailures = 0;
+
+	@Getter
+	private volatile State state = State.CLOSED;
+
+	private long currentOpenDuration;
+
+	private long openUntil = 0;
+
+	// Whether the single trial request of the HALF_OPEN state was granted
+	private final AtomicBoolean trialRequestGranted = new AtomicBoolean(false);
+
+	private final StateListener stateListener;
+
+	public CircuitBreaker(String name, int failureRateThreshold, int windowSize, int minimumCalls, long openDuration, long maxOpenDuration) {
+		this(name, failureRateThreshold, windowSize, minimumCalls, openDuration, maxOpenDuration, null);
+	}
+
+	public CircuitBreaker(String name, int failureRateThreshold, int windowSize, int minimumCalls, long openDuration, long maxOpenDuration,
+			StateListener stateListener) {
+		this.name = name;
+		this.failureRateThreshold = Math.max(1, Math.min(100, failureRateThreshold));
+		this.outcomes = new boolean[Math.max(1, windowSize)];
+		this.minimumCalls = Math.max(1, Math.min(this.outcomes.length, minimumCalls));
+		this.openDuration = Math.max(0, openDuration);
+		this.maxOpenDuration = Math.max(this.openDuration, maxOpenDuration);
+		this.currentOpenDuration = this.openDuration;
+		this.stateListener = stateListener;
+	}
+
+	/**
+	 * @return false while the breaker is open or its trial request is in progress
+	 */
+	public boolean allowsRequests() {
+		State currentState = state;
+		return currentState == State.CLOSED || (currentState == State.HALF_OPEN && !trialRequestGranted.get());
+	}
+
+	/**
+	 * @return true if a request may be sent, while HALF_OPEN only for the first caller until the trial request is released
+	 */
+	public boolean tryAcquirePermission() {
+		switch (state) {
+			case CLOSED:
+				return true;
+			case HALF_OPEN:
+				return trialRequestGranted.compareAndSet(false, true);
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Releases the permission of a request, whose outcome is known. Lets another trial request through,
+	 * if the outcome of the trial request did not change the state.
+	 */
+	public void releasePermission() {
+		trialRequestGranted.set(false);
+	}
+
+	public synchronized void recordSuccess() {
+		if (state == State.HALF_OPEN) {
+			close();
+		} else if (state == State.CLOSED) {
+			record(false);
+		}
+	}
+
+	public synchronized void recordFailure() {
+		if (state == State.HALF_OPEN) {
+			open();
+		} else if (state == State.CLOSED) {
+			record(true);
+			if (recordedOutcomes >= minimumCalls && recordedFailures * 100 >= failureRateThreshold * recordedOutcomes) {
+				open();
+			}
+		}
+	}
+
+	/**
+	 * @return true if the breaker is open and its open duration elapsed
+	 */
+	public synchronized boolean isProbeDue() {
+		return state == State.OPEN && System.currentTimeMillis() >= openUntil;
+	}
+
+	public synchronized void recordProbe(boolean successful) {
+		if (state != State.OPEN) {
+			return;
+		}
+
+		if (successful) {
+			transitionTo(State.HALF_OPEN);
+			log.info("Platform {} API is reachable again, allowing trial requests.", name);
+		} else {
+			open();
+		}
+	}
+
+	private void record(boolean failure) {
+		if (recordedOutcomes == outcomes.length) {
+			if (outcomes[nextOutcome]) {
+				recordedFailures--;
+			}
+		} else {
+			recordedOutcomes++;
+		}
+
+		outcomes[nextOutcome] = failure;
+		if (failure) {
+			recordedFailures++;
+		}
+		nextOutcome = (nextOutcome + 1) % outcomes.length;
+	}
+
+	private void open() {
+		long duration = currentOpenDuration;
+		// Equal jitter, between the half and the full duration
+		long jitteredDuration = duration / 2 + ThreadLocalRandom.current().nextLong(duration / 2 + 1);
+
+		transitionTo(State.OPEN);
+		openUntil = System.currentTimeMillis() + jitteredDuration;
+		currentOpenDuration = Math.min(maxOpenDuration, Math.max(1, duration) * 2);
+
+		log.warn("Suspended the requests to the Platform {} API for {} milliseconds.", name, jitteredDuration);
+	}
+
+	private void close() {
+		transitionTo(State.CLOSED);
+		currentOpenDuration = openDuration;
+		nextOutcome = 0;
+		recordedOutcomes = 0;
+		recordedFailures = 0;
+
+		log.info("Resumed the requests to the Platform {} API.", name);
+	}
+
+	private void transitionTo(State newState) {
+		State oldState = state;
+		trialRequestGranted.set(false);
+		state = newState;
+
+		if (stateListener != null && oldState != newState) {
+			try {
+				stateListener.onStateChange(this, oldState, newState);
+			} catch (Throwable t) {
+				log.warn("Failed to notify the state change of the Platform {} API circuit breaker.", name, t);
+			}
+		}
+	}
+}
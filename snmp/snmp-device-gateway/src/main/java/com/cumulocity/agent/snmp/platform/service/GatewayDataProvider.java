@@ -26,6 +26,7 @@ import com.cumulocity.rest.representation.inventory.ManagedObjectReferenceCollec
 import com.cumulocity.rest.representation.inventory.ManagedObjectRepresentation;
 import com.cumulocity.sdk.client.SDKException;
 import com.cumulocity.sdk.client.inventory.InventoryApi;
+import com.cumulocity.sdk.client.inventory.InventoryFilter;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.http.HttpStatus;
@@ -35,14 +36,22 @@ import org.springframework.scheduling.TaskScheduler;
 import org.springframework.stereotype.Service;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 @Slf4j
 @Service
 public class GatewayDataProvider {
 
+	// Keeps the URL of the requests for managed objects by their ids short
+	private static final int MAX_IDS_PER_REQUEST = 100;
+
 	@Autowired
 	private InventoryApi inventoryApi;
 
@@ -59,13 +68,19 @@ public class GatewayDataProvider {
 	private ApplicationEventPublisher eventPublisher;
 
 	@Getter
-	private GatewayManagedObjectWrapper gatewayDevice;
+	private volatile GatewayManagedObjectWrapper gatewayDevice;
 
 	@Getter
-	private Map<String, DeviceManagedObjectWrapper> snmpDeviceMap = new HashMap<>();
+	private volatile Map<String, DeviceManagedObjectWrapper> snmpDeviceMap = new HashMap<>();
 
 	@Getter
-	private Map<String, DeviceProtocolManagedObjectWrapper> protocolMap = new HashMap<>();
+	private volatile Map<String, DeviceProtocolManagedObjectWrapper> protocolMap = new HashMap<>();
+
+	// IP Address of the SNMP devices by their managed object id
+	private Map<GId, String> deviceIpMap = new HashMap<>();
+
+	// Ids of all the child devices of the gateway, including the ones which are not SNMP devices
+	private Set<GId> childDeviceIds = new HashSet<>();
 
 	public void updateGatewayObjects(ManagedObjectRepresentation gatewayManagedObject) {
 		gatewayDevice = new GatewayManagedObjectWrapper(gatewayManagedObject);
@@ -76,44 +91,142 @@ public class GatewayDataProvider {
 		scheduleGatewayDataRefresh();
 	}
 
+	/**
+	 * Reloads the gateway device, its SNMP devices and their device protocols from the platform.
+	 * The child devices and device protocols are fetched in bulk, and only the ones updated since the last refresh
+	 * are parsed again. Publishes a {@link GatewayDataChangedEvent} if any SNMP device or device protocol changed.
+	 */
 	public synchronized void refreshGatewayObjects() {
-		Map<String, DeviceManagedObjectWrapper> newSnmpDeviceMap = new HashMap<>();
-		Map<String, DeviceProtocolManagedObjectWrapper> newProtocolMap = new HashMap<>();
+		ManagedObjectRepresentation newGatewayDevice = inventoryApi.get(gatewayDevice.getId());
+		Set<GId> newChildDeviceIds = getChildDeviceIds(newGatewayDevice);
+
+		GatewayDataUpdate update = new GatewayDataUpdate();
+		Set<GId> snmpDeviceIds = new HashSet<>();
+		for (ManagedObjectRepresentation childDeviceMo : getManagedObjects(newChildDeviceIds)) {
+			if (childDeviceMo.hasProperty(DeviceManagedObjectWrapper.C8Y_SNMP_DEVICE)) {
+				update.putDevice(childDeviceMo);
+				snmpDeviceIds.add(childDeviceMo.getId());
+			}
+		}
+		for (GId deviceId : new ArrayList<>(update.newDeviceIpMap.keySet())) {
+			if (!snmpDeviceIds.contains(deviceId)) {
+				update.removeDevice(deviceId);
+			}
+		}
+		update.loadProtocols(true);
 
-		GId id = gatewayDevice.getId();
-		ManagedObjectRepresentation newGatewayDevice = inventoryApi.get(id);
-		ManagedObjectReferenceCollectionRepresentation deviceCollections = newGatewayDevice.getChildDevices();
-		GatewayManagedObjectWrapper newGatewayDeviceWrapper = new GatewayManagedObjectWrapper(newGatewayDevice);
+		gatewayDevice = new GatewayManagedObjectWrapper(newGatewayDevice);
+		childDeviceIds = newChildDeviceIds;
+		update.apply();
+	}
 
-		deviceCollections.forEach(childDeviceRep -> {
-			try {
-				ManagedObjectRepresentation childDeviceMo = inventoryApi.get(childDeviceRep.getManagedObject().getId());
-				if (childDeviceMo.hasProperty(DeviceManagedObjectWrapper.C8Y_SNMP_DEVICE)) {
-					updateDeviceProtocol(newSnmpDeviceMap, newProtocolMap, childDeviceMo);
+	/**
+	 * Applies the realtime notification about the creation or update of a managed object, if it is the gateway device,
+	 * one of its child devices or a device protocol in use.
+	 *
+	 * @param id id of the managed object
+	 * @param managedObject the managed object as received with the notification, or null to fetch it from the platform
+	 */
+	public synchronized void onManagedObjectUpdated(GId id, ManagedObjectRepresentation managedObject) {
+		if (gatewayDevice == null) {
+			return;
+		}
+
+		if (id.equals(gatewayDevice.getId())) {
+			ManagedObjectRepresentation newGatewayDevice = managedObject;
+			if (newGatewayDevice == null || newGatewayDevice.getChildDevices() == null) {
+				newGatewayDevice = inventoryApi.get(id);
+			}
+			Set<GId> newChildDeviceIds = getChildDeviceIds(newGatewayDevice);
+
+			GatewayDataUpdate update = new GatewayDataUpdate();
+			for (GId childDeviceId : childDeviceIds) {
+				if (!newChildDeviceIds.contains(childDeviceId)) {
+					update.removeDevice(childDeviceId);
 				}
-			} catch (SDKException sdkException) {
-				if (sdkException.getHttpStatus() == HttpStatus.SC_NOT_FOUND) {
-					log.error(
-							"Unable to find child device object {} or its device protocol mapping object from platform",
-							childDeviceRep.getManagedObject().getName());
-				} else {
-					throw sdkException;
+			}
+
+			Set<GId> addedChildDeviceIds = new HashSet<>(newChildDeviceIds);
+			addedChildDeviceIds.removeAll(childDeviceIds);
+			for (ManagedObjectRepresentation childDeviceMo : getManagedObjects(addedChildDeviceIds)) {
+				if (childDeviceMo.hasProperty(DeviceManagedObjectWrapper.C8Y_SNMP_DEVICE)) {
+					update.putDevice(childDeviceMo);
 				}
 			}
-		});
+			update.loadProtocols(false);
+
+			gatewayDevice = new GatewayManagedObjectWrapper(newGatewayDevice);
+			childDeviceIds = newChildDeviceIds;
+			update.apply();
+
+			eventPublisher.publishEvent(new GatewayDataRefreshedEvent(gatewayDevice));
+		} else if (childDeviceIds.contains(id)) {
+			ManagedObjectRepresentation childDeviceMo = (managedObject != null) ? managedObject : inventoryApi.get(id);
+
+			GatewayDataUpdate update = new GatewayDataUpdate();
+			if (childDeviceMo.hasProperty(DeviceManagedObjectWrapper.C8Y_SNMP_DEVICE)) {
+				update.putDevice(childDeviceMo);
+			} else {
+				update.removeDevice(id);
+			}
+			update.loadProtocols(false);
+			update.apply();
+		} else if (protocolMap.containsKey(id.getValue())) {
+			ManagedObjectRepresentation deviceProtocolMo = (managedObject != null) ? managedObject : inventoryApi.get(id);
+
+			GatewayDataUpdate update = new GatewayDataUpdate();
+			update.putProtocol(deviceProtocolMo);
+			update.apply();
+		}
+	}
 
-		gatewayDevice = newGatewayDeviceWrapper;
-		snmpDeviceMap = newSnmpDeviceMap;
-		protocolMap = newProtocolMap;
+	/**
+	 * Applies the realtime notification about the deletion of a managed object, if it is one of the child devices
+	 * of the gateway or a device protocol in use.
+	 *
+	 * @param id id of the deleted managed object
+	 */
+	public synchronized void onManagedObjectDeleted(GId id) {
+		if (childDeviceIds.remove(id)) {
+			GatewayDataUpdate update = new GatewayDataUpdate();
+			update.removeDevice(id);
+			update.loadProtocols(false);
+			update.apply();
+		} else if (protocolMap.containsKey(id.getValue())) {
+			log.error("{} device protocol managed object was deleted from the platform "
+					+ "but is still configured in the device.", id.getValue());
+
+			GatewayDataUpdate update = new GatewayDataUpdate();
+			update.newProtocolMap.remove(id.getValue());
+			update.apply();
+		}
+	}
+
+	/**
+	 * @return ids of the managed objects, whose changes are applied: the gateway device, its child devices and
+	 * the device protocols in use
+	 */
+	public synchronized Set<GId> getWatchedManagedObjectIds() {
+		Set<GId> ids = new HashSet<>();
+		if (gatewayDevice == null) {
+			return ids;
+		}
+
+		ids.add(gatewayDevice.getId());
+		ids.addAll(childDeviceIds);
+		protocolMap.keySet().forEach(protocolName -> ids.add(new GId(protocolName)));
+
+		return ids;
 	}
 
 	void scheduleGatewayDataRefresh() {
 		taskScheduler.scheduleWithFixedDelay(() -> {
-			if (platformProvider.isPlatformAvailable()) {
+			if (platformProvider.isPlatformAvailable(PlatformApi.INVENTORY)) {
 				try {
 					log.debug("Refreshing gateway managed objects...");
 
 					refreshGatewayObjects();
+					platformProvider.recordSuccess(PlatformApi.INVENTORY);
 
 					eventPublisher.publishEvent(new GatewayDataRefreshedEvent(gatewayDevice));
 
@@ -122,6 +235,10 @@ public class GatewayDataProvider {
 					// Forcefully catching throwable, as we do not want to stop the scheduler on exception.
 					log.error("Unable to refresh gateway managed objects", t);
 
+					if (t instanceof SDKException && ((SDKException) t).getHttpStatus() >= HttpStatus.SC_INTERNAL_SERVER_ERROR) {
+						platformProvider.recordFailure(PlatformApi.INVENTORY);
+					}
+
 					if (isExceptionDueToInvalidCredentials(t)) {
 						log.error("Invalid gateway device credentials detected. "
 								+ "It could be that the gateway device was removed. "
@@ -137,50 +254,38 @@ public class GatewayDataProvider {
 		}, Duration.ofMinutes(gatewayProperties.getGatewayObjectRefreshIntervalInMinutes()));
 	}
 
-	private void updateDeviceProtocol(Map<String, DeviceManagedObjectWrapper> newSnmpDeviceMap,
-			Map<String, DeviceProtocolManagedObjectWrapper> newProtocolMap, ManagedObjectRepresentation snmpDeviceMo) {
+	private List<ManagedObjectRepresentation> getManagedObjects(Collection<GId> ids) {
+		List<GId> idList = new ArrayList<>(ids);
+		List<ManagedObjectRepresentation> managedObjects = new ArrayList<>(idList.size());
 
-		DeviceManagedObjectWrapper childDeviceWrapper = new DeviceManagedObjectWrapper(snmpDeviceMo);
-		String deviceIp;
-		try {
-			deviceIp = IpAddressUtil.sanitizeIpAddress(childDeviceWrapper.getProperties().getIpAddress());
-		} catch(IllegalArgumentException iae) {
-			log.error("Invalid IP Address <{}> specified in the SNMP device named {}.",
-					childDeviceWrapper.getProperties().getIpAddress(),
-					snmpDeviceMo.getName(), iae);
+		for (int from = 0; from < idList.size(); from += MAX_IDS_PER_REQUEST) {
+			List<GId> idChunk = new ArrayList<>(idList.subList(from, Math.min(from + MAX_IDS_PER_REQUEST, idList.size())));
+			InventoryFilter filter = new InventoryFilter().byIds(idChunk);
 
-			deviceIp = childDeviceWrapper.getProperties().getIpAddress();
+			for (ManagedObjectRepresentation managedObject : inventoryApi.getManagedObjectsByFilter(filter)
+					.get(idChunk.size()).allPages()) {
+				managedObjects.add(managedObject);
+			}
 		}
-		newSnmpDeviceMap.put(deviceIp, childDeviceWrapper);
 
-		String protocolName = childDeviceWrapper.getDeviceProtocol();
-		if (protocolName != null && !protocolName.isEmpty()) {
-			updateProtocolMap(protocolName, newProtocolMap);
-		} else {
-			log.error("Missing device protocol configuration for the SNMP device {}", snmpDeviceMo.getName());
-		}
+		return managedObjects;
 	}
 
-	private void updateProtocolMap(String protocolName, Map<String, DeviceProtocolManagedObjectWrapper> newProtocolMap) {
-
-		DeviceProtocolManagedObjectWrapper deviceProtocolWrapper;
+	private static Set<GId> getChildDeviceIds(ManagedObjectRepresentation gatewayDeviceMo) {
+		Set<GId> ids = new HashSet<>();
 
-		if (!newProtocolMap.containsKey(protocolName)) {
-			try {
-				GId deviceProtocolId = new GId(protocolName);
-				ManagedObjectRepresentation deviceProtocolMo = inventoryApi.get(deviceProtocolId);
-				deviceProtocolWrapper = new DeviceProtocolManagedObjectWrapper(deviceProtocolMo);
-				newProtocolMap.put(protocolName, deviceProtocolWrapper);
-			} catch (SDKException sdk) {
-				if (sdk.getHttpStatus() == HttpStatus.SC_NOT_FOUND) {
-					log.error("{} device protocol managed object not found in the platform "
-							+ "but configured in the device.", protocolName, sdk);
-				} else {
-					log.error(sdk.getMessage(), sdk);
-					throw sdk;
-				}
-			}
+		ManagedObjectReferenceCollectionRepresentation childDevices = gatewayDeviceMo.getChildDevices();
+		if (childDevices != null) {
+			childDevices.forEach(childDeviceRep -> ids.add(childDeviceRep.getManagedObject().getId()));
 		}
+
+		return ids;
+	}
+
+	private static boolean isUnchanged(ManagedObjectRepresentation oldMo, ManagedObjectRepresentation newMo) {
+		// Without the last update time, the managed object is considered as changed
+		return oldMo.getLastUpdatedDateTime() != null
+				&& oldMo.getLastUpdatedDateTime().equals(newMo.getLastUpdatedDateTime());
 	}
 
 	private boolean isExceptionDueToInvalidCredentials(Throwable cause) {
@@ -197,4 +302,144 @@ public class GatewayDataProvider {
 
 		return false;
 	}
+
+	/**
+	 * Collects the changes to the SNMP devices and device protocols on copies of the current maps,
+	 * which replace the current maps at once when applied.
+	 */
+	private final class GatewayDataUpdate {
+
+		private final Map<String, DeviceManagedObjectWrapper> newSnmpDeviceMap = new HashMap<>(snmpDeviceMap);
+
+		private final Map<String, DeviceProtocolManagedObjectWrapper> newProtocolMap = new HashMap<>(protocolMap);
+
+		private final Map<GId, String> newDeviceIpMap = new HashMap<>(deviceIpMap);
+
+		private void putDevice(ManagedObjectRepresentation snmpDeviceMo) {
+			String previousDeviceIp = newDeviceIpMap.get(snmpDeviceMo.getId());
+			if (previousDeviceIp != null) {
+				DeviceManagedObjectWrapper previousDeviceWrapper = newSnmpDeviceMap.get(previousDeviceIp);
+				if (previousDeviceWrapper != null
+						&& isUnchanged(previousDeviceWrapper.getManagedObject(), snmpDeviceMo)) {
+					return;
+				}
+
+				removeDevice(snmpDeviceMo.getId());
+			}
+
+			DeviceManagedObjectWrapper childDeviceWrapper = new DeviceManagedObjectWrapper(snmpDeviceMo);
+			String deviceIp;
+			try {
+				deviceIp = IpAddressUtil.sanitizeIpAddress(childDeviceWrapper.getProperties().getIpAddress());
+			} catch(IllegalArgumentException iae) {
+				log.error("Invalid IP Address <{}> specified in the SNMP device named {}.",
+						childDeviceWrapper.getProperties().getIpAddress(),
+						snmpDeviceMo.getName(), iae);
+
+				deviceIp = childDeviceWrapper.getProperties().getIpAddress();
+			}
+			newSnmpDeviceMap.put(deviceIp, childDeviceWrapper);
+			newDeviceIpMap.put(snmpDeviceMo.getId(), deviceIp);
+
+			String protocolName = childDeviceWrapper.getDeviceProtocol();
+			if (protocolName == null || protocolName.isEmpty()) {
+				log.error("Missing device protocol configuration for the SNMP device {}", snmpDeviceMo.getName());
+			}
+		}
+
+		private void removeDevice(GId deviceId) {
+			String deviceIp = newDeviceIpMap.remove(deviceId);
+			if (deviceIp != null) {
+				// Another device configured with the same IP Address might have replaced it already
+				DeviceManagedObjectWrapper deviceWrapper = newSnmpDeviceMap.get(deviceIp);
+				if (deviceWrapper != null && deviceId.equals(deviceWrapper.getId())) {
+					newSnmpDeviceMap.remove(deviceIp);
+				}
+			}
+		}
+
+		private void putProtocol(ManagedObjectRepresentation deviceProtocolMo) {
+			String protocolName = deviceProtocolMo.getId().getValue();
+
+			DeviceProtocolManagedObjectWrapper previousProtocolWrapper = newProtocolMap.get(protocolName);
+			if (previousProtocolWrapper == null
+					|| !isUnchanged(previousProtocolWrapper.getManagedObject(), deviceProtocolMo)) {
+				newProtocolMap.put(protocolName, new DeviceProtocolManagedObjectWrapper(deviceProtocolMo));
+			}
+		}
+
+		/**
+		 * Fetches the device protocols configured in the SNMP devices and drops the ones no longer in use.
+		 *
+		 * @param reloadAll true to fetch all the device protocols in use, false to fetch the missing ones only
+		 */
+		private void loadProtocols(boolean reloadAll) {
+			Set<String> protocolNames = new HashSet<>();
+			for (DeviceManagedObjectWrapper deviceWrapper : newSnmpDeviceMap.values()) {
+				String protocolName = deviceWrapper.getDeviceProtocol();
+				if (protocolName != null && !protocolName.isEmpty()) {
+					protocolNames.add(protocolName);
+				}
+			}
+			newProtocolMap.keySet().retainAll(protocolNames);
+
+			Set<GId> protocolIds = new HashSet<>();
+			for (String protocolName : protocolNames) {
+				if (reloadAll || !newProtocolMap.containsKey(protocolName)) {
+					protocolIds.add(new GId(protocolName));
+				}
+			}
+
+			Set<String> foundProtocolNames = new HashSet<>();
+			for (ManagedObjectRepresentation deviceProtocolMo : getManagedObjects(protocolIds)) {
+				putProtocol(deviceProtocolMo);
+				foundProtocolNames.add(deviceProtocolMo.getId().getValue());
+			}
+
+			for (GId protocolId : protocolIds) {
+				if (!foundProtocolNames.contains(protocolId.getValue())) {
+					newProtocolMap.remove(protocolId.getValue());
+					log.error("{} device protocol managed object not found in the platform "
+							+ "but configured in the device.", protocolId.getValue());
+				}
+			}
+		}
+
+		private void apply() {
+			Map<String, DeviceManagedObjectWrapper> oldSnmpDeviceMap = snmpDeviceMap;
+			Map<String, DeviceProtocolManagedObjectWrapper> oldProtocolMap = protocolMap;
+
+			Set<String> changedProtocols = new HashSet<>(oldProtocolMap.keySet());
+			changedProtocols.addAll(newProtocolMap.keySet());
+			changedProtocols.removeIf(protocolName -> oldProtocolMap.get(protocolName) == newProtocolMap.get(protocolName));
+
+			Set<String> addedDevices = new HashSet<>();
+			Set<String> changedDevices = new HashSet<>();
+			newSnmpDeviceMap.forEach((deviceIp, deviceWrapper) -> {
+				DeviceManagedObjectWrapper oldDeviceWrapper = oldSnmpDeviceMap.get(deviceIp);
+				if (oldDeviceWrapper == null) {
+					addedDevices.add(deviceIp);
+				} else if (oldDeviceWrapper != deviceWrapper || changedProtocols.contains(deviceWrapper.getDeviceProtocol())) {
+					changedDevices.add(deviceIp);
+				}
+			});
+
+			Set<String> removedDevices = new HashSet<>(oldSnmpDeviceMap.keySet());
+			removedDevices.removeAll(newSnmpDeviceMap.keySet());
+
+			// The protocols are replaced first, so that the new devices find their protocol
+			protocolMap = newProtocolMap;
+			snmpDeviceMap = newSnmpDeviceMap;
+			deviceIpMap = newDeviceIpMap;
+
+			if (!addedDevices.isEmpty() || !changedDevices.isEmpty() || !removedDevices.isEmpty()
+					|| !changedProtocols.isEmpty()) {
+				log.debug("SNMP devices added: {}, changed: {}, removed: {}. Device protocols changed: {}",
+						addedDevices, changedDevices, removedDevices, changedProtocols);
+
+				eventPublisher.publishEvent(
+						new GatewayDataChangedEvent(addedDevices, changedDevices, removedDevices, changedProtocols));
+			}
+		}
+	}
 }
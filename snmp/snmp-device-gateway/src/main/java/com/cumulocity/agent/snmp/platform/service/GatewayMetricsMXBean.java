@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA, 
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cumulocity.agent.snmp.platform.service;
+
+import java.util.Map;
+
+/**
+ * Gateway wide metrics, exposed via JMX.
+ */
+public interface GatewayMetricsMXBean {
+
+	boolean isPlatformAvailable();
+
+	long getPlatformUnavailableTimeInMillis();
+
+	/**
+	 * @return number of values received per register, keyed by device protocol id and register OID
+	 */
+	Map<String, Long> getRegisterDispatchCounts();
+
+	/**
+	 * @return number of received values without any register in the device protocol of their device
+	 */
+	long getUnmatchedOidCount();
+
+	/**
+	 * @return number of device polls skipped, as the previous poll was still pending or the polling fell behind
+	 */
+	long getMissedPollDeadlineCount();
+}
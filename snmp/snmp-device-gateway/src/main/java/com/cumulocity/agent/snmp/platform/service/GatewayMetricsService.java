@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA, 
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cumulocity.agent.snmp.platform.service;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ScheduledFuture;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.management.ObjectName;
+
+import org.joda.time.DateTime;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+
+import com.cumulocity.agent.snmp.bootstrap.model.BootstrapReadyEvent;
+import com.cumulocity.agent.snmp.config.GatewayProperties;
+import com.cumulocity.agent.snmp.device.service.DevicePollingService;
+import com.cumulocity.agent.snmp.platform.model.DeviceProtocolManagedObjectWrapper;
+import com.cumulocity.agent.snmp.platform.pubsub.publisher.MeasurementPublisher;
+import com.cumulocity.agent.snmp.platform.pubsub.service.PubSub;
+import com.cumulocity.agent.snmp.platform.pubsub.service.PubSubMetrics;
+import com.cumulocity.rest.representation.measurement.MeasurementRepresentation;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Samples the metrics of all the PubSub services periodically and sends them as a measurement
+ * of the gateway device. The measurement is sent every {@code gateway.metrics.interval} seconds,
+ * zero disables it. The platform availability, the number of values received per register and the number of
+ * missed device poll deadlines are exposed via JMX as com.cumulocity.agent.snmp:type=Gateway.
+ */
+@Slf4j
+@Service
+public class GatewayMetricsService implements GatewayMetricsMXBean {
+
+	static final String C8Y_SNMP_GATEWAY_METRICS = "c8y_SNMPGatewayMetrics";
+
+	private static final String OBJECT_NAME = "com.cumulocity.agent.snmp:type=Gateway";
+
+	@Autowired
+	private GatewayProperties gatewayProperties;
+
+	@Autowired
+	private GatewayDataProvider gatewayDataProvider;
+
+	@Autowired
+	private PlatformProvider platformProvider;
+
+	@Autowired
+	private TaskScheduler taskScheduler;
+
+	@Autowired
+	private MeasurementPublisher measurementPublisher;
+
+	@Autowired
+	private DevicePollingService devicePollingService;
+
+	@Autowired
+	private List<PubSub<?>> pubSubs;
+
+	private ScheduledFuture<?> metricsReporter;
+
+	@PostConstruct
+	void init() {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+		} catch (Exception e) {
+			log.warn("Failed to register the gateway metrics with JMX.", e);
+		}
+	}
+
+	@EventListener(BootstrapReadyEvent.class)
+	void scheduleMetricsReporting() {
+		int interval = gatewayProperties.getGatewayMetricsInterval();
+		if (interval <= 0 || metricsReporter != null) {
+			return;
+		}
+
+		metricsReporter = taskScheduler.scheduleWithFixedDelay(this::reportMetrics, Duration.ofSeconds(interval));
+	}
+
+	@PreDestroy
+	void stop() {
+		if (metricsReporter != null) {
+			metricsReporter.cancel(true);
+			metricsReporter = null;
+		}
+
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(OBJECT_NAME));
+		} catch (Exception e) {
+			log.debug("Failed to unregister the gateway metrics from JMX.", e);
+		}
+	}
+
+	@Override
+	public boolean isPlatformAvailable() {
+		return platformProvider.isPlatformAvailable();
+	}
+
+	@Override
+	public long getPlatformUnavailableTimeInMillis() {
+		return platformProvider.getPlatformUnavailableTimeInMillis();
+	}
+
+	@Override
+	public Map<String, Long> getRegisterDispatchCounts() {
+		Map<String, Long> dispatchCounts = new TreeMap<>();
+		gatewayDataProvider.getProtocolMap().forEach((protocolName, deviceProtocolWrapper) ->
+				deviceProtocolWrapper.getRegisterTrie().getRegisters().forEach((oid, register) ->
+						dispatchCounts.put(protocolName + ":" + oid, register.getDispatchCount())));
+
+		return dispatchCounts;
+	}
+
+	@Override
+	public long getUnmatchedOidCount() {
+		long unmatchedCount = 0;
+		for (DeviceProtocolManagedObjectWrapper deviceProtocolWrapper : gatewayDataProvider.getProtocolMap().values()) {
+			unmatchedCount += deviceProtocolWrapper.getRegisterTrie().getUnmatchedCount();
+		}
+
+		return unmatchedCount;
+	}
+
+	@Override
+	public long getMissedPollDeadlineCount() {
+		return devicePollingService.getMissedPollDeadlines();
+	}
+
+	void reportMetrics() {
+		try {
+			Map<String, Object> series = new HashMap<>();
+			for (PubSub<?> pubSub : pubSubs) {
+				PubSubMetrics metrics = pubSub.getMetrics();
+				if (metrics == null) {
+					continue;
+				}
+
+				metrics.sample();
+
+				String prefix = metrics.getQueueName().toLowerCase();
+				series.put(prefix + "QueueDepth", value(metrics.getQueueDepth(), null));
+				series.put(prefix + "QueueHeadAge", value(metrics.getQueueHeadAgeInMillis() / 1000, "s"));
+				series.put(prefix + "EnqueueRate", value(metrics.getEnqueueRatePerSecond(), "1/s"));
+				series.put(prefix + "DequeueRate", value(metrics.getDequeueRatePerSecond(), "1/s"));
+				series.put(prefix + "DeliveryRate", value(metrics.getDeliveryRatePerSecond(), "1/s"));
+				series.put(prefix + "FailureRate", value(metrics.getFailureRatePerSecond(), "1/s"));
+				series.put(prefix + "RetryQueueDepth", value(metrics.getRetryQueueDepth(), null));
+				series.put(prefix + "DeadLetterQueueDepth", value(metrics.getDeadLetterQueueDepth(), null));
+				series.put(prefix + "AverageBatchSize", value(metrics.getAverageBatchSize(), null));
+				series.put(prefix + "DeliveryLatencyP95", value(metrics.getDeliveryLatency95thPercentileInMillis(), "ms"));
+			}
+			series.put("platformUnavailableTime", value(getPlatformUnavailableTimeInMillis() / 1000, "s"));
+			series.put("missedPollDeadlines", value(getMissedPollDeadlineCount(), null));
+
+			MeasurementRepresentation measurement = new MeasurementRepresentation();
+			measurement.setSource(gatewayDataProvider.getGatewayDevice().getManagedObject());
+			measurement.setDateTime(DateTime.now());
+			measurement.setType(C8Y_SNMP_GATEWAY_METRICS);
+			measurement.setProperty(C8Y_SNMP_GATEWAY_METRICS, series);
+
+			measurementPublisher.publish(measurement);
+		} catch (Throwable t) {
+			// Throwable is caught to ensure that the scheduled reporting continues
+			log.error("Failed to report the gateway metrics.", t);
+		}
+	}
+
+	private static Map<String, Object> value(Number value, String unit) {
+		Map<String, Object> series = new HashMap<>();
+		series.put("value", value);
+		if (unit != null) {
+			series.put("unit", unit);
+		}
+
+		return series;
+	}
+}
@@ -27,6 +27,7 @@ import com.cumulocity.rest.representation.devicebootstrap.DeviceCredentialsRepre
 import com.cumulocity.sdk.client.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.http.HttpStatus;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationEventPublisher;
@@ -37,12 +38,24 @@ import org.springframework.stereotype.Component;
 import java.io.InputStream;
 import java.time.Duration;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Provides the connection to the Platform and tracks its availability.
+ *
+ * Besides the overall availability, each Platform API is guarded by its own {@link CircuitBreaker}.
+ * The open breakers are probed every second with a request for a single resource of the API.
+ * The Platform is counted as unavailable while it is not reachable or any of the circuit breakers is not closed.
+ */
 @Slf4j
 @Component
 @RequiredArgsConstructor(onConstructor = @__(@Autowired))
 public class PlatformProvider implements InitializingBean {
 
+    private static final Duration CIRCUIT_BREAKER_PROBE_INTERVAL = Duration.ofSeconds(1);
+
 	private final GatewayProperties gatewayProperties;
 
     private final TaskScheduler taskScheduler;
@@ -55,6 +68,16 @@ public class PlatformProvider implements InitializingBean {
 
     private volatile boolean isPlatformAvailable = false;
 
+    // Start of the current unavailability, zero while the platform is available or not monitored yet
+    private volatile long unavailableSince = 0;
+
+    // Number of the causes of the current unavailability: the Platform not being reachable and each circuit breaker not closed
+    private int unavailabilityCauses = 0;
+
+    private final AtomicLong unavailableTimeInMillis = new AtomicLong();
+
+    private final ConcurrentMap<PlatformApi, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+
     public Platform getPlatform() {
 		if (platform == null) {
 			throw new IllegalStateException("Credentials are not available yet.");
@@ -104,14 +127,82 @@ public class PlatformProvider implements InitializingBean {
         return isPlatformAvailable;
     }
 
-    public void markPlatfromAsUnavailable() {
-        isPlatformAvailable = false;
+    /**
+     * @return true if the Platform is available and the circuit breaker of the API allows requests
+     */
+    public boolean isPlatformAvailable(PlatformApi api) {
+        return isPlatformAvailable && getCircuitBreaker(api).allowsRequests();
+    }
+
+    /**
+     * @return true if a request to the API may be sent, in which case {@link #releasePermission(PlatformApi)}
+     * must be called once its outcome is known
+     */
+    public boolean tryAcquirePermission(PlatformApi api) {
+        return getCircuitBreaker(api).tryAcquirePermission();
+    }
+
+    public void releasePermission(PlatformApi api) {
+        getCircuitBreaker(api).releasePermission();
+    }
+
+    public void recordSuccess(PlatformApi api) {
+        getCircuitBreaker(api).recordSuccess();
+    }
+
+    public void recordFailure(PlatformApi api) {
+        getCircuitBreaker(api).recordFailure();
+    }
+
+    public CircuitBreaker getCircuitBreaker(PlatformApi api) {
+        return circuitBreakers.computeIfAbsent(api, key -> new CircuitBreaker(
+                key.name().toLowerCase(),
+                gatewayProperties.getCircuitBreakerFailureRateThreshold(),
+                gatewayProperties.getCircuitBreakerWindowSize(),
+                gatewayProperties.getCircuitBreakerMinimumCalls(),
+                gatewayProperties.getCircuitBreakerOpenDuration(),
+                gatewayProperties.getCircuitBreakerMaxOpenDuration(),
+                this::onCircuitBreakerStateChange));
+    }
+
+    private void onCircuitBreakerStateChange(CircuitBreaker circuitBreaker, CircuitBreaker.State fromState, CircuitBreaker.State toState) {
+        if (fromState == CircuitBreaker.State.CLOSED) {
+            unavailabilityStarted();
+        } else if (toState == CircuitBreaker.State.CLOSED) {
+            unavailabilityEnded();
+        }
+    }
+
+    private synchronized void unavailabilityStarted() {
+        if (unavailabilityCauses++ == 0) {
+            unavailableSince = System.currentTimeMillis();
+        }
+    }
+
+    private synchronized void unavailabilityEnded() {
+        if (unavailabilityCauses > 0 && --unavailabilityCauses == 0) {
+            unavailableTimeInMillis.addAndGet(Math.max(0, System.currentTimeMillis() - unavailableSince));
+            unavailableSince = 0;
+        }
+    }
+
+    /**
+     * @return total time in milliseconds the platform was unavailable since its availability was monitored
+     */
+    public long getPlatformUnavailableTimeInMillis() {
+        long since = unavailableSince;
+        long current = (since == 0) ? 0 : Math.max(0, System.currentTimeMillis() - since);
+
+        return unavailableTimeInMillis.get() + current;
     }
 
     private void startPlatformAvailabilityMonitor() {
+        unavailabilityStarted();
+
         taskScheduler.scheduleWithFixedDelay(() -> {
             if (!isPlatformAvailable) {
                 if(checkPlatformAvailability()) {
+                    unavailabilityEnded();
                     isPlatformAvailable = true;
                 }
                 else {
@@ -119,6 +210,51 @@ public class PlatformProvider implements InitializingBean {
                 }
             }
         }, Duration.ofMillis(gatewayProperties.getBootstrapFixedDelay()));
+
+        taskScheduler.scheduleWithFixedDelay(this::probeOpenCircuitBreakers, CIRCUIT_BREAKER_PROBE_INTERVAL);
+    }
+
+    void probeOpenCircuitBreakers() {
+        circuitBreakers.forEach((api, circuitBreaker) -> {
+            if (circuitBreaker.isProbeDue()) {
+                circuitBreaker.recordProbe(probe(api));
+            }
+        });
+    }
+
+    /**
+     * @return true if the API responded to a request for a single resource, even with a client error
+     */
+    private boolean probe(PlatformApi api) {
+        try {
+            switch (api) {
+                case MEASUREMENT:
+                    platform.getMeasurementApi().getMeasurements().get(1);
+                    return true;
+                case ALARM:
+                    platform.getAlarmApi().getAlarms().get(1);
+                    return true;
+                case EVENT:
+                    platform.getEventApi().getEvents().get(1);
+                    return true;
+                case INVENTORY:
+                    platform.getInventoryApi().getManagedObjects().get(1);
+                    return true;
+                default:
+                    return false;
+            }
+        } catch(SDKException sdke) {
+            if (sdke.getHttpStatus() > 0 && sdke.getHttpStatus() < HttpStatus.SC_INTERNAL_SERVER_ERROR) {
+                // The API responded, e.g. the device user may not read the resources
+                return true;
+            }
+
+            log.debug("Platform {} API is still unavailable.", api.name().toLowerCase(), sdke);
+        } catch(Throwable t) {
+            log.debug("Platform {} API is still unavailable.", api.name().toLowerCase(), t);
+        }
+
+        return false;
     }
 
     private boolean checkPlatformAvailability() {
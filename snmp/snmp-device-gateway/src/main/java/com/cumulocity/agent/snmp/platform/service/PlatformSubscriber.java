@@ -18,6 +18,11 @@
 
 package com.cumulocity.agent.snmp.platform.service;
 
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
 import javax.annotation.PreDestroy;
 
 import org.apache.http.HttpStatus;
@@ -27,10 +32,12 @@ import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 import com.cumulocity.agent.snmp.bootstrap.model.BootstrapReadyEvent;
+import com.cumulocity.agent.snmp.platform.model.GatewayDataChangedEvent;
 import com.cumulocity.agent.snmp.platform.model.GatewayDataRefreshedEvent;
 import com.cumulocity.agent.snmp.platform.model.GatewayManagedObjectWrapper;
 import com.cumulocity.agent.snmp.platform.model.ReceivedOperationForGatewayEvent;
 import com.cumulocity.model.idtype.GId;
+import com.cumulocity.rest.representation.inventory.ManagedObjectRepresentation;
 import com.cumulocity.rest.representation.operation.OperationRepresentation;
 import com.cumulocity.sdk.client.PlatformParameters;
 import com.cumulocity.sdk.client.SDKException;
@@ -43,10 +50,18 @@ import com.cumulocity.sdk.client.notification.SubscriptionListener;
 
 import lombok.extern.slf4j.Slf4j;
 
+/**
+ * Subscribes for the operations of the gateway device and for the inventory changes of the managed objects
+ * the gateway data consists of: the gateway device, its child devices and their device protocols.
+ * The inventory subscriptions follow the gateway data, a managed object is subscribed for when it becomes part of it
+ * and unsubscribed from when it is no longer.
+ */
 @Slf4j
 @Service
 public class PlatformSubscriber {
 
+	private static final String REALTIME_ACTION_DELETE = "DELETE";
+
 	@Autowired
 	private PlatformProvider platformProvider;
 
@@ -59,7 +74,39 @@ public class PlatformSubscriber {
 	@Autowired
 	private ApplicationEventPublisher eventPublisher;
 
-	private InventoryRealtimeDeleteAwareNotificationsSubscriber gatewayNotificationSubscriber;
+	private volatile InventoryRealtimeDeleteAwareNotificationsSubscriber gatewayNotificationSubscriber;
+
+	// Inventory subscriptions by the id of the managed object
+	private final Map<GId, Subscription<String>> inventorySubscriptions = new HashMap<>();
+
+	private final SubscriptionListener<String, ManagedObjectDeleteAwareNotification> inventoryNotificationListener =
+			new SubscriptionListener<String, ManagedObjectDeleteAwareNotification>() {
+				@Override
+				public void onNotification(Subscription<String> subscription,
+						ManagedObjectDeleteAwareNotification notification) {
+					try {
+						applyInventoryNotification(notification);
+					} catch (Throwable t) {
+						// The scheduled gateway object refresh will pick up the change later
+						log.error("Failed to apply the inventory change notification", t);
+					}
+				}
+
+				@Override
+				public void onError(Subscription<String> subscription, Throwable throwable) {
+					if (throwable instanceof SDKException) {
+						SDKException sdkException = (SDKException) throwable;
+						if (sdkException.getHttpStatus() == HttpStatus.SC_UNAUTHORIZED) {
+							GatewayManagedObjectWrapper gatewayDevice = gatewayDataProvider.getGatewayDevice();
+							log.error("Device with name '{}' and id '{}' is deleted. "
+									+ "Restart the agent and register a new device. "
+									+ "\nShutting down agent...", gatewayDevice.getName(),
+									gatewayDevice.getId().getValue());
+							System.exit(0);
+						}
+					}
+				}
+			};
 
 	private Subscriber<GId, OperationRepresentation> subscriberForOperationsOnGateway;
 
@@ -69,50 +116,84 @@ public class PlatformSubscriber {
 		subscribeGatewayDeviceOperation();
 	}
 
-	private void subscribeGatewayInventoryNotification() {
+	@EventListener(GatewayDataChangedEvent.class)
+	public void refreshInventorySubscriptions() {
 		if (gatewayNotificationSubscriber != null) {
-			return;
+			subscribeGatewayInventoryNotification();
 		}
+	}
+
+	/**
+	 * Subscribes for the inventory changes of the managed objects, which became part of the gateway data,
+	 * and unsubscribes from the ones, which are no longer.
+	 */
+	private void subscribeGatewayInventoryNotification() {
+		// Taken before locking, as the gateway data provider publishes its changes while it is locked
+		Set<GId> watchedIds = gatewayDataProvider.getWatchedManagedObjectIds();
+
+		updateInventorySubscriptions(watchedIds);
+	}
 
+	private synchronized void updateInventorySubscriptions(Set<GId> watchedIds) {
 		GatewayManagedObjectWrapper gatewayDevice = gatewayDataProvider.getGatewayDevice();
-		PlatformParameters platformParameters = (PlatformParameters) platformProvider.getPlatform();
 
-		try {
+		if (gatewayNotificationSubscriber == null) {
+			PlatformParameters platformParameters = (PlatformParameters) platformProvider.getPlatform();
 			gatewayNotificationSubscriber = new InventoryRealtimeDeleteAwareNotificationsSubscriber(platformParameters);
-			gatewayNotificationSubscriber.subscribe(gatewayDevice.getId().getValue(),
-					new SubscriptionListener<String, ManagedObjectDeleteAwareNotification>() {
-						@Override
-						public void onNotification(Subscription<String> subscription,
-								ManagedObjectDeleteAwareNotification notification) {
-							// Nothing to do here.
-							// The gateway object refresh will take care of updating gateway device
-						}
+		}
 
-						@Override
-						public void onError(Subscription<String> subscription, Throwable throwable) {
-							if (throwable instanceof SDKException) {
-								SDKException sdkException = (SDKException) throwable;
-								if (sdkException.getHttpStatus() == HttpStatus.SC_UNAUTHORIZED) {
-									log.error("Device with name '{}' and id '{}' is deleted. "
-											+ "Restart the agent and register a new device. "
-											+ "\nShutting down agent...", gatewayDevice.getName(),
-											gatewayDevice.getId().getValue());
-									System.exit(0);
-								}
-							}
-						}
-					});
+		Iterator<Map.Entry<GId, Subscription<String>>> subscriptionIterator = inventorySubscriptions.entrySet().iterator();
+		while (subscriptionIterator.hasNext()) {
+			Map.Entry<GId, Subscription<String>> subscriptionEntry = subscriptionIterator.next();
+			if (!watchedIds.contains(subscriptionEntry.getKey())) {
+				subscriptionIterator.remove();
+				try {
+					subscriptionEntry.getValue().unsubscribe();
+				} catch (Throwable t) {
+					log.debug("Couldn't disable the subscription for inventory changes of the managed object with id '{}'.",
+							subscriptionEntry.getKey().getValue(), t);
+				}
+			}
+		}
 
-			log.info("Enabled the subscription for inventory changes for the gateway device with name '{}' and id '{}'.",
-					gatewayDevice.getName(), gatewayDevice.getId().getValue());
-		} catch (SDKException ex) {
-			gatewayNotificationSubscriber = null;
+		int failedSubscriptions = 0;
+		for (GId watchedId : watchedIds) {
+			if (inventorySubscriptions.containsKey(watchedId)) {
+				continue;
+			}
+
+			try {
+				inventorySubscriptions.put(watchedId,
+						gatewayNotificationSubscriber.subscribe(watchedId.getValue(), inventoryNotificationListener));
+			} catch (SDKException ex) {
+				failedSubscriptions++;
+				log.debug(ex.getMessage(), ex);
+			}
+		}
 
+		if (failedSubscriptions > 0) {
 			// Ignore this exception and continue as the subscription will be retried when
 			// the Gateway data is refreshed next time.
-			log.warn("Couldn't enable the subscription for inventory changes for the gateway device with name '{}' and id '{}'. "
-					+ "This subscription will be retried later.", gatewayDevice.getName(), gatewayDevice.getId().getValue());
-			log.debug(ex.getMessage(), ex);
+			log.warn("Couldn't enable the subscription for inventory changes of {} managed objects of the gateway device with name '{}' and id '{}'. "
+					+ "These subscriptions will be retried later.", failedSubscriptions, gatewayDevice.getName(), gatewayDevice.getId().getValue());
+		} else {
+			log.debug("Enabled the subscription for inventory changes of {} managed objects of the gateway device with name '{}' and id '{}'.",
+					inventorySubscriptions.size(), gatewayDevice.getName(), gatewayDevice.getId().getValue());
+		}
+	}
+
+	private void applyInventoryNotification(ManagedObjectDeleteAwareNotification notification) {
+		Object data = notification.getData();
+		if (data == null) {
+			return;
+		}
+
+		if (REALTIME_ACTION_DELETE.equalsIgnoreCase(notification.getRealtimeAction())) {
+			// The id of the deleted managed object is the data of the notification
+			gatewayDataProvider.onManagedObjectDeleted(GId.asGId(String.valueOf(data)));
+		} else if (data instanceof ManagedObjectRepresentation) {
+			ManagedObjectRepresentation managedObject = (ManagedObjectRepresentation) data;
+			gatewayDataProvider.onManagedObjectUpdated(managedObject.getId(), managedObject);
 		}
 	}
 
@@ -28,6 +28,7 @@ import com.cumulocity.agent.snmp.platform.model.*;
 import com.cumulocity.agent.snmp.platform.pubsub.publisher.AlarmPublisher;
 import com.cumulocity.agent.snmp.platform.pubsub.publisher.EventPublisher;
 import com.cumulocity.agent.snmp.platform.pubsub.publisher.MeasurementPublisher;
+import com.cumulocity.agent.snmp.platform.service.AlarmSuppressionService;
 import com.cumulocity.agent.snmp.platform.service.GatewayDataProvider;
 import com.cumulocity.model.idtype.GId;
 import com.cumulocity.rest.representation.alarm.AlarmRepresentation;
@@ -49,6 +50,7 @@ import org.snmp4j.PDU;
 import org.snmp4j.security.SecurityModel;
 import org.snmp4j.smi.*;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -73,12 +75,18 @@ public class DeviceDataHandlerTest {
 	@Mock
 	private AlarmPublisher alarmPublisher;
 
+	@Mock
+	private AlarmSuppressionService alarmSuppressionService;
+
 	@Mock
 	private EventPublisher eventPublisher;
 
 	@Mock
 	private MeasurementPublisher measurementPublisher;
 
+	@Mock
+	private ReportingPolicyService reportingPolicyService;
+
 	@Mock
 	private GatewayDataProvider gatewayDataProvider;
 
@@ -106,10 +114,6 @@ public class DeviceDataHandlerTest {
 
 	private Address address;
 
-	private ManagedObjectRepresentation gatewayDeviceMo;
-
-	private GatewayManagedObjectWrapper gatewayWrapper;
-
 	private AlarmMapping alarmMapping;
 
 	private EventMapping eventMapping;
@@ -140,10 +144,6 @@ public class DeviceDataHandlerTest {
 
 		address = new UdpAddress("10.0.0.1/65214");
 
-		gatewayDeviceMo = new ManagedObjectRepresentation();
-		gatewayDeviceMo.setId(new GId("snmp-agent"));
-		gatewayWrapper = new GatewayManagedObjectWrapper(gatewayDeviceMo);
-
 		alarmMapping = new AlarmMapping();
 		alarmMapping.setType("c8y_SNMPAlarm");
 		alarmMapping.setText("Test SNMP alarm");
@@ -188,10 +188,10 @@ public class DeviceDataHandlerTest {
 		when(event.getPeerAddress()).thenReturn(address);
 		when(event.getSecurityModel()).thenReturn(SecurityModel.SECURITY_MODEL_SNMPv1);
 		when(event.getSecurityName()).thenReturn("public".getBytes());
-		when(protocolMoWrapper.getOidMap()).thenReturn(oidMap);
-		when(gatewayDataProvider.getGatewayDevice()).thenReturn(gatewayWrapper);
+		// Compiled when processing, after the mappings of the test are set
+		when(protocolMoWrapper.getRegisterTrie()).thenAnswer(invocation -> new RegisterTrie(oidMap));
 		when(device1MoWrapper.getDeviceProtocol()).thenReturn("device-protocol");
-		when(device1MoWrapper.getManagedObject()).thenReturn(device1Mo);
+		when(device1MoWrapper.getSource()).thenReturn(device1Mo);
 		when(gatewayDataProvider.getProtocolMap()).thenReturn(protocolMap);
 		when(gatewayDataProvider.getSnmpDeviceMap()).thenReturn(deviceMap);
 	}
@@ -250,6 +250,7 @@ public class DeviceDataHandlerTest {
 		String errorMsg = "Trap received from an unknown device with IP Address 10.0.0.1";
 
 		when(gatewayDataProvider.getSnmpDeviceMap()).thenReturn(Collections.emptyMap());
+		when(alarmSuppressionService.publish(any(AlarmMapping.class))).thenReturn(true);
 
 		// Action
 		deviceDataHandler.processPdu(event);
@@ -260,18 +261,31 @@ public class DeviceDataHandlerTest {
 	@Test
 	public void shouldRaiseAlarmForTrapFromAnUnknownDevice() {
 		when(gatewayDataProvider.getSnmpDeviceMap()).thenReturn(Collections.emptyMap());
+		ArgumentCaptor<AlarmMapping> alarmMappingCaptor = ArgumentCaptor.forClass(AlarmMapping.class);
 
 		// Action
-		ManagedObjectRepresentation source = new ManagedObjectRepresentation();
-		source.setId(GId.asGId(1));
-
 		deviceDataHandler.processPdu(event);
-		verify(alarmPublisher).publish(alarmCaptor.capture());
 
-		AlarmRepresentation alarm = alarmCaptor.getValue();
+		verify(alarmSuppressionService).publish(alarmMappingCaptor.capture());
+		verify(alarmPublisher, times(0)).publish(any(AlarmRepresentation.class));
+
+		AlarmMapping alarm = alarmMappingCaptor.getValue();
 		assertEquals("MAJOR", alarm.getSeverity());
 		assertEquals(AlarmMapping.c8y_TRAPReceivedFromUnknownDevice + "10.0.0.1", alarm.getType());
-		assertEquals(gatewayDeviceMo.getId(), alarm.getSource().getId());
+	}
+
+	@Test
+	public void shouldOnlyLogAtDebugLevelForTrapFromAnUnknownDeviceWhenAlarmIsSuppressed() {
+		String errorMsg = "Trap received from an unknown device with IP Address 10.0.0.1";
+
+		when(gatewayDataProvider.getSnmpDeviceMap()).thenReturn(Collections.emptyMap());
+		when(alarmSuppressionService.publish(any(AlarmMapping.class))).thenReturn(false);
+
+		// Action
+		deviceDataHandler.processPdu(event);
+
+		// Fails if the message is logged at any other level
+		assertTrue(checkLogExist(Level.DEBUG, errorMsg));
 	}
 
 	@Test
@@ -359,6 +373,159 @@ public class DeviceDataHandlerTest {
 		assertEquals("cm", seriesMap.get("unit"));
 	}
 
+	@Test
+	public void shouldNotFireParentRegisterForChildOidInTrap() {
+		register.setAlarmMapping(alarmMapping);
+		register.setEventMapping(eventMapping);
+		register.setMeasurementMapping(measurementMapping);
+
+		Vector<VariableBinding> variableBindings = new Vector<>();
+		variableBindings.add(new VariableBinding(new OID("1.3.6.1.4.868.2.4.1.1.5"), new Integer32(20)));
+		Mockito.doReturn(variableBindings).when(pdu).getVariableBindings();
+
+		// Action
+		deviceDataHandler.processPdu(event);
+
+		verifyNoInteractions(alarmPublisher, eventPublisher, measurementPublisher);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void shouldPublishMeasurementPerTableRowOnlyIfChanged() {
+		register.setMeasurementMapping(measurementMapping);
+		TableCellHistory history = new TableCellHistory();
+
+		// Action
+		deviceDataHandler.processDeviceTableCells("10.0.0.1", Arrays.asList(
+				new VariableBinding(new OID("1.3.6.1.4.868.2.4.1.1.1"), new Gauge32(10)),
+				new VariableBinding(new OID("1.3.6.1.4.868.2.4.1.1.2"), new Gauge32(20))), history);
+
+		verify(measurementPublisher, times(2)).publish(measurementCaptor.capture());
+
+		MeasurementRepresentation measurement = measurementCaptor.getAllValues().get(1);
+		Map<String, Map<String, Object>> typeMap = (Map<String, Map<String, Object>>) measurement.getAttrs().get(measurementMapping.getType());
+		assertTrue(typeMap.containsKey("T_2"));
+		assertEquals(20L, typeMap.get("T_2").get("value"));
+		assertEquals("cm", typeMap.get("T_2").get("unit"));
+
+		// Action, only the second row changed
+		deviceDataHandler.processDeviceTableCells("10.0.0.1", Arrays.asList(
+				new VariableBinding(new OID("1.3.6.1.4.868.2.4.1.1.1"), new Gauge32(10)),
+				new VariableBinding(new OID("1.3.6.1.4.868.2.4.1.1.2"), new Gauge32(21))), history);
+
+		verify(measurementPublisher, times(3)).publish(measurementCaptor.capture());
+
+		measurement = measurementCaptor.getValue();
+		typeMap = (Map<String, Map<String, Object>>) measurement.getAttrs().get(measurementMapping.getType());
+		assertEquals(21L, typeMap.get("T_2").get("value"));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void shouldPublishPolledMeasurementAccordingToReportingPolicy() {
+		ReportingPolicy reportingPolicy = new ReportingPolicy();
+		reportingPolicy.setOnChange(true);
+		measurementMapping.setReportingPolicy(reportingPolicy);
+		register.setMeasurementMapping(measurementMapping);
+		when(reportingPolicyService.apply(eq("10.0.0.1"), eq(new OID("1.3.6.1.4.868.2.4.1.1")), eq(reportingPolicy),
+				eq(10), anyLong())).thenReturn(null, 10);
+
+		// Action, held back by the policy
+		deviceDataHandler.processPolledPdu("10.0.0.1", pdu);
+
+		verifyNoInteractions(measurementPublisher);
+
+		// Action
+		deviceDataHandler.processPolledPdu("10.0.0.1", pdu);
+
+		verify(measurementPublisher).publish(measurementCaptor.capture());
+		Map<String, Map<String, Object>> typeMap = (Map<String, Map<String, Object>>) measurementCaptor.getValue()
+				.getAttrs().get(measurementMapping.getType());
+		assertEquals(10, typeMap.get(measurementMapping.getSeries()).get("value"));
+	}
+
+	@Test
+	public void shouldNotApplyReportingPolicyToTraps() {
+		ReportingPolicy reportingPolicy = new ReportingPolicy();
+		reportingPolicy.setOnChange(true);
+		measurementMapping.setReportingPolicy(reportingPolicy);
+		register.setMeasurementMapping(measurementMapping);
+
+		// Action
+		deviceDataHandler.processPdu(event);
+
+		verify(measurementPublisher).publish(any(MeasurementRepresentation.class));
+		verifyNoInteractions(reportingPolicyService);
+	}
+
+	@Test
+	public void shouldPublishPolledMeasurementWithoutReportingPolicy() {
+		register.setMeasurementMapping(measurementMapping);
+
+		// Action
+		deviceDataHandler.processPolledPdu("10.0.0.1", pdu);
+
+		verify(measurementPublisher).publish(any(MeasurementRepresentation.class));
+		verifyNoInteractions(reportingPolicyService);
+	}
+
+	@Test
+	public void shouldApplyReportingPolicyToEveryRateOfTableRow() {
+		ReportingPolicy reportingPolicy = new ReportingPolicy();
+		reportingPolicy.setDeadband(5);
+		measurementMapping.setReportingPolicy(reportingPolicy);
+		register.setMeasurementMapping(measurementMapping);
+		TableCellHistory history = new TableCellHistory();
+		OID cellOid = new OID("1.3.6.1.4.868.2.4.1.1.1");
+		when(reportingPolicyService.apply(eq("10.0.0.1"), eq(cellOid), eq(reportingPolicy), eq(10L), anyLong()))
+				.thenReturn(null);
+
+		// Action, the unchanged value is passed to the policy as well
+		deviceDataHandler.processDeviceTableCells("10.0.0.1", Collections.singletonList(
+				new VariableBinding(cellOid, new Gauge32(10))), history);
+		deviceDataHandler.processDeviceTableCells("10.0.0.1", Collections.singletonList(
+				new VariableBinding(cellOid, new Gauge32(10))), history);
+
+		verify(reportingPolicyService, times(2)).apply(eq("10.0.0.1"), eq(cellOid), eq(reportingPolicy), eq(10L),
+				anyLong());
+		verifyNoInteractions(measurementPublisher);
+	}
+
+	@Test
+	public void shouldNotPublishFirstValueOfCounterInTableRow() {
+		register.setMeasurementMapping(measurementMapping);
+
+		// Action
+		deviceDataHandler.processDeviceTableCells("10.0.0.1", Collections.singletonList(
+				new VariableBinding(new OID("1.3.6.1.4.868.2.4.1.1.1"), new Counter32(1000))), new TableCellHistory());
+
+		verifyNoInteractions(measurementPublisher);
+	}
+
+	@Test
+	public void shouldNotPublishTableCellsWithoutMeasurementMapping() {
+		// Action
+		deviceDataHandler.processDeviceTableCells("10.0.0.1", Collections.singletonList(
+				new VariableBinding(new OID("1.3.6.1.4.868.2.4.1.1.1"), new Integer32(7))), new TableCellHistory());
+
+		verifyNoInteractions(measurementPublisher);
+	}
+
+	@Test
+	public void shouldLogWarningForTrapWithUnknownOid() {
+		String warnMsg = "1.3.6.1.4.868.2.4.1.2 OID could not be found in the device-protocol device protocol selected for the device 10.0.0.1";
+
+		Vector<VariableBinding> variableBindings = new Vector<>();
+		variableBindings.add(new VariableBinding(new OID("1.3.6.1.4.868.2.4.1.2"), new Integer32(20)));
+		Mockito.doReturn(variableBindings).when(pdu).getVariableBindings();
+
+		// Action
+		deviceDataHandler.processPdu(event);
+
+		verifyNoInteractions(alarmPublisher, eventPublisher, measurementPublisher);
+		assertTrue(checkLogExist(Level.WARN, warnMsg));
+	}
+
 	@Test
 	public void shouldPublishMessageForValidTrapAndMultipleOidMapping() {
 		register.setAlarmMapping(alarmMapping);
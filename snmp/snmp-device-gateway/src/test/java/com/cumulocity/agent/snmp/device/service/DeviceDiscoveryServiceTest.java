@@ -20,16 +20,17 @@ package com.cumulocity.agent.snmp.device.service;
 
 import c8y.RequiredAvailability;
 import com.cumulocity.agent.snmp.config.GatewayProperties;
+import com.cumulocity.agent.snmp.device.repository.DiscoveryProgressStore;
+import com.cumulocity.agent.snmp.platform.model.AlarmMapping;
 import com.cumulocity.agent.snmp.platform.model.AlarmSeverity;
 import com.cumulocity.agent.snmp.platform.model.DeviceManagedObjectWrapper;
 import com.cumulocity.agent.snmp.platform.model.GatewayManagedObjectWrapper;
 import com.cumulocity.agent.snmp.platform.model.ReceivedOperationForGatewayEvent;
-import com.cumulocity.agent.snmp.platform.pubsub.publisher.AlarmPublisher;
+import com.cumulocity.agent.snmp.platform.service.AlarmSuppressionService;
 import com.cumulocity.agent.snmp.platform.service.GatewayDataProvider;
 import com.cumulocity.agent.snmp.util.IpAddressUtil;
 import com.cumulocity.model.idtype.GId;
 import com.cumulocity.model.util.ExtensibilityConverter;
-import com.cumulocity.rest.representation.alarm.AlarmRepresentation;
 import com.cumulocity.rest.representation.inventory.InventoryMediaType;
 import com.cumulocity.rest.representation.inventory.ManagedObjectReferenceRepresentation;
 import com.cumulocity.rest.representation.inventory.ManagedObjectRepresentation;
@@ -37,11 +38,16 @@ import com.cumulocity.rest.representation.operation.OperationRepresentation;
 import com.cumulocity.sdk.client.RestOperations;
 import com.cumulocity.sdk.client.devicecontrol.DeviceControlApi;
 import com.cumulocity.sdk.client.inventory.InventoryApi;
-import com.google.common.net.InetAddresses;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.*;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.snmp4j.PDU;
+import org.snmp4j.Snmp;
+import org.snmp4j.Target;
+import org.snmp4j.event.ResponseEvent;
+import org.snmp4j.event.ResponseListener;
+import org.snmp4j.smi.UdpAddress;
 import org.springframework.scheduling.TaskScheduler;
 import org.springframework.test.util.ReflectionTestUtils;
 
@@ -52,7 +58,6 @@ import java.util.*;
 import java.util.concurrent.ScheduledFuture;
 
 import static com.cumulocity.agent.snmp.platform.model.AlarmMapping.c8y_DeviceNotResponding;
-import static com.cumulocity.agent.snmp.platform.model.AlarmMapping.c8y_DeviceSnmpNotEnabled;
 import static com.cumulocity.agent.snmp.platform.model.DeviceManagedObjectWrapper.*;
 import static com.cumulocity.agent.snmp.platform.model.ReceivedOperationForGatewayEvent.C8Y_SNMP_AUTO_DISCOVERY_FRAGMENT_KEY;
 import static com.cumulocity.agent.snmp.platform.model.ReceivedOperationForGatewayEvent.IP_RANGE_KEY;
@@ -83,19 +88,19 @@ public class DeviceDiscoveryServiceTest {
     private DeviceControlApi deviceControlApi;
 
     @Mock
-    private AlarmPublisher alarmPublisher;
+    private AlarmSuppressionService alarmSuppressionService;
 
     @Mock
-    private GatewayManagedObjectWrapper gatewayManagedObjectWrapper;
+    private DiscoveryProgressStore discoveryProgressStore;
 
     @Mock
-    private ManagedObjectRepresentation gatewayDeviceManagedObjectRepresentation;
+    private GatewayManagedObjectWrapper gatewayManagedObjectWrapper;
 
     @Mock
     private GatewayManagedObjectWrapper.SnmpCommunicationProperties snmpCommunicationPropertiesFromPlatform;
 
     @Captor
-    ArgumentCaptor<AlarmRepresentation> alarmRepresentationCaptor;
+    ArgumentCaptor<AlarmMapping> alarmMappingCaptor;
 
     @Captor
     ArgumentCaptor<ManagedObjectRepresentation> childDeviceCaptor;
@@ -114,20 +119,16 @@ public class DeviceDiscoveryServiceTest {
         String type = "c8y_someType";
         String text = "SOME ALARM TEXT";
 
-        when(gatewayDataProvider.getGatewayDevice()).thenReturn(gatewayManagedObjectWrapper);
-        when(gatewayManagedObjectWrapper.getManagedObject()).thenReturn(gatewayDeviceManagedObjectRepresentation);
-
         // when
         deviceDiscoveryService.handleNoResponseFromDevice(type, text);
 
         // then
-        verify(alarmPublisher, times(1)).publish(alarmRepresentationCaptor.capture());
+        verify(alarmSuppressionService, times(1)).publish(alarmMappingCaptor.capture());
 
-        AlarmRepresentation alarmRepresentation = alarmRepresentationCaptor.getValue();
-        assertEquals(AlarmSeverity.MAJOR.name(), alarmRepresentation.getSeverity());
-        assertEquals(gatewayDeviceManagedObjectRepresentation, alarmRepresentation.getSource());
-        assertEquals(type, alarmRepresentation.getType());
-        assertEquals(text, alarmRepresentation.getText());
+        AlarmMapping alarmMapping = alarmMappingCaptor.getValue();
+        assertEquals(AlarmSeverity.MAJOR.name(), alarmMapping.getSeverity());
+        assertEquals(type, alarmMapping.getType());
+        assertEquals(text, alarmMapping.getText());
     }
 
     @Test
@@ -373,161 +374,134 @@ public class DeviceDiscoveryServiceTest {
     }
 
     @Test
-    public void shouldCheckIfDeviceSnmpEnabled() {
+    public void shouldScanForSnmpDevicesAndCreateChildDevices_successfully() throws IOException {
         // given
-        InetAddress ipAddress = InetAddress.getLoopbackAddress();
-        int port = 8080;
-        boolean isProtocolUdp = true;
-        String communityTarget = "public";
+        int port = 162;
+        String startIpAddress = "192.168.0.1"; // responds
+        String endIpAddress = "192.168.0.2";   // does not respond
+
+        Snmp snmp = mockSnmpSession(startIpAddress);
+        doReturn(new HashMap<>()).when(gatewayDataProvider).getSnmpDeviceMap();
+        doNothing().when(deviceDiscoveryService).createAndRegisterAChildDevice(startIpAddress, port);
 
         // when
-        boolean isEnabled = deviceDiscoveryService.isDeviceSnmpEnabled(ipAddress, port, isProtocolUdp, communityTarget);
+        deviceDiscoveryService.scanForSnmpDevicesAndCreateChildDevices(ipRanges(startIpAddress, endIpAddress), port, true, 1, "public");
 
         // then
-        assertFalse(isEnabled);
+        verify(snmp, times(2)).send(any(PDU.class), any(Target.class), any(), any(ResponseListener.class));
+        verify(deviceDiscoveryService, times(1)).createAndRegisterAChildDevice(eq(startIpAddress), eq(port));
+        verify(deviceDiscoveryService, times(0)).createAndRegisterAChildDevice(eq(endIpAddress), eq(port));
+        verify(gatewayDataProvider, times(1)).refreshGatewayObjects();
+        verify(discoveryProgressStore).remove("192.168.0.1-192.168.0.2/162");
     }
 
     @Test
-    public void shouldScanForSnmpDevicesAndCreateChildDevices_successfully() {
+    public void shouldSkipIPAddressesWhichAreAlreadyScanned() throws IOException {
         // given
         int port = 162;
-        boolean isProtocolUdp = true;
-        int pingTimeoutInSeconds = 1;
-        String communityTarget = "public";
+        String respondingIpAddress = "192.168.0.1"; // responds, but is part of both the ranges
 
-        String startIpAddress = "192.168.0.1"; // is reachable
-        String endIpAddress = "192.168.0.2";   // is not reachable as the second one's isReachable is not mocked
-
-        List<InetAddress[]> ipRangesList = new ArrayList<>();
-        InetAddress[] oneRange = new InetAddress[2];
-        oneRange[0] = mock(InetAddress.class); // InetAddresses.forString("192.168.0.1")
-        oneRange[1] = mock(InetAddress.class); // InetAddresses.forString("192.168.0.2")
-        try {
-            doReturn(startIpAddress).when(oneRange[0]).getHostAddress();
-            doReturn(InetAddresses.forString(startIpAddress).getAddress()).when(oneRange[0]).getAddress();
-            doReturn(true).when(oneRange[0]).isReachable(pingTimeoutInSeconds * 1000);
-
-//            doReturn(endIpAddress).when(oneRange[1]).getHostAddress();
-            doReturn(InetAddresses.forString(endIpAddress).getAddress()).when(oneRange[1]).getAddress();
-        } catch (IOException e) {
-            fail(e.getMessage());
-        }
-        ipRangesList.add(oneRange);
+        Snmp snmp = mockSnmpSession(respondingIpAddress);
+        doReturn(new HashMap<>()).when(gatewayDataProvider).getSnmpDeviceMap();
+        doNothing().when(deviceDiscoveryService).createAndRegisterAChildDevice(respondingIpAddress, port);
 
-        Map<String, DeviceManagedObjectWrapper> existingDeviceMap = new HashMap<>();
-//        existingDeviceMap.put(oneRange[0].getHostAddress(), null);
-
-        doReturn(existingDeviceMap).when(gatewayDataProvider).getSnmpDeviceMap();
-        doReturn(true).when(deviceDiscoveryService).isDeviceSnmpEnabled(oneRange[0], port, isProtocolUdp, communityTarget);
-        doNothing().when(deviceDiscoveryService).createAndRegisterAChildDevice(startIpAddress, port);
+        List<InetAddress[]> ipRangesList = new ArrayList<>(ipRanges("192.168.0.1", "192.168.0.2"));
+        ipRangesList.addAll(ipRanges("192.168.0.0", "192.168.0.1"));
 
         // when
-        deviceDiscoveryService.scanForSnmpDevicesAndCreateChildDevices(ipRangesList, port, isProtocolUdp, pingTimeoutInSeconds, communityTarget);
+        deviceDiscoveryService.scanForSnmpDevicesAndCreateChildDevices(ipRangesList, port, true, 1, "public");
 
         // then
-        verify(deviceDiscoveryService, times(1)).createAndRegisterAChildDevice(eq(startIpAddress), eq(port));
-        verify(deviceDiscoveryService, times(0)).createAndRegisterAChildDevice(eq(endIpAddress), eq(port));
+        verify(snmp, times(3)).send(any(PDU.class), any(Target.class), any(), any(ResponseListener.class));
+        verify(deviceDiscoveryService, times(1)).createAndRegisterAChildDevice(eq(respondingIpAddress), eq(port));
         verify(gatewayDataProvider, times(1)).refreshGatewayObjects();
     }
 
     @Test
-    public void shouldSkipIPAddressesWhichAreAlreadyScanned() {
+    public void shouldScanForSnmpDevicesAndCreateChildDevices_handleNoResponseFromDevice() throws IOException {
         // given
         int port = 162;
-        boolean isProtocolUdp = true;
-        int pingTimeoutInSeconds = 1;
-        String communityTarget = "public";
-
-        String oneStartIpAddress = "192.168.0.1"; // is reachable
-        String oneEndIpAddress = "192.168.0.2";   // is not reachable as the second one's isReachable is not mocked
-        String twoStartIpAddress = "192.168.0.0"; // is not reachable as the isReachable is not mocked
-        String twoEndIpAddress = "192.168.0.1";   // is reachable, but already scanned
-
-        List<InetAddress[]> ipRangesList = new ArrayList<>();
-        InetAddress[] oneRange = new InetAddress[2];
-        oneRange[0] = mock(InetAddress.class); // InetAddresses.forString("192.168.0.1")
-        oneRange[1] = mock(InetAddress.class); // InetAddresses.forString("192.168.0.2")
-
-        InetAddress[] twoRange = new InetAddress[2];
-        twoRange[0] = mock(InetAddress.class); // InetAddresses.forString("192.168.0.0")
-        twoRange[1] = mock(InetAddress.class); // InetAddresses.forString("192.168.0.1")
-        try {
-            doReturn(oneStartIpAddress).when(oneRange[0]).getHostAddress();
-            doReturn(InetAddresses.forString(oneStartIpAddress).getAddress()).when(oneRange[0]).getAddress();
-            doReturn(true).when(oneRange[0]).isReachable(pingTimeoutInSeconds * 1000);
-
-            // doReturn(oneEndIpAddress).when(oneRange[1]).getHostAddress();
-            doReturn(InetAddresses.forString(oneEndIpAddress).getAddress()).when(oneRange[1]).getAddress();
-
-            doReturn(InetAddresses.forString(twoEndIpAddress).getAddress()).when(twoRange[1]).getAddress();
-
-            // doReturn(twoStartIpAddress).when(oneRange[0]).getHostAddress();
-            doReturn(InetAddresses.forString(twoStartIpAddress).getAddress()).when(twoRange[0]).getAddress();
-        } catch (IOException e) {
-            fail(e.getMessage());
-        }
-        ipRangesList.add(oneRange);
-        ipRangesList.add(twoRange);
+        String startIpAddress = "192.168.0.1"; // responds, but is an existing device
+        String endIpAddress = "192.168.0.2";   // does not respond and is an existing device
 
+        mockSnmpSession(startIpAddress);
         Map<String, DeviceManagedObjectWrapper> existingDeviceMap = new HashMap<>();
-//        existingDeviceMap.put(oneRange[0].getHostAddress(), null);
-
+        existingDeviceMap.put(startIpAddress, null);
+        existingDeviceMap.put(endIpAddress, null);
         doReturn(existingDeviceMap).when(gatewayDataProvider).getSnmpDeviceMap();
-        doReturn(true).when(deviceDiscoveryService).isDeviceSnmpEnabled(oneRange[0], port, isProtocolUdp, communityTarget);
-        doNothing().when(deviceDiscoveryService).createAndRegisterAChildDevice(oneStartIpAddress, port);
+        doNothing().when(deviceDiscoveryService).handleNoResponseFromDevice(eq(c8y_DeviceNotResponding + endIpAddress), any(String.class));
 
         // when
-        deviceDiscoveryService.scanForSnmpDevicesAndCreateChildDevices(ipRangesList, port, isProtocolUdp, pingTimeoutInSeconds, communityTarget);
+        deviceDiscoveryService.scanForSnmpDevicesAndCreateChildDevices(ipRanges(startIpAddress, endIpAddress), port, true, 1, "public");
 
         // then
-        verify(deviceDiscoveryService, times(1)).createAndRegisterAChildDevice(eq(oneStartIpAddress), eq(port));
-        verify(deviceDiscoveryService, times(0)).createAndRegisterAChildDevice(eq(oneEndIpAddress), eq(port));
-        verify(gatewayDataProvider, times(1)).refreshGatewayObjects();
+        verify(deviceDiscoveryService, times(1)).handleNoResponseFromDevice(eq(c8y_DeviceNotResponding + endIpAddress), any(String.class));
+        verify(deviceDiscoveryService, times(0)).createAndRegisterAChildDevice(any(String.class), anyInt());
+        verify(gatewayDataProvider, times(0)).refreshGatewayObjects();
     }
 
     @Test
-    public void shouldScanForSnmpDevicesAndCreateChildDevices_handleNoResponseFromDevice() {
+    public void shouldResumeScanFromTheSavedProgress() throws IOException {
         // given
         int port = 162;
-        boolean isProtocolUdp = true;
-        int pingTimeoutInSeconds = 1;
-        String communityTarget = "public";
+        String startIpAddress = "192.168.0.1"; // scanned before the scan was interrupted
+        String endIpAddress = "192.168.0.2";
 
-        String startIpAddress = "192.168.0.1"; // is reachable but device is not snmp enabled
-        String endIpAddress = "192.168.0.2";   // is not reachable as the second one's isReachable is not mocked and also it is an existing device
-
-        List<InetAddress[]> ipRangesList = new ArrayList<>();
-        InetAddress[] oneRange = new InetAddress[2];
-        oneRange[0] = mock(InetAddress.class); // InetAddresses.forString("192.168.0.1")
-        oneRange[1] = mock(InetAddress.class); // InetAddresses.forString("192.168.0.2")
-        try {
-            doReturn(startIpAddress).when(oneRange[0]).getHostAddress();
-            doReturn(InetAddresses.forString(startIpAddress).getAddress()).when(oneRange[0]).getAddress();
-            doReturn(true).when(oneRange[0]).isReachable(pingTimeoutInSeconds * 1000);
-
-            doReturn(endIpAddress).when(oneRange[1]).getHostAddress();
-            doReturn(InetAddresses.forString(endIpAddress).getAddress()).when(oneRange[1]).getAddress();
-        } catch (IOException e) {
-            fail(e.getMessage());
-        }
-        ipRangesList.add(oneRange);
+        Snmp snmp = mockSnmpSession(endIpAddress);
+        doReturn(new HashMap<>()).when(gatewayDataProvider).getSnmpDeviceMap();
+        when(discoveryProgressStore.getOrDefault("192.168.0.1-192.168.0.2/162", 0L)).thenReturn(1L);
+        doNothing().when(deviceDiscoveryService).createAndRegisterAChildDevice(endIpAddress, port);
 
-        Map<String, DeviceManagedObjectWrapper> existingDeviceMap = new HashMap<>();
-//        existingDeviceMap.put(oneRange[0].getHostAddress(), null);
-        existingDeviceMap.put(oneRange[1].getHostAddress(), null);
+        // when
+        deviceDiscoveryService.scanForSnmpDevicesAndCreateChildDevices(ipRanges(startIpAddress, endIpAddress), port, true, 1, "public");
 
-        doReturn(existingDeviceMap).when(gatewayDataProvider).getSnmpDeviceMap();
+        // then
+        verify(snmp, times(1)).send(any(PDU.class), any(Target.class), any(), any(ResponseListener.class));
+        verify(deviceDiscoveryService, times(1)).createAndRegisterAChildDevice(eq(endIpAddress), eq(port));
+        verify(deviceDiscoveryService, times(0)).createAndRegisterAChildDevice(eq(startIpAddress), eq(port));
+    }
 
-        doReturn(false).when(deviceDiscoveryService).isDeviceSnmpEnabled(oneRange[0], port, isProtocolUdp, communityTarget);
-        doNothing().when(deviceDiscoveryService).handleNoResponseFromDevice(eq(c8y_DeviceSnmpNotEnabled + startIpAddress), any(String.class));
-        doNothing().when(deviceDiscoveryService).handleNoResponseFromDevice(eq(c8y_DeviceNotResponding + endIpAddress), any(String.class));
+    @Test
+    public void shouldRemoveProgressOfScansOfOtherIpRanges() throws IOException {
+        // given
+        int port = 162;
+        String startIpAddress = "192.168.0.1";
+        String endIpAddress = "192.168.0.2";
+
+        mockSnmpSession(startIpAddress);
+        doReturn(new HashMap<>()).when(gatewayDataProvider).getSnmpDeviceMap();
+        doNothing().when(deviceDiscoveryService).createAndRegisterAChildDevice(startIpAddress, port);
+        when(discoveryProgressStore.keySet()).thenReturn(new HashSet<>(Arrays.asList("10.0.0.1-10.0.0.9/161", "192.168.0.1-192.168.0.2/162")));
 
         // when
-        deviceDiscoveryService.scanForSnmpDevicesAndCreateChildDevices(ipRangesList, port, isProtocolUdp, pingTimeoutInSeconds, communityTarget);
+        deviceDiscoveryService.scanForSnmpDevicesAndCreateChildDevices(ipRanges(startIpAddress, endIpAddress), port, true, 1, "public");
 
         // then
-        verify(deviceDiscoveryService, times(1)).handleNoResponseFromDevice(eq(c8y_DeviceSnmpNotEnabled + startIpAddress), any(String.class));
-        verify(deviceDiscoveryService, times(1)).handleNoResponseFromDevice(eq(c8y_DeviceNotResponding + endIpAddress), any(String.class));
+        verify(discoveryProgressStore, times(1)).remove("10.0.0.1-10.0.0.9/161");
+        verify(discoveryProgressStore, times(1)).remove("192.168.0.1-192.168.0.2/162"); // once the scan completed
+    }
+
+    private Snmp mockSnmpSession(String respondingIpAddress) throws IOException {
+        Snmp snmp = mock(Snmp.class);
+        doReturn(snmp).when(deviceDiscoveryService).openSession(true, 1000L);
+
+        // Respond immediately, only from the given IP Address
+        doAnswer(invocation -> {
+            Target target = invocation.getArgument(1);
+            boolean responding = ((UdpAddress) target.getAddress()).getInetAddress().getHostAddress().equals(respondingIpAddress);
+            ((ResponseListener) invocation.getArgument(3)).onResponse(
+                    new ResponseEvent(snmp, null, invocation.getArgument(0), responding ? new PDU() : null, invocation.getArgument(2)));
+            return null;
+        }).when(snmp).send(any(PDU.class), any(Target.class), any(), any(ResponseListener.class));
+
+        return snmp;
+    }
+
+    private static List<InetAddress[]> ipRanges(String startIpAddress, String endIpAddress) {
+        return Collections.singletonList(new InetAddress[] {
+                IpAddressUtil.forString(startIpAddress),
+                IpAddressUtil.forString(endIpAddress)
+        });
     }
 
     @Test
@@ -23,11 +23,9 @@ import ch.qos.logback.classic.Logger;
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.core.read.ListAppender;
 import com.cumulocity.agent.snmp.config.GatewayProperties;
-import com.cumulocity.agent.snmp.platform.model.DeviceManagedObjectWrapper;
+import com.cumulocity.agent.snmp.platform.model.GatewayDataChangedEvent;
 import com.cumulocity.agent.snmp.platform.model.GatewayManagedObjectWrapper;
 import com.cumulocity.agent.snmp.platform.service.GatewayDataProvider;
-import com.cumulocity.model.idtype.GId;
-import com.cumulocity.rest.representation.inventory.ManagedObjectRepresentation;
 import lombok.Getter;
 import org.junit.After;
 import org.junit.Before;
@@ -38,10 +36,10 @@ import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.slf4j.LoggerFactory;
+import org.snmp4j.Snmp;
 import org.snmp4j.TransportMapping;
 import org.snmp4j.security.*;
 import org.snmp4j.smi.Integer32;
-import org.snmp4j.smi.OctetString;
 import org.snmp4j.transport.DefaultTcpTransportMapping;
 import org.snmp4j.transport.DefaultUdpTransportMapping;
 import org.springframework.scheduling.TaskScheduler;
@@ -51,9 +49,9 @@ import java.io.IOException;
 import java.security.Permission;
 import java.time.Duration;
 import java.util.Collection;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.HashSet;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -81,6 +79,12 @@ public class DeviceListenerServiceTest {
 	@Mock
 	TaskScheduler taskScheduler;
 
+	@Mock
+	DevicePollingService devicePollingService;
+
+	@Mock
+	UserSecurityModelService userSecurityModelService;
+
 	@Mock
 	GatewayManagedObjectWrapper gatewayDeviceWrapper;
 
@@ -98,24 +102,8 @@ public class DeviceListenerServiceTest {
 
 	private Integer32 modeID;
 
-	private OctetString engineID;
-
-	private OctetString userName;
-
-	private OctetString authPass;
-
-	private OctetString privPass;
-
 	private ListAppender<ILoggingEvent> listAppender;
 
-	private ManagedObjectRepresentation snmpDeviceMo;
-
-	private Map<String, Object> deviceAuthMap = new HashMap<>();
-
-	private Map<String, Object> SnmpDeviceProperties = new HashMap<>();
-
-	private Map<String, DeviceManagedObjectWrapper> deviceProtocolMap = new HashMap<>();
-
 	@Before
 	public void setup() {
 		listAppender = new ListAppender<>();
@@ -125,36 +113,9 @@ public class DeviceListenerServiceTest {
 
 		modeID = new Integer32(SecurityModel.SECURITY_MODEL_USM);
 
-		engineID = new OctetString("45:U9:39:900:FJ8");
-		userName = new OctetString("user1");
-		authPass = new OctetString("AuthPassw0rd");
-		privPass = new OctetString("Passw0rd");
-
-		deviceAuthMap.put("engineId", engineID.toString());
-		deviceAuthMap.put("username", userName.toString());
-		deviceAuthMap.put("authProtocol", 1);
-		deviceAuthMap.put("authPassword", authPass.toString());
-		deviceAuthMap.put("privProtocol", 1);
-		deviceAuthMap.put("privPassword", privPass.toString());
-		deviceAuthMap.put("securityLevel", 3);
-
-		SnmpDeviceProperties.put("ipAddress", "127.0.0.1");
-		SnmpDeviceProperties.put("port", "161");
-		SnmpDeviceProperties.put("type", "/inventory/managedObjects/3451");
-		SnmpDeviceProperties.put("version", 3);
-		SnmpDeviceProperties.put("auth", deviceAuthMap);
-
-		snmpDeviceMo = new ManagedObjectRepresentation();
-		snmpDeviceMo.setId(new GId("snmp-device"));
-		snmpDeviceMo.set(SnmpDeviceProperties, DeviceManagedObjectWrapper.C8Y_SNMP_DEVICE);
-
-		DeviceManagedObjectWrapper deviceMoWrapper = new DeviceManagedObjectWrapper(snmpDeviceMo);
-		deviceProtocolMap.put("snmp-device", deviceMoWrapper);
-
 		when(snmpProperties.getTrapListenerAddress()).thenReturn("127.0.0.1");
 		when(snmpProperties.getTrapListenerPort()).thenReturn(6671);
 		when(snmpProperties.getTrapListenerProtocol()).thenReturn("UDP");
-		when(gatewayDataProvider.getSnmpDeviceMap()).thenReturn(Collections.emptyMap());
 		when(gatewayDataProvider.getGatewayDevice()).thenReturn(gatewayDeviceWrapper);
 		when(gatewayDeviceWrapper.getSnmpCommunicationProperties()).thenReturn(snmpCommunicationProperties);
 		when(snmpCommunicationProperties.getPollingRate()).thenReturn(1L);
@@ -162,45 +123,6 @@ public class DeviceListenerServiceTest {
 		System.setSecurityManager(new NoExitSecurityManager());
 	}
 
-	@Test
-	public void shouldConfigureUSMOnBootstrapReadyEvent() {
-		when(snmpProperties.getTrapListenerProtocol()).thenReturn("udp");
-
-		SecurityModel securityModel = SecurityModels.getInstance().getSecurityModel(modeID);
-		assertNull(securityModel);
-
-		// Action
-		ReflectionTestUtils.invokeMethod(deviceListenerService, "createSnmpDeviceListener");
-
-		securityModel = SecurityModels.getInstance().getSecurityModel(modeID);
-		assertNotNull(securityModel);
-		assertThat(securityModel, instanceOf(USM.class));
-	}
-
-	@Test
-	public void shouldAddUserToUSMForTheDevicesWithSnmpV3Version() {
-		when(snmpProperties.getTrapListenerProtocol()).thenReturn("udp");
-		when(gatewayDataProvider.getSnmpDeviceMap()).thenReturn(deviceProtocolMap);
-
-		SecurityModel securityModel = SecurityModels.getInstance().getSecurityModel(modeID);
-		assertNull(securityModel);
-
-		// Action
-		ReflectionTestUtils.invokeMethod(deviceListenerService, "createSnmpDeviceListener");
-
-		securityModel = SecurityModels.getInstance().getSecurityModel(modeID);
-		assertNotNull(securityModel);
-		assertThat(securityModel, instanceOf(USM.class));
-		assertEquals(1, ((USM) securityModel).getUserTable().getUserEntries().size());
-
-		UsmUser user = ((USM) securityModel).getUserTable().getUser(engineID, userName).getUsmUser();
-		assertEquals(userName, user.getSecurityName());
-		assertEquals(AuthMD5.ID, user.getAuthenticationProtocol());
-		assertEquals(authPass, user.getAuthenticationPassphrase());
-		assertEquals(PrivDES.ID, user.getPrivacyProtocol());
-		assertEquals(privPass, user.getPrivacyPassphrase());
-	}
-
 	@Test(expected = ExitException.class)
 	public void shouldCreateSnmpDeviceListenerFailIfPortIsAlreadyInUse() {
 
@@ -235,50 +157,6 @@ public class DeviceListenerServiceTest {
 		}
 	}
 
-	@Test
-	public void shouldUpdateUSMOnGatewayDataRefreshedEvent() {
-		// Add valid version 3 user credentials
-		shouldAddUserToUSMForTheDevicesWithSnmpV3Version();
-
-		// Changing SNMP version to 1 for the same device
-		SnmpDeviceProperties.put("version", 1);
-		DeviceManagedObjectWrapper deviceMoWrapper = new DeviceManagedObjectWrapper(snmpDeviceMo);
-		gatewayDataProvider.getSnmpDeviceMap().put("snmp-device", deviceMoWrapper);
-
-		// Action
-		ReflectionTestUtils.invokeMethod(deviceListenerService, "onGatewayDataRefresh");
-
-		SecurityModel securityModel = SecurityModels.getInstance().getSecurityModel(modeID);
-		assertNotNull(securityModel);
-		assertThat(securityModel, instanceOf(USM.class));
-		assertEquals(0, ((USM) securityModel).getUserTable().getUserEntries().size());
-	}
-
-	@Test
-	public void shouldNotAddUserIfSecurityLevelIsInvalid() {
-		int invalidSecurityLevel = -1;
-		String errorMsg = "Unsupported " + invalidSecurityLevel + " Security level found in " + userName.toString()
-				+ " user, configured for device having " + engineID.toString() + " as engine id";
-
-		deviceAuthMap.put("securityLevel", invalidSecurityLevel);
-		DeviceManagedObjectWrapper deviceMoWrapper = new DeviceManagedObjectWrapper(snmpDeviceMo);
-		deviceProtocolMap.put("snmp-device", deviceMoWrapper);
-
-		when(gatewayDataProvider.getSnmpDeviceMap()).thenReturn(deviceProtocolMap);
-
-		SecurityModel securityModel = SecurityModels.getInstance().getSecurityModel(modeID);
-		assertNull(securityModel);
-
-		// Action
-		ReflectionTestUtils.invokeMethod(deviceListenerService, "configureUserSecurityModel");
-
-		securityModel = SecurityModels.getInstance().getSecurityModel(modeID);
-		assertNotNull(securityModel);
-		assertThat(securityModel, instanceOf(USM.class));
-		assertEquals(0, ((USM) securityModel).getUserTable().getUserEntries().size());
-		assertTrue(checkLogExist(errorMsg));
-	}
-
 	@Test
 	@SuppressWarnings("rawtypes")
 	public void shouldConfigureTcpTransportMappingForTcp() {
@@ -346,6 +224,27 @@ public class DeviceListenerServiceTest {
 		verify(deviceListenerService, times(1)).createSnmpDeviceListener();
 	}
 
+	@Test
+	public void shouldRefreshUsersOfTheUSMWhileCreatingSnmpDeviceListener() {
+		// Action
+		ReflectionTestUtils.invokeMethod(deviceListenerService, "createSnmpDeviceListener");
+
+		verify(userSecurityModelService, times(1)).refreshUsers();
+	}
+
+	@Test
+	public void shouldUpdateUsersOfAffectedDevicesOnGatewayDataChangedEvent() {
+		deviceListenerService.snmp = mock(Snmp.class);
+
+		// Action
+		ReflectionTestUtils.invokeMethod(deviceListenerService, "onGatewayDataChanged",
+				new GatewayDataChangedEvent(Collections.emptySet(), Collections.singleton("127.0.0.2"),
+						Collections.emptySet(), Collections.emptySet()));
+
+		verify(userSecurityModelService, times(1)).updateUsers(Collections.singleton("127.0.0.2"));
+		verify(userSecurityModelService, never()).refreshUsers();
+	}
+
 	@Test
 	public void shouldInitiateDevicePollingWhileHandlingBootstrapReadyEvent() {
 		// Action
@@ -355,29 +254,60 @@ public class DeviceListenerServiceTest {
 	}
 
 	@Test
-	public void shouldReconfigurePollingScheduledJobIfIntervalChanges() {
-		ReflectionTestUtils.setField(deviceListenerService, "pollingRateInSeconds", 1L);
+	public void shouldRefreshDevicePollersOfAffectedDevicesOnGatewayDataChangedEvent() {
+		deviceListenerService.snmp = mock(Snmp.class);
+
+		// Action
+		ReflectionTestUtils.invokeMethod(deviceListenerService, "onGatewayDataChanged",
+				new GatewayDataChangedEvent(Collections.singleton("127.0.0.2"), Collections.emptySet(),
+						Collections.singleton("127.0.0.3"), Collections.emptySet()));
+
+		verify(devicePollingService, times(1))
+				.refreshDevicePollers(new HashSet<>(Arrays.asList("127.0.0.2", "127.0.0.3")));
+		verify(devicePollingService, never()).refreshDevicePollers();
+	}
+
+	@Test
+	public void shouldIgnoreGatewayDataChangedEventBeforeListeningToTraps() {
+		// Action
+		ReflectionTestUtils.invokeMethod(deviceListenerService, "onGatewayDataChanged",
+				new GatewayDataChangedEvent(Collections.singleton("127.0.0.2"), Collections.emptySet(),
+						Collections.emptySet(), Collections.emptySet()));
+
+		verifyNoInteractions(devicePollingService);
+	}
+
+	@Test
+	public void shouldNotRefreshDevicePollersOnGatewayDataRefreshedEvent() {
+		// Action
+		ReflectionTestUtils.invokeMethod(deviceListenerService, "onGatewayDataRefresh");
+
+		verify(devicePollingService, never()).refreshDevicePollers();
+	}
+
+	@Test
+	public void shouldScheduleTicksOfDevicePollingAndPassPollingRate() {
 		when(snmpCommunicationProperties.getPollingRate()).thenReturn(123L);
 
 		// Action
 		ReflectionTestUtils.invokeMethod(deviceListenerService, "onGatewayDataRefresh");
 
 		verify(deviceListenerService, times(1)).createSnmpDevicePoller();
-		verify(taskScheduler).scheduleWithFixedDelay(any(Runnable.class), eq(Duration.ofSeconds(123L)));
+		verify(devicePollingService).setDefaultPollingRate(123L);
+		verify(taskScheduler).scheduleAtFixedRate(any(Runnable.class), eq(DevicePollingService.POLL_TICK));
 	}
 
 	@Test
-	public void shouldNotReconfigurePollingScheduledJobIfIntervalIsSame() {
+	public void shouldOnlyPassPollingRateIfTicksOfDevicePollingAreScheduled() {
 		ReflectionTestUtils.setField(deviceListenerService, "snmpDevicePoller", snmpDevicePoller);
-		ReflectionTestUtils.setField(deviceListenerService, "pollingRateInSeconds", 1L);
-		when(snmpCommunicationProperties.getPollingRate()).thenReturn(1L);
 		when(snmpDevicePoller.isDone()).thenReturn(false);
 
 		// Action
 		ReflectionTestUtils.invokeMethod(deviceListenerService, "onGatewayDataRefresh");
 
 		verify(deviceListenerService, times(1)).createSnmpDevicePoller();
-		verify(taskScheduler, times(0)).scheduleWithFixedDelay(any(Runnable.class), eq(Duration.ofMinutes(1L)));
+		verify(devicePollingService).setDefaultPollingRate(1L);
+		verify(taskScheduler, never()).scheduleAtFixedRate(any(Runnable.class), any(Duration.class));
 	}
 
 	@After
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA, 
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cumulocity.agent.snmp.device.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.Test;
+
+public class DevicePollSchedulerTest {
+
+	private static final long NOW = 1_000_000;
+
+	private final LongAdder missedDeadlines = new LongAdder();
+
+	private final DevicePollScheduler pollScheduler = new DevicePollScheduler(100, 1024, missedDeadlines);
+
+	@Test
+	public void shouldPollEveryDeviceOnceWithinItsIntervalSpreadAcrossTheInterval() {
+		for (int i = 0; i < 100; i++) {
+			pollScheduler.schedule("10.0.0." + i, 10_000, NOW);
+		}
+
+		Map<String, Integer> pollCounts = new HashMap<>();
+		Set<Long> ticksWithPolls = new HashSet<>();
+
+		// Action
+		for (long now = NOW + 100; now <= NOW + 10_000; now += 100) {
+			List<String> dueDevices = pollScheduler.advance(now);
+			if (!dueDevices.isEmpty()) {
+				ticksWithPolls.add(now);
+			}
+			dueDevices.forEach(deviceIp -> pollCounts.merge(deviceIp, 1, Integer::sum));
+		}
+
+		assertEquals(100, pollCounts.size());
+		assertEquals(Collections.singleton(1), new HashSet<>(pollCounts.values()));
+		assertTrue(ticksWithPolls.size() > 10);
+		assertEquals(0, missedDeadlines.sum());
+	}
+
+	@Test
+	public void shouldKeepPhaseOfDeviceWhenRescheduled() {
+		pollScheduler.schedule("10.0.0.1", 10_000, NOW);
+		long firstPoll = findNextPoll(NOW, "10.0.0.1");
+
+		// Action
+		pollScheduler.schedule("10.0.0.1", 10_000, firstPoll + 3_000);
+
+		assertEquals(firstPoll + 10_000, findNextPoll(firstPoll + 3_000, "10.0.0.1"));
+	}
+
+	@Test
+	public void shouldNotPollCancelledDevice() {
+		pollScheduler.schedule("10.0.0.1", 1_000, NOW);
+
+		// Action
+		pollScheduler.cancel("10.0.0.1");
+
+		assertEquals(0, pollScheduler.size());
+		assertTrue(pollScheduler.advance(NOW + 2_000).isEmpty());
+	}
+
+	@Test
+	public void shouldPollOnceAndCountMissedDeadlinesWhenFallingBehind() {
+		pollScheduler.schedule("10.0.0.1", 1_000, NOW);
+
+		// Action
+		List<String> dueDevices = pollScheduler.advance(NOW + 5_500);
+
+		assertEquals(Collections.singletonList("10.0.0.1"), dueDevices);
+		assertTrue(missedDeadlines.sum() >= 4);
+		assertTrue(pollScheduler.advance(NOW + 5_500).isEmpty());
+	}
+
+	private long findNextPoll(long from, String deviceIp) {
+		for (long now = from + 100; now <= from + 20_000; now += 100) {
+			if (pollScheduler.advance(now).contains(deviceIp)) {
+				return now;
+			}
+		}
+
+		throw new AssertionError("Device " + deviceIp + " was not polled");
+	}
+}
@@ -0,0 +1,342 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA,
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cumulocity.agent.snmp.device.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.snmp4j.PDU;
+import org.snmp4j.Snmp;
+import org.snmp4j.event.ResponseEvent;
+import org.snmp4j.event.ResponseListener;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.OctetString;
+import org.snmp4j.smi.VariableBinding;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.cumulocity.agent.snmp.config.GatewayProperties;
+import com.cumulocity.agent.snmp.platform.model.DeviceManagedObjectWrapper;
+import com.cumulocity.agent.snmp.platform.model.DeviceProtocolManagedObjectWrapper;
+import com.cumulocity.agent.snmp.platform.service.GatewayDataProvider;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DevicePollingServiceTest {
+
+	@Mock
+	private GatewayProperties.SnmpProperties snmpProperties;
+
+	@Mock
+	private GatewayDataProvider gatewayDataProvider;
+
+	@Mock
+	private TaskScheduler taskScheduler;
+
+	@Mock
+	private DeviceDataHandler deviceDataHandler;
+
+	@Mock
+	private ReportingPolicyService reportingPolicyService;
+
+	@Mock
+	private SnmpDevicePoller devicePoller;
+
+	@InjectMocks
+	private DevicePollingService devicePollingService;
+
+	private PDU request = new PDU();
+
+	@Before
+	public void setup() {
+		ReflectionTestUtils.setField(devicePollingService, "inFlightRequests", new Semaphore(10));
+		ReflectionTestUtils.setField(devicePollingService, "devicePollers",
+				Collections.singletonMap("127.0.0.1", devicePoller));
+	}
+
+	@Test
+	public void shouldCreateDevicePollersOnlyForDevicesWithMeasurementsToPoll() {
+		DeviceManagedObjectWrapper deviceWithProtocol = mockDevice("protocol");
+		DeviceManagedObjectWrapper deviceWithoutProtocol = mock(DeviceManagedObjectWrapper.class);
+		when(deviceWithoutProtocol.getDeviceProtocol()).thenReturn("unknown");
+		DeviceProtocolManagedObjectWrapper protocol = mock(DeviceProtocolManagedObjectWrapper.class);
+		when(protocol.getMeasurementVariableBindingList())
+				.thenReturn(Collections.singletonList(new VariableBinding(new OID("1.3.6.1.2.1.1.3.0"))));
+
+		Map<String, DeviceManagedObjectWrapper> deviceMap = new HashMap<>();
+		deviceMap.put("127.0.0.1", deviceWithProtocol);
+		deviceMap.put("127.0.0.2", deviceWithoutProtocol);
+		when(gatewayDataProvider.getSnmpDeviceMap()).thenReturn(deviceMap);
+		when(gatewayDataProvider.getProtocolMap()).thenReturn(Collections.singletonMap("protocol", protocol));
+		when(snmpProperties.getCommunityTarget()).thenReturn("public");
+
+		// Action
+		devicePollingService.refreshDevicePollers();
+
+		Map<?, ?> devicePollers = (Map<?, ?>) ReflectionTestUtils.getField(devicePollingService, "devicePollers");
+		assertEquals(Collections.singleton("127.0.0.1"), devicePollers.keySet());
+		verify(reportingPolicyService).retainDevices(deviceMap.keySet());
+	}
+
+	@Test
+	public void shouldRefreshDevicePollersOnlyForGivenDevices() {
+		DeviceManagedObjectWrapper addedDevice = mockDevice("protocol");
+		DeviceProtocolManagedObjectWrapper protocol = mock(DeviceProtocolManagedObjectWrapper.class);
+		when(protocol.getMeasurementVariableBindingList())
+				.thenReturn(Collections.singletonList(new VariableBinding(new OID("1.3.6.1.2.1.1.3.0"))));
+
+		when(gatewayDataProvider.getSnmpDeviceMap()).thenReturn(Collections.singletonMap("127.0.0.2", addedDevice));
+		when(gatewayDataProvider.getProtocolMap()).thenReturn(Collections.singletonMap("protocol", protocol));
+		when(snmpProperties.getCommunityTarget()).thenReturn("public");
+		ReflectionTestUtils.setField(devicePollingService, "devicePollers",
+				new HashMap<>(Collections.singletonMap("127.0.0.3", devicePoller)));
+
+		// Action
+		devicePollingService.refreshDevicePollers(Arrays.asList("127.0.0.1", "127.0.0.2"));
+
+		Map<?, ?> devicePollers = (Map<?, ?>) ReflectionTestUtils.getField(devicePollingService, "devicePollers");
+		assertEquals(new HashSet<>(Arrays.asList("127.0.0.2", "127.0.0.3")), devicePollers.keySet());
+		assertEquals(devicePoller, devicePollers.get("127.0.0.3"));
+		verify(reportingPolicyService).removeDevice("127.0.0.1");
+		verify(reportingPolicyService, never()).removeDevice("127.0.0.2");
+	}
+
+	@Test
+	public void shouldNotPollDeviceAgainWhileRequestIsPending() throws IOException {
+		when(devicePoller.getRequests()).thenReturn(Collections.singletonList(request));
+
+		// Action
+		devicePollingService.pollDevice("127.0.0.1");
+		devicePollingService.pollDevice("127.0.0.1");
+
+		verify(devicePoller, times(1)).send(eq(request), any(), any(ResponseListener.class));
+		assertEquals(1, devicePollingService.getMissedPollDeadlines());
+	}
+
+	@Test
+	public void shouldScheduleDevicesAtPollingRateOfTheirProtocol() {
+		DeviceManagedObjectWrapper device = mockDevice("protocol");
+		DeviceProtocolManagedObjectWrapper protocol = mock(DeviceProtocolManagedObjectWrapper.class);
+		when(protocol.getMeasurementVariableBindingList())
+				.thenReturn(Collections.singletonList(new VariableBinding(new OID("1.3.6.1.2.1.1.3.0"))));
+		when(protocol.getPollingRate()).thenReturn(5L);
+
+		when(gatewayDataProvider.getSnmpDeviceMap()).thenReturn(Collections.singletonMap("127.0.0.1", device));
+		when(gatewayDataProvider.getProtocolMap()).thenReturn(Collections.singletonMap("protocol", protocol));
+		when(snmpProperties.getCommunityTarget()).thenReturn("public");
+
+		// Action
+		devicePollingService.refreshDevicePollers();
+
+		assertEquals(1, getPollScheduler().size());
+	}
+
+	@Test
+	public void shouldScheduleDevicesWithoutPollingRateOfTheirOwnAtDefaultPollingRate() {
+		DeviceManagedObjectWrapper device = mockDevice("protocol");
+		DeviceProtocolManagedObjectWrapper protocol = mock(DeviceProtocolManagedObjectWrapper.class);
+		when(protocol.getMeasurementVariableBindingList())
+				.thenReturn(Collections.singletonList(new VariableBinding(new OID("1.3.6.1.2.1.1.3.0"))));
+
+		when(gatewayDataProvider.getSnmpDeviceMap()).thenReturn(Collections.singletonMap("127.0.0.1", device));
+		when(gatewayDataProvider.getProtocolMap()).thenReturn(Collections.singletonMap("protocol", protocol));
+		when(snmpProperties.getCommunityTarget()).thenReturn("public");
+
+		devicePollingService.refreshDevicePollers();
+		assertEquals(0, getPollScheduler().size());
+
+		// Action
+		devicePollingService.setDefaultPollingRate(10);
+
+		assertEquals(1, getPollScheduler().size());
+
+		// Action
+		devicePollingService.setDefaultPollingRate(0);
+
+		assertEquals(0, getPollScheduler().size());
+	}
+
+	@Test
+	public void shouldProcessResponseAndPollDeviceAgain() throws IOException {
+		doAnswer(invocation -> {
+			((Runnable) invocation.getArgument(0)).run();
+			return null;
+		}).when(taskScheduler).execute(any(Runnable.class));
+		when(devicePoller.getRequests()).thenReturn(Collections.singletonList(request));
+
+		devicePollingService.pollDevice("127.0.0.1");
+
+		ArgumentCaptor<Object> userHandle = ArgumentCaptor.forClass(Object.class);
+		ArgumentCaptor<ResponseListener> listener = ArgumentCaptor.forClass(ResponseListener.class);
+		verify(devicePoller).send(eq(request), userHandle.capture(), listener.capture());
+
+		PDU response = new PDU();
+		response.add(new VariableBinding(new OID("1.3.6.1.2.1.1.3.0"), new OctetString("value")));
+		Snmp snmp = mock(Snmp.class);
+
+		// Action
+		listener.getValue().onResponse(new ResponseEvent(snmp, null, request, response, userHandle.getValue()));
+		devicePollingService.pollDevice("127.0.0.1");
+
+		verify(snmp).cancel(request, listener.getValue());
+		verify(deviceDataHandler).processPolledPdu("127.0.0.1", response);
+		verify(devicePoller, times(2)).send(eq(request), any(), any(ResponseListener.class));
+	}
+
+	@Test
+	public void shouldSplitRequestAnsweredWithTooBigAndKeepDevicePendingUntilAllPartsAnswered() throws IOException {
+		doAnswer(invocation -> {
+			((Runnable) invocation.getArgument(0)).run();
+			return null;
+		}).when(taskScheduler).execute(any(Runnable.class));
+		PDU firstPart = new PDU();
+		PDU secondPart = new PDU();
+		when(devicePoller.getRequests()).thenReturn(Collections.singletonList(request));
+		when(devicePoller.split(request)).thenReturn(Arrays.asList(firstPart, secondPart));
+
+		devicePollingService.pollDevice("127.0.0.1");
+
+		ArgumentCaptor<Object> userHandle = ArgumentCaptor.forClass(Object.class);
+		ArgumentCaptor<ResponseListener> listener = ArgumentCaptor.forClass(ResponseListener.class);
+		verify(devicePoller).send(eq(request), userHandle.capture(), listener.capture());
+
+		PDU tooBig = new PDU();
+		tooBig.setErrorStatus(PDU.tooBig);
+		Snmp snmp = mock(Snmp.class);
+
+		// Action
+		listener.getValue().onResponse(new ResponseEvent(snmp, null, request, tooBig, userHandle.getValue()));
+		listener.getValue().onResponse(new ResponseEvent(snmp, null, firstPart, new PDU(), userHandle.getValue()));
+		devicePollingService.pollDevice("127.0.0.1");
+
+		verify(devicePoller).send(eq(firstPart), any(), any(ResponseListener.class));
+		verify(devicePoller).send(eq(secondPart), any(), any(ResponseListener.class));
+		verify(devicePoller, times(1)).send(eq(request), any(), any(ResponseListener.class));
+
+		// Action
+		listener.getValue().onResponse(new ResponseEvent(snmp, null, secondPart, new PDU(), userHandle.getValue()));
+		devicePollingService.pollDevice("127.0.0.1");
+
+		verify(devicePoller, times(2)).send(eq(request), any(), any(ResponseListener.class));
+	}
+
+	@Test
+	public void shouldWalkTablesWithinThePollUntilTheirEnd() throws IOException {
+		doAnswer(invocation -> {
+			((Runnable) invocation.getArgument(0)).run();
+			return null;
+		}).when(taskScheduler).execute(any(Runnable.class));
+		OID ifInOctets = new OID("1.3.6.1.2.1.2.2.1.10");
+		DeviceTableWalk tableWalk = new DeviceTableWalk(Collections.singletonList(ifInOctets));
+		PDU firstWalkRequest = walkRequest();
+		PDU secondWalkRequest = walkRequest();
+		when(devicePoller.getRequests()).thenReturn(Collections.emptyList());
+		when(devicePoller.startTableWalk()).thenReturn(tableWalk);
+		when(devicePoller.createWalkRequest(tableWalk)).thenReturn(firstWalkRequest, secondWalkRequest);
+
+		devicePollingService.pollDevice("127.0.0.1");
+
+		ArgumentCaptor<Object> userHandle = ArgumentCaptor.forClass(Object.class);
+		ArgumentCaptor<ResponseListener> listener = ArgumentCaptor.forClass(ResponseListener.class);
+		verify(devicePoller).send(eq(firstWalkRequest), userHandle.capture(), listener.capture());
+
+		PDU rows = new PDU();
+		rows.add(new VariableBinding(new OID(ifInOctets).append(1), new OctetString("1")));
+		rows.add(new VariableBinding(new OID(ifInOctets).append(2), new OctetString("2")));
+		Snmp snmp = mock(Snmp.class);
+
+		// Action
+		listener.getValue().onResponse(new ResponseEvent(snmp, null, firstWalkRequest, rows, userHandle.getValue()));
+		devicePollingService.pollDevice("127.0.0.1");
+
+		verify(deviceDataHandler).processDeviceTableCells(eq("127.0.0.1"), eq(rows.getVariableBindings()), any());
+		verify(devicePoller).send(eq(secondWalkRequest), any(), any(ResponseListener.class));
+		assertEquals(1, devicePollingService.getMissedPollDeadlines());
+
+		PDU endOfTable = new PDU();
+		endOfTable.add(new VariableBinding(new OID("1.3.6.1.2.1.2.2.1.11.1"), new OctetString("1")));
+
+		// Action
+		listener.getValue().onResponse(new ResponseEvent(snmp, null, secondWalkRequest, endOfTable, userHandle.getValue()));
+		devicePollingService.pollDevice("127.0.0.1");
+
+		assertTrue(tableWalk.isDone());
+		verify(deviceDataHandler, times(1)).processDeviceTableCells(any(), any(), any());
+		assertEquals(1, devicePollingService.getMissedPollDeadlines());
+	}
+
+	@Test
+	public void shouldScheduleWithMonotonicClockStartingAtZero() {
+		long first = devicePollingService.monotonicMillis();
+		long second = devicePollingService.monotonicMillis();
+
+		assertTrue(first >= 0);
+		assertTrue(second >= first);
+	}
+
+	@After
+	public void tearDown() {
+		ReflectionTestUtils.invokeMethod(devicePollingService, "stop");
+	}
+
+	private static PDU walkRequest() {
+		PDU walkRequest = new PDU();
+		walkRequest.setType(PDU.GETBULK);
+		return walkRequest;
+	}
+
+	private DevicePollScheduler getPollScheduler() {
+		return (DevicePollScheduler) ReflectionTestUtils.getField(devicePollingService, "pollScheduler");
+	}
+
+	private DeviceManagedObjectWrapper mockDevice(String deviceProtocol) {
+		DeviceManagedObjectWrapper deviceWrapper = mock(DeviceManagedObjectWrapper.class);
+		DeviceManagedObjectWrapper.SnmpDeviceProperties properties = mock(
+				DeviceManagedObjectWrapper.SnmpDeviceProperties.class);
+		when(deviceWrapper.getDeviceProtocol()).thenReturn(deviceProtocol);
+		when(deviceWrapper.getProperties()).thenReturn(properties);
+		when(properties.getVersion()).thenReturn(1);
+		when(properties.getIpAddress()).thenReturn("127.0.0.1");
+		when(properties.getPort()).thenReturn("161");
+		return deviceWrapper;
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA, 
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cumulocity.agent.snmp.device.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.snmp4j.PDU;
+import org.snmp4j.smi.Counter32;
+import org.snmp4j.smi.Null;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.VariableBinding;
+
+public class DeviceTableWalkTest {
+
+	private static final OID IF_IN_OCTETS = new OID("1.3.6.1.2.1.2.2.1.10");
+
+	private static final OID IF_OUT_OCTETS = new OID("1.3.6.1.2.1.2.2.1.16");
+
+	@Test
+	public void shouldWalkTablesSideBySide() {
+		DeviceTableWalk tableWalk = new DeviceTableWalk(Arrays.asList(IF_IN_OCTETS, IF_OUT_OCTETS));
+		assertEquals(2, tableWalk.nextVariableBindings().size());
+
+		// Action, the rows of both columns repeated one after the other
+		List<VariableBinding> cells = tableWalk.processResponse(response(
+				cell(IF_IN_OCTETS, 1), cell(IF_OUT_OCTETS, 1),
+				cell(IF_IN_OCTETS, 2), cell(IF_OUT_OCTETS, 2)));
+
+		assertEquals(4, cells.size());
+		assertFalse(tableWalk.isDone());
+
+		List<VariableBinding> next = tableWalk.nextVariableBindings();
+		assertEquals(2, next.size());
+		assertEquals(new OID(IF_IN_OCTETS).append(2), next.get(0).getOid());
+		assertEquals(new OID(IF_OUT_OCTETS).append(2), next.get(1).getOid());
+	}
+
+	@Test
+	public void shouldEndTableWithFirstOidOutsideOfItsSubtree() {
+		DeviceTableWalk tableWalk = new DeviceTableWalk(Arrays.asList(IF_IN_OCTETS, IF_OUT_OCTETS));
+
+		// Action, ifInOctets is followed by the next column
+		List<VariableBinding> cells = tableWalk.processResponse(response(
+				cell(IF_IN_OCTETS, 48), cell(IF_OUT_OCTETS, 47),
+				cell(new OID("1.3.6.1.2.1.2.2.1.11"), 1), cell(IF_OUT_OCTETS, 48)));
+
+		assertEquals(3, cells.size());
+
+		List<VariableBinding> next = tableWalk.nextVariableBindings();
+		assertEquals(1, next.size());
+		assertEquals(new OID(IF_OUT_OCTETS).append(48), next.get(0).getOid());
+
+		// Action, ifOutOctets is at the end of the MIB view
+		VariableBinding endOfMibView = new VariableBinding(new OID(IF_OUT_OCTETS).append(48), Null.endOfMibView);
+		cells = tableWalk.processResponse(response(endOfMibView));
+
+		assertTrue(cells.isEmpty());
+		assertTrue(tableWalk.isDone());
+	}
+
+	@Test
+	public void shouldEndTableIfOidIsNotIncreasing() {
+		DeviceTableWalk tableWalk = new DeviceTableWalk(Arrays.asList(IF_IN_OCTETS));
+		tableWalk.processResponse(response(cell(IF_IN_OCTETS, 5)));
+
+		// Action
+		List<VariableBinding> cells = tableWalk.processResponse(response(cell(IF_IN_OCTETS, 5)));
+
+		assertTrue(cells.isEmpty());
+		assertTrue(tableWalk.isDone());
+	}
+
+	@Test
+	public void shouldEndWalkOnEmptyResponse() {
+		DeviceTableWalk tableWalk = new DeviceTableWalk(Arrays.asList(IF_IN_OCTETS, IF_OUT_OCTETS));
+
+		// Action
+		tableWalk.processResponse(response());
+
+		assertTrue(tableWalk.isDone());
+	}
+
+	@Test
+	public void shouldEndTableOfVariableBindingWithNoSuchName() {
+		DeviceTableWalk tableWalk = new DeviceTableWalk(Arrays.asList(IF_IN_OCTETS, IF_OUT_OCTETS));
+
+		// Action
+		tableWalk.endTable(1);
+
+		List<VariableBinding> next = tableWalk.nextVariableBindings();
+		assertEquals(1, next.size());
+		assertEquals(IF_OUT_OCTETS, next.get(0).getOid());
+	}
+
+	private static VariableBinding cell(OID column, int row) {
+		return new VariableBinding(new OID(column).append(row), new Counter32(row * 100L));
+	}
+
+	private static PDU response(VariableBinding... variableBindings) {
+		PDU response = new PDU();
+		response.setType(PDU.RESPONSE);
+		response.addAll(variableBindings);
+
+		return response;
+	}
+}
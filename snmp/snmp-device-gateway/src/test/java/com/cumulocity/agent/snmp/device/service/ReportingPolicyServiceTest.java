@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA, 
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cumulocity.agent.snmp.device.service;
+
+import com.cumulocity.agent.snmp.device.repository.PolledValueStore;
+import com.cumulocity.agent.snmp.platform.model.ReportingPolicy;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.snmp4j.smi.OID;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ReportingPolicyServiceTest {
+
+	private static final OID OID_1 = new OID("1.3.6.1.2.1.1.3.0");
+
+	private static final String KEY = "10.0.0.1/1.3.6.1.2.1.1.3.0";
+
+	@Mock
+	private PolledValueStore polledValueStore;
+
+	@InjectMocks
+	private ReportingPolicyService reportingPolicyService;
+
+	@Test
+	public void shouldReportEveryValueWithoutPolicy() {
+		assertEquals(10, reportingPolicyService.apply("10.0.0.1", OID_1, null, 10, 1_000));
+		assertEquals(10, reportingPolicyService.apply("10.0.0.1", OID_1, new ReportingPolicy(), 10, 2_000));
+
+		verifyNoInteractions(polledValueStore);
+	}
+
+	@Test
+	public void shouldReportOnlyChangedValues() {
+		ReportingPolicy policy = new ReportingPolicy();
+		policy.setOnChange(true);
+
+		assertEquals("up", reportingPolicyService.apply("10.0.0.1", OID_1, policy, "up", 1_000));
+		assertNull(reportingPolicyService.apply("10.0.0.1", OID_1, policy, "up", 2_000));
+		assertEquals("down", reportingPolicyService.apply("10.0.0.1", OID_1, policy, "down", 3_000));
+
+		verify(polledValueStore).put(KEY, "3000;0;0.0;0.0;0.0;down");
+	}
+
+	@Test
+	public void shouldReportOnlyValuesOutsideOfDeadband() {
+		ReportingPolicy policy = new ReportingPolicy();
+		policy.setDeadband(5);
+
+		assertEquals(10L, reportingPolicyService.apply("10.0.0.1", OID_1, policy, 10L, 1_000));
+		assertNull(reportingPolicyService.apply("10.0.0.1", OID_1, policy, 14L, 2_000));
+		assertNull(reportingPolicyService.apply("10.0.0.1", OID_1, policy, 6L, 3_000));
+		assertEquals(16L, reportingPolicyService.apply("10.0.0.1", OID_1, policy, 16L, 4_000));
+
+		verify(polledValueStore, times(2)).put(eq(KEY), anyString());
+	}
+
+	@Test
+	public void shouldReportUnchangedValueAfterMaxSilence() {
+		ReportingPolicy policy = new ReportingPolicy();
+		policy.setOnChange(true);
+		policy.setMaxSilence(60);
+
+		assertEquals(10, reportingPolicyService.apply("10.0.0.1", OID_1, policy, 10, 1_000));
+		assertNull(reportingPolicyService.apply("10.0.0.1", OID_1, policy, 10, 60_999));
+		assertEquals(10, reportingPolicyService.apply("10.0.0.1", OID_1, policy, 10, 61_000));
+		assertNull(reportingPolicyService.apply("10.0.0.1", OID_1, policy, 10, 62_000));
+	}
+
+	@Test
+	public void shouldReportAggregateOfPolls() {
+		ReportingPolicy avgPolicy = aggregation("avg", 3);
+		ReportingPolicy minPolicy = aggregation("MIN", 2);
+		OID minOid = new OID("1.3.6.1.2.1.1.4.0");
+
+		assertNull(reportingPolicyService.apply("10.0.0.1", OID_1, avgPolicy, 10, 1_000));
+		assertNull(reportingPolicyService.apply("10.0.0.1", OID_1, avgPolicy, 20, 2_000));
+		assertEquals(20.0, reportingPolicyService.apply("10.0.0.1", OID_1, avgPolicy, 30, 3_000));
+		assertNull(reportingPolicyService.apply("10.0.0.1", OID_1, avgPolicy, 40, 4_000));
+
+		assertNull(reportingPolicyService.apply("10.0.0.1", minOid, minPolicy, 7, 1_000));
+		assertEquals(3.0, reportingPolicyService.apply("10.0.0.1", minOid, minPolicy, 3, 2_000));
+
+		verify(polledValueStore).put(KEY, "3000;1;40.0;40.0;40.0;20.0");
+	}
+
+	@Test
+	public void shouldFilterAggregates() {
+		ReportingPolicy policy = aggregation("MAX", 2);
+		policy.setDeadband(1);
+
+		reportingPolicyService.apply("10.0.0.1", OID_1, policy, 10, 1_000);
+		assertEquals(12.0, reportingPolicyService.apply("10.0.0.1", OID_1, policy, 12, 2_000));
+		reportingPolicyService.apply("10.0.0.1", OID_1, policy, 11, 3_000);
+		assertNull(reportingPolicyService.apply("10.0.0.1", OID_1, policy, 12.5, 4_000));
+	}
+
+	@Test
+	public void shouldContinueWithStoredState() {
+		ReportingPolicy policy = new ReportingPolicy();
+		policy.setOnChange(true);
+		when(polledValueStore.get(KEY)).thenReturn("1000;0;0.0;0.0;0.0;10");
+
+		assertNull(reportingPolicyService.apply("10.0.0.1", OID_1, policy, 10, 2_000));
+		assertEquals(11, reportingPolicyService.apply("10.0.0.1", OID_1, policy, 11, 3_000));
+	}
+
+	@Test
+	public void shouldContinueAggregationWithStoredState() {
+		when(polledValueStore.get(KEY)).thenReturn("1000;2;10.0;30.0;40.0;25.0");
+
+		assertEquals(30.0, reportingPolicyService.apply("10.0.0.1", OID_1, aggregation("MAX", 3), 20, 2_000));
+	}
+
+	@Test
+	public void shouldIgnoreInvalidStoredState() {
+		ReportingPolicy policy = new ReportingPolicy();
+		policy.setOnChange(true);
+		when(polledValueStore.get(KEY)).thenReturn("invalid");
+
+		assertEquals(10, reportingPolicyService.apply("10.0.0.1", OID_1, policy, 10, 2_000));
+	}
+
+	@Test
+	public void shouldRemoveStateOfDevice() {
+		ReportingPolicy policy = new ReportingPolicy();
+		policy.setOnChange(true);
+		Set<String> storedKeys = new HashSet<>(Arrays.asList(KEY, "10.0.0.10/1.3.6.1.2.1.1.3.0"));
+		when(polledValueStore.keySet()).thenReturn(storedKeys);
+		reportingPolicyService.apply("10.0.0.1", OID_1, policy, 10, 1_000);
+
+		// Action
+		reportingPolicyService.removeDevice("10.0.0.1");
+
+		assertEquals(Collections.singleton("10.0.0.10/1.3.6.1.2.1.1.3.0"), storedKeys);
+		assertEquals(10, reportingPolicyService.apply("10.0.0.1", OID_1, policy, 10, 2_000));
+	}
+
+	@Test
+	public void shouldRemoveStateOfDevicesNotRetained() {
+		Set<String> storedKeys = new HashSet<>(Arrays.asList(KEY, "10.0.0.10/1.3.6.1.2.1.1.3.0"));
+		when(polledValueStore.keySet()).thenReturn(storedKeys);
+
+		// Action
+		reportingPolicyService.retainDevices(Collections.singleton("10.0.0.10"));
+
+		assertEquals(Collections.singleton("10.0.0.10/1.3.6.1.2.1.1.3.0"), storedKeys);
+	}
+
+	@Test
+	public void shouldKeepStateInMemoryIfStoreFails() {
+		ReportingPolicy policy = new ReportingPolicy();
+		policy.setOnChange(true);
+		when(polledValueStore.put(eq(KEY), anyString())).thenThrow(new IllegalStateException("Map is full"));
+
+		// Action
+		assertEquals(10, reportingPolicyService.apply("10.0.0.1", OID_1, policy, 10, 1_000));
+
+		assertNull(reportingPolicyService.apply("10.0.0.1", OID_1, policy, 10, 2_000));
+		assertEquals(11, reportingPolicyService.apply("10.0.0.1", OID_1, policy, 11, 3_000));
+	}
+
+	@Test
+	public void shouldNotAddToFullStore() {
+		ReportingPolicy policy = new ReportingPolicy();
+		policy.setOnChange(true);
+		when(polledValueStore.isFull()).thenReturn(true);
+
+		// Action
+		assertEquals(10, reportingPolicyService.apply("10.0.0.1", OID_1, policy, 10, 1_000));
+
+		assertNull(reportingPolicyService.apply("10.0.0.1", OID_1, policy, 10, 2_000));
+		verify(polledValueStore, never()).put(anyString(), anyString());
+	}
+
+	private static ReportingPolicy aggregation(String aggregation, int polls) {
+		ReportingPolicy policy = new ReportingPolicy();
+		policy.setAggregation(aggregation);
+		policy.setAggregationPolls(polls);
+		return policy;
+	}
+}
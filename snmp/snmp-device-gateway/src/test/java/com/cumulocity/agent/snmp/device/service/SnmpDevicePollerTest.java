@@ -18,13 +18,17 @@
 
 package com.cumulocity.agent.snmp.device.service;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.when;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Vector;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -40,17 +44,12 @@ import org.snmp4j.CommunityTarget;
 import org.snmp4j.PDU;
 import org.snmp4j.Snmp;
 import org.snmp4j.Target;
-import org.snmp4j.security.AuthMD5;
-import org.snmp4j.security.AuthSHA;
-import org.snmp4j.security.PrivAES256;
-import org.snmp4j.security.UsmUser;
-import org.snmp4j.security.UsmUserEntry;
+import org.snmp4j.UserTarget;
 import org.snmp4j.smi.OID;
 import org.snmp4j.smi.OctetString;
 import org.snmp4j.smi.TcpAddress;
 import org.snmp4j.smi.UdpAddress;
 import org.snmp4j.smi.VariableBinding;
-import org.snmp4j.transport.DefaultTcpTransportMapping;
 import org.snmp4j.transport.DefaultUdpTransportMapping;
 import org.springframework.test.util.ReflectionTestUtils;
 
@@ -83,8 +82,12 @@ public class SnmpDevicePollerTest {
 
 	private ListAppender<ILoggingEvent> listAppender;
 
+	private Snmp snmp;
+
 	@Before
-	public void setup() {
+	public void setup() throws IOException {
+		snmp = new Snmp(new DefaultUdpTransportMapping());
+
 		listAppender = new ListAppender<>();
 
 		logger = (Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
@@ -106,35 +109,33 @@ public class SnmpDevicePollerTest {
 		when(snmpProperties.getVersion()).thenReturn(4);
 
 		// Action
-		new SnmpDevicePoller(gatewaySnmpProperties, deviceWrapper, variableBindingList);
+		SnmpDevicePoller snmpDevicePoller = new SnmpDevicePoller(snmp, gatewaySnmpProperties, deviceWrapper,
+				variableBindingList, Collections.emptyList());
 
 		assertTrue(checkLogExist(Level.ERROR, errorMsg));
+		assertFalse(snmpDevicePoller.isValid());
 	}
 
 	@Test
-	public void shouldCreateUDPTransportMappingWhenListenerProtocolIsUDP() throws IOException {
+	public void shouldCreateUDPAddressWhenListenerProtocolIsUDP() throws IOException {
 		when(gatewaySnmpProperties.isTrapListenerProtocolTcp()).thenReturn(false);
 
 		// Action
-		SnmpDevicePoller snmpDevicePoller = new SnmpDevicePoller(gatewaySnmpProperties, deviceWrapper,
-				variableBindingList);
+		SnmpDevicePoller snmpDevicePoller = new SnmpDevicePoller(snmp, gatewaySnmpProperties, deviceWrapper,
+				variableBindingList, Collections.emptyList());
 
 		assertEquals(UdpAddress.class, ReflectionTestUtils.getField(snmpDevicePoller, "address").getClass());
-		assertEquals(DefaultUdpTransportMapping.class,
-				ReflectionTestUtils.getField(snmpDevicePoller, "transport").getClass());
 	}
 
 	@Test
-	public void shouldCreateTCPTransportMappingWhenListenerProtocolIsTCP() throws IOException {
+	public void shouldCreateTCPAddressWhenListenerProtocolIsTCP() throws IOException {
 		when(gatewaySnmpProperties.isTrapListenerProtocolTcp()).thenReturn(true);
 
 		// Action
-		SnmpDevicePoller snmpDevicePoller = new SnmpDevicePoller(gatewaySnmpProperties, deviceWrapper,
-				variableBindingList);
+		SnmpDevicePoller snmpDevicePoller = new SnmpDevicePoller(snmp, gatewaySnmpProperties, deviceWrapper,
+				variableBindingList, Collections.emptyList());
 
 		assertEquals(TcpAddress.class, ReflectionTestUtils.getField(snmpDevicePoller, "address").getClass());
-		assertEquals(DefaultTcpTransportMapping.class,
-				ReflectionTestUtils.getField(snmpDevicePoller, "transport").getClass());
 	}
 
 	@Test
@@ -142,8 +143,8 @@ public class SnmpDevicePollerTest {
 		when(snmpProperties.getVersion()).thenReturn(1);
 
 		// Action
-		SnmpDevicePoller snmpDevicePoller = new SnmpDevicePoller(gatewaySnmpProperties, deviceWrapper,
-				variableBindingList);
+		SnmpDevicePoller snmpDevicePoller = new SnmpDevicePoller(snmp, gatewaySnmpProperties, deviceWrapper,
+				variableBindingList, Collections.emptyList());
 
 		CommunityTarget target = (CommunityTarget) ReflectionTestUtils.getField(snmpDevicePoller, "target");
 
@@ -163,28 +164,17 @@ public class SnmpDevicePollerTest {
 		when(snmpProperties.getAuth()).thenReturn(auth);
 
 		// Action
-		SnmpDevicePoller snmpDevicePoller = new SnmpDevicePoller(gatewaySnmpProperties, deviceWrapper,
-				variableBindingList);
+		SnmpDevicePoller snmpDevicePoller = new SnmpDevicePoller(snmp, gatewaySnmpProperties, deviceWrapper,
+				variableBindingList, Collections.emptyList());
 
-		Snmp snmp = (Snmp) ReflectionTestUtils.getField(snmpDevicePoller, "snmp");
 		Target target = (Target) ReflectionTestUtils.getField(snmpDevicePoller, "target");
-		UsmUserEntry userUserEntry = snmp.getUSM().getUser(new OctetString("12345"), new OctetString("testUser"));
 
 		assertNotNull(target);
 		assertEquals(3, target.getVersion());
 		assertEquals(1, target.getSecurityLevel());
 		assertEquals("testUser", target.getSecurityName().toString());
 		assertEquals("127.0.0.1/161", target.getAddress().toString());
-
-		assertNotNull(userUserEntry);
-		UsmUser user = userUserEntry.getUsmUser();
-
-		assertNull(user.getLocalizationEngineID());
-		assertNull(user.getAuthenticationProtocol());
-		assertNull(user.getAuthenticationPassphrase());
-		assertNull(user.getPrivacyProtocol());
-		assertNull(user.getPrivacyPassphrase());
-		assertEquals("testUser", user.getSecurityName().toString());
+		assertEquals(0, ((UserTarget) target).getAuthoritativeEngineID().length);
 	}
 
 	@Test
@@ -200,28 +190,58 @@ public class SnmpDevicePollerTest {
 		when(snmpProperties.getAuth()).thenReturn(auth);
 
 		// Action
-		SnmpDevicePoller snmpDevicePoller = new SnmpDevicePoller(gatewaySnmpProperties, deviceWrapper,
-				variableBindingList);
+		SnmpDevicePoller snmpDevicePoller = new SnmpDevicePoller(snmp, gatewaySnmpProperties, deviceWrapper,
+				variableBindingList, Collections.emptyList());
 
-		Snmp snmp = (Snmp) ReflectionTestUtils.getField(snmpDevicePoller, "snmp");
 		Target target = (Target) ReflectionTestUtils.getField(snmpDevicePoller, "target");
-		UsmUserEntry userUserEntry = snmp.getUSM().getUser(new OctetString("12345"), new OctetString("snmpUser"));
 
 		assertNotNull(target);
 		assertEquals(3, target.getVersion());
 		assertEquals(2, target.getSecurityLevel());
 		assertEquals("snmpUser", target.getSecurityName().toString());
 		assertEquals("127.0.0.1/161", target.getAddress().toString());
+		assertEquals(0, ((UserTarget) target).getAuthoritativeEngineID().length);
+	}
+
+	@Test
+	public void shouldConfigureTargetWithConfiguredEngineIdAsAuthoritativeIfEnabled() throws IOException {
+		DeviceAuthentication auth = new DeviceAuthentication();
+		ReflectionTestUtils.setField(auth, "engineId", "12345");
+		ReflectionTestUtils.setField(auth, "username", "testUser");
+		ReflectionTestUtils.setField(auth, "securityLevel", 1);
 
-		assertNotNull(userUserEntry);
-		UsmUser user = userUserEntry.getUsmUser();
+		when(snmpProperties.getVersion()).thenReturn(3);
+		when(snmpProperties.getAuth()).thenReturn(auth);
+		when(gatewaySnmpProperties.isPollingEngineIdAuthoritative()).thenReturn(true);
+
+		// Action
+		SnmpDevicePoller snmpDevicePoller = new SnmpDevicePoller(snmp, gatewaySnmpProperties, deviceWrapper,
+				variableBindingList, Collections.emptyList());
+
+		Target target = (Target) ReflectionTestUtils.getField(snmpDevicePoller, "target");
 
-		assertEquals("snmpUser", user.getSecurityName().toString());
-		assertEquals(AuthMD5.ID, user.getAuthenticationProtocol());
-		assertEquals("e5:d2:ae:40:b6:f3:a6:29:5b:7b:71:b3:ce:d7:02:1e", user.getAuthenticationPassphrase().toString());
-		assertEquals("12345", user.getLocalizationEngineID().toString());
-		assertNull(user.getPrivacyProtocol());
-		assertNull(user.getPrivacyPassphrase());
+		assertNotNull(target);
+		assertArrayEquals(new OctetString("12345").getValue(), ((UserTarget) target).getAuthoritativeEngineID());
+	}
+
+	@Test
+	public void shouldConfigureTargetWithoutAuthoritativeEngineIdIfNotConfigured() throws IOException {
+		DeviceAuthentication auth = new DeviceAuthentication();
+		ReflectionTestUtils.setField(auth, "username", "testUser");
+		ReflectionTestUtils.setField(auth, "securityLevel", 1);
+
+		when(snmpProperties.getVersion()).thenReturn(3);
+		when(snmpProperties.getAuth()).thenReturn(auth);
+
+		// Action
+		SnmpDevicePoller snmpDevicePoller = new SnmpDevicePoller(snmp, gatewaySnmpProperties, deviceWrapper,
+				variableBindingList, Collections.emptyList());
+
+		Target target = (Target) ReflectionTestUtils.getField(snmpDevicePoller, "target");
+
+		assertNotNull(target);
+		assertEquals("testUser", target.getSecurityName().toString());
+		assertEquals(0, ((UserTarget) target).getAuthoritativeEngineID().length);
 	}
 
 	public void shouldConfigureTargetForAuthPriv() throws IOException {
@@ -238,28 +258,17 @@ public class SnmpDevicePollerTest {
 		when(snmpProperties.getAuth()).thenReturn(auth);
 
 		// Action
-		SnmpDevicePoller snmpDevicePoller = new SnmpDevicePoller(gatewaySnmpProperties, deviceWrapper,
-				variableBindingList);
+		SnmpDevicePoller snmpDevicePoller = new SnmpDevicePoller(snmp, gatewaySnmpProperties, deviceWrapper,
+				variableBindingList, Collections.emptyList());
 
-		Snmp snmp = (Snmp) ReflectionTestUtils.getField(snmpDevicePoller, "snmp");
 		Target target = (Target) ReflectionTestUtils.getField(snmpDevicePoller, "target");
-		UsmUserEntry userUserEntry = snmp.getUSM().getUser(new OctetString("12345"), new OctetString("adminUser"));
 
 		assertNotNull(target);
 		assertEquals(3, target.getVersion());
-		assertEquals(2, target.getSecurityLevel());
+		assertEquals(3, target.getSecurityLevel());
 		assertEquals("adminUser", target.getSecurityName().toString());
 		assertEquals("127.0.0.1/161", target.getAddress().toString());
-
-		assertNotNull(userUserEntry);
-		UsmUser user = userUserEntry.getUsmUser();
-
-		assertEquals("adminUser", user.getSecurityName().toString());
-		assertEquals(AuthSHA.ID, user.getAuthenticationProtocol());
-		assertEquals("e5:d2:ae:40:b6:f3:a6:29:5b:7b:71:b3:ce:d7:02:1e", user.getAuthenticationPassphrase().toString());
-		assertEquals("12345", user.getLocalizationEngineID().toString());
-		assertEquals(PrivAES256.ID, user.getPrivacyProtocol());
-		assertEquals("privPass", user.getPrivacyPassphrase().toString());
+		assertEquals(0, ((UserTarget) target).getAuthoritativeEngineID().length);
 	}
 
 	@Test
@@ -273,16 +282,127 @@ public class SnmpDevicePollerTest {
 		when(snmpProperties.getVersion()).thenReturn(1);
 
 		// Action
-		SnmpDevicePoller snmpDevicePoller = new SnmpDevicePoller(gatewaySnmpProperties, deviceWrapper,
-				variableBindingList);
+		SnmpDevicePoller snmpDevicePoller = new SnmpDevicePoller(snmp, gatewaySnmpProperties, deviceWrapper,
+				variableBindingList, Collections.emptyList());
 
 		PDU pdu = (PDU) ReflectionTestUtils.getField(snmpDevicePoller, "pdu");
 
 		assertEquals(2, pdu.getVariableBindings().size());
+		assertEquals(1, snmpDevicePoller.getRequests().size());
+		assertEquals(PDU.GET, snmpDevicePoller.getRequests().get(0).getType());
+	}
+
+	@Test
+	public void shouldSplitVariableBindingsIntoRequestsOfConfiguredSize() throws IOException {
+		List<VariableBinding> variableBindingList = new Vector<>();
+		for (int i = 1; i <= 5; i++) {
+			variableBindingList.add(new VariableBinding(new OID("1.3.6.1.4.1.52032.1.1." + i + ".0")));
+		}
+
+		when(snmpProperties.getVersion()).thenReturn(1);
+		when(gatewaySnmpProperties.getPollingMaxVariableBindingsPerRequest()).thenReturn(2);
+
+		// Action
+		SnmpDevicePoller snmpDevicePoller = new SnmpDevicePoller(snmp, gatewaySnmpProperties, deviceWrapper,
+				variableBindingList, Collections.emptyList());
+
+		List<PDU> requests = snmpDevicePoller.getRequests();
+		assertEquals(3, requests.size());
+		assertEquals(2, requests.get(0).size());
+		assertEquals(2, requests.get(1).size());
+		assertEquals(1, requests.get(2).size());
+		assertEquals(new OID("1.3.6.1.4.1.52032.1.1.5.0"), requests.get(2).get(0).getOid());
+	}
+
+	@Test
+	public void shouldLowerRequestSizeWhenRequestIsTooBig() throws IOException {
+		List<VariableBinding> variableBindingList = new Vector<>();
+		for (int i = 1; i <= 8; i++) {
+			variableBindingList.add(new VariableBinding(new OID("1.3.6.1.4.1.52032.1.1." + i + ".0")));
+		}
+
+		when(snmpProperties.getVersion()).thenReturn(1);
+
+		SnmpDevicePoller snmpDevicePoller = new SnmpDevicePoller(snmp, gatewaySnmpProperties, deviceWrapper,
+				variableBindingList, Collections.emptyList());
+		PDU tooBigRequest = snmpDevicePoller.getRequests().get(0);
+		assertEquals(8, tooBigRequest.size());
+
+		// Action
+		List<PDU> smallerRequests = snmpDevicePoller.split(tooBigRequest);
+
+		assertEquals(2, smallerRequests.size());
+		assertEquals(4, smallerRequests.get(0).size());
+		assertEquals(4, snmpDevicePoller.getRequests().get(1).size());
+		assertTrue(snmpDevicePoller.split(new PDU()).isEmpty());
+	}
+
+	@Test
+	public void shouldWalkTablesWithGetBulk() throws IOException {
+		List<OID> tableOidList = Arrays.asList(new OID("1.3.6.1.2.1.2.2.1.10"), new OID("1.3.6.1.2.1.2.2.1.16"));
+
+		when(snmpProperties.getVersion()).thenReturn(1);
+		when(gatewaySnmpProperties.getPollingMaxRepetitions()).thenReturn(48);
+
+		SnmpDevicePoller snmpDevicePoller = new SnmpDevicePoller(snmp, gatewaySnmpProperties, deviceWrapper,
+				Collections.emptyList(), tableOidList);
+
+		// Action
+		PDU walkRequest = snmpDevicePoller.createWalkRequest(snmpDevicePoller.startTableWalk());
+
+		assertTrue(snmpDevicePoller.getRequests().isEmpty());
+		assertEquals(PDU.GETBULK, walkRequest.getType());
+		assertEquals(0, walkRequest.getNonRepeaters());
+		assertEquals(48, walkRequest.getMaxRepetitions());
+		assertEquals(2, walkRequest.size());
+		assertEquals(new OID("1.3.6.1.2.1.2.2.1.16"), walkRequest.get(1).getOid());
+	}
+
+	@Test
+	public void shouldWalkTablesWithGetNextForSnmpV1() throws IOException {
+		when(snmpProperties.getVersion()).thenReturn(0);
+
+		SnmpDevicePoller snmpDevicePoller = new SnmpDevicePoller(snmp, gatewaySnmpProperties, deviceWrapper,
+				Collections.emptyList(), Collections.singletonList(new OID("1.3.6.1.2.1.2.2.1.10")));
+
+		// Action
+		PDU walkRequest = snmpDevicePoller.createWalkRequest(snmpDevicePoller.startTableWalk());
+
+		assertEquals(PDU.GETNEXT, walkRequest.getType());
+		assertEquals(1, walkRequest.size());
+		assertFalse(snmpDevicePoller.lowerMaxRepetitions(walkRequest));
+	}
+
+	@Test
+	public void shouldLowerMaxRepetitionsWhenWalkRequestIsTooBig() throws IOException {
+		when(snmpProperties.getVersion()).thenReturn(1);
+		when(gatewaySnmpProperties.getPollingMaxRepetitions()).thenReturn(50);
+
+		SnmpDevicePoller snmpDevicePoller = new SnmpDevicePoller(snmp, gatewaySnmpProperties, deviceWrapper,
+				Collections.emptyList(), Collections.singletonList(new OID("1.3.6.1.2.1.2.2.1.10")));
+		DeviceTableWalk tableWalk = snmpDevicePoller.startTableWalk();
+		PDU tooBigRequest = snmpDevicePoller.createWalkRequest(tableWalk);
+
+		// Action
+		assertTrue(snmpDevicePoller.lowerMaxRepetitions(tooBigRequest));
+
+		assertEquals(25, snmpDevicePoller.createWalkRequest(tableWalk).getMaxRepetitions());
+	}
+
+	@Test
+	public void shouldNotWalkWithoutTables() throws IOException {
+		when(snmpProperties.getVersion()).thenReturn(1);
+
+		SnmpDevicePoller snmpDevicePoller = new SnmpDevicePoller(snmp, gatewaySnmpProperties, deviceWrapper,
+				Collections.emptyList(), Collections.emptyList());
+
+		assertNull(snmpDevicePoller.startTableWalk());
 	}
 
 	@After
-	public void tearDown() {
+	public void tearDown() throws IOException {
+		snmp.close();
+
 		listAppender.stop();
 		listAppender.list.clear();
 		logger.detachAppender(listAppender);
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA, 
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cumulocity.agent.snmp.device.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+import org.snmp4j.smi.Counter32;
+import org.snmp4j.smi.Counter64;
+import org.snmp4j.smi.Gauge32;
+import org.snmp4j.smi.OID;
+
+public class TableCellHistoryTest {
+
+	private static final OID CELL = new OID("1.3.6.1.2.1.2.2.1.10.1");
+
+	private final TableCellHistory history = new TableCellHistory();
+
+	@Test
+	public void shouldReportRateOfCounterFromSecondValueOn() {
+		assertNull(history.toReportedValue(CELL, new Counter32(1000), 1000L, 10_000));
+
+		// Action
+		Object rate = history.toReportedValue(CELL, new Counter32(3000), 3000L, 20_000);
+
+		assertEquals(200.0, rate);
+	}
+
+	@Test
+	public void shouldReportRateOfWrappedCounter32() {
+		history.toReportedValue(CELL, new Counter32(0xFFFFFF00L), 0xFFFFFF00L, 10_000);
+
+		// Action
+		Object rate = history.toReportedValue(CELL, new Counter32(0x100L), 0x100L, 11_000);
+
+		assertEquals(512.0, rate);
+	}
+
+	@Test
+	public void shouldNotReportRateOfResetCounter32() {
+		history.toReportedValue(CELL, new Counter32(5000), 5000L, 10_000);
+
+		// Action
+		Object rate = history.toReportedValue(CELL, new Counter32(10), 10L, 20_000);
+
+		assertNull(rate);
+
+		// The rate is reported again from the reset value on
+		assertEquals(1.0, history.toReportedValue(CELL, new Counter32(20), 20L, 30_000));
+	}
+
+	@Test
+	public void shouldNotReportRateOfResetCounter64() {
+		history.toReportedValue(CELL, new Counter64(5000), 5000L, 10_000);
+
+		// Action
+		Object rate = history.toReportedValue(CELL, new Counter64(10), 10L, 20_000);
+
+		assertNull(rate);
+	}
+
+	@Test
+	public void shouldReportValueOnlyIfChanged() {
+		assertEquals(7L, history.toReportedValue(CELL, new Gauge32(7), 7L, 10_000));
+
+		// Action
+		assertNull(history.toReportedValue(CELL, new Gauge32(7), 7L, 20_000));
+		assertEquals(8L, history.toReportedValue(CELL, new Gauge32(8), 8L, 30_000));
+
+		assertEquals(1, history.size());
+	}
+
+	@Test
+	public void shouldReportUnchangedValueIfNotOnlyOnChange() {
+		history.toReportedValue(CELL, new Gauge32(7), 7L, 10_000, false);
+
+		// Action
+		Object value = history.toReportedValue(CELL, new Gauge32(7), 7L, 20_000, false);
+
+		assertEquals(7L, value);
+	}
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA, 
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cumulocity.agent.snmp.device.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.slf4j.LoggerFactory;
+import org.snmp4j.security.AuthMD5;
+import org.snmp4j.security.PrivDES;
+import org.snmp4j.security.SecurityModel;
+import org.snmp4j.security.SecurityModels;
+import org.snmp4j.security.USM;
+import org.snmp4j.security.UsmUser;
+import org.snmp4j.security.UsmUserEntry;
+import org.snmp4j.smi.Integer32;
+import org.snmp4j.smi.OctetString;
+
+import com.cumulocity.agent.snmp.platform.model.DeviceManagedObjectWrapper;
+import com.cumulocity.agent.snmp.platform.service.GatewayDataProvider;
+import com.cumulocity.model.idtype.GId;
+import com.cumulocity.rest.representation.inventory.ManagedObjectRepresentation;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+
+@RunWith(MockitoJUnitRunner.class)
+public class UserSecurityModelServiceTest {
+
+	@Mock
+	private GatewayDataProvider gatewayDataProvider;
+
+	@InjectMocks
+	private UserSecurityModelService userSecurityModelService;
+
+	private final Integer32 modelID = new Integer32(SecurityModel.SECURITY_MODEL_USM);
+
+	private final OctetString engineID = new OctetString("45:U9:39:900:FJ8");
+
+	private final OctetString userName = new OctetString("user1");
+
+	private final Map<String, DeviceManagedObjectWrapper> snmpDeviceMap = new HashMap<>();
+
+	private Logger logger;
+
+	private ListAppender<ILoggingEvent> listAppender;
+
+	@Before
+	public void setup() {
+		listAppender = new ListAppender<>();
+		logger = (Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
+		logger.addAppender(listAppender);
+		listAppender.start();
+
+		snmpDeviceMap.put("127.0.0.1", createDevice(3, 3, "AuthPassw0rd"));
+
+		when(gatewayDataProvider.getSnmpDeviceMap()).thenReturn(snmpDeviceMap);
+	}
+
+	@After
+	public void tearDown() {
+		SecurityModels.getInstance().removeSecurityModel(modelID);
+
+		listAppender.stop();
+		listAppender.list.clear();
+		logger.detachAppender(listAppender);
+	}
+
+	@Test
+	public void shouldRegisterTheSharedUsmWithTheSecurityModels() {
+		// Action
+		USM usm = userSecurityModelService.getUsm();
+
+		assertNotNull(usm);
+		assertSame(usm, SecurityModels.getInstance().getSecurityModel(modelID));
+
+		// Registered again, if replaced in the meantime
+		SecurityModels.getInstance().removeSecurityModel(modelID);
+		assertSame(usm, userSecurityModelService.getUsm());
+		assertSame(usm, SecurityModels.getInstance().getSecurityModel(modelID));
+	}
+
+	@Test
+	public void shouldAddUserToUSMForTheDevicesWithSnmpV3Version() {
+		// Action
+		userSecurityModelService.refreshUsers();
+
+		USM usm = (USM) SecurityModels.getInstance().getSecurityModel(modelID);
+		assertEquals(2, usm.getUserTable().getUserEntries().size());
+		assertNotNull(usm.getUserTable().getUser(new OctetString(), userName));
+
+		UsmUser user = usm.getUserTable().getUser(engineID, userName).getUsmUser();
+		assertEquals(userName, user.getSecurityName());
+		assertEquals(AuthMD5.ID, user.getAuthenticationProtocol());
+		assertEquals(new OctetString("AuthPassw0rd"), user.getAuthenticationPassphrase());
+		assertEquals(PrivDES.ID, user.getPrivacyProtocol());
+		assertEquals(new OctetString("Passw0rd"), user.getPrivacyPassphrase());
+	}
+
+	@Test
+	public void shouldNotLocalizeTheKeysOfUnchangedUsersAgain() {
+		userSecurityModelService.refreshUsers();
+		USM usm = userSecurityModelService.getUsm();
+		UsmUserEntry userEntry = usm.getUserTable().getUser(engineID, userName);
+
+		// Action
+		snmpDeviceMap.put("127.0.0.1", createDevice(3, 3, "AuthPassw0rd"));
+		userSecurityModelService.updateUsers(Collections.singleton("127.0.0.1"));
+		userSecurityModelService.refreshUsers();
+
+		assertSame(userEntry, usm.getUserTable().getUser(engineID, userName));
+	}
+
+	@Test
+	public void shouldReplaceUserIfCredentialsChanged() {
+		userSecurityModelService.refreshUsers();
+		USM usm = userSecurityModelService.getUsm();
+		UsmUserEntry userEntry = usm.getUserTable().getUser(engineID, userName);
+
+		// Action
+		snmpDeviceMap.put("127.0.0.1", createDevice(3, 3, "NewAuthPassw0rd"));
+		userSecurityModelService.updateUsers(Collections.singleton("127.0.0.1"));
+
+		UsmUserEntry newUserEntry = usm.getUserTable().getUser(engineID, userName);
+		assertNotSame(userEntry, newUserEntry);
+		assertEquals(2, usm.getUserTable().getUserEntries().size());
+		assertEquals(new OctetString("NewAuthPassw0rd"), newUserEntry.getUsmUser().getAuthenticationPassphrase());
+		assertEquals(new OctetString("NewAuthPassw0rd"),
+				usm.getUserTable().getUser(new OctetString(), userName).getUsmUser().getAuthenticationPassphrase());
+	}
+
+	@Test
+	public void shouldKeepUserWithoutEngineIdWhileAnotherEngineIdOfTheUserNameIsInUse() {
+		snmpDeviceMap.put("127.0.0.2", createDevice(3, 3, "AuthPassw0rd", "other-engine"));
+		userSecurityModelService.refreshUsers();
+		USM usm = userSecurityModelService.getUsm();
+		assertEquals(3, usm.getUserTable().getUserEntries().size());
+
+		// Action
+		snmpDeviceMap.remove("127.0.0.1");
+		userSecurityModelService.updateUsers(Collections.singleton("127.0.0.1"));
+
+		assertEquals(2, usm.getUserTable().getUserEntries().size());
+		assertNotNull(usm.getUserTable().getUser(new OctetString("other-engine"), userName));
+		assertNotNull(usm.getUserTable().getUser(new OctetString(), userName));
+	}
+
+	@Test
+	public void shouldNotLocalizeTheKeysOfOtherEngineIdsOfTheUserNameAgain() {
+		userSecurityModelService.refreshUsers();
+		USM usm = userSecurityModelService.getUsm();
+		UsmUserEntry userEntry = usm.getUserTable().getUser(engineID, userName);
+		UsmUserEntry userEntryWithoutEngineId = usm.getUserTable().getUser(new OctetString(), userName);
+		OctetString discoveredEngineID = new OctetString("discovered-engine");
+		usm.addUser(userName, discoveredEngineID, userEntryWithoutEngineId.getUsmUser());
+		UsmUserEntry discoveredUserEntry = usm.getUserTable().getUser(discoveredEngineID, userName);
+
+		// Action
+		snmpDeviceMap.put("127.0.0.2", createDevice(3, 3, "OtherAuthPassw0rd", "other-engine"));
+		userSecurityModelService.updateUsers(Collections.singleton("127.0.0.2"));
+
+		assertSame(userEntry, usm.getUserTable().getUser(engineID, userName));
+		assertSame(userEntryWithoutEngineId, usm.getUserTable().getUser(new OctetString(), userName));
+		assertSame(discoveredUserEntry, usm.getUserTable().getUser(discoveredEngineID, userName));
+
+		// Action
+		snmpDeviceMap.remove("127.0.0.2");
+		userSecurityModelService.updateUsers(Collections.singleton("127.0.0.2"));
+
+		assertSame(userEntry, usm.getUserTable().getUser(engineID, userName));
+		assertSame(discoveredUserEntry, usm.getUserTable().getUser(discoveredEngineID, userName));
+	}
+
+	@Test
+	public void shouldTakeCredentialsOfLowestEngineIdForUserWithoutEngineId() {
+		snmpDeviceMap.clear();
+		snmpDeviceMap.put("127.0.0.2", createDevice(3, 3, "SecondPassw0rd", "b-engine"));
+		userSecurityModelService.refreshUsers();
+		USM usm = userSecurityModelService.getUsm();
+
+		// Action
+		snmpDeviceMap.put("127.0.0.1", createDevice(3, 3, "FirstPassw0rd", "a-engine"));
+		userSecurityModelService.updateUsers(Collections.singleton("127.0.0.1"));
+
+		assertEquals(new OctetString("FirstPassw0rd"),
+				usm.getUserTable().getUser(new OctetString(), userName).getUsmUser().getAuthenticationPassphrase());
+
+		// Action
+		snmpDeviceMap.remove("127.0.0.1");
+		userSecurityModelService.updateUsers(Collections.singleton("127.0.0.1"));
+
+		assertEquals(new OctetString("SecondPassw0rd"),
+				usm.getUserTable().getUser(new OctetString(), userName).getUsmUser().getAuthenticationPassphrase());
+		assertEquals(2, usm.getUserTable().getUserEntries().size());
+	}
+
+	@Test
+	public void shouldRemoveUserIfDeviceIsNotSnmpV3AnyMore() {
+		userSecurityModelService.refreshUsers();
+
+		// Action
+		snmpDeviceMap.put("127.0.0.1", createDevice(1, 3, "AuthPassw0rd"));
+		userSecurityModelService.updateUsers(Collections.singleton("127.0.0.1"));
+
+		assertEquals(0, userSecurityModelService.getUsm().getUserTable().getUserEntries().size());
+	}
+
+	@Test
+	public void shouldKeepUserSharedWithAnotherDeviceUntilTheLastDeviceIsRemoved() {
+		snmpDeviceMap.put("127.0.0.2", createDevice(3, 3, "AuthPassw0rd"));
+		userSecurityModelService.refreshUsers();
+		USM usm = userSecurityModelService.getUsm();
+		UsmUserEntry userEntry = usm.getUserTable().getUser(engineID, userName);
+
+		// Action
+		snmpDeviceMap.remove("127.0.0.1");
+		userSecurityModelService.updateUsers(Collections.singleton("127.0.0.1"));
+
+		assertSame(userEntry, usm.getUserTable().getUser(engineID, userName));
+
+		// Action
+		snmpDeviceMap.remove("127.0.0.2");
+		userSecurityModelService.updateUsers(Arrays.asList("127.0.0.2"));
+
+		assertEquals(0, usm.getUserTable().getUserEntries().size());
+	}
+
+	@Test
+	public void shouldNotAddUserIfSecurityLevelIsInvalid() {
+		int invalidSecurityLevel = -1;
+		String errorMsg = "Unsupported " + invalidSecurityLevel + " Security level found in " + userName.toString()
+				+ " user, configured for device having " + engineID.toString() + " as engine id";
+
+		snmpDeviceMap.put("127.0.0.1", createDevice(3, invalidSecurityLevel, "AuthPassw0rd"));
+
+		// Action
+		userSecurityModelService.refreshUsers();
+
+		assertEquals(0, userSecurityModelService.getUsm().getUserTable().getUserEntries().size());
+		assertTrue(checkLogExist(errorMsg));
+	}
+
+	private DeviceManagedObjectWrapper createDevice(int version, int securityLevel, String authPassword) {
+		return createDevice(version, securityLevel, authPassword, engineID.toString());
+	}
+
+	private DeviceManagedObjectWrapper createDevice(int version, int securityLevel, String authPassword,
+			String engineId) {
+		Map<String, Object> deviceAuthMap = new HashMap<>();
+		deviceAuthMap.put("engineId", engineId);
+		deviceAuthMap.put("username", userName.toString());
+		deviceAuthMap.put("authProtocol", 1);
+		deviceAuthMap.put("authPassword", authPassword);
+		deviceAuthMap.put("privProtocol", 1);
+		deviceAuthMap.put("privPassword", "Passw0rd");
+		deviceAuthMap.put("securityLevel", securityLevel);
+
+		Map<String, Object> snmpDeviceProperties = new HashMap<>();
+		snmpDeviceProperties.put("ipAddress", "127.0.0.1");
+		snmpDeviceProperties.put("port", "161");
+		snmpDeviceProperties.put("type", "/inventory/managedObjects/3451");
+		snmpDeviceProperties.put("version", version);
+		snmpDeviceProperties.put("auth", deviceAuthMap);
+
+		ManagedObjectRepresentation snmpDeviceMo = new ManagedObjectRepresentation();
+		snmpDeviceMo.setId(new GId("snmp-device"));
+		snmpDeviceMo.set(snmpDeviceProperties, DeviceManagedObjectWrapper.C8Y_SNMP_DEVICE);
+
+		return new DeviceManagedObjectWrapper(snmpDeviceMo);
+	}
+
+	private boolean checkLogExist(String errorMsg) {
+		AtomicBoolean found = new AtomicBoolean(false);
+		listAppender.list.forEach(logEvent -> {
+			if (logEvent.getFormattedMessage().contains(errorMsg)) {
+				found.set(true);
+				assertEquals(Level.ERROR, logEvent.getLevel());
+			}
+		});
+
+		return found.get();
+	}
+}
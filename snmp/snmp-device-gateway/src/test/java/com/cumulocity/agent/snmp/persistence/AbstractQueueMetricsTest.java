@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA, 
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cumulocity.agent.snmp.persistence;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static com.cumulocity.agent.snmp.util.WorkspaceUtils.getWorkspacePath;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AbstractQueueMetricsTest {
+
+    // The head age is known with the precision of the minutely roll cycle
+    private static final long MAX_AGE_OF_NEW_MESSAGE = TimeUnit.MINUTES.toMillis(1) + TimeUnit.SECONDS.toMillis(10);
+
+    private Path persistentFolderPath;
+
+    private QueueImplForTest queue;
+
+    @Before
+    public void setUp() {
+        persistentFolderPath = Paths.get(
+                getWorkspacePath(),
+                ".snmp",
+                this.getClass().getSimpleName().toLowerCase(),
+                "chronicle",
+                "queues",
+                QueueImplForTest.class.getSimpleName().toLowerCase());
+
+        clearParentFolder();
+
+        queue = new QueueImplForTest();
+    }
+
+    @After
+    public void tearDown() {
+        queue.close();
+
+        clearParentFolder();
+    }
+
+    private void clearParentFolder() {
+        if(persistentFolderPath.toFile().exists()) {
+            try {
+                Files.list(persistentFolderPath).forEach(fileInTheFolder -> fileInTheFolder.toFile().delete());
+                persistentFolderPath.getParent().toFile().delete();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    @Test
+    public void shouldReportNoDepthAndAgeForEmptyQueue() {
+        assertEquals(0, queue.getMetrics().getDepth());
+        assertEquals(0, queue.getMetrics().getHeadAgeInMillis());
+    }
+
+    @Test
+    public void shouldReportDepthOfUnclaimedMessages() {
+        enqueue(5);
+        assertEquals(5, queue.getMetrics().getDepth());
+
+        queue.dequeue();
+        assertEquals(4, queue.getMetrics().getDepth());
+
+        queue.drainTo(new ArrayList<>(), 3);
+        assertEquals(1, queue.getMetrics().getDepth());
+
+        queue.dequeue();
+        assertEquals(0, queue.getMetrics().getDepth());
+
+        enqueue(2);
+        assertEquals(2, queue.getMetrics().getDepth());
+    }
+
+    @Test
+    public void shouldReportHeadAgeOfFirstUnclaimedMessage() {
+        enqueue(2);
+
+        long headAge = queue.getMetrics().getHeadAgeInMillis();
+        assertTrue(headAge >= 0 && headAge <= MAX_AGE_OF_NEW_MESSAGE);
+
+        queue.dequeue();
+        headAge = queue.getMetrics().getHeadAgeInMillis();
+        assertTrue(headAge >= 0 && headAge <= MAX_AGE_OF_NEW_MESSAGE);
+    }
+
+    @Test
+    public void shouldReportNoHeadAgeWhenAllMessagesAreClaimed() {
+        enqueue(2);
+        queue.drainTo(new ArrayList<>(), 2);
+
+        assertEquals(0, queue.getMetrics().getHeadAgeInMillis());
+    }
+
+    @Test
+    public void shouldReportDepthOfUnreadMessagesAfterReload() {
+        enqueue(3);
+        queue.dequeue();
+        queue.close();
+
+        queue = new QueueImplForTest();
+
+        assertEquals(2, queue.getMetrics().getDepth());
+        long headAge = queue.getMetrics().getHeadAgeInMillis();
+        assertTrue(headAge >= 0 && headAge <= MAX_AGE_OF_NEW_MESSAGE);
+    }
+
+    @Test
+    public void shouldReportNoDepthAndAgeForClosedQueue() {
+        enqueue(3);
+        queue.close();
+
+        assertEquals(0, queue.getMetrics().getDepth());
+        assertEquals(0, queue.getMetrics().getHeadAgeInMillis());
+    }
+
+    private void enqueue(int count) {
+        for(int i=0; i<count; i++) {
+            queue.enqueue(new Message("TEST MESSAGE " + i));
+        }
+    }
+
+    private class QueueImplForTest extends AbstractQueue {
+        QueueImplForTest() {
+            super(QueueImplForTest.class.getSimpleName(), persistentFolderPath.toFile());
+        }
+    }
+}
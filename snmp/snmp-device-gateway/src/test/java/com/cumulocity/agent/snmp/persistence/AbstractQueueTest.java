@@ -31,7 +31,13 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static com.cumulocity.agent.snmp.util.WorkspaceUtils.getWorkspacePath;
 import static org.junit.Assert.*;
@@ -271,7 +277,62 @@ public class AbstractQueueTest {
         assertMessages(0, queueSize, collectionToDrainTo);
     }
 
+    @Test
+    public void shouldConvertUnreadMessagesWhenMessageFormatChanges() {
+        int queueSize = 10;
 
+        enqueue(queueSize);
+        assertNotNull(abstractQueueImplForTest.dequeue());
+        abstractQueueImplForTest.close();
+
+        // Reload the queue in binary compressed format
+        abstractQueueImplForTest = new AbstractQueueImplForTest(MessageFormat.BINARY, true);
+
+        List<Message> collectionToDrainTo = new ArrayList<>();
+        abstractQueueImplForTest.drainTo(collectionToDrainTo, queueSize);
+
+        assertEquals(queueSize - 1, collectionToDrainTo.size());
+        assertMessages(1, queueSize - 1, collectionToDrainTo);
+        abstractQueueImplForTest.close();
+    }
+
+
+
+    @Test
+    public void shouldDeliverEachMessageToExactlyOneOfConcurrentConsumers() throws Exception {
+        int queueSize = 1000;
+        int consumerCount = 4;
+
+        enqueue(queueSize);
+
+        ExecutorService consumers = Executors.newFixedThreadPool(consumerCount);
+        try {
+            List<Future<List<Message>>> drainedByConsumer = new ArrayList<>();
+            for (int i = 0; i < consumerCount; i++) {
+                drainedByConsumer.add(consumers.submit(() -> {
+                    List<Message> drained = new ArrayList<>();
+                    while (abstractQueueImplForTest.drainTo(drained, 7) > 0) {
+                        // keep draining until the queue is empty
+                    }
+                    return drained;
+                }));
+            }
+
+            Set<String> payloads = new HashSet<>();
+            int drainedCount = 0;
+            for (Future<List<Message>> drained : drainedByConsumer) {
+                for (Message message : drained.get(1, TimeUnit.MINUTES)) {
+                    payloads.add(message.getPayload());
+                    ++drainedCount;
+                }
+            }
+
+            assertEquals(queueSize, drainedCount);
+            assertEquals(queueSize, payloads.size());
+        } finally {
+            consumers.shutdownNow();
+        }
+    }
 
     private void assertMessages(int startIndex, int count, List<Message> messages) {
         for(int i=0; i<count; i++) {
@@ -289,6 +350,10 @@ public class AbstractQueueTest {
         AbstractQueueImplForTest() {
             super(AbstractQueueImplForTest.class.getSimpleName(), persistentFolderPath.toFile());
         }
+
+        AbstractQueueImplForTest(MessageFormat messageFormat, boolean compressed) {
+            super(AbstractQueueImplForTest.class.getSimpleName(), persistentFolderPath.toFile(), messageFormat, compressed);
+        }
     }
 
     public class StoreFileListenerForDeletionTest {
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA, 
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cumulocity.agent.snmp.persistence;
+
+import net.openhft.chronicle.bytes.Bytes;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MessageTest {
+
+    private final Bytes<?> bytes = Bytes.elasticByteBuffer();
+
+    @After
+    public void tearDown() {
+        bytes.releaseLast();
+    }
+
+    @Test
+    public void shouldReadBinaryWrittenMessage() {
+        Message message = new Message("{\"type\":\"c8y_SNMP\",\"text\":\"Öl temperature\"}", (short) 3);
+
+        message.writeBinary(bytes, false);
+
+        assertEquals(message, Message.readBinary(bytes));
+    }
+
+    @Test
+    public void shouldReadBinaryWrittenCompressedMessage() {
+        StringBuilder payload = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            payload.append("{\"c8y_SNMP\":{\"ifInOctets\":{\"value\":").append(i).append(",\"unit\":\"B\"}}}");
+        }
+        Message message = new Message(payload.toString(), (short) 1);
+
+        message.writeBinary(bytes, true);
+
+        assertTrue(bytes.readRemaining() < payload.length());
+        assertEquals(message, Message.readBinary(bytes));
+    }
+
+    @Test
+    public void shouldReadBinaryWrittenRetryTime() {
+        Message message = new Message("MESSAGE", (short) 2);
+        message.setRetryAt(1600000000000L);
+
+        message.writeBinary(bytes, true);
+
+        assertEquals(message, Message.readBinary(bytes));
+    }
+
+    @Test
+    public void shouldStoreMessageUncompressedIfCompressionDoesNotPayOff() {
+        Message message = new Message("x");
+
+        message.writeBinary(bytes, true);
+
+        assertEquals(0, bytes.readByte(0));
+        assertEquals(message, Message.readBinary(bytes));
+    }
+}
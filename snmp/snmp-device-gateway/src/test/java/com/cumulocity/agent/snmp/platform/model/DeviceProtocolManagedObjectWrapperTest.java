@@ -24,6 +24,7 @@ import org.junit.Test;
 import org.snmp4j.smi.OID;
 import org.snmp4j.smi.VariableBinding;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -94,6 +95,34 @@ public class DeviceProtocolManagedObjectWrapperTest {
         assertNotNull(measurementVariableBindingList);
         assertEquals(1, measurementVariableBindingList.size());
         assertEquals(oid_1, measurementVariableBindingList.get(0).getOid());
+        assertTrue(protocolWrapper.getTableOidList().isEmpty());
+    }
+
+    @Test
+    public void shouldWalkTableRegistersInsteadOfPollingThem() {
+        ManagedObjectRepresentation deviceProtocolMo = JSONBase.fromJSON("{\"id\":\"901\",\"name\":\"device-protocol-2\",\"c8y_Registers\":[{\"name\":\"ifEntry\",\"oid\":\"1.3.6.1.2.1.2.2.1\",\"table\":true},{\"name\":\"ifInOctets\",\"oid\":\"1.3.6.1.2.1.2.2.1.10\",\"measurementMapping\":{\"series\":\"in\",\"type\":\"c8y_Traffic\"}}]}", ManagedObjectRepresentation.class);
+        DeviceProtocolManagedObjectWrapper protocolWrapper = new DeviceProtocolManagedObjectWrapper(deviceProtocolMo);
+
+        assertEquals(Collections.singletonList(new OID("1.3.6.1.2.1.2.2.1")), protocolWrapper.getTableOidList());
+        assertTrue(protocolWrapper.getMeasurementVariableBindingList().isEmpty());
+        assertSame(protocolWrapper.getOidMap().get(new OID("1.3.6.1.2.1.2.2.1.10")),
+                protocolWrapper.getRegisterTrie().lookup(new OID("1.3.6.1.2.1.2.2.1.10.48")).getRegister());
+    }
+
+    @Test
+    public void shouldCompileReportingPolicyOfMeasurementMapping() {
+        ManagedObjectRepresentation deviceProtocolMo = JSONBase.fromJSON("{\"id\":\"902\",\"name\":\"device-protocol-3\",\"c8y_Registers\":[{\"name\":\"sysUpTime\",\"oid\":\"1.3.6.1.2.1.1.3\",\"measurementMapping\":{\"series\":\"uptime\",\"type\":\"c8y_Uptime\",\"reportingPolicy\":{\"deadband\":60,\"maxSilence\":3600,\"aggregation\":\"avg\",\"aggregationPolls\":5}}},{\"name\":\"sysServices\",\"oid\":\"1.3.6.1.2.1.1.7\",\"measurementMapping\":{\"series\":\"services\",\"type\":\"c8y_Services\",\"reportingPolicy\":{\"maxSilence\":3600}}}]}", ManagedObjectRepresentation.class);
+        DeviceProtocolManagedObjectWrapper protocolWrapper = new DeviceProtocolManagedObjectWrapper(deviceProtocolMo);
+
+        ReportingPolicy reportingPolicy = protocolWrapper.getRegisterTrie().lookup(new OID("1.3.6.1.2.1.1.3.0")).getReportingPolicy();
+        assertNotNull(reportingPolicy);
+        assertEquals(60, reportingPolicy.getDeadband(), 0);
+        assertEquals(3600, reportingPolicy.getMaxSilence());
+        assertEquals(ReportingPolicy.AggregationType.AVG, reportingPolicy.getAggregationType());
+        assertEquals(5, reportingPolicy.getAggregationPolls());
+
+        // A maximum silence alone does not hold back any value
+        assertNull(protocolWrapper.getRegisterTrie().lookup(new OID("1.3.6.1.2.1.1.7.0")).getReportingPolicy());
     }
 
 }
\ No newline at end of file
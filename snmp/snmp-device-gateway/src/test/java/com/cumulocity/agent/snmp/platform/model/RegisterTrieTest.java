@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA, 
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cumulocity.agent.snmp.platform.model;
+
+import org.junit.Test;
+import org.snmp4j.smi.OID;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class RegisterTrieTest {
+
+    @Test
+    public void shouldLookupRegisterByExactOid() {
+        Register parent = register("1.3.6.1.2.1.2", false);
+        Register column = register("1.3.6.1.2.1.2.2.1.10", true);
+
+        RegisterTrie registerTrie = new RegisterTrie(oidMap(parent, column));
+
+        assertSame(parent, registerTrie.lookup(new OID("1.3.6.1.2.1.2")).getRegister());
+        assertSame(column, registerTrie.lookup(new OID("1.3.6.1.2.1.2.2.1.10")).getRegister());
+    }
+
+    @Test
+    public void shouldGetRegisterOnlyByExactOid() {
+        Register parent = register("1.3.6.1.2.1.2", true);
+        Register column = register("1.3.6.1.2.1.2.2.1.10", true);
+
+        RegisterTrie registerTrie = new RegisterTrie(oidMap(parent, column));
+
+        assertSame(parent, registerTrie.get(new OID("1.3.6.1.2.1.2")).getRegister());
+        assertSame(column, registerTrie.get(new OID("1.3.6.1.2.1.2.2.1.10")).getRegister());
+        assertNull(registerTrie.get(new OID("1.3.6.1.2.1.2.5")));
+        assertNull(registerTrie.get(new OID("1.3.6.1.2.1.2.2")));
+        assertNull(registerTrie.get(new OID("1.3.6.1.2.1")));
+        assertEquals(3, registerTrie.getUnmatchedCount());
+    }
+
+    @Test
+    public void shouldLookupRegisterWithMappingsByLongestOidPrefix() {
+        Register parent = register("1.3.6.1.2.1", true);
+        Register column = register("1.3.6.1.2.1.2.2.1.10", true);
+        Register unmappedColumn = register("1.3.6.1.2.1.2.2.1.10.5", false);
+
+        RegisterTrie registerTrie = new RegisterTrie(oidMap(parent, column, unmappedColumn));
+
+        assertSame(column, registerTrie.lookup(new OID("1.3.6.1.2.1.2.2.1.10.3")).getRegister());
+        assertSame(column, registerTrie.lookup(new OID("1.3.6.1.2.1.2.2.1.10.5.1")).getRegister());
+        assertSame(parent, registerTrie.lookup(new OID("1.3.6.1.2.1.1.3.0")).getRegister());
+    }
+
+    @Test
+    public void shouldCountUnmatchedOids() {
+        RegisterTrie registerTrie = new RegisterTrie(oidMap(register("1.3.6.1.2.1.1.3", true)));
+
+        assertNull(registerTrie.lookup(new OID("1.3.6.1.2.1.1.4.0")));
+        assertNull(registerTrie.lookup(new OID("1.3.6.1")));
+        assertNotNull(registerTrie.lookup(new OID("1.3.6.1.2.1.1.3.0")));
+
+        assertEquals(2, registerTrie.getUnmatchedCount());
+    }
+
+    @Test
+    public void shouldHandleSubIdentifiersAboveSignedIntRange() {
+        Register large = register("1.3.6.1.4.1.4294967295", true);
+        Register small = register("1.3.6.1.4.1.1", true);
+
+        RegisterTrie registerTrie = new RegisterTrie(oidMap(large, small));
+
+        assertSame(large, registerTrie.lookup(new OID("1.3.6.1.4.1.4294967295")).getRegister());
+        assertSame(small, registerTrie.lookup(new OID("1.3.6.1.4.1.1")).getRegister());
+        assertEquals(2, registerTrie.getRegisters().size());
+    }
+
+    private static Register register(String oid, boolean withMapping) {
+        Register register = new Register();
+        register.setOid(oid);
+
+        if (withMapping) {
+            MeasurementMapping measurementMapping = new MeasurementMapping();
+            measurementMapping.setType("c8y_SNMPMeasurement");
+            measurementMapping.setSeries("T");
+            register.setMeasurementMapping(measurementMapping);
+        }
+
+        return register;
+    }
+
+    private static Map<OID, Register> oidMap(Register... registers) {
+        Map<OID, Register> oidMap = new HashMap<>();
+        for (Register register : registers) {
+            oidMap.put(new OID(register.getOid()), register);
+        }
+
+        return oidMap;
+    }
+}
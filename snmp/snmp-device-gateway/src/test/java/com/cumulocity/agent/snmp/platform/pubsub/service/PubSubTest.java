@@ -12,6 +12,7 @@ package com.cumulocity.agent.snmp.platform.pubsub.service;
 import com.cumulocity.agent.snmp.config.GatewayProperties;
 import com.cumulocity.agent.snmp.persistence.Message;
 import com.cumulocity.agent.snmp.persistence.Queue;
+import com.cumulocity.agent.snmp.platform.pubsub.service.subscription.RetryTier;
 import com.cumulocity.agent.snmp.platform.pubsub.service.subscription.Subscription;
 import com.cumulocity.agent.snmp.platform.pubsub.subscriber.Subscriber;
 import org.junit.Test;
@@ -22,6 +23,7 @@ import org.springframework.scheduling.TaskScheduler;
 import org.springframework.test.util.ReflectionTestUtils;
 
 import java.time.Duration;
+import java.util.Collection;
 import java.util.concurrent.ScheduledFuture;
 
 import static org.junit.Assert.assertEquals;
@@ -176,6 +178,26 @@ public class PubSubTest {
         assertNull(((ScheduledFuture[])ReflectionTestUtils.getField(pubSub, "subscriptions")));
     }
 
+    @Test
+    public void shouldReplayDeadLettersWithResetBackoutCount() {
+        Queue deadLetterQueue = Mockito.mock(Queue.class);
+        ReflectionTestUtils.setField(pubSub, "retryTier", new RetryTier(level -> Mockito.mock(Queue.class), deadLetterQueue, 1000, 5000));
+        Mockito.when(deadLetterQueue.drainTo(Mockito.anyCollection(), Mockito.anyInt()))
+                .thenAnswer(invocation -> {
+                    Collection<Message> deadLetters = invocation.getArgument(0);
+                    deadLetters.add(new Message("MESSAGE 1", (short) 5));
+                    deadLetters.add(new Message("MESSAGE 2", (short) 5));
+                    return 2;
+                })
+                .thenReturn(0);
+
+        assertEquals(2, pubSub.replayDeadLetters());
+
+        Mockito.verify(queue, Mockito.times(2)).enqueue(messageCaptor.capture());
+        assertEquals(new Message("MESSAGE 1"), messageCaptor.getAllValues().get(0));
+        assertEquals(new Message("MESSAGE 2"), messageCaptor.getAllValues().get(1));
+    }
+
     private static class PubSubImplForTest extends PubSub<Queue> {
     }
 }
\ No newline at end of file
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA, 
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cumulocity.agent.snmp.platform.pubsub.service.subscription;
+
+import com.cumulocity.agent.snmp.persistence.Queue;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(MockitoJUnitRunner.class)
+public class AdaptiveFlowControlTest {
+
+    @Mock
+    private Queue queue;
+
+    private AdaptiveFlowControl flowControl;
+
+    @Before
+    public void setUp() {
+        flowControl = new AdaptiveFlowControl(queue, 500, 4, 1000, 60000);
+    }
+
+    @Test
+    public void shouldBackOffOnCongestion() {
+        flowControl.onCongestion(503);
+
+        assertEquals(250, flowControl.getBatchSize());
+        assertEquals(2, flowControl.getConcurrency());
+        assertTrue(flowControl.isPaused());
+        assertFalse(flowControl.tryStartDelivery());
+    }
+
+    @Test
+    public void shouldRampUpAdditivelyWhileDrainingFullBatches() {
+        flowControl.onCongestion(429);
+        flowControl.onCongestion(429);
+        assertEquals(125, flowControl.getBatchSize());
+        assertEquals(1, flowControl.getConcurrency());
+
+        flowControl.onSuccess(125, 10);
+        assertEquals(175, flowControl.getBatchSize());
+        assertEquals(2, flowControl.getConcurrency());
+
+        for (int i = 0; i < 20; i++) {
+            flowControl.onSuccess(flowControl.getBatchSize(), 10);
+        }
+        assertEquals(500, flowControl.getBatchSize());
+        assertEquals(4, flowControl.getConcurrency());
+    }
+
+    @Test
+    public void shouldHalveBatchSizeWhenLatencyExceedsTarget() {
+        flowControl.onSuccess(500, 1500);
+
+        assertEquals(250, flowControl.getBatchSize());
+        assertEquals(4, flowControl.getConcurrency());
+    }
+
+    @Test
+    public void shouldLimitConcurrentDeliveries() {
+        for (int i = 0; i < 4; i++) {
+            assertTrue(flowControl.tryStartDelivery());
+        }
+        assertFalse(flowControl.tryStartDelivery());
+
+        flowControl.deliveryFinished();
+        assertTrue(flowControl.tryStartDelivery());
+    }
+}
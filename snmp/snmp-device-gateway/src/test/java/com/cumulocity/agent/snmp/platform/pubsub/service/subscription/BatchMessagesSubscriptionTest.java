@@ -22,6 +22,7 @@ import com.cumulocity.agent.snmp.persistence.Message;
 import com.cumulocity.agent.snmp.persistence.Queue;
 import com.cumulocity.agent.snmp.platform.pubsub.subscriber.Subscriber;
 import com.cumulocity.agent.snmp.platform.pubsub.subscriber.SubscriberException;
+import com.cumulocity.agent.snmp.platform.pubsub.subscriber.SubscriberNotReadyException;
 import com.cumulocity.sdk.client.SDKException;
 import org.junit.Before;
 import org.junit.Test;
@@ -38,6 +39,7 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -179,6 +181,95 @@ public class BatchMessagesSubscriptionTest {
         Mockito.verify(subscriber, Mockito.times(1)).onMessages(Mockito.anyCollection());
     }
 
+    @Test
+    public void shouldRollbackWholeBatchWithoutRetryingIndividually_when_OnMessages_FailsWithCongestion() throws SubscriberException {
+        AdaptiveFlowControl flowControl = Mockito.spy(new AdaptiveFlowControl(queue, 10, 2, 1000, 60000));
+        subscription = new BatchMessagesSubscription(queue, subscriber, (short)5, null, new SubscriptionMetrics(), flowControl);
+
+        Mockito.when(subscriber.isReadyToAcceptMessages()).thenReturn(Boolean.TRUE);
+
+        final List<String> failedMessages = Arrays.asList("MESSAGE 1", "MESSAGE 2", "MESSAGE 3");
+        drainMessagesOnce(failedMessages);
+        Mockito.when(queue.getName()).thenReturn("MEASUREMENT");
+
+        Mockito.doThrow(new SubscriberException("", new SDKException(429, "Too many requests.")))
+                .when(subscriber).onMessages(Mockito.anyCollection());
+
+        subscription.run();
+
+        Mockito.verify(subscriber, Mockito.times(0)).onMessage(Mockito.anyString());
+        failedMessages.forEach(m -> Mockito.verify(queue, Mockito.times(1)).backout(new Message(m)));
+        Mockito.verify(flowControl, Mockito.times(1)).onCongestion(429);
+    }
+
+    @Test
+    public void shouldReportCongestionOncePerBatch_when_IndividualRetries_FailWithCongestion() throws SubscriberException {
+        AdaptiveFlowControl flowControl = Mockito.spy(new AdaptiveFlowControl(queue, 10, 2, 1000, 60000));
+        subscription = new BatchMessagesSubscription(queue, subscriber, (short)5, null, new SubscriptionMetrics(), flowControl);
+
+        Mockito.when(subscriber.isReadyToAcceptMessages()).thenReturn(Boolean.TRUE);
+
+        final List<String> failedMessages = Arrays.asList("MESSAGE 1", "MESSAGE 2", "MESSAGE 3");
+        drainMessagesOnce(failedMessages);
+        Mockito.when(queue.getName()).thenReturn("MEASUREMENT");
+
+        Mockito.doThrow(new SubscriberException("", new SDKException(422, "Invalid message.")))
+                .when(subscriber).onMessages(Mockito.anyCollection());
+        Mockito.doThrow(new SubscriberException("", new SDKException(503, "Service unavailable.")))
+                .when(subscriber).onMessage(Mockito.anyString());
+
+        subscription.run();
+
+        failedMessages.forEach(m -> Mockito.verify(queue, Mockito.times(1)).backout(new Message(m)));
+        Mockito.verify(flowControl, Mockito.times(1)).onCongestion(503);
+    }
+
+    @Test
+    public void shouldDelayWholeBatchWithoutCountingFailures_when_OnMessages_IsNotPermitted() throws SubscriberException {
+        Queue retryQueue = Mockito.mock(Queue.class);
+        Queue deadLetterQueue = Mockito.mock(Queue.class);
+        subscription = new BatchMessagesSubscription(queue, subscriber, (short)5, new RetryTier(level -> retryQueue, deadLetterQueue, 1000, 5000), new SubscriptionMetrics(), null);
+
+        Mockito.when(subscriber.isReadyToAcceptMessages()).thenReturn(Boolean.TRUE);
+        Mockito.when(subscriber.getBatchSize()).thenReturn(10);
+
+        final List<String> deniedMessages = Arrays.asList("MESSAGE 1", "MESSAGE 2", "MESSAGE 3");
+        drainMessagesOnce(deniedMessages);
+
+        Mockito.doThrow(new SubscriberNotReadyException("Not accepting requests."))
+                .when(subscriber).onMessages(Mockito.anyCollection());
+
+        subscription.run();
+
+        Mockito.verify(subscriber, Mockito.times(0)).onMessage(Mockito.anyString());
+        Mockito.verify(retryQueue, Mockito.times(3)).enqueue(messageCaptor.capture());
+        messageCaptor.getAllValues().forEach(m -> assertEquals(0, m.getBackoutCount()));
+        Mockito.verify(retryQueue, Mockito.times(0)).backout(Mockito.any(Message.class));
+        Mockito.verify(deadLetterQueue, Mockito.times(0)).enqueue(Mockito.any(Message.class));
+        assertEquals(0, subscription.getMetrics().getFailedCount());
+    }
+
+    @Test
+    public void shouldPutBackRemainingMessagesWithoutCountingFailures_when_IndividualRetry_IsNotPermitted() throws SubscriberException {
+        Mockito.when(subscriber.isReadyToAcceptMessages()).thenReturn(Boolean.TRUE);
+        Mockito.when(subscriber.getBatchSize()).thenReturn(10);
+
+        final List<String> failedMessages = Arrays.asList("MESSAGE 1", "MESSAGE 2", "MESSAGE 3");
+        drainMessagesOnce(failedMessages);
+
+        Mockito.doThrow(new SubscriberException("", new SDKException(422, "Invalid message.")))
+                .when(subscriber).onMessages(Mockito.anyCollection());
+        Mockito.doThrow(new SubscriberNotReadyException("Not accepting requests."))
+                .when(subscriber).onMessage(Mockito.anyString());
+
+        subscription.run();
+
+        Mockito.verify(subscriber, Mockito.times(1)).onMessage(Mockito.anyString());
+        failedMessages.forEach(m -> Mockito.verify(queue, Mockito.times(1)).enqueue(new Message(m)));
+        Mockito.verify(queue, Mockito.times(0)).backout(Mockito.any(Message.class));
+        assertEquals(0, subscription.getMetrics().getFailedCount());
+    }
+
     @Test
     public void shouldCatchThrowableAndReturnGracefully() throws SubscriberException {
         Mockito.when(subscriber.isReadyToAcceptMessages()).thenReturn(Boolean.TRUE);
@@ -207,6 +298,19 @@ public class BatchMessagesSubscriptionTest {
         Mockito.verify(subscriber, Mockito.times(1)).onMessages(Mockito.anyCollection());
     }
 
+    private void drainMessagesOnce(List<String> messages) {
+        Mockito.doAnswer(new Answer<Integer>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Integer answer(InvocationOnMock invocationOnMock) throws Throwable {
+                List<Message> messagesFromQueue = (List<Message>) invocationOnMock.getArguments()[0];
+                messagesFromQueue.addAll(messages.stream().map(m -> new Message(m)).collect(Collectors.toList()));
+
+                return Integer.valueOf(messagesFromQueue.size());
+            }
+        }).when(queue).drainTo(Mockito.anyCollection(), Mockito.anyInt());
+    }
+
     public class ResultCaptor<T> implements Answer<T> {
         private T result = null;
         public T getResult() {
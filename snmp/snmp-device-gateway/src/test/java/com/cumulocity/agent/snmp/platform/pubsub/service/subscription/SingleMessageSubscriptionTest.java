@@ -31,6 +31,7 @@ import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
@@ -47,6 +48,12 @@ public class SingleMessageSubscriptionTest {
     @Mock
     private Subscriber<?> subscriber;
 
+    @Mock
+    private Queue retryQueue;
+
+    @Mock
+    private Queue deadLetterQueue;
+
     @Captor
     private ArgumentCaptor<Message> messageCaptor;
 
@@ -201,4 +208,133 @@ public class SingleMessageSubscriptionTest {
         verify(queue, times(1)).backout(message);
         verify(queue, times(2)).getName();
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldDelayFailedMessageInRetryQueueWithExponentialBackoff() {
+        // given
+        subscription = new SingleMessageSubscription(queue, subscriber, (short)5, new RetryTier(level -> retryQueue, deadLetterQueue, 1000, 5000), new SubscriptionMetrics(), null);
+        Message message = new Message("SOME MESSAGE", (short)2);
+        when(subscriber.isReadyToAcceptMessages()).thenReturn(Boolean.TRUE);
+
+        // when
+        long before = System.currentTimeMillis();
+        subscription.rollbackMessageToQueue(message, new SubscriberException("", new NullPointerException()));
+
+        // then
+        verify(retryQueue).backout(message);
+        verify(queue, times(0)).backout(any(Message.class));
+        assertTrue(message.getRetryAt() >= before + 4000);
+        assertTrue(message.getRetryAt() <= System.currentTimeMillis() + 4000);
+    }
+
+    @Test
+    public void shouldMoveMessageToDeadLetterQueue_whenBackoutCountExceedsRetryLimit() {
+        // given
+        subscription = new SingleMessageSubscription(queue, subscriber, (short)5, new RetryTier(level -> retryQueue, deadLetterQueue, 1000, 5000), new SubscriptionMetrics(), null);
+        Message message = new Message("SOME MESSAGE", (short)5);
+        message.setRetryAt(System.currentTimeMillis());
+        when(subscriber.isReadyToAcceptMessages()).thenReturn(Boolean.TRUE);
+        when(queue.getName()).thenReturn("ALARM");
+
+        // when
+        subscription.rollbackMessageToQueue(message, new SubscriberException("", new NullPointerException()));
+
+        // then
+        verify(deadLetterQueue).enqueue(message);
+        assertEquals(0, message.getRetryAt());
+        assertEquals(1, subscription.getMetrics().getFailedCount());
+        assertEquals(1, subscription.getMetrics().getDeadLetteredCount());
+        verify(retryQueue, times(0)).backout(any(Message.class));
+    }
+
+    @Test
+    public void shouldDelayFailedMessageWithoutCountingTheFailure_whenSubscriberIsNotReady() {
+        // given
+        subscription = new SingleMessageSubscription(queue, subscriber, (short)5, new RetryTier(level -> retryQueue, deadLetterQueue, 1000, 5000), new SubscriptionMetrics(), null);
+        Message message = new Message("SOME MESSAGE", (short)5);
+        when(subscriber.isReadyToAcceptMessages()).thenReturn(Boolean.FALSE);
+
+        // when
+        long before = System.currentTimeMillis();
+        subscription.rollbackMessageToQueue(message, new SubscriberException("", new NullPointerException()));
+
+        // then
+        verify(retryQueue).enqueue(message);
+        verify(retryQueue, times(0)).backout(any(Message.class));
+        verify(deadLetterQueue, times(0)).enqueue(any(Message.class));
+        assertEquals(5, message.getBackoutCount());
+        assertTrue(message.getRetryAt() >= before + 1000);
+    }
+
+    @Test
+    public void shouldDeliverDueMessagesFromRetryQueueOnly() throws SubscriberException {
+        // given
+        subscription = new SingleMessageSubscription(queue, subscriber, (short)5, new RetryTier(level -> retryQueue, deadLetterQueue, 1000, 5000), new SubscriptionMetrics(), null);
+        Message dueMessage = new Message("DUE MESSAGE", (short)1);
+        dueMessage.setRetryAt(System.currentTimeMillis() - 1);
+        Message notDueMessage = new Message("NOT DUE MESSAGE", (short)1);
+        notDueMessage.setRetryAt(System.currentTimeMillis() + 60000);
+
+        when(subscriber.isReadyToAcceptMessages()).thenReturn(Boolean.TRUE);
+        when(retryQueue.peek()).thenReturn(dueMessage).thenReturn(notDueMessage);
+        when(retryQueue.dequeue()).thenReturn(dueMessage);
+        when(queue.dequeue()).thenReturn(new Message("MESSAGE 1")).thenReturn(null);
+
+        // when
+        subscription.run();
+
+        // then
+        verify(subscriber).onMessage("DUE MESSAGE");
+        verify(subscriber).onMessage("MESSAGE 1");
+        verify(subscriber, times(0)).onMessage("NOT DUE MESSAGE");
+        verify(retryQueue, times(1)).dequeue();
+        assertEquals(2, subscription.getMetrics().getDeliveredCount());
+    }
+
+    @Test
+    public void shouldDelayFailedMessagesInTheRetryQueueOfTheirDelay() {
+        // given
+        Queue[] retryQueues = { mock(Queue.class), mock(Queue.class), mock(Queue.class), mock(Queue.class) };
+        subscription = new SingleMessageSubscription(queue, subscriber, (short)10, new RetryTier(level -> retryQueues[level], deadLetterQueue, 1000, 5000), new SubscriptionMetrics(), null);
+        Message firstFailure = new Message("FIRST FAILURE", (short)0);
+        Message thirdFailure = new Message("THIRD FAILURE", (short)2);
+        Message seventhFailure = new Message("SEVENTH FAILURE", (short)6);
+        when(subscriber.isReadyToAcceptMessages()).thenReturn(Boolean.TRUE);
+        when(queue.getName()).thenReturn("ALARM");
+
+        // when
+        subscription.rollbackMessageToQueue(firstFailure, new SubscriberException("", new NullPointerException()));
+        subscription.rollbackMessageToQueue(thirdFailure, new SubscriberException("", new NullPointerException()));
+        subscription.rollbackMessageToQueue(seventhFailure, new SubscriberException("", new NullPointerException()));
+
+        // then
+        verify(retryQueues[0]).backout(firstFailure);
+        verify(retryQueues[2]).backout(thirdFailure);
+        verify(retryQueues[3]).backout(seventhFailure);
+        verify(retryQueues[1], times(0)).backout(any(Message.class));
+    }
+
+    @Test
+    public void shouldDeliverDueMessagesOfLaterRetryQueues_whenHeadOfFirstRetryQueueIsNotDue() throws SubscriberException {
+        // given
+        Queue[] retryQueues = { mock(Queue.class), mock(Queue.class), mock(Queue.class), mock(Queue.class) };
+        subscription = new SingleMessageSubscription(queue, subscriber, (short)5, new RetryTier(level -> retryQueues[level], deadLetterQueue, 1000, 5000), new SubscriptionMetrics(), null);
+        Message notDueMessage = new Message("NOT DUE MESSAGE", (short)0);
+        notDueMessage.setRetryAt(System.currentTimeMillis() + 60000);
+        Message dueMessage = new Message("DUE MESSAGE", (short)1);
+        dueMessage.setRetryAt(System.currentTimeMillis() - 1);
+
+        when(subscriber.isReadyToAcceptMessages()).thenReturn(Boolean.TRUE);
+        when(retryQueues[0].peek()).thenReturn(notDueMessage);
+        when(retryQueues[1].peek()).thenReturn(dueMessage).thenReturn(null);
+        when(retryQueues[1].dequeue()).thenReturn(dueMessage);
+
+        // when
+        subscription.run();
+
+        // then
+        verify(subscriber).onMessage("DUE MESSAGE");
+        verify(subscriber, times(0)).onMessage("NOT DUE MESSAGE");
+        verify(retryQueues[0], times(0)).dequeue();
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA, 
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cumulocity.agent.snmp.platform.pubsub.service.subscription;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class SubscriptionMetricsTest {
+
+    private final SubscriptionMetrics metrics = new SubscriptionMetrics();
+
+    @Test
+    public void shouldCountDeliveriesAndLatencies() {
+        for (int i = 0; i < 19; i++) {
+            metrics.delivered(1, 5);
+        }
+        metrics.delivered(10, 700);
+
+        assertEquals(29, metrics.getDeliveredCount());
+        assertEquals(10, metrics.getDeliveryLatencyPercentileInMillis(50));
+        assertEquals(10, metrics.getDeliveryLatencyPercentileInMillis(95));
+        assertEquals(1000, metrics.getDeliveryLatencyPercentileInMillis(100));
+        assertEquals((19 * 5 + 700) / 20.0, metrics.getAverageDeliveryLatencyInMillis(), 0.001);
+
+        Map<String, Long> histogram = metrics.getDeliveryLatencyHistogram();
+        assertEquals(Long.valueOf(19), histogram.get("<=10ms"));
+        assertEquals(Long.valueOf(1), histogram.get("<=1000ms"));
+        assertEquals(Long.valueOf(0), histogram.get("+Inf"));
+    }
+
+    @Test
+    public void shouldReturnZeroLatencyWithoutDeliveries() {
+        assertEquals(0, metrics.getDeliveryLatencyPercentileInMillis(95));
+        assertEquals(0, metrics.getAverageDeliveryLatencyInMillis(), 0);
+    }
+}
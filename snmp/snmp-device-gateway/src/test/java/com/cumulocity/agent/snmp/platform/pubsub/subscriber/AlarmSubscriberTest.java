@@ -22,6 +22,7 @@ import com.cumulocity.agent.snmp.config.GatewayProperties;
 import com.cumulocity.agent.snmp.platform.model.GatewayManagedObjectWrapper;
 import com.cumulocity.agent.snmp.platform.pubsub.service.AlarmPubSub;
 import com.cumulocity.agent.snmp.platform.service.GatewayDataProvider;
+import com.cumulocity.agent.snmp.platform.service.PlatformApi;
 import com.cumulocity.agent.snmp.platform.service.PlatformProvider;
 import com.cumulocity.sdk.client.SDKException;
 import com.cumulocity.sdk.client.alarm.AlarmApi;
@@ -138,6 +139,8 @@ public class AlarmSubscriberTest {
 
 	@Test
 	public void should_onMessage_Successfully() {
+		when(platformProvider.tryAcquirePermission(PlatformApi.ALARM)).thenReturn(Boolean.TRUE);
+
 		when(alarmApi.create(any(AlarmSubscriber.AlarmRepresentation.class))).thenReturn(null);
 
 		try {
@@ -153,6 +156,8 @@ public class AlarmSubscriberTest {
 
 	@Test(expected = SubscriberException.class)
 	public void should_onMessage_whenAlarmApiThrowsSDKException_with_HTTPStatus_400() throws SubscriberException {
+		when(platformProvider.tryAcquirePermission(PlatformApi.ALARM)).thenReturn(Boolean.TRUE);
+
 		SDKException sdkException = new SDKException(400, "SOME ERROR MESSAGE");
 
 		when(alarmApi.create(any(AlarmSubscriber.AlarmRepresentation.class))).thenThrow(sdkException);
@@ -160,7 +165,8 @@ public class AlarmSubscriberTest {
 		try {
 			alarmSubscriber.onMessage("SOME STRING");
 		} catch (SubscriberException e) {
-			verifyNoInteractions(platformProvider);
+			verify(platformProvider, never()).recordFailure(PlatformApi.ALARM);
+			verify(platformProvider).releasePermission(PlatformApi.ALARM);
 			verify(alarmApi).create(alarmRepresentationCaptor.capture());
 			assertEquals("SOME STRING", alarmRepresentationCaptor.getValue().toJSON());
 
@@ -170,6 +176,8 @@ public class AlarmSubscriberTest {
 
 	@Test(expected = SubscriberException.class)
 	public void should_onMessage_whenAlarmApiThrowsSDKException_with_HTTPStatus_404() throws SubscriberException {
+		when(platformProvider.tryAcquirePermission(PlatformApi.ALARM)).thenReturn(Boolean.TRUE);
+
 		SDKException sdkException = new SDKException(404, "SOME ERROR MESSAGE");
 
 		when(alarmApi.create(any(AlarmSubscriber.AlarmRepresentation.class))).thenThrow(sdkException);
@@ -177,7 +185,8 @@ public class AlarmSubscriberTest {
 		try {
 			alarmSubscriber.onMessage("SOME STRING");
 		} catch (SubscriberException e) {
-			verifyNoInteractions(platformProvider);
+			verify(platformProvider, never()).recordFailure(PlatformApi.ALARM);
+			verify(platformProvider).releasePermission(PlatformApi.ALARM);
 			verify(alarmApi).create(alarmRepresentationCaptor.capture());
 			assertEquals("SOME STRING", alarmRepresentationCaptor.getValue().toJSON());
 
@@ -187,6 +196,8 @@ public class AlarmSubscriberTest {
 
 	@Test(expected = SubscriberException.class)
 	public void should_onMessage_whenAlarmApiThrowsSDKException_with_HTTPStatus_500() throws SubscriberException {
+		when(platformProvider.tryAcquirePermission(PlatformApi.ALARM)).thenReturn(Boolean.TRUE);
+
 		SDKException sdkException = new SDKException(500, "SOME ERROR MESSAGE");
 
 		when(alarmApi.create(any(AlarmSubscriber.AlarmRepresentation.class))).thenThrow(sdkException);
@@ -194,7 +205,7 @@ public class AlarmSubscriberTest {
 		try {
 			alarmSubscriber.onMessage("SOME STRING");
 		} catch (SubscriberException ppe) {
-			verify(platformProvider).markPlatfromAsUnavailable();
+			verify(platformProvider).recordFailure(PlatformApi.ALARM);
 			verify(alarmApi).create(alarmRepresentationCaptor.capture());
 			assertEquals("SOME STRING", alarmRepresentationCaptor.getValue().toJSON());
 
@@ -204,6 +215,8 @@ public class AlarmSubscriberTest {
 
 	@Test(expected = UnsupportedOperationException.class)
 	public void should_onMessages_NotSupportedByAlarmSubscriber() throws SubscriberException {
+		when(platformProvider.tryAcquirePermission(PlatformApi.ALARM)).thenReturn(Boolean.TRUE);
+
 		alarmSubscriber.onMessages(null);
 	}
 
@@ -252,9 +265,19 @@ public class AlarmSubscriberTest {
 	@Test
 	public void should_invoke_isPlatformAvailable_AsPartOfReadyToAccept() {
 		when(platformProvider.isPlatformAvailable()).thenReturn(Boolean.TRUE);
+		when(platformProvider.isPlatformAvailable(PlatformApi.ALARM)).thenReturn(Boolean.TRUE);
 
 		assertTrue(alarmSubscriber.isReadyToAcceptMessages());
 
 		verify(platformProvider).isPlatformAvailable();
+		verify(platformProvider).isPlatformAvailable(PlatformApi.ALARM);
+	}
+
+	@Test
+	public void shouldNotBeReadyToAccept_whenCircuitBreakerOfAlarmApiIsOpen() {
+		when(platformProvider.isPlatformAvailable()).thenReturn(Boolean.TRUE);
+		when(platformProvider.isPlatformAvailable(PlatformApi.ALARM)).thenReturn(Boolean.FALSE);
+
+		assertFalse(alarmSubscriber.isReadyToAcceptMessages());
 	}
 }
\ No newline at end of file
@@ -22,6 +22,7 @@ import com.cumulocity.agent.snmp.config.GatewayProperties;
 import com.cumulocity.agent.snmp.platform.model.GatewayManagedObjectWrapper;
 import com.cumulocity.agent.snmp.platform.pubsub.service.EventPubSub;
 import com.cumulocity.agent.snmp.platform.service.GatewayDataProvider;
+import com.cumulocity.agent.snmp.platform.service.PlatformApi;
 import com.cumulocity.agent.snmp.platform.service.PlatformProvider;
 import com.cumulocity.sdk.client.SDKException;
 import com.cumulocity.sdk.client.event.EventApi;
@@ -137,6 +138,8 @@ public class EventSubscriberTest {
 
     @Test
     public void should_onMessage_Successfully() {
+        when(platformProvider.tryAcquirePermission(PlatformApi.EVENT)).thenReturn(Boolean.TRUE);
+
         when(eventApi.create(any(EventSubscriber.EventRepresentation.class))).thenReturn(null);
 
         try {
@@ -152,6 +155,8 @@ public class EventSubscriberTest {
 
     @Test(expected = SubscriberException.class)
     public void should_onMessage_whenEventApiThrowsSDKException_with_HTTPStatus_400() throws SubscriberException {
+        when(platformProvider.tryAcquirePermission(PlatformApi.EVENT)).thenReturn(Boolean.TRUE);
+
         SDKException sdkException = new SDKException(400, "SOME ERROR MESSAGE");
 
         when(eventApi.create(any(EventSubscriber.EventRepresentation.class))).thenThrow(sdkException);
@@ -159,7 +164,8 @@ public class EventSubscriberTest {
         try {
             eventSubscriber.onMessage("SOME STRING");
         } catch (SubscriberException e) {
-            verifyNoInteractions(platformProvider);
+            verify(platformProvider, never()).recordFailure(PlatformApi.EVENT);
+            verify(platformProvider).releasePermission(PlatformApi.EVENT);
             verify(eventApi).create(eventRepresentationCaptor.capture());
             assertEquals("SOME STRING", eventRepresentationCaptor.getValue().toJSON());
 
@@ -169,6 +175,8 @@ public class EventSubscriberTest {
 
     @Test(expected = SubscriberException.class)
     public void should_onMessage_whenEventApiThrowsSDKException_with_HTTPStatus_404() throws SubscriberException {
+        when(platformProvider.tryAcquirePermission(PlatformApi.EVENT)).thenReturn(Boolean.TRUE);
+
         SDKException sdkException = new SDKException(404, "SOME ERROR MESSAGE");
 
         when(eventApi.create(any(EventSubscriber.EventRepresentation.class))).thenThrow(sdkException);
@@ -176,7 +184,8 @@ public class EventSubscriberTest {
         try {
             eventSubscriber.onMessage("SOME STRING");
         } catch (SubscriberException e) {
-            verifyNoInteractions(platformProvider);
+            verify(platformProvider, never()).recordFailure(PlatformApi.EVENT);
+            verify(platformProvider).releasePermission(PlatformApi.EVENT);
             verify(eventApi).create(eventRepresentationCaptor.capture());
             assertEquals("SOME STRING", eventRepresentationCaptor.getValue().toJSON());
 
@@ -186,6 +195,8 @@ public class EventSubscriberTest {
 
     @Test(expected = SubscriberException.class)
     public void should_onMessage_whenEventApiThrowsSDKException_with_HTTPStatus_500() throws SubscriberException {
+        when(platformProvider.tryAcquirePermission(PlatformApi.EVENT)).thenReturn(Boolean.TRUE);
+
         SDKException sdkException = new SDKException(500, "SOME ERROR MESSAGE");
 
         when(eventApi.create(any(EventSubscriber.EventRepresentation.class))).thenThrow(sdkException);
@@ -193,7 +204,7 @@ public class EventSubscriberTest {
         try {
             eventSubscriber.onMessage("SOME STRING");
         } catch (SubscriberException ppe) {
-            verify(platformProvider).markPlatfromAsUnavailable();
+            verify(platformProvider).recordFailure(PlatformApi.EVENT);
             verify(eventApi).create(eventRepresentationCaptor.capture());
             assertEquals("SOME STRING", eventRepresentationCaptor.getValue().toJSON());
 
@@ -203,6 +214,8 @@ public class EventSubscriberTest {
 
     @Test(expected = UnsupportedOperationException.class)
     public void should_onMessages_NotSupportedByEventSubscriber() throws SubscriberException {
+        when(platformProvider.tryAcquirePermission(PlatformApi.EVENT)).thenReturn(Boolean.TRUE);
+
         eventSubscriber.onMessages(null);
     }
 
@@ -251,9 +264,11 @@ public class EventSubscriberTest {
     @Test
     public void isReady_should_invoke_isPlatformAvailable() {
         when(platformProvider.isPlatformAvailable()).thenReturn(Boolean.TRUE);
+        when(platformProvider.isPlatformAvailable(PlatformApi.EVENT)).thenReturn(Boolean.TRUE);
 
         assertTrue(eventSubscriber.isReadyToAcceptMessages());
 
         verify(platformProvider).isPlatformAvailable();
+        verify(platformProvider).isPlatformAvailable(PlatformApi.EVENT);
     }
 }
\ No newline at end of file
@@ -22,6 +22,7 @@ import com.cumulocity.agent.snmp.config.GatewayProperties;
 import com.cumulocity.agent.snmp.platform.model.GatewayManagedObjectWrapper;
 import com.cumulocity.agent.snmp.platform.pubsub.service.MeasurementPubSub;
 import com.cumulocity.agent.snmp.platform.service.GatewayDataProvider;
+import com.cumulocity.agent.snmp.platform.service.PlatformApi;
 import com.cumulocity.agent.snmp.platform.service.PlatformProvider;
 import com.cumulocity.rest.representation.measurement.MeasurementCollectionRepresentation;
 import com.cumulocity.sdk.client.SDKException;
@@ -164,6 +165,8 @@ public class MeasurementSubscriberTest {
 
     @Test
     public void should_onMessage_Successfully() {
+        when(platformProvider.tryAcquirePermission(PlatformApi.MEASUREMENT)).thenReturn(Boolean.TRUE);
+
         Mockito.when(measurementApi.create(Mockito.any(MeasurementSubscriber.MeasurementRepresentation.class))).thenReturn(null);
 
         try {
@@ -178,8 +181,27 @@ public class MeasurementSubscriberTest {
         assertEquals("SOME STRING", measurementRepresentationCaptor.getValue().toJSON());
     }
 
+    @Test
+    public void should_onMessage_notSendAndRecordNothing_whenPermissionIsDenied() {
+        when(platformProvider.tryAcquirePermission(PlatformApi.MEASUREMENT)).thenReturn(Boolean.FALSE);
+
+        try {
+            measurementSubscriber.onMessage("SOME STRING");
+            fail("SubscriberException expected");
+        } catch (SubscriberException e) {
+            assertTrue(e instanceof SubscriberNotReadyException);
+            assertNull(e.getCause());
+        }
+
+        verifyNoInteractions(measurementApi);
+        verify(platformProvider, never()).recordSuccess(PlatformApi.MEASUREMENT);
+        verify(platformProvider, never()).releasePermission(PlatformApi.MEASUREMENT);
+    }
+
     @Test(expected = SubscriberException.class)
     public void should_onMessage_whenMeasurementApiThrowsSDKException_with_HTTPStatus_400() throws SubscriberException {
+        when(platformProvider.tryAcquirePermission(PlatformApi.MEASUREMENT)).thenReturn(Boolean.TRUE);
+
         SDKException sdkException = new SDKException(400, "SOME ERROR MESSAGE");
 
         when(measurementApi.create(any(MeasurementSubscriber.MeasurementRepresentation.class))).thenThrow(sdkException);
@@ -187,7 +209,8 @@ public class MeasurementSubscriberTest {
         try {
             measurementSubscriber.onMessage("SOME STRING");
         } catch (SubscriberException e) {
-            verifyNoInteractions(platformProvider);
+            verify(platformProvider, never()).recordFailure(PlatformApi.MEASUREMENT);
+            verify(platformProvider).releasePermission(PlatformApi.MEASUREMENT);
             verify(measurementApi).create(measurementRepresentationCaptor.capture());
             assertEquals("SOME STRING", measurementRepresentationCaptor.getValue().toJSON());
 
@@ -197,6 +220,8 @@ public class MeasurementSubscriberTest {
 
     @Test(expected = SubscriberException.class)
     public void should_onMessage_whenMeasurementApiThrowsSDKException_with_HTTPStatus_404() throws SubscriberException {
+        when(platformProvider.tryAcquirePermission(PlatformApi.MEASUREMENT)).thenReturn(Boolean.TRUE);
+
         SDKException sdkException = new SDKException(404, "SOME ERROR MESSAGE");
 
         when(measurementApi.create(any(MeasurementSubscriber.MeasurementRepresentation.class))).thenThrow(sdkException);
@@ -204,7 +229,8 @@ public class MeasurementSubscriberTest {
         try {
             measurementSubscriber.onMessage("SOME STRING");
         } catch (SubscriberException e) {
-            verifyNoInteractions(platformProvider);
+            verify(platformProvider, never()).recordFailure(PlatformApi.MEASUREMENT);
+            verify(platformProvider).releasePermission(PlatformApi.MEASUREMENT);
             verify(measurementApi).create(measurementRepresentationCaptor.capture());
             assertEquals("SOME STRING", measurementRepresentationCaptor.getValue().toJSON());
 
@@ -214,6 +240,8 @@ public class MeasurementSubscriberTest {
 
     @Test(expected = SubscriberException.class)
     public void should_onMessage_whenMeasurementApiThrowsSDKException_with_HTTPStatus_500() throws SubscriberException {
+        when(platformProvider.tryAcquirePermission(PlatformApi.MEASUREMENT)).thenReturn(Boolean.TRUE);
+
         SDKException sdkException = new SDKException(500, "SOME ERROR MESSAGE");
 
         when(measurementApi.create(any(MeasurementSubscriber.MeasurementRepresentation.class))).thenThrow(sdkException);
@@ -221,7 +249,7 @@ public class MeasurementSubscriberTest {
         try {
             measurementSubscriber.onMessage("SOME STRING");
         } catch (SubscriberException ppe) {
-            verify(platformProvider).markPlatfromAsUnavailable();
+            verify(platformProvider).recordFailure(PlatformApi.MEASUREMENT);
             verify(measurementApi).create(measurementRepresentationCaptor.capture());
             assertEquals("SOME STRING", measurementRepresentationCaptor.getValue().toJSON());
 
@@ -231,6 +259,7 @@ public class MeasurementSubscriberTest {
 
     @Test
     public void should_onMessages_Successfully() {
+        when(platformProvider.tryAcquirePermission(PlatformApi.MEASUREMENT)).thenReturn(Boolean.TRUE);
 
         List<String> jsonStrings = Arrays.asList("Message 1", "Message 2");
         try {
@@ -249,6 +278,8 @@ public class MeasurementSubscriberTest {
 
     @Test(expected = SubscriberException.class)
     public void should_onMessages_whenMeasurementApiThrowsSDKException_with_HTTPStatus_500() throws SubscriberException {
+        when(platformProvider.tryAcquirePermission(PlatformApi.MEASUREMENT)).thenReturn(Boolean.TRUE);
+
         SDKException sdkException = new SDKException(500, "SOME ERROR MESSAGE");
         doThrow(sdkException).when(measurementApi).createBulkWithoutResponse(any(MeasurementCollectionRepresentation.class));
 
@@ -256,7 +287,7 @@ public class MeasurementSubscriberTest {
         try {
             measurementSubscriber.onMessages(jsonStrings);
         } catch (SubscriberException ppe) {
-            verify(platformProvider).markPlatfromAsUnavailable();
+            verify(platformProvider).recordFailure(PlatformApi.MEASUREMENT);
             verify(measurementApi).createBulkWithoutResponse(measurementCollectionRepresentationCaptor.capture());
             assertEquals("{\"measurements\":["
                     + String.join(",", jsonStrings)
@@ -268,6 +299,8 @@ public class MeasurementSubscriberTest {
 
     @Test(expected = SubscriberException.class)
     public void should_onMessages_whenMeasurementApiThrowsSDKException_with_HTTPStatus_400() throws SubscriberException {
+        when(platformProvider.tryAcquirePermission(PlatformApi.MEASUREMENT)).thenReturn(Boolean.TRUE);
+
         SDKException sdkException = new SDKException(400, "SOME ERROR MESSAGE");
         doThrow(sdkException).when(measurementApi).createBulkWithoutResponse(any(MeasurementCollectionRepresentation.class));
 
@@ -275,7 +308,8 @@ public class MeasurementSubscriberTest {
         try {
             measurementSubscriber.onMessages(jsonStrings);
         } catch (SubscriberException e) {
-            verifyNoInteractions(platformProvider);
+            verify(platformProvider, never()).recordFailure(PlatformApi.MEASUREMENT);
+            verify(platformProvider).releasePermission(PlatformApi.MEASUREMENT);
             verify(measurementApi).createBulkWithoutResponse(measurementCollectionRepresentationCaptor.capture());
             assertEquals("{\"measurements\":["
                     + String.join(",", jsonStrings)
@@ -287,6 +321,8 @@ public class MeasurementSubscriberTest {
 
     @Test(expected = SubscriberException.class)
     public void should_onMessages_whenMeasurementApiThrowsSDKException_with_HTTPStatus_404() throws SubscriberException {
+        when(platformProvider.tryAcquirePermission(PlatformApi.MEASUREMENT)).thenReturn(Boolean.TRUE);
+
         SDKException sdkException = new SDKException(404, "SOME ERROR MESSAGE");
         doThrow(sdkException).when(measurementApi).createBulkWithoutResponse(any(MeasurementCollectionRepresentation.class));
 
@@ -294,7 +330,8 @@ public class MeasurementSubscriberTest {
         try {
             measurementSubscriber.onMessages(jsonStrings);
         } catch (SubscriberException e) {
-            verifyNoInteractions(platformProvider);
+            verify(platformProvider, never()).recordFailure(PlatformApi.MEASUREMENT);
+            verify(platformProvider).releasePermission(PlatformApi.MEASUREMENT);
             verify(measurementApi).createBulkWithoutResponse(measurementCollectionRepresentationCaptor.capture());
             assertEquals("{\"measurements\":["
                     + String.join(",", jsonStrings)
@@ -371,9 +408,11 @@ public class MeasurementSubscriberTest {
     @Test
     public void isReady_should_invoke_isPlatformAvailable() {
         Mockito.when(platformProvider.isPlatformAvailable()).thenReturn(Boolean.TRUE);
+        Mockito.when(platformProvider.isPlatformAvailable(PlatformApi.MEASUREMENT)).thenReturn(Boolean.TRUE);
 
         assertTrue(measurementSubscriber.isReadyToAcceptMessages());
 
         Mockito.verify(platformProvider).isPlatformAvailable();
+        Mockito.verify(platformProvider).isPlatformAvailable(PlatformApi.MEASUREMENT);
     }
 }
\ No newline at end of file
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA, 
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cumulocity.agent.snmp.platform.service;
+
+import com.cumulocity.agent.snmp.config.GatewayProperties;
+import com.cumulocity.agent.snmp.platform.model.AlarmMapping;
+import com.cumulocity.agent.snmp.platform.model.AlarmSeverity;
+import com.cumulocity.agent.snmp.platform.model.GatewayManagedObjectWrapper;
+import com.cumulocity.agent.snmp.platform.pubsub.publisher.AlarmPublisher;
+import com.cumulocity.agent.snmp.platform.repository.AlarmSuppressionStore;
+import com.cumulocity.model.idtype.GId;
+import com.cumulocity.rest.representation.alarm.AlarmRepresentation;
+import com.cumulocity.rest.representation.inventory.ManagedObjectRepresentation;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.List;
+import java.util.function.BiConsumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class AlarmSuppressionServiceTest {
+
+    private static final String UNKNOWN_DEVICE_ALARM_TYPE = AlarmMapping.c8y_TRAPReceivedFromUnknownDevice + "10.0.0.1";
+
+    @Mock
+    private GatewayProperties gatewayProperties;
+
+    @Mock
+    private GatewayDataProvider gatewayDataProvider;
+
+    @Mock
+    private AlarmPublisher alarmPublisher;
+
+    @Mock
+    private AlarmSuppressionStore alarmSuppressionStore;
+
+    @InjectMocks
+    private AlarmSuppressionService alarmSuppressionService;
+
+    private ArgumentCaptor<AlarmRepresentation> alarmCaptor = ArgumentCaptor.forClass(AlarmRepresentation.class);
+
+    private ManagedObjectRepresentation gatewayDeviceMo;
+
+    @Before
+    public void setup() {
+        gatewayDeviceMo = new ManagedObjectRepresentation();
+        gatewayDeviceMo.setId(new GId("snmp-agent"));
+        when(gatewayDataProvider.getGatewayDevice()).thenReturn(new GatewayManagedObjectWrapper(gatewayDeviceMo));
+    }
+
+    @Test
+    public void shouldPublishAlarmOnlyOnceWithinWindow() {
+        when(gatewayProperties.getAlarmSuppressionWindow(anyString())).thenReturn(300);
+        when(gatewayProperties.getAlarmSuppressionRateLimit(anyString())).thenReturn(10);
+
+        // Action
+        assertTrue(alarmSuppressionService.publish(createAlarmMapping(UNKNOWN_DEVICE_ALARM_TYPE)));
+        assertFalse(alarmSuppressionService.publish(createAlarmMapping(UNKNOWN_DEVICE_ALARM_TYPE)));
+        assertFalse(alarmSuppressionService.publish(createAlarmMapping(UNKNOWN_DEVICE_ALARM_TYPE)));
+
+        verify(alarmPublisher, times(1)).publish(alarmCaptor.capture());
+        assertEquals(UNKNOWN_DEVICE_ALARM_TYPE, alarmCaptor.getValue().getType());
+        assertEquals(gatewayDeviceMo, alarmCaptor.getValue().getSource());
+        verify(alarmSuppressionStore).put(eq(UNKNOWN_DEVICE_ALARM_TYPE), anyString());
+    }
+
+    @Test
+    public void shouldRateLimitAlarmsOfTheSameTypePrefixAndPublishSummary() {
+        when(gatewayProperties.getAlarmSuppressionWindow("c8y_TRAPReceivedFromUnknownDevice")).thenReturn(0);
+        when(gatewayProperties.getAlarmSuppressionRateLimit("c8y_TRAPReceivedFromUnknownDevice")).thenReturn(2);
+
+        // Action
+        assertTrue(alarmSuppressionService.publish(createAlarmMapping(AlarmMapping.c8y_TRAPReceivedFromUnknownDevice + "10.0.0.1")));
+        assertTrue(alarmSuppressionService.publish(createAlarmMapping(AlarmMapping.c8y_TRAPReceivedFromUnknownDevice + "10.0.0.2")));
+        assertFalse(alarmSuppressionService.publish(createAlarmMapping(AlarmMapping.c8y_TRAPReceivedFromUnknownDevice + "10.0.0.3")));
+        alarmSuppressionService.reportSummaries();
+
+        verify(alarmPublisher, times(3)).publish(alarmCaptor.capture());
+        AlarmRepresentation summary = alarmCaptor.getAllValues().get(2);
+        assertEquals("c8y_TRAPReceivedFromUnknownDevice_Summary", summary.getType());
+        assertTrue(summary.getText().startsWith("1 alarm(s) of type c8y_TRAPReceivedFromUnknownDevice"));
+        assertTrue(summary.getText().endsWith(" Suppressed: 10.0.0.3"));
+    }
+
+    @Test
+    public void shouldNotRateLimitDeviceNotRespondingAlarmsByDefault() {
+        when(gatewayProperties.getAlarmSuppressionWindow("c8y_DeviceNotResponding")).thenReturn(0);
+        when(gatewayProperties.hasAlarmSuppressionOverride("c8y_DeviceNotResponding")).thenReturn(false);
+
+        // Action
+        for (int i = 0; i < 20; i++) {
+            assertTrue(alarmSuppressionService.publish(createAlarmMapping(AlarmMapping.c8y_DeviceNotResponding + "10.0.0." + i)));
+        }
+        alarmSuppressionService.reportSummaries();
+
+        verify(alarmPublisher, times(20)).publish(any(AlarmRepresentation.class));
+    }
+
+    @Test
+    public void shouldPublishSummaryOfRestoredAlarmWhenWindowEnded() {
+        long now = System.currentTimeMillis();
+        doAnswer(invocation -> {
+            BiConsumer<String, String> action = invocation.getArgument(0);
+            action.accept(UNKNOWN_DEVICE_ALARM_TYPE, (now - 300_000) + ";" + (now - 1000) + ";5;true;MAJOR;Trap received");
+            return null;
+        }).when(alarmSuppressionStore).forEach(any());
+
+        alarmSuppressionService.init();
+
+        // Action
+        assertFalse(alarmSuppressionService.publish(createAlarmMapping(UNKNOWN_DEVICE_ALARM_TYPE)));
+        alarmSuppressionService.reportSummaries();
+
+        verify(alarmPublisher, times(1)).publish(alarmCaptor.capture());
+        AlarmRepresentation summary = alarmCaptor.getValue();
+        assertEquals("c8y_TRAPReceivedFromUnknownDevice_Summary-10.0.0.1", summary.getType());
+        assertEquals("Trap received The alarm occurred 6 more time(s) within 299 seconds.", summary.getText());
+        verify(alarmSuppressionStore).remove(UNKNOWN_DEVICE_ALARM_TYPE);
+    }
+
+    @Test
+    public void shouldPublishEveryAlarmWhenSuppressionIsDisabled() {
+        when(gatewayProperties.getAlarmSuppressionWindow(anyString())).thenReturn(0);
+        when(gatewayProperties.getAlarmSuppressionRateLimit(anyString())).thenReturn(0);
+
+        // Action
+        for (int i = 0; i < 5; i++) {
+            assertTrue(alarmSuppressionService.publish(createAlarmMapping(UNKNOWN_DEVICE_ALARM_TYPE)));
+        }
+        alarmSuppressionService.reportSummaries();
+
+        verify(alarmPublisher, times(5)).publish(any(AlarmRepresentation.class));
+    }
+
+    @Test
+    public void shouldGetAlarmTypePrefix() {
+        assertEquals("c8y_TRAPReceivedFromUnknownDevice",
+                AlarmSuppressionService.getAlarmTypePrefix(AlarmMapping.c8y_TRAPReceivedFromUnknownDevice + "10.0.0.1"));
+        assertEquals("c8y_someType", AlarmSuppressionService.getAlarmTypePrefix("c8y_someType"));
+    }
+
+    @Test
+    public void shouldGetSummaryAlarmType() {
+        assertEquals("c8y_DeviceNotResponding_Summary-10.0.0.1",
+                AlarmSuppressionService.getSummaryAlarmType(AlarmMapping.c8y_DeviceNotResponding + "10.0.0.1"));
+        assertEquals("c8y_someType_Summary", AlarmSuppressionService.getSummaryAlarmType("c8y_someType"));
+    }
+
+    private AlarmMapping createAlarmMapping(String type) {
+        AlarmMapping alarmMapping = new AlarmMapping();
+        alarmMapping.setType(type);
+        alarmMapping.setSeverity(AlarmSeverity.MAJOR.name());
+        alarmMapping.setText("Trap received");
+
+        return alarmMapping;
+    }
+}
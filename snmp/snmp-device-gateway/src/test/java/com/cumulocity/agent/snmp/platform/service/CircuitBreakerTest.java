@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA, 
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cumulocity.agent.snmp.platform.service;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CircuitBreakerTest {
+
+    @Test
+    public void shouldOpenWhenFailureRateReachesThreshold() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker("measurement", 50, 4, 4, 60000, 60000);
+
+        circuitBreaker.recordSuccess();
+        circuitBreaker.recordFailure();
+        circuitBreaker.recordSuccess();
+        assertTrue(circuitBreaker.allowsRequests());
+
+        circuitBreaker.recordFailure();
+
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertFalse(circuitBreaker.allowsRequests());
+        assertFalse(circuitBreaker.isProbeDue());
+    }
+
+    @Test
+    public void shouldConsiderOnlyTheLastOutcomesInTheWindow() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker("measurement", 50, 4, 4, 60000, 60000);
+
+        circuitBreaker.recordFailure();
+        circuitBreaker.recordSuccess();
+        circuitBreaker.recordSuccess();
+        circuitBreaker.recordSuccess();
+        circuitBreaker.recordSuccess();
+        // The first failure dropped out of the window
+        circuitBreaker.recordFailure();
+
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    public void shouldNotOpenBeforeMinimumCalls() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker("alarm", 50, 20, 5, 60000, 60000);
+
+        for (int i = 0; i < 4; i++) {
+            circuitBreaker.recordFailure();
+        }
+
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    public void shouldGoHalfOpenOnSuccessfulProbeAndCloseOnSuccessfulTrialRequest() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker("event", 50, 1, 1, 0, 0);
+        circuitBreaker.recordFailure();
+        assertTrue(circuitBreaker.isProbeDue());
+
+        circuitBreaker.recordProbe(true);
+
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        assertTrue(circuitBreaker.allowsRequests());
+
+        circuitBreaker.recordSuccess();
+
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    public void shouldReopenOnFailedTrialRequestOrProbe() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker("inventory", 50, 1, 1, 0, 0);
+        circuitBreaker.recordFailure();
+
+        circuitBreaker.recordProbe(false);
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+
+        circuitBreaker.recordProbe(true);
+        circuitBreaker.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    public void shouldPermitSingleTrialRequestWhileHalfOpen() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker("measurement", 50, 1, 1, 0, 0);
+        assertTrue(circuitBreaker.tryAcquirePermission());
+        circuitBreaker.recordFailure();
+        circuitBreaker.releasePermission();
+        assertFalse(circuitBreaker.tryAcquirePermission());
+
+        circuitBreaker.recordProbe(true);
+
+        assertTrue(circuitBreaker.tryAcquirePermission());
+        assertFalse(circuitBreaker.tryAcquirePermission());
+        assertFalse(circuitBreaker.allowsRequests());
+
+        // The trial request got no recorded outcome, e.g. a client error, so another one is permitted
+        circuitBreaker.releasePermission();
+        assertTrue(circuitBreaker.allowsRequests());
+        assertTrue(circuitBreaker.tryAcquirePermission());
+
+        circuitBreaker.recordSuccess();
+        circuitBreaker.releasePermission();
+
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertTrue(circuitBreaker.tryAcquirePermission());
+        assertTrue(circuitBreaker.tryAcquirePermission());
+    }
+
+    @Test
+    public void shouldNotifyStateTransitions() {
+        List<String> transitions = new ArrayList<>();
+        CircuitBreaker circuitBreaker = new CircuitBreaker("alarm", 50, 1, 1, 0, 0,
+                (breaker, fromState, toState) -> transitions.add(breaker.getName() + ":" + fromState + "->" + toState));
+
+        circuitBreaker.recordFailure();
+        circuitBreaker.recordProbe(false);
+        circuitBreaker.recordProbe(true);
+        circuitBreaker.recordSuccess();
+
+        assertEquals(3, transitions.size());
+        assertEquals("alarm:CLOSED->OPEN", transitions.get(0));
+        assertEquals("alarm:OPEN->HALF_OPEN", transitions.get(1));
+        assertEquals("alarm:HALF_OPEN->CLOSED", transitions.get(2));
+    }
+}
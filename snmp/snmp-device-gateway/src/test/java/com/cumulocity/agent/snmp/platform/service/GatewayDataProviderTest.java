@@ -20,18 +20,24 @@ package com.cumulocity.agent.snmp.platform.service;
 
 import com.cumulocity.agent.snmp.config.GatewayProperties;
 import com.cumulocity.agent.snmp.platform.model.DeviceManagedObjectWrapper;
+import com.cumulocity.agent.snmp.platform.model.DeviceProtocolManagedObjectWrapper;
+import com.cumulocity.agent.snmp.platform.model.GatewayDataChangedEvent;
 import com.cumulocity.agent.snmp.platform.model.GatewayDataRefreshedEvent;
+import com.cumulocity.agent.snmp.platform.model.GatewayManagedObjectWrapper;
 import com.cumulocity.agent.snmp.platform.model.ReceivedOperationForGatewayEvent;
 import com.cumulocity.model.idtype.GId;
+import com.cumulocity.rest.representation.inventory.ManagedObjectCollectionRepresentation;
 import com.cumulocity.rest.representation.inventory.ManagedObjectReferenceCollectionRepresentation;
 import com.cumulocity.rest.representation.inventory.ManagedObjectReferenceRepresentation;
 import com.cumulocity.rest.representation.inventory.ManagedObjectRepresentation;
 import com.cumulocity.rest.representation.operation.OperationRepresentation;
-import com.cumulocity.sdk.client.SDKException;
 import com.cumulocity.sdk.client.devicecontrol.DeviceControlApi;
 import com.cumulocity.sdk.client.inventory.InventoryApi;
+import com.cumulocity.sdk.client.inventory.InventoryFilter;
+import com.cumulocity.sdk.client.inventory.ManagedObjectCollection;
+import com.cumulocity.sdk.client.inventory.PagedManagedObjectCollectionRepresentation;
 import com.cumulocity.sdk.client.notification.SubscriptionListener;
-import org.apache.http.HttpStatus;
+import org.joda.time.DateTime;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -40,14 +46,20 @@ import org.mockito.junit.MockitoJUnitRunner;
 import org.mockito.stubbing.Answer;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.test.util.ReflectionTestUtils;
+
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 
 import static org.junit.Assert.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
@@ -66,6 +78,9 @@ public class GatewayDataProviderTest {
 	@Captor
 	private ArgumentCaptor<ReceivedOperationForGatewayEvent> receivedOperationForGatewayEventCaptor;
 
+	@Captor
+	private ArgumentCaptor<GatewayDataChangedEvent> gatewayDataChangedEventCaptor;
+
 	@Mock
 	private GatewayProperties properties;
 
@@ -106,36 +121,42 @@ public class GatewayDataProviderTest {
 
 	@Test
 	public void shouldRefreshGatewayObjectsOnUpdateGatewayObjects() {
-		ManagedObjectRepresentation gatewayDeviceMo = new ManagedObjectRepresentation();
-		gatewayDeviceMo.setId(new GId("snmp-agent"));
+		ManagedObjectRepresentation gatewayDeviceMo = createGatewayDeviceMo("child-device");
+		ManagedObjectRepresentation childDeviceMo = createSnmpDeviceMo("child-device", "127.0.0.1", 1000);
+		ManagedObjectRepresentation deviceProtocolMo = createDeviceProtocolMo(1000);
 
-		ManagedObjectRepresentation childDeviceMo = new ManagedObjectRepresentation();
-		childDeviceMo.setId(new GId("child-device"));
+		ManagedObjectCollection childDevices = createManagedObjectCollection(childDeviceMo);
+		ManagedObjectCollection deviceProtocols = createManagedObjectCollection(deviceProtocolMo);
 
-		ManagedObjectReferenceCollectionRepresentation childDevices = new ManagedObjectReferenceCollectionRepresentation();
-		ManagedObjectReferenceRepresentation childDeviceRef = new ManagedObjectReferenceRepresentation();
-		childDeviceRef.setManagedObject(childDeviceMo);
+		when(inventoryApi.get(new GId("snmp-agent"))).thenReturn(gatewayDeviceMo);
+		when(inventoryApi.getManagedObjectsByFilter(any(InventoryFilter.class))).thenReturn(childDevices, deviceProtocols);
+		when(properties.getGatewayObjectRefreshIntervalInMinutes()).thenReturn(1);
 
-		Map<String, Object> propertiesMap = new HashMap<>();
-		propertiesMap.put("version", 0);
-		propertiesMap.put("port", "161");
-		propertiesMap.put("type", "/inventory/managedObjects/device-protocol");
-		propertiesMap.put("ipAddress", "127.0.0.1");
+		assertNull(gatewayDataProvider.getGatewayDevice());
+		assertEquals(gatewayDataProvider.getSnmpDeviceMap().size(), 0);
 
-		childDeviceMo.set(propertiesMap, DeviceManagedObjectWrapper.C8Y_SNMP_DEVICE);
+		// Action
+		gatewayDataProvider.updateGatewayObjects(gatewayDeviceMo);
 
-		List<ManagedObjectReferenceRepresentation> childDeviceRefList = new ArrayList<>();
-		childDeviceRefList.add(childDeviceRef);
-		childDevices.setReferences(childDeviceRefList);
+		assertNotNull(gatewayDataProvider.getGatewayDevice());
+		assertEquals(gatewayDataProvider.getSnmpDeviceMap().size(), 1);
+		assertNotNull(gatewayDataProvider.getProtocolMap().get("device-protocol"));
 
-		gatewayDeviceMo.setChildDevices(childDevices);
+		verify(eventPublisher).publishEvent(gatewayDataChangedEventCaptor.capture());
+		assertEquals(Collections.singleton("127.0.0.1"), gatewayDataChangedEventCaptor.getValue().getAddedDevices());
+		assertEquals(Collections.singleton("device-protocol"), gatewayDataChangedEventCaptor.getValue().getChangedProtocols());
+	}
 
-		ManagedObjectRepresentation deviceProtocolMo = new ManagedObjectRepresentation();
-		deviceProtocolMo.setId(new GId("device-protocol"));
+	@Test
+	public void shouldNotUpdateDeviceProtocolIfNotPresentInPlatform() {
+		ManagedObjectRepresentation gatewayDeviceMo = createGatewayDeviceMo("child-device");
+		ManagedObjectRepresentation childDeviceMo = createSnmpDeviceMo("child-device", "127.0.0.1", 1000);
+
+		ManagedObjectCollection childDevices = createManagedObjectCollection(childDeviceMo);
+		ManagedObjectCollection deviceProtocols = createManagedObjectCollection();
 
 		when(inventoryApi.get(new GId("snmp-agent"))).thenReturn(gatewayDeviceMo);
-		when(inventoryApi.get(new GId("child-device"))).thenReturn(childDeviceMo);
-		when(inventoryApi.get(new GId("device-protocol"))).thenReturn(deviceProtocolMo);
+		when(inventoryApi.getManagedObjectsByFilter(any(InventoryFilter.class))).thenReturn(childDevices, deviceProtocols);
 		when(properties.getGatewayObjectRefreshIntervalInMinutes()).thenReturn(1);
 
 		assertNull(gatewayDataProvider.getGatewayDevice());
@@ -144,50 +165,124 @@ public class GatewayDataProviderTest {
 		// Action
 		gatewayDataProvider.updateGatewayObjects(gatewayDeviceMo);
 
-		assertNotNull(gatewayDataProvider.getGatewayDevice());
-		assertEquals(gatewayDataProvider.getSnmpDeviceMap().size(), 1);
+		assertEquals(1, gatewayDataProvider.getSnmpDeviceMap().size());
+		assertNull(gatewayDataProvider.getProtocolMap().get("device-protocol"));
 	}
 
 	@Test
-	public void shouldNotUpdateDeviceProtocolIfNotPresentInPlatform() {
-		ManagedObjectRepresentation gatewayDeviceMo = new ManagedObjectRepresentation();
-		gatewayDeviceMo.setId(new GId("snmp-agent"));
+	public void shouldPublishOnlyChangedDevicesAndKeepUnchangedProtocolOnRefreshGatewayObjects() {
+		ManagedObjectRepresentation gatewayDeviceMo = createGatewayDeviceMo("child-device-1", "child-device-2");
+		refreshGatewayObjects(gatewayDeviceMo, createSnmpDeviceMo("child-device-1", "127.0.0.1", 1000),
+				createSnmpDeviceMo("child-device-2", "127.0.0.2", 1000), createDeviceProtocolMo(1000));
+		DeviceProtocolManagedObjectWrapper deviceProtocol = gatewayDataProvider.getProtocolMap().get("device-protocol");
+		DeviceManagedObjectWrapper unchangedDevice = gatewayDataProvider.getSnmpDeviceMap().get("127.0.0.1");
+		reset(eventPublisher);
 
-		ManagedObjectRepresentation childDeviceMo = new ManagedObjectRepresentation();
-		childDeviceMo.setId(new GId("child-device"));
+		// Action
+		refreshGatewayObjects(gatewayDeviceMo, createSnmpDeviceMo("child-device-1", "127.0.0.1", 1000),
+				createSnmpDeviceMo("child-device-2", "127.0.0.2", 2000), createDeviceProtocolMo(1000));
+
+		assertSame(deviceProtocol, gatewayDataProvider.getProtocolMap().get("device-protocol"));
+		assertSame(unchangedDevice, gatewayDataProvider.getSnmpDeviceMap().get("127.0.0.1"));
+
+		verify(eventPublisher).publishEvent(gatewayDataChangedEventCaptor.capture());
+		GatewayDataChangedEvent event = gatewayDataChangedEventCaptor.getValue();
+		assertEquals(Collections.emptySet(), event.getAddedDevices());
+		assertEquals(Collections.singleton("127.0.0.2"), event.getChangedDevices());
+		assertEquals(Collections.emptySet(), event.getRemovedDevices());
+		assertEquals(Collections.emptySet(), event.getChangedProtocols());
+	}
 
-		ManagedObjectReferenceCollectionRepresentation childDevices = new ManagedObjectReferenceCollectionRepresentation();
-		ManagedObjectReferenceRepresentation childDeviceRef = new ManagedObjectReferenceRepresentation();
-		childDeviceRef.setManagedObject(childDeviceMo);
+	@Test
+	public void shouldNotPublishGatewayDataChangedEventIfNothingChanged() {
+		ManagedObjectRepresentation gatewayDeviceMo = createGatewayDeviceMo("child-device");
+		refreshGatewayObjects(gatewayDeviceMo, createSnmpDeviceMo("child-device", "127.0.0.1", 1000),
+				createDeviceProtocolMo(1000));
+		reset(eventPublisher);
 
-		Map<String, Object> propertiesMap = new HashMap<>();
-		propertiesMap.put("version", 0);
-		propertiesMap.put("port", "161");
-		propertiesMap.put("type", "/inventory/managedObjects/device-protocol");
-		propertiesMap.put("ipAddress", "127.0.0.1");
+		// Action
+		refreshGatewayObjects(gatewayDeviceMo, createSnmpDeviceMo("child-device", "127.0.0.1", 1000),
+				createDeviceProtocolMo(1000));
 
-		childDeviceMo.set(propertiesMap, DeviceManagedObjectWrapper.C8Y_SNMP_DEVICE);
+		verify(eventPublisher, never()).publishEvent(any(GatewayDataChangedEvent.class));
+	}
 
-		List<ManagedObjectReferenceRepresentation> childDeviceRefList = new ArrayList<>();
-		childDeviceRefList.add(childDeviceRef);
-		childDevices.setReferences(childDeviceRefList);
+	@Test
+	public void shouldMarkDevicesOfChangedProtocolAsChangedOnRealtimeUpdate() {
+		refreshGatewayObjects(createGatewayDeviceMo("child-device"),
+				createSnmpDeviceMo("child-device", "127.0.0.1", 1000), createDeviceProtocolMo(1000));
+		reset(eventPublisher);
 
-		gatewayDeviceMo.setChildDevices(childDevices);
+		// Action
+		gatewayDataProvider.onManagedObjectUpdated(new GId("device-protocol"), createDeviceProtocolMo(2000));
 
-		when(inventoryApi.get(new GId("snmp-agent"))).thenReturn(gatewayDeviceMo);
-		when(inventoryApi.get(new GId("child-device"))).thenReturn(childDeviceMo);
-		when(inventoryApi.get(new GId("device-protocol")))
-				.thenThrow(new SDKException(HttpStatus.SC_NOT_FOUND, "Object Not found"));
-		when(properties.getGatewayObjectRefreshIntervalInMinutes()).thenReturn(1);
+		verify(inventoryApi, never()).get(new GId("device-protocol"));
+		verify(eventPublisher).publishEvent(gatewayDataChangedEventCaptor.capture());
+		assertEquals(Collections.singleton("127.0.0.1"), gatewayDataChangedEventCaptor.getValue().getChangedDevices());
+		assertEquals(Collections.singleton("device-protocol"), gatewayDataChangedEventCaptor.getValue().getChangedProtocols());
+	}
 
-		assertNull(gatewayDataProvider.getGatewayDevice());
-		assertEquals(gatewayDataProvider.getSnmpDeviceMap().size(), 0);
+	@Test
+	public void shouldMoveDeviceToNewIpAddressOnRealtimeUpdate() {
+		refreshGatewayObjects(createGatewayDeviceMo("child-device"),
+				createSnmpDeviceMo("child-device", "127.0.0.1", 1000), createDeviceProtocolMo(1000));
+		reset(eventPublisher);
 
 		// Action
-		gatewayDataProvider.updateGatewayObjects(gatewayDeviceMo);
+		gatewayDataProvider.onManagedObjectUpdated(new GId("child-device"),
+				createSnmpDeviceMo("child-device", "127.0.0.5", 2000));
 
-		assertEquals(1, gatewayDataProvider.getSnmpDeviceMap().size());
-		assertNull(gatewayDataProvider.getProtocolMap().get("device-protocol"));
+		assertEquals(Collections.singleton("127.0.0.5"), gatewayDataProvider.getSnmpDeviceMap().keySet());
+
+		verify(eventPublisher).publishEvent(gatewayDataChangedEventCaptor.capture());
+		assertEquals(Collections.singleton("127.0.0.5"), gatewayDataChangedEventCaptor.getValue().getAddedDevices());
+		assertEquals(Collections.singleton("127.0.0.1"), gatewayDataChangedEventCaptor.getValue().getRemovedDevices());
+	}
+
+	@Test
+	public void shouldRemoveDeviceOnRealtimeDeletion() {
+		refreshGatewayObjects(createGatewayDeviceMo("child-device"),
+				createSnmpDeviceMo("child-device", "127.0.0.1", 1000), createDeviceProtocolMo(1000));
+		reset(eventPublisher);
+
+		// Action
+		gatewayDataProvider.onManagedObjectDeleted(new GId("child-device"));
+
+		assertTrue(gatewayDataProvider.getSnmpDeviceMap().isEmpty());
+		assertTrue(gatewayDataProvider.getProtocolMap().isEmpty());
+
+		verify(eventPublisher).publishEvent(gatewayDataChangedEventCaptor.capture());
+		assertEquals(Collections.singleton("127.0.0.1"), gatewayDataChangedEventCaptor.getValue().getRemovedDevices());
+	}
+
+	@Test
+	public void shouldWatchGatewayDeviceItsChildDevicesAndTheirDeviceProtocols() {
+		assertTrue(gatewayDataProvider.getWatchedManagedObjectIds().isEmpty());
+
+		refreshGatewayObjects(createGatewayDeviceMo("child-device-1", "child-device-2"),
+				createSnmpDeviceMo("child-device-1", "127.0.0.1", 1000), createDeviceProtocolMo(1000));
+
+		assertEquals(new HashSet<>(Arrays.asList(new GId("snmp-agent"), new GId("child-device-1"), new GId("child-device-2"),
+				new GId("device-protocol"))), gatewayDataProvider.getWatchedManagedObjectIds());
+
+		// Action
+		gatewayDataProvider.onManagedObjectDeleted(new GId("child-device-1"));
+
+		assertEquals(new HashSet<>(Arrays.asList(new GId("snmp-agent"), new GId("child-device-2"))),
+				gatewayDataProvider.getWatchedManagedObjectIds());
+	}
+
+	@Test
+	public void shouldIgnoreRealtimeUpdateOfUnrelatedManagedObject() {
+		refreshGatewayObjects(createGatewayDeviceMo("child-device"),
+				createSnmpDeviceMo("child-device", "127.0.0.1", 1000), createDeviceProtocolMo(1000));
+		reset(eventPublisher, inventoryApi);
+
+		// Action
+		gatewayDataProvider.onManagedObjectUpdated(new GId("other"), null);
+		gatewayDataProvider.onManagedObjectDeleted(new GId("other"));
+
+		verifyNoInteractions(inventoryApi, eventPublisher);
 	}
 
 	@Test
@@ -204,7 +299,7 @@ public class GatewayDataProviderTest {
 		gatewayDeviceMo.setChildDevices(childDevices);
 
 		when(properties.getGatewayObjectRefreshIntervalInMinutes()).thenReturn(1);
-		when(platformProvider.isPlatformAvailable()).thenReturn(true);
+		when(platformProvider.isPlatformAvailable(PlatformApi.INVENTORY)).thenReturn(true);
 
 		doAnswer((Answer<Void>) invocation -> {
 			return null;
@@ -217,4 +312,75 @@ public class GatewayDataProviderTest {
 		verify(gatewayDataProvider).refreshGatewayObjects();
 		verify(eventPublisher).publishEvent(any(GatewayDataRefreshedEvent.class));
 	}
+
+	private void refreshGatewayObjects(ManagedObjectRepresentation gatewayDeviceMo, ManagedObjectRepresentation... managedObjects) {
+		ReflectionTestUtils.setField(gatewayDataProvider, "gatewayDevice", new GatewayManagedObjectWrapper(gatewayDeviceMo));
+
+		// The device protocol is the last one, as it is fetched after the child devices
+		List<ManagedObjectRepresentation> childDeviceMos = new ArrayList<>(Arrays.asList(managedObjects));
+		ManagedObjectRepresentation deviceProtocolMo = childDeviceMos.remove(childDeviceMos.size() - 1);
+		ManagedObjectCollection childDevices = createManagedObjectCollection(
+				childDeviceMos.toArray(new ManagedObjectRepresentation[0]));
+		ManagedObjectCollection deviceProtocols = createManagedObjectCollection(deviceProtocolMo);
+
+		when(inventoryApi.get(new GId("snmp-agent"))).thenReturn(gatewayDeviceMo);
+		when(inventoryApi.getManagedObjectsByFilter(any(InventoryFilter.class))).thenReturn(childDevices, deviceProtocols);
+
+		gatewayDataProvider.refreshGatewayObjects();
+	}
+
+	private ManagedObjectRepresentation createGatewayDeviceMo(String... childDeviceIds) {
+		ManagedObjectRepresentation gatewayDeviceMo = new ManagedObjectRepresentation();
+		gatewayDeviceMo.setId(new GId("snmp-agent"));
+
+		List<ManagedObjectReferenceRepresentation> childDeviceRefList = new ArrayList<>();
+		for (String childDeviceId : childDeviceIds) {
+			ManagedObjectRepresentation childDeviceMo = new ManagedObjectRepresentation();
+			childDeviceMo.setId(new GId(childDeviceId));
+
+			ManagedObjectReferenceRepresentation childDeviceRef = new ManagedObjectReferenceRepresentation();
+			childDeviceRef.setManagedObject(childDeviceMo);
+			childDeviceRefList.add(childDeviceRef);
+		}
+
+		ManagedObjectReferenceCollectionRepresentation childDevices = new ManagedObjectReferenceCollectionRepresentation();
+		childDevices.setReferences(childDeviceRefList);
+		gatewayDeviceMo.setChildDevices(childDevices);
+
+		return gatewayDeviceMo;
+	}
+
+	private ManagedObjectRepresentation createSnmpDeviceMo(String id, String ipAddress, long lastUpdated) {
+		Map<String, Object> propertiesMap = new HashMap<>();
+		propertiesMap.put("version", 0);
+		propertiesMap.put("port", "161");
+		propertiesMap.put("type", "/inventory/managedObjects/device-protocol");
+		propertiesMap.put("ipAddress", ipAddress);
+
+		ManagedObjectRepresentation childDeviceMo = new ManagedObjectRepresentation();
+		childDeviceMo.setId(new GId(id));
+		childDeviceMo.setLastUpdatedDateTime(new DateTime(lastUpdated));
+		childDeviceMo.set(propertiesMap, DeviceManagedObjectWrapper.C8Y_SNMP_DEVICE);
+
+		return childDeviceMo;
+	}
+
+	private ManagedObjectRepresentation createDeviceProtocolMo(long lastUpdated) {
+		ManagedObjectRepresentation deviceProtocolMo = new ManagedObjectRepresentation();
+		deviceProtocolMo.setId(new GId("device-protocol"));
+		deviceProtocolMo.setLastUpdatedDateTime(new DateTime(lastUpdated));
+
+		return deviceProtocolMo;
+	}
+
+	private ManagedObjectCollection createManagedObjectCollection(ManagedObjectRepresentation... managedObjects) {
+		ManagedObjectCollectionRepresentation collection = new ManagedObjectCollectionRepresentation();
+		collection.setManagedObjects(Arrays.asList(managedObjects));
+
+		ManagedObjectCollection managedObjectCollection = mock(ManagedObjectCollection.class);
+		when(managedObjectCollection.get(anyInt()))
+				.thenReturn(new PagedManagedObjectCollectionRepresentation(collection, null));
+
+		return managedObjectCollection;
+	}
 }
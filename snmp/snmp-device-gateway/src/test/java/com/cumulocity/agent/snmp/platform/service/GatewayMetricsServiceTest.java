@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA, 
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cumulocity.agent.snmp.platform.service;
+
+import com.cumulocity.agent.snmp.config.GatewayProperties;
+import com.cumulocity.agent.snmp.device.service.DevicePollingService;
+import com.cumulocity.agent.snmp.platform.model.GatewayManagedObjectWrapper;
+import com.cumulocity.agent.snmp.platform.pubsub.publisher.MeasurementPublisher;
+import com.cumulocity.agent.snmp.platform.pubsub.service.PubSub;
+import com.cumulocity.agent.snmp.platform.pubsub.service.PubSubMetrics;
+import com.cumulocity.rest.representation.inventory.ManagedObjectRepresentation;
+import com.cumulocity.rest.representation.measurement.MeasurementRepresentation;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class GatewayMetricsServiceTest {
+
+    @Mock
+    private GatewayProperties gatewayProperties;
+
+    @Mock
+    private GatewayDataProvider gatewayDataProvider;
+
+    @Mock
+    private PlatformProvider platformProvider;
+
+    @Mock
+    private TaskScheduler taskScheduler;
+
+    @Mock
+    private MeasurementPublisher measurementPublisher;
+
+    @Mock
+    private DevicePollingService devicePollingService;
+
+    @Mock
+    private PubSub<?> pubSub;
+
+    @Mock
+    private PubSub<?> pubSubWithoutMetrics;
+
+    @Mock
+    private PubSubMetrics pubSubMetrics;
+
+    @InjectMocks
+    private GatewayMetricsService gatewayMetricsService;
+
+    @Captor
+    private ArgumentCaptor<MeasurementRepresentation> measurementCaptor;
+
+    @Before
+    public void setUp() {
+        ReflectionTestUtils.setField(gatewayMetricsService, "pubSubs", Arrays.asList(pubSub, pubSubWithoutMetrics));
+    }
+
+    @Test
+    public void shouldScheduleMetricsReportingWithConfiguredInterval() {
+        when(gatewayProperties.getGatewayMetricsInterval()).thenReturn(60);
+
+        gatewayMetricsService.scheduleMetricsReporting();
+        gatewayMetricsService.scheduleMetricsReporting();
+
+        verify(taskScheduler, times(1)).scheduleWithFixedDelay(any(Runnable.class), eq(Duration.ofSeconds(60)));
+    }
+
+    @Test
+    public void shouldNotScheduleMetricsReportingWhenDisabled() {
+        when(gatewayProperties.getGatewayMetricsInterval()).thenReturn(0);
+
+        gatewayMetricsService.scheduleMetricsReporting();
+
+        verifyNoInteractions(taskScheduler);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldPublishQueueMetricsAsGatewayMeasurement() {
+        ManagedObjectRepresentation gatewayMo = new ManagedObjectRepresentation();
+        GatewayManagedObjectWrapper gatewayDevice = mock(GatewayManagedObjectWrapper.class);
+        when(gatewayDevice.getManagedObject()).thenReturn(gatewayMo);
+        when(gatewayDataProvider.getGatewayDevice()).thenReturn(gatewayDevice);
+
+        when(pubSub.getMetrics()).thenReturn(pubSubMetrics);
+        when(pubSubWithoutMetrics.getMetrics()).thenReturn(null);
+        when(pubSubMetrics.getQueueName()).thenReturn("MEASUREMENT");
+        when(pubSubMetrics.getQueueDepth()).thenReturn(42L);
+        when(pubSubMetrics.getQueueHeadAgeInMillis()).thenReturn(90_000L);
+        when(pubSubMetrics.getRetryQueueDepth()).thenReturn(3L);
+        when(pubSubMetrics.getDeliveryLatency95thPercentileInMillis()).thenReturn(250L);
+        when(platformProvider.getPlatformUnavailableTimeInMillis()).thenReturn(5_000L);
+        when(devicePollingService.getMissedPollDeadlines()).thenReturn(7L);
+
+        gatewayMetricsService.reportMetrics();
+
+        verify(pubSubMetrics).sample();
+        verify(measurementPublisher).publish(measurementCaptor.capture());
+
+        MeasurementRepresentation measurement = measurementCaptor.getValue();
+        assertSame(gatewayMo, measurement.getSource());
+        assertEquals(GatewayMetricsService.C8Y_SNMP_GATEWAY_METRICS, measurement.getType());
+        assertNotNull(measurement.getDateTime());
+
+        Map<String, Map<String, Object>> series = (Map<String, Map<String, Object>>) measurement.getProperty(GatewayMetricsService.C8Y_SNMP_GATEWAY_METRICS);
+        assertEquals(42L, series.get("measurementQueueDepth").get("value"));
+        assertNull(series.get("measurementQueueDepth").get("unit"));
+        assertEquals(90L, series.get("measurementQueueHeadAge").get("value"));
+        assertEquals("s", series.get("measurementQueueHeadAge").get("unit"));
+        assertEquals(3L, series.get("measurementRetryQueueDepth").get("value"));
+        assertEquals(250L, series.get("measurementDeliveryLatencyP95").get("value"));
+        assertEquals("ms", series.get("measurementDeliveryLatencyP95").get("unit"));
+        assertEquals(5L, series.get("platformUnavailableTime").get("value"));
+        assertEquals(7L, series.get("missedPollDeadlines").get("value"));
+    }
+
+    @Test
+    public void shouldNotPropagateErrorsWhileReportingMetrics() {
+        when(pubSub.getMetrics()).thenThrow(new IllegalStateException("Closed"));
+
+        gatewayMetricsService.reportMetrics();
+
+        verifyNoInteractions(measurementPublisher);
+    }
+
+    @Test
+    public void shouldExposePlatformAndPollingMetrics() {
+        when(platformProvider.isPlatformAvailable()).thenReturn(false);
+        when(platformProvider.getPlatformUnavailableTimeInMillis()).thenReturn(1_000L);
+        when(devicePollingService.getMissedPollDeadlines()).thenReturn(2L);
+
+        assertFalse(gatewayMetricsService.isPlatformAvailable());
+        assertEquals(1_000L, gatewayMetricsService.getPlatformUnavailableTimeInMillis());
+        assertEquals(2L, gatewayMetricsService.getMissedPollDeadlineCount());
+    }
+}
@@ -27,7 +27,9 @@ import com.cumulocity.rest.representation.devicebootstrap.DeviceCredentialsRepre
 import com.cumulocity.sdk.client.HttpClientConfig;
 import com.cumulocity.sdk.client.Platform;
 import com.cumulocity.sdk.client.PlatformParameters;
+import com.cumulocity.sdk.client.SDKException;
 import com.cumulocity.sdk.client.measurement.MeasurementApi;
+import com.cumulocity.sdk.client.measurement.MeasurementCollection;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
@@ -72,6 +74,9 @@ public class PlatformProviderTest {
     @Mock
     private MeasurementApi measurementApi;
 
+    @Mock
+    private MeasurementCollection measurementCollection;
+
     @InjectMocks
     private PlatformProvider platformProvider;
 
@@ -264,16 +269,75 @@ public class PlatformProviderTest {
     }
 
     @Test
-    public void shouldMarkPlatformunAvailable() {
-        assertFalse(platformProvider.isPlatformAvailable());
+    public void shouldCountPlatformUnavailableTimeWhileCircuitBreakerIsNotClosed() {
+        ReflectionTestUtils.setField(platformProvider, "platform", platform);
+        ReflectionTestUtils.setField(platformProvider, "isPlatformAvailable", Boolean.TRUE);
+        when(platform.getMeasurementApi()).thenReturn(measurementApi);
+        when(measurementApi.getMeasurements()).thenReturn(measurementCollection);
+        assertEquals(0, platformProvider.getPlatformUnavailableTimeInMillis());
+
+        platformProvider.recordFailure(PlatformApi.MEASUREMENT);
+        ReflectionTestUtils.setField(platformProvider, "unavailableSince", System.currentTimeMillis() - 5000);
+
+        assertTrue(platformProvider.getPlatformUnavailableTimeInMillis() >= 5000);
+
+        platformProvider.probeOpenCircuitBreakers();
+        assertTrue(platformProvider.tryAcquirePermission(PlatformApi.MEASUREMENT));
+        platformProvider.recordSuccess(PlatformApi.MEASUREMENT);
+        platformProvider.releasePermission(PlatformApi.MEASUREMENT);
 
-        // Set Platform as available
+        assertEquals(CircuitBreaker.State.CLOSED, platformProvider.getCircuitBreaker(PlatformApi.MEASUREMENT).getState());
+        long unavailableTime = platformProvider.getPlatformUnavailableTimeInMillis();
+        assertTrue(unavailableTime >= 5000);
+        assertEquals(unavailableTime, platformProvider.getPlatformUnavailableTimeInMillis());
+    }
+
+    @Test
+    public void shouldSuspendOnlyTheFailingApiAndResumeItAfterSuccessfulProbe() {
+        ReflectionTestUtils.setField(platformProvider, "platform", platform);
         ReflectionTestUtils.setField(platformProvider, "isPlatformAvailable", Boolean.TRUE);
-        assertTrue(platformProvider.isPlatformAvailable());
+        when(platform.getMeasurementApi()).thenReturn(measurementApi);
+        when(measurementApi.getMeasurements()).thenReturn(measurementCollection);
 
-        platformProvider.markPlatfromAsUnavailable();
+        platformProvider.recordFailure(PlatformApi.MEASUREMENT);
 
-        assertFalse(platformProvider.isPlatformAvailable());
+        assertFalse(platformProvider.isPlatformAvailable(PlatformApi.MEASUREMENT));
+        assertTrue(platformProvider.isPlatformAvailable(PlatformApi.ALARM));
+
+        platformProvider.probeOpenCircuitBreakers();
+
+        assertEquals(CircuitBreaker.State.HALF_OPEN, platformProvider.getCircuitBreaker(PlatformApi.MEASUREMENT).getState());
+        assertTrue(platformProvider.isPlatformAvailable(PlatformApi.MEASUREMENT));
+        verify(measurementCollection).get(1);
+        verify(platform, never()).getAlarmApi();
+    }
+
+    @Test
+    public void shouldKeepCircuitBreakerOpenWhenProbeFailsWithServerError() {
+        ReflectionTestUtils.setField(platformProvider, "platform", platform);
+        ReflectionTestUtils.setField(platformProvider, "isPlatformAvailable", Boolean.TRUE);
+        when(platform.getMeasurementApi()).thenReturn(measurementApi);
+        when(measurementApi.getMeasurements()).thenReturn(measurementCollection);
+        when(measurementCollection.get(1)).thenThrow(new SDKException(503, "Service unavailable"));
+
+        platformProvider.recordFailure(PlatformApi.MEASUREMENT);
+        platformProvider.probeOpenCircuitBreakers();
+
+        assertEquals(CircuitBreaker.State.OPEN, platformProvider.getCircuitBreaker(PlatformApi.MEASUREMENT).getState());
+        assertFalse(platformProvider.isPlatformAvailable(PlatformApi.MEASUREMENT));
+    }
+
+    @Test
+    public void shouldHalfOpenCircuitBreakerWhenProbeFailsWithClientError() {
+        ReflectionTestUtils.setField(platformProvider, "platform", platform);
+        when(platform.getMeasurementApi()).thenReturn(measurementApi);
+        when(measurementApi.getMeasurements()).thenReturn(measurementCollection);
+        when(measurementCollection.get(1)).thenThrow(new SDKException(403, "Access denied"));
+
+        platformProvider.recordFailure(PlatformApi.MEASUREMENT);
+        platformProvider.probeOpenCircuitBreakers();
+
+        assertEquals(CircuitBreaker.State.HALF_OPEN, platformProvider.getCircuitBreaker(PlatformApi.MEASUREMENT).getState());
     }
 
     @Test
@@ -22,13 +22,18 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
+import java.util.HashSet;
+import java.util.Set;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -216,17 +221,77 @@ public class PlatformSubscriberTest {
 	}
 
 	@Test
-	public void shouldNotSubscribeForGatewayInventoryNotificationSecondTime() {
+	@SuppressWarnings("unchecked")
+	public void shouldSubscribeForInventoryChangesOfWatchedManagedObjectsOnly() {
 		InventoryRealtimeDeleteAwareNotificationsSubscriber subscriberMock = mock(
 				InventoryRealtimeDeleteAwareNotificationsSubscriber.class);
 		ReflectionTestUtils.setField(platformSubscriber, "gatewayNotificationSubscriber", subscriberMock);
+		mockGatewayDevice();
 
-		// Action
+		Subscription<String> subscriptionOf2 = mock(Subscription.class);
+		when(subscriberMock.subscribe(anyString(), any(SubscriptionListener.class))).thenReturn(mock(Subscription.class));
+		when(subscriberMock.subscribe(eq("2"), any(SubscriptionListener.class))).thenReturn(subscriptionOf2);
+
+		when(gatewayDataProvider.getWatchedManagedObjectIds()).thenReturn(ids("1", "2", "3"));
+		ReflectionTestUtils.invokeMethod(platformSubscriber, "subscribeGatewayInventoryNotification");
+
+		verify(subscriberMock).subscribe(eq("1"), any(SubscriptionListener.class));
+		verify(subscriberMock).subscribe(eq("2"), any(SubscriptionListener.class));
+		verify(subscriberMock).subscribe(eq("3"), any(SubscriptionListener.class));
+		verify(subscriberMock, never()).subscribe(eq("*"), any(SubscriptionListener.class));
+
+		// The child device 2 was removed and 4 was added
+		when(gatewayDataProvider.getWatchedManagedObjectIds()).thenReturn(ids("1", "3", "4"));
+		platformSubscriber.refreshInventorySubscriptions();
+
+		verify(subscriptionOf2).unsubscribe();
+		verify(subscriberMock).subscribe(eq("4"), any(SubscriptionListener.class));
+		verify(subscriberMock, times(4)).subscribe(anyString(), any(SubscriptionListener.class));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void shouldRetryFailedInventorySubscriptionsWhenRefreshed() {
+		InventoryRealtimeDeleteAwareNotificationsSubscriber subscriberMock = mock(
+				InventoryRealtimeDeleteAwareNotificationsSubscriber.class);
+		ReflectionTestUtils.setField(platformSubscriber, "gatewayNotificationSubscriber", subscriberMock);
+		mockGatewayDevice();
+
+		when(gatewayDataProvider.getWatchedManagedObjectIds()).thenReturn(ids("1"));
+		when(subscriberMock.subscribe(eq("1"), any(SubscriptionListener.class)))
+				.thenThrow(new SDKException("SOME ERROR"))
+				.thenReturn(mock(Subscription.class));
+
+		ReflectionTestUtils.invokeMethod(platformSubscriber, "subscribeGatewayInventoryNotification");
+		ReflectionTestUtils.invokeMethod(platformSubscriber, "subscribeGatewayInventoryNotification");
 		ReflectionTestUtils.invokeMethod(platformSubscriber, "subscribeGatewayInventoryNotification");
 
+		verify(subscriberMock, times(2)).subscribe(eq("1"), any(SubscriptionListener.class));
+	}
+
+	@Test
+	public void shouldNotRefreshInventorySubscriptionsBeforeSubscribing() {
+		platformSubscriber.refreshInventorySubscriptions();
+
 		verifyNoInteractions(gatewayDataProvider);
 	}
 
+	private void mockGatewayDevice() {
+		GatewayManagedObjectWrapper gatewayDeviceMock = mock(GatewayManagedObjectWrapper.class);
+		when(gatewayDeviceMock.getId()).thenReturn(GId.asGId("1"));
+		when(gatewayDeviceMock.getName()).thenReturn("snmp-agent-test");
+		when(gatewayDataProvider.getGatewayDevice()).thenReturn(gatewayDeviceMock);
+	}
+
+	private static Set<GId> ids(String... ids) {
+		Set<GId> gIds = new HashSet<>();
+		for (String id : ids) {
+			gIds.add(GId.asGId(id));
+		}
+
+		return gIds;
+	}
+
 	@Test
 	public void shouldNotSubscribeForOperationsForGatewayDeviceSecondTime() {
 		OperationNotificationSubscriber operationNotificationSubscriberMock = mock(
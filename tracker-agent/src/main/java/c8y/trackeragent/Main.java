@@ -23,6 +23,7 @@
 package c8y.trackeragent;
 
 import c8y.trackeragent.devicemapping.DeviceMappingMigrationService;
+import c8y.trackeragent.devicemapping.DeviceTenantMappingService;
 import c8y.trackeragent.server.Servers;
 import c8y.trackeragent.subscription.TenantSubscriptionService;
 import com.cumulocity.microservice.autoconfigure.MicroserviceApplication;
@@ -57,6 +58,9 @@ public class Main {
     @Autowired
     private DeviceMappingMigrationService deviceMappingMigrationService;
 
+    @Autowired
+    private DeviceTenantMappingService deviceTenantMappingService;
+
     public static void main(String[] args) {
         logger.info("tracker-agent is starting.");
         SpringApplication.run(Main.class, args);
@@ -67,5 +71,6 @@ public class Main {
         servers.startAll();
         tenantSubscriptionService.subscribeTenants(ownerTenant);
         deviceMappingMigrationService.doMigrationFromPropertyFileToManagedObject();
+        deviceTenantMappingService.warmUpCache();
     }
 }
\ No newline at end of file
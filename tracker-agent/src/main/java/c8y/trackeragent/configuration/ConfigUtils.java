@@ -52,6 +52,30 @@ public class ConfigUtils {
     private static final String DEFAULT_CLIENT_TIMEOUT = "" + TimeUnit.MINUTES.toMillis(5);
     private static final String NUMBER_OF_READER_WORKERS = "numberOfReaderWorkers";
     private static final Integer DEFAULT_NUMBER_OF_READER_WORKERS = 10;
+    private static final String READER_WORKER_QUEUE_SIZE = "readerWorkerQueueSize";
+    private static final Integer DEFAULT_READER_WORKER_QUEUE_SIZE = 1000;
+    private static final String NUMBER_OF_REACTORS = "numberOfReactors";
+    private static final Integer DEFAULT_NUMBER_OF_REACTORS = 1;
+    private static final String MAX_POOLED_BUFFERS = "maxPooledBuffers";
+    private static final Integer DEFAULT_MAX_POOLED_BUFFERS = 1024;
+    private static final String WRITE_BEHIND_ENABLED_PROP = "writeBehind.enabled";
+    private static final boolean DEFAULT_WRITE_BEHIND_ENABLED = true;
+    private static final String WRITE_BEHIND_BUFFER_SIZE_PROP = "writeBehind.bufferSize";
+    private static final Integer DEFAULT_WRITE_BEHIND_BUFFER_SIZE = 10000;
+    private static final String WRITE_BEHIND_FLUSH_INTERVAL_PROP = "writeBehind.flushInterval";
+    private static final Integer DEFAULT_WRITE_BEHIND_FLUSH_INTERVAL = 500;
+    private static final String WRITE_BEHIND_MAX_BATCH_SIZE_PROP = "writeBehind.maxBatchSize";
+    private static final Integer DEFAULT_WRITE_BEHIND_MAX_BATCH_SIZE = 200;
+    private static final String WRITE_BEHIND_THREADS_PROP = "writeBehind.threads";
+    private static final Integer DEFAULT_WRITE_BEHIND_THREADS = 4;
+    private static final String DEVICE_CACHE_MAX_SIZE_PROP = "deviceCache.maxSize";
+    private static final Integer DEFAULT_DEVICE_CACHE_MAX_SIZE = 100000;
+    private static final String DEVICE_CACHE_IDLE_TIMEOUT_PROP = "deviceCache.idleTimeout";
+    private static final Integer DEFAULT_DEVICE_CACHE_IDLE_TIMEOUT = 60;
+    private static final String ALARM_CACHE_REFRESH_INTERVAL_PROP = "alarmCache.refreshInterval";
+    private static final Integer DEFAULT_ALARM_CACHE_REFRESH_INTERVAL = 300;
+    private static final String ALARM_CACHE_RAISE_RECHECK_INTERVAL_PROP = "alarmCache.raiseRecheckInterval";
+    private static final Integer DEFAULT_ALARM_CACHE_RAISE_RECHECK_INTERVAL = 30;
     
     private static final Random random = new Random();
     private static final ConfigUtils instance = new ConfigUtils();
@@ -107,7 +131,19 @@ public class ConfigUtils {
             .setCobanLocationReportTimeInterval(getIntegerProperty(props, COBAN_LOCATION_REPORT_INTERVAL_PROP, CobanConstants.DEFAULT_LOCATION_REPORT_INTERVAL))
             .setRfv16LocationReportTimeInterval(getIntegerProperty(props, RFV16_LOCATION_REPORT_INTERVAL_PROP, RFV16Constants.DEFAULT_LOCATION_REPORT_INTERVAL))
             .setClientTimeout(clientTimeout)
-            .setNumberOfReaderWorkers(getIntegerProperty(props, NUMBER_OF_READER_WORKERS, DEFAULT_NUMBER_OF_READER_WORKERS));
+            .setNumberOfReaderWorkers(getIntegerProperty(props, NUMBER_OF_READER_WORKERS, DEFAULT_NUMBER_OF_READER_WORKERS))
+            .setReaderWorkerQueueSize(getIntegerProperty(props, READER_WORKER_QUEUE_SIZE, DEFAULT_READER_WORKER_QUEUE_SIZE))
+            .setNumberOfReactors(getIntegerProperty(props, NUMBER_OF_REACTORS, DEFAULT_NUMBER_OF_REACTORS))
+            .setMaxPooledBuffers(getIntegerProperty(props, MAX_POOLED_BUFFERS, DEFAULT_MAX_POOLED_BUFFERS))
+            .setWriteBehindEnabled(getBooleanProperty(props, WRITE_BEHIND_ENABLED_PROP, DEFAULT_WRITE_BEHIND_ENABLED))
+            .setWriteBehindBufferSize(getIntegerProperty(props, WRITE_BEHIND_BUFFER_SIZE_PROP, DEFAULT_WRITE_BEHIND_BUFFER_SIZE))
+            .setWriteBehindFlushInterval(getIntegerProperty(props, WRITE_BEHIND_FLUSH_INTERVAL_PROP, DEFAULT_WRITE_BEHIND_FLUSH_INTERVAL))
+            .setWriteBehindMaxBatchSize(getIntegerProperty(props, WRITE_BEHIND_MAX_BATCH_SIZE_PROP, DEFAULT_WRITE_BEHIND_MAX_BATCH_SIZE))
+            .setWriteBehindThreads(getIntegerProperty(props, WRITE_BEHIND_THREADS_PROP, DEFAULT_WRITE_BEHIND_THREADS))
+            .setDeviceCacheMaxSize(getIntegerProperty(props, DEVICE_CACHE_MAX_SIZE_PROP, DEFAULT_DEVICE_CACHE_MAX_SIZE))
+            .setDeviceCacheIdleTimeout(getIntegerProperty(props, DEVICE_CACHE_IDLE_TIMEOUT_PROP, DEFAULT_DEVICE_CACHE_IDLE_TIMEOUT))
+            .setAlarmCacheRefreshInterval(getIntegerProperty(props, ALARM_CACHE_REFRESH_INTERVAL_PROP, DEFAULT_ALARM_CACHE_REFRESH_INTERVAL))
+            .setAlarmCacheRaiseRecheckInterval(getIntegerProperty(props, ALARM_CACHE_RAISE_RECHECK_INTERVAL_PROP, DEFAULT_ALARM_CACHE_RAISE_RECHECK_INTERVAL));
         //@formatter:on
         logger.info(format("Configuration loaded from: %s: %s", sourceFilePath, config));
         return config;
@@ -33,6 +33,18 @@ public class TrackerConfiguration {
     private Integer rfv16LocationReportTimeInterval;
     private boolean forceInitialHost;
     private int numberOfReaderWorkers;
+    private int readerWorkerQueueSize = 1000;
+    private int numberOfReactors = 1;
+    private int maxPooledBuffers = 1024;
+    private boolean writeBehindEnabled = true;
+    private int writeBehindBufferSize = 10000;
+    private long writeBehindFlushInterval = 500;
+    private int writeBehindMaxBatchSize = 200;
+    private int writeBehindThreads = 4;
+    private int deviceCacheMaxSize = 100000;
+    private long deviceCacheIdleTimeout = 60;
+    private long alarmCacheRefreshInterval = 300;
+    private long alarmCacheRaiseRecheckInterval = 30;
     
     public TrackerConfiguration() {
         this.bootstrapPollIntervals = Arrays.asList(PollingStrategy.DEFAULT_POLL_INTERVALS);
@@ -165,6 +177,123 @@ public class TrackerConfiguration {
         return this;
     }
 
+    public int getReaderWorkerQueueSize() {
+        return readerWorkerQueueSize;
+    }
+
+    public TrackerConfiguration setReaderWorkerQueueSize(int readerWorkerQueueSize) {
+        this.readerWorkerQueueSize = readerWorkerQueueSize;
+        return this;
+    }
+
+    public int getNumberOfReactors() {
+        return numberOfReactors;
+    }
+
+    public TrackerConfiguration setNumberOfReactors(int numberOfReactors) {
+        this.numberOfReactors = numberOfReactors;
+        return this;
+    }
+
+    public int getMaxPooledBuffers() {
+        return maxPooledBuffers;
+    }
+
+    public TrackerConfiguration setMaxPooledBuffers(int maxPooledBuffers) {
+        this.maxPooledBuffers = maxPooledBuffers;
+        return this;
+    }
+
+    public boolean isWriteBehindEnabled() {
+        return writeBehindEnabled;
+    }
+
+    public TrackerConfiguration setWriteBehindEnabled(boolean writeBehindEnabled) {
+        this.writeBehindEnabled = writeBehindEnabled;
+        return this;
+    }
+
+    public int getWriteBehindBufferSize() {
+        return writeBehindBufferSize;
+    }
+
+    public TrackerConfiguration setWriteBehindBufferSize(int writeBehindBufferSize) {
+        this.writeBehindBufferSize = writeBehindBufferSize;
+        return this;
+    }
+
+    public long getWriteBehindFlushInterval() {
+        return writeBehindFlushInterval;
+    }
+
+    public TrackerConfiguration setWriteBehindFlushInterval(long writeBehindFlushInterval) {
+        this.writeBehindFlushInterval = writeBehindFlushInterval;
+        return this;
+    }
+
+    public int getWriteBehindMaxBatchSize() {
+        return writeBehindMaxBatchSize;
+    }
+
+    public TrackerConfiguration setWriteBehindMaxBatchSize(int writeBehindMaxBatchSize) {
+        this.writeBehindMaxBatchSize = writeBehindMaxBatchSize;
+        return this;
+    }
+
+    public int getWriteBehindThreads() {
+        return writeBehindThreads;
+    }
+
+    public TrackerConfiguration setWriteBehindThreads(int writeBehindThreads) {
+        this.writeBehindThreads = writeBehindThreads;
+        return this;
+    }
+
+    public int getDeviceCacheMaxSize() {
+        return deviceCacheMaxSize;
+    }
+
+    public TrackerConfiguration setDeviceCacheMaxSize(int deviceCacheMaxSize) {
+        this.deviceCacheMaxSize = deviceCacheMaxSize;
+        return this;
+    }
+
+    /**
+     * @return minutes after which a device which did not report is evicted from the device cache
+     */
+    public long getDeviceCacheIdleTimeout() {
+        return deviceCacheIdleTimeout;
+    }
+
+    public TrackerConfiguration setDeviceCacheIdleTimeout(long deviceCacheIdleTimeout) {
+        this.deviceCacheIdleTimeout = deviceCacheIdleTimeout;
+        return this;
+    }
+
+    /**
+     * @return seconds after which the cached active alarms of a device are reloaded in the background
+     */
+    public long getAlarmCacheRefreshInterval() {
+        return alarmCacheRefreshInterval;
+    }
+
+    public TrackerConfiguration setAlarmCacheRefreshInterval(long alarmCacheRefreshInterval) {
+        this.alarmCacheRefreshInterval = alarmCacheRefreshInterval;
+        return this;
+    }
+
+    /**
+     * @return seconds after which a raise of a cached active alarm is sent to the platform again
+     */
+    public long getAlarmCacheRaiseRecheckInterval() {
+        return alarmCacheRaiseRecheckInterval;
+    }
+
+    public TrackerConfiguration setAlarmCacheRaiseRecheckInterval(long alarmCacheRaiseRecheckInterval) {
+        this.alarmCacheRaiseRecheckInterval = alarmCacheRaiseRecheckInterval;
+        return this;
+    }
+
     public int getPort(TrackingProtocol protocol) {
         if (getLocalPort1Protocols().contains(protocol)) {
             return getLocalPort1();
@@ -218,6 +347,30 @@ public class TrackerConfiguration {
         builder.append(forceInitialHost);
         builder.append(", numberOfReaderWorkers=");
         builder.append(numberOfReaderWorkers);
+        builder.append(", readerWorkerQueueSize=");
+        builder.append(readerWorkerQueueSize);
+        builder.append(", numberOfReactors=");
+        builder.append(numberOfReactors);
+        builder.append(", maxPooledBuffers=");
+        builder.append(maxPooledBuffers);
+        builder.append(", writeBehindEnabled=");
+        builder.append(writeBehindEnabled);
+        builder.append(", writeBehindBufferSize=");
+        builder.append(writeBehindBufferSize);
+        builder.append(", writeBehindFlushInterval=");
+        builder.append(writeBehindFlushInterval);
+        builder.append(", writeBehindMaxBatchSize=");
+        builder.append(writeBehindMaxBatchSize);
+        builder.append(", writeBehindThreads=");
+        builder.append(writeBehindThreads);
+        builder.append(", deviceCacheMaxSize=");
+        builder.append(deviceCacheMaxSize);
+        builder.append(", deviceCacheIdleTimeout=");
+        builder.append(deviceCacheIdleTimeout);
+        builder.append(", alarmCacheRefreshInterval=");
+        builder.append(alarmCacheRefreshInterval);
+        builder.append(", alarmCacheRaiseRecheckInterval=");
+        builder.append(alarmCacheRaiseRecheckInterval);
         builder.append("]");
         return builder.toString();
     }
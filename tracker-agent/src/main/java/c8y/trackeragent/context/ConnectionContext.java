@@ -56,10 +56,6 @@ public class ConnectionContext {
         return connectionDetails.getChannel();
     }
 
-    public DeviceContext getDeviceContext() {
-        return DeviceContextRegistry.get().get(getImei());
-    }
-
     @Override
     public int hashCode() {
         final int prime = 31;
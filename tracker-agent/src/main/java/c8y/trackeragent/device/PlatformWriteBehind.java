@@ -0,0 +1,399 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA,
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Use, reproduction, transfer, publication or disclosure is prohibited except as specifically provided
+ * for in your License Agreement with Software AG.
+ */
+
+package c8y.trackeragent.device;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.cumulocity.model.idtype.GId;
+import com.cumulocity.rest.representation.event.EventRepresentation;
+import com.cumulocity.rest.representation.inventory.ManagedObjectRepresentation;
+import com.cumulocity.rest.representation.measurement.MeasurementCollectionRepresentation;
+import com.cumulocity.rest.representation.measurement.MeasurementRepresentation;
+import com.cumulocity.sdk.client.event.EventApi;
+import com.cumulocity.sdk.client.inventory.InventoryApi;
+import com.cumulocity.sdk.client.measurement.MeasurementApi;
+
+import c8y.trackeragent.configuration.TrackerConfiguration;
+import c8y.trackeragent.devicebootstrap.MicroserviceSubscriptionsServiceWrapper;
+
+/**
+ * Buffers measurements, events and inventory updates of tracker devices per tenant and sends them
+ * to the platform from background threads:
+ * <ul>
+ * <li>measurements are sent in bulk,</li>
+ * <li>events are sent in the order they were created,</li>
+ * <li>updates of the same managed object within one flush interval are merged, the last value of a fragment wins.</li>
+ * </ul>
+ * The buffer of a tenant is bounded; when it is full the reporting thread blocks until a flush frees space,
+ * which in turn throttles reading from the tracker connections.
+ * <p>
+ * Items which fail to be sent are kept in the buffer and sent again with the next flush, before the items
+ * buffered meanwhile. They are dropped after {@link #MAX_SEND_ATTEMPTS} failed attempts.
+ */
+@Component
+public class PlatformWriteBehind {
+
+    private static final Logger logger = LoggerFactory.getLogger(PlatformWriteBehind.class);
+
+    static final int MAX_SEND_ATTEMPTS = 3;
+
+    private final MicroserviceSubscriptionsServiceWrapper microserviceSubscriptionsServiceWrapper;
+    private final MeasurementApi measurements;
+    private final EventApi events;
+    private final InventoryApi inventory;
+    private final TrackerConfiguration configuration;
+    private final ConcurrentMap<String, TenantBuffer> buffers = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final ExecutorService flushers;
+
+    @Autowired
+    public PlatformWriteBehind(MicroserviceSubscriptionsServiceWrapper microserviceSubscriptionsServiceWrapper,
+                               MeasurementApi measurements, EventApi events, InventoryApi inventory,
+                               TrackerConfiguration configuration) {
+        this.microserviceSubscriptionsServiceWrapper = microserviceSubscriptionsServiceWrapper;
+        this.measurements = measurements;
+        this.events = events;
+        this.inventory = inventory;
+        this.configuration = configuration;
+        this.flushers = Executors.newFixedThreadPool(Math.max(1, configuration.getWriteBehindThreads()));
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!configuration.isWriteBehindEnabled()) {
+            logger.info("Write-behind disabled, data will be sent to the platform synchronously.");
+            return;
+        }
+        long interval = configuration.getWriteBehindFlushInterval();
+        logger.info("Write-behind enabled: buffer size per tenant {}, flush interval {} ms, max batch size {}.",
+                configuration.getWriteBehindBufferSize(), interval, configuration.getWriteBehindMaxBatchSize());
+        scheduler.scheduleWithFixedDelay(this::scheduleFlushAll, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+        flushers.shutdown();
+        try {
+            flushers.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logger.info("Flush write-behind buffers on shutdown.");
+        flushAll();
+    }
+
+    void flushAll() {
+        for (Map.Entry<String, TenantBuffer> entry : buffers.entrySet()) {
+            flush(entry.getKey(), entry.getValue());
+        }
+    }
+
+    public void createMeasurement(String tenant, MeasurementRepresentation measurement) {
+        if (!configuration.isWriteBehindEnabled()) {
+            measurements.create(measurement);
+            return;
+        }
+        bufferOf(tenant).addMeasurement(measurement);
+    }
+
+    public void createEvent(String tenant, EventRepresentation event) {
+        if (!configuration.isWriteBehindEnabled()) {
+            events.create(event);
+            return;
+        }
+        bufferOf(tenant).addEvent(event);
+    }
+
+    public void updateInventory(String tenant, ManagedObjectRepresentation managedObject) {
+        if (!configuration.isWriteBehindEnabled()) {
+            inventory.update(managedObject);
+            return;
+        }
+        bufferOf(tenant).addInventoryUpdate(managedObject);
+    }
+
+    /**
+     * Runs a platform request for the tenant on one of the flusher threads, e.g. a refresh of cached platform state.
+     *
+     * @return completes when the task is done, or exceptionally when it failed or could not be run at all
+     */
+    public CompletableFuture<Void> runInBackground(String tenant, Runnable task) {
+        try {
+            return CompletableFuture.runAsync(() -> microserviceSubscriptionsServiceWrapper.runForTenant(tenant, task), flushers)
+                    .whenComplete((ignored, ex) -> {
+                        if (ex != null) {
+                            logger.warn("Background task for tenant {} failed: {}", tenant, ex.getMessage());
+                        }
+                    });
+        } catch (Exception ex) {
+            logger.warn("Cannot schedule background task for tenant {}: {}", tenant, ex.getMessage());
+            return CompletableFuture.failedFuture(ex);
+        }
+    }
+
+    private TenantBuffer bufferOf(String tenant) {
+        return buffers.computeIfAbsent(tenant, t -> new TenantBuffer(t, configuration.getWriteBehindBufferSize()));
+    }
+
+    private void scheduleFlushAll() {
+        for (Map.Entry<String, TenantBuffer> entry : buffers.entrySet()) {
+            scheduleFlush(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void scheduleFlush(String tenant, TenantBuffer buffer) {
+        if (buffer.isEmpty() || !buffer.flushing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            flushers.execute(() -> {
+                try {
+                    flush(tenant, buffer);
+                } finally {
+                    buffer.flushing.set(false);
+                }
+            });
+        } catch (Exception ex) {
+            buffer.flushing.set(false);
+            logger.warn("Cannot schedule flush for tenant {}: {}", tenant, ex.getMessage());
+        }
+    }
+
+    void flush(String tenant, TenantBuffer buffer) {
+        Batch retry = buffer.takeRetry();
+        if (retry != null && !sendOrRequeue(tenant, buffer, retry)) {
+            // the platform still fails, keep the items buffered meanwhile for the next flush
+            return;
+        }
+        sendOrRequeue(tenant, buffer, buffer.drain());
+    }
+
+    /**
+     * @return whether all items of the batch were sent
+     */
+    private boolean sendOrRequeue(String tenant, TenantBuffer buffer, Batch batch) {
+        if (batch.size() == 0) {
+            return true;
+        }
+        Batch failed = batch.nextAttempt();
+        try {
+            microserviceSubscriptionsServiceWrapper.runForTenant(tenant, () -> send(batch, failed));
+        } catch (Exception ex) {
+            logger.error("Failed to send {} buffered item(s) of tenant {}", batch.size(), tenant, ex);
+            failed.replaceWith(batch);
+        }
+        if (failed.size() == 0) {
+            buffer.release(batch.size());
+            return true;
+        }
+        if (failed.attempts >= MAX_SEND_ATTEMPTS) {
+            logger.error("Drop {} buffered item(s) of tenant {} after {} failed attempts.", failed.size(), tenant, failed.attempts);
+            buffer.release(batch.size());
+        } else {
+            logger.warn("Keep {} buffered item(s) of tenant {} to send them again with the next flush.", failed.size(), tenant);
+            buffer.requeue(failed);
+            buffer.release(batch.size() - failed.size());
+        }
+        return false;
+    }
+
+    private void send(Batch batch, Batch failed) {
+        int maxBatchSize = Math.max(1, configuration.getWriteBehindMaxBatchSize());
+        for (int from = 0; from < batch.measurements.size(); from += maxBatchSize) {
+            List<MeasurementRepresentation> chunk = batch.measurements.subList(from, Math.min(from + maxBatchSize, batch.measurements.size()));
+            MeasurementCollectionRepresentation collection = new MeasurementCollectionRepresentation();
+            collection.setMeasurements(new ArrayList<>(chunk));
+            if (!trySend("measurements", () -> measurements.createBulkWithoutResponse(collection))) {
+                failed.measurements.addAll(chunk);
+            }
+        }
+        for (EventRepresentation event : batch.events) {
+            if (!trySend("event", () -> events.create(event))) {
+                failed.events.add(event);
+            }
+        }
+        for (ManagedObjectRepresentation update : batch.inventoryUpdates) {
+            if (!trySend("inventory update", () -> inventory.update(update))) {
+                failed.inventoryUpdates.add(update);
+            }
+        }
+        logger.debug("Sent {} measurement(s), {} event(s), {} inventory update(s), {} failed.",
+                batch.measurements.size(), batch.events.size(), batch.inventoryUpdates.size(), failed.size());
+    }
+
+    private boolean trySend(String what, Runnable request) {
+        try {
+            request.run();
+            return true;
+        } catch (Exception ex) {
+            logger.error("Failed to send {} to the platform", what, ex);
+            return false;
+        }
+    }
+
+    static class Batch {
+
+        private final List<MeasurementRepresentation> measurements;
+        private final List<EventRepresentation> events;
+        private final List<ManagedObjectRepresentation> inventoryUpdates;
+        private final int attempts;
+
+        Batch(List<MeasurementRepresentation> measurements, List<EventRepresentation> events,
+              List<ManagedObjectRepresentation> inventoryUpdates) {
+            this(measurements, events, inventoryUpdates, 0);
+        }
+
+        private Batch(List<MeasurementRepresentation> measurements, List<EventRepresentation> events,
+                      List<ManagedObjectRepresentation> inventoryUpdates, int attempts) {
+            this.measurements = measurements;
+            this.events = events;
+            this.inventoryUpdates = inventoryUpdates;
+            this.attempts = attempts;
+        }
+
+        /**
+         * Empty batch collecting the items of this batch which fail in the current attempt.
+         */
+        Batch nextAttempt() {
+            return new Batch(new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), attempts + 1);
+        }
+
+        void replaceWith(Batch batch) {
+            measurements.clear();
+            events.clear();
+            inventoryUpdates.clear();
+            measurements.addAll(batch.measurements);
+            events.addAll(batch.events);
+            inventoryUpdates.addAll(batch.inventoryUpdates);
+        }
+
+        int size() {
+            return measurements.size() + events.size() + inventoryUpdates.size();
+        }
+    }
+
+    static class TenantBuffer {
+
+        private final String tenant;
+        private final Semaphore capacity;
+        private final AtomicBoolean flushing = new AtomicBoolean();
+        private List<MeasurementRepresentation> measurements = new ArrayList<>();
+        private List<EventRepresentation> events = new ArrayList<>();
+        private Map<GId, ManagedObjectRepresentation> inventoryUpdates = new LinkedHashMap<>();
+        private Batch retry;
+
+        TenantBuffer(String tenant, int size) {
+            this.tenant = tenant;
+            this.capacity = new Semaphore(size);
+        }
+
+        void addMeasurement(MeasurementRepresentation measurement) {
+            acquire();
+            synchronized (this) {
+                measurements.add(measurement);
+            }
+        }
+
+        void addEvent(EventRepresentation event) {
+            acquire();
+            synchronized (this) {
+                events.add(event);
+            }
+        }
+
+        void addInventoryUpdate(ManagedObjectRepresentation update) {
+            if (mergeInventoryUpdate(update)) {
+                return;
+            }
+            acquire();
+            if (mergeInventoryUpdate(update)) {
+                // same object was buffered meanwhile
+                capacity.release();
+                return;
+            }
+            synchronized (this) {
+                ManagedObjectRepresentation pending = new ManagedObjectRepresentation();
+                pending.setId(update.getId());
+                merge(pending, update);
+                inventoryUpdates.put(update.getId(), pending);
+            }
+        }
+
+        private synchronized boolean mergeInventoryUpdate(ManagedObjectRepresentation update) {
+            ManagedObjectRepresentation pending = inventoryUpdates.get(update.getId());
+            if (pending == null) {
+                return false;
+            }
+            merge(pending, update);
+            return true;
+        }
+
+        private static void merge(ManagedObjectRepresentation target, ManagedObjectRepresentation update) {
+            for (Map.Entry<String, Object> fragment : update.getAttrs().entrySet()) {
+                target.set(fragment.getValue(), fragment.getKey());
+            }
+        }
+
+        synchronized boolean isEmpty() {
+            return retry == null && measurements.isEmpty() && events.isEmpty() && inventoryUpdates.isEmpty();
+        }
+
+        synchronized Batch takeRetry() {
+            Batch result = retry;
+            retry = null;
+            return result;
+        }
+
+        synchronized void requeue(Batch failed) {
+            retry = failed;
+        }
+
+        synchronized Batch drain() {
+            Batch batch = new Batch(measurements, events, new ArrayList<>(inventoryUpdates.values()));
+            measurements = new ArrayList<>();
+            events = new ArrayList<>();
+            inventoryUpdates = new LinkedHashMap<>();
+            return batch;
+        }
+
+        void release(int count) {
+            capacity.release(count);
+        }
+
+        private void acquire() {
+            if (capacity.tryAcquire()) {
+                return;
+            }
+            logger.warn("Write-behind buffer of tenant {} is full, waiting for flush.", tenant);
+            capacity.acquireUninterruptibly();
+        }
+    }
+}
@@ -30,6 +30,7 @@ import c8y.trackeragent.protocol.coban.device.CobanDevice;
 import c8y.trackeragent.protocol.coban.device.CobanDeviceFactory;
 import com.cumulocity.model.Agent;
 import com.cumulocity.model.ID;
+import com.cumulocity.model.JSONBase;
 import com.cumulocity.model.event.CumulocityAlarmStatuses;
 import com.cumulocity.model.event.CumulocitySeverities;
 import com.cumulocity.model.idtype.GId;
@@ -57,7 +58,13 @@ import org.slf4j.LoggerFactory;
 
 import java.math.BigDecimal;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
 
 import static c8y.trackeragent.utils.SDKExceptionHandler.handleSDKException;
 import static org.apache.commons.lang3.StringUtils.isEmpty;
@@ -101,8 +108,14 @@ public class TrackerDevice {
 
     public static final String TOW_EVENT_TYPE = "c8y_TowEvent";
 
+    /**
+     * Last known mobile and cell state of the device, so that only changes are sent to the inventory.
+     * Updates are sent write-behind, bursts of changes within a flush interval end up in a single update.
+     */
     private Mobile mobile;
 
+    private CellInfo cellInfo;
+
     private EventRepresentation eventMotionDetected = new EventRepresentation();
 
     private EventRepresentation eventMotionEnded = new EventRepresentation();
@@ -127,15 +140,27 @@ public class TrackerDevice {
 
     private AlarmFilter alarmFilter = new AlarmFilter();
 
-    private EventFilter eventFilter = new EventFilter();
+    /**
+     * Active alarms of the device by type, loaded once and kept current by the alarms created and cleared
+     * by this agent. Alarms cleared by someone else are noticed on the next refresh.
+     */
+    private final Map<String, AlarmRepresentation> activeAlarms = new HashMap<>();
 
-    private MeasurementRepresentation batteryMsrmt = new MeasurementRepresentation();
+    /**
+     * When each active alarm was last created or loaded. A raise of an older alarm is sent again, as it may
+     * have been cleared on the platform meanwhile.
+     */
+    private final Map<String, Long> activeAlarmsConfirmedAt = new HashMap<>();
 
-    private Battery battery = new Battery();
+    private long activeAlarmsLoadedAt = -1;
 
-    private MeasurementRepresentation gprsSignalMsrmt = new MeasurementRepresentation();
+    private long activeAlarmsVersion;
 
-    private SignalStrength gprsSignal = new SignalStrength();
+    private final AtomicBoolean activeAlarmsRefreshing = new AtomicBoolean();
+
+    private BigDecimal lastRssi;
+
+    private BigDecimal lastBer;
 
     private TrackerConfiguration configuration;
 
@@ -163,6 +188,10 @@ public class TrackerDevice {
 
     private TrackingProtocol trackingProtocol;
 
+    private PlatformWriteBehind writeBehind;
+
+    private LongSupplier nanoClock = System::nanoTime;
+
     public TrackerDevice(
             // @formatter:off
     		String tenant,
@@ -174,7 +203,8 @@ public class TrackerDevice {
             DeviceControlApi deviceControl,
             IdentityApi identities,
             InventoryApi inventory,
-            UpdateIntervalProvider updateIntervalProvider) throws SDKException {
+            UpdateIntervalProvider updateIntervalProvider,
+            PlatformWriteBehind writeBehind) throws SDKException {
     	// @formatter:on
         this.tenant = tenant;
         this.imei = imei;
@@ -186,6 +216,7 @@ public class TrackerDevice {
         this.identities = identities;
         this.inventory = inventory;
         this.updateIntervalProvider = updateIntervalProvider;
+        this.writeBehind = writeBehind;
     }
 
     public void init() {
@@ -226,8 +257,8 @@ public class TrackerDevice {
         logger.debug("Updating location of {} to {}.", imei, position);
         device.set(position);
         event.set(position);
-        inventory.update(device);
-        events.create(event);
+        writeBehind.updateInventory(tenant, device);
+        writeBehind.createEvent(tenant, event);
     }
 
     private ManagedObjectRepresentation aDevice() {
@@ -256,10 +287,9 @@ public class TrackerDevice {
             logger.debug("Geofence of {} is disabled.");
         }
 
-        ManagedObjectRepresentation device = new ManagedObjectRepresentation();
+        ManagedObjectRepresentation device = aDevice();
         device.set(fence);
-        device.setId(gid);
-        inventory.update(device);
+        writeBehind.updateInventory(tenant, device);
     }
 
     public void geofenceAlarm(boolean raise) throws SDKException {
@@ -293,12 +323,11 @@ public class TrackerDevice {
     public void setTracking(int interval) throws SDKException {
         logger.debug("Tracking for {} set to {}", imei, interval);
 
-        ManagedObjectRepresentation device = new ManagedObjectRepresentation();
+        ManagedObjectRepresentation device = aDevice();
         Tracking tracking = new Tracking();
         tracking.setInterval(interval);
         device.set(tracking);
-        device.setId(gid);
-        inventory.update(device);
+        writeBehind.updateInventory(tenant, device);
     }
 
     public void motionEvent(boolean moving) throws SDKException {
@@ -307,47 +336,42 @@ public class TrackerDevice {
 
     public void motionEvent(boolean moving, DateTime date) throws SDKException {
         if (moving) {
-            eventMotionDetected.setDateTime(date);
-            events.create(eventMotionDetected);
+            writeBehind.createEvent(tenant, anEvent(eventMotionDetected, date));
             logger.debug("{} is moving", imei);
         } else {
-            eventMotionEnded.setDateTime(date);
-            events.create(eventMotionEnded);
+            writeBehind.createEvent(tenant, anEvent(eventMotionEnded, date));
             logger.debug("{} stopped moving", imei);
         }
     }
 
     public void geofenceEnter(DateTime dateTime) throws SDKException {
-        geofenceEnter.setDateTime(dateTime);
-        events.create(geofenceEnter);
+        writeBehind.createEvent(tenant, anEvent(geofenceEnter, dateTime));
         logger.info("{} enter geofence", imei);
     }
 
     public void geofenceExit(DateTime dateTime) throws SDKException {
-        geofenceExit.setDateTime(dateTime);
-        events.create(geofenceExit);
+        writeBehind.createEvent(tenant, anEvent(geofenceExit, dateTime));
         logger.info("{} exit geofence", imei);
     }
 
     public void chargerConnected(DateTime dateTime) throws SDKException {
-        chargerConnected.setDateTime(dateTime);
-        events.create(chargerConnected);
+        writeBehind.createEvent(tenant, anEvent(chargerConnected, dateTime));
         logger.debug("Charger connected to {}", imei);
     }
 
     public void crashDetectedEvent(Position position, DateTime dateTime) {
         String eventText = "Crash detected: " +  position.getLng() + ", " + position.getLat();
-        crashDetected.setText(eventText);
-        crashDetected.setDateTime(dateTime);
-        events.create(crashDetected);
+        EventRepresentation event = anEvent(crashDetected, dateTime);
+        event.setText(eventText);
+        writeBehind.createEvent(tenant, event);
         logger.info(eventText);
     }
 
     public void crashDetectedEvent(DateTime dateTime) {
         String eventText = "Crash detected";
-        crashDetected.setText(eventText);
-        crashDetected.setDateTime(dateTime);
-        events.create(crashDetected);
+        EventRepresentation event = anEvent(crashDetected, dateTime);
+        event.setText(eventText);
+        writeBehind.createEvent(tenant, event);
         logger.info(eventText);
     }
 
@@ -370,56 +394,95 @@ public class TrackerDevice {
 
     public void batteryLevel(int level) throws SDKException {
         logger.debug("Battery level for {} is at {}", imei, level);
+        Battery battery = new Battery();
         battery.setLevelValue(new BigDecimal(level));
-        batteryMsrmt.setDateTime(new DateTime());
-        measurements.create(batteryMsrmt);
+        writeBehind.createMeasurement(tenant, aMeasurement(BAT_TYPE, battery));
     }
 
     public void signalStrength(BigDecimal rssi, BigDecimal ber) throws SDKException {
         logger.debug("Signal strength for {} is {}, BER is {}", imei, rssi, ber);
         if (rssi != null) {
-            gprsSignal.setRssiValue(rssi);
+            lastRssi = rssi;
         }
         if (ber != null) {
-            gprsSignal.setBerValue(ber);
+            lastBer = ber;
+        }
+        SignalStrength gprsSignal = new SignalStrength();
+        if (lastRssi != null) {
+            gprsSignal.setRssiValue(lastRssi);
+        }
+        if (lastBer != null) {
+            gprsSignal.setBerValue(lastBer);
         }
-        gprsSignalMsrmt.setDateTime(new DateTime());
-        measurements.create(gprsSignalMsrmt);
+        writeBehind.createMeasurement(tenant, aMeasurement(SIG_TYPE, gprsSignal));
     }
 
-    public void setCellId(String cellId) throws SDKException {
-        ManagedObjectRepresentation device = new ManagedObjectRepresentation();
-        mobile = inventory.get(gid).get(Mobile.class);
+    public synchronized void setCellId(String cellId) throws SDKException {
+        if (Objects.equals(cellId, mobile.getCellId())) {
+            return;
+        }
         mobile.setCellId(cellId);
-        device.set(mobile);
-        device.setId(gid);
-        inventory.update(device);
+        sendMobile();
     }
 
-    public void setMobileInfo(String mcc, String mnc, String lac, String cellId) throws SDKException {
-        ManagedObjectRepresentation device = new ManagedObjectRepresentation();
-        mobile = inventory.get(gid).get(Mobile.class);
+    public synchronized void setMobileInfo(String mcc, String mnc, String lac, String cellId) throws SDKException {
+        if (Objects.equals(mcc, mobile.getMcc()) && Objects.equals(mnc, mobile.getMnc())
+                && Objects.equals(lac, mobile.getLac()) && Objects.equals(cellId, mobile.getCellId())) {
+            return;
+        }
         mobile.setMcc(mcc);
         mobile.setMnc(mnc);
         mobile.setLac(lac);
         mobile.setCellId(cellId);
-        device.set(mobile);
-        device.setId(gid);
-        inventory.update(device);
+        sendMobile();
     }
 
-    public void setCellInfo(CellInfo cellInfo) {
-        ManagedObjectRepresentation device = new ManagedObjectRepresentation();
+    public synchronized void setCellInfo(CellInfo cellInfo) {
+        if (this.cellInfo != null && sameCellTowers(this.cellInfo.getCellTowers(), cellInfo.getCellTowers())) {
+            return;
+        }
+        this.cellInfo = cellInfo;
+        ManagedObjectRepresentation device = aDevice();
         device.set(cellInfo);
-        device.setId(gid);
-        inventory.update(device);
+        writeBehind.updateInventory(tenant, device);
+    }
+
+    private static boolean sameCellTowers(List<CellTower> current, List<CellTower> received) {
+        if (current == null || received == null || current.size() != received.size()) {
+            return current == received;
+        }
+        for (int index = 0; index < current.size(); index++) {
+            CellTower a = current.get(index);
+            CellTower b = received.get(index);
+            if (!Objects.equals(a.getRadioType(), b.getRadioType())
+                    || !Objects.equals(a.getMobileCountryCode(), b.getMobileCountryCode())
+                    || !Objects.equals(a.getMobileNetworkCode(), b.getMobileNetworkCode())
+                    || !Objects.equals(a.getLocationAreaCode(), b.getLocationAreaCode())
+                    || !Objects.equals(a.getCellId(), b.getCellId())
+                    || !Objects.equals(a.getSignalStrength(), b.getSignalStrength())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void sendMobile() {
+        ManagedObjectRepresentation device = aDevice();
+        // the update is sent later, it must not see further changes of the tracked state
+        device.set(copyOf(mobile));
+        writeBehind.updateInventory(tenant, device);
+    }
+
+    /**
+     * Copies all properties of the fragment, as the inventory update replaces the whole fragment on the platform.
+     */
+    static Mobile copyOf(Mobile mobile) {
+        return JSONBase.fromJSON(JSONBase.getJSONGenerator().forValue(mobile), Mobile.class);
     }
 
     public void ping() throws SDKException {
         logger.info("Ping to device with id {}.", gid);
-        ManagedObjectRepresentation device = new ManagedObjectRepresentation();
-        device.setId(gid);
-        inventory.update(device);
+        writeBehind.updateInventory(tenant, aDevice());
     }
 
     public AlarmRepresentation createAlarm(AlarmRepresentation newAlarm) throws SDKException {
@@ -430,39 +493,117 @@ public class TrackerDevice {
         return createOrCancelAlarm(false, newAlarm, new DateTime());
     }
 
-    private AlarmRepresentation createOrCancelAlarm(boolean status, AlarmRepresentation newAlarm, DateTime dateTime) throws SDKException {
-        newAlarm.setSource(asSource());
-        String newStatus = status ? CumulocityAlarmStatuses.ACTIVE.toString() : CumulocityAlarmStatuses.CLEARED.toString();
+    private synchronized AlarmRepresentation createOrCancelAlarm(boolean status, AlarmRepresentation newAlarm, DateTime dateTime) throws SDKException {
+        AlarmRepresentation activeAlarm = activeAlarms().get(newAlarm.getType());
 
-        AlarmRepresentation activeAlarm = findActiveAlarm(newAlarm.getType());
+        if (status) {
+            if (activeAlarm != null && !isRaiseRecheckDue(newAlarm.getType())) {
+                logger.debug("Alarm {} of {} is already active.", newAlarm.getType(), imei);
+                return activeAlarm;
+            }
+            // an alarm which is still active on the platform only gets its count increased
+            AlarmRepresentation alarm = new AlarmRepresentation();
+            alarm.setType(newAlarm.getType());
+            alarm.setText(newAlarm.getText());
+            alarm.setSeverity(newAlarm.getSeverity());
+            alarm.setSource(asSource());
+            alarm.setDateTime(dateTime);
+            alarm.setStatus(CumulocityAlarmStatuses.ACTIVE.toString());
+            AlarmRepresentation created = alarms.create(alarm);
+            activeAlarms.put(newAlarm.getType(), created == null ? alarm : created);
+            activeAlarmsConfirmedAt.put(newAlarm.getType(), nanoClock.getAsLong());
+            activeAlarmsVersion++;
+            return created;
+        }
+        if (activeAlarm == null) {
+            logger.debug("No active alarm {} of {} to clear.", newAlarm.getType(), imei);
+            return null;
+        }
+        AlarmRepresentation clear = new AlarmRepresentation();
+        clear.setId(activeAlarm.getId());
+        clear.setDateTime(dateTime);
+        clear.setStatus(CumulocityAlarmStatuses.CLEARED.toString());
+        AlarmRepresentation cleared = alarms.update(clear);
+        activeAlarms.remove(newAlarm.getType());
+        activeAlarmsConfirmedAt.remove(newAlarm.getType());
+        activeAlarmsVersion++;
+        return cleared;
+    }
+
+    private boolean isRaiseRecheckDue(String type) {
+        Long confirmedAt = activeAlarmsConfirmedAt.get(type);
+        return confirmedAt == null
+                || nanoClock.getAsLong() - confirmedAt > TimeUnit.SECONDS.toNanos(configuration.getAlarmCacheRaiseRecheckInterval());
+    }
+
+    public synchronized AlarmRepresentation findActiveAlarm(String type) throws SDKException {
+        return activeAlarms().get(type);
+    }
+
+    private Map<String, AlarmRepresentation> activeAlarms() {
+        if (activeAlarmsLoadedAt < 0) {
+            Map<String, AlarmRepresentation> loaded = loadActiveAlarms();
+            activeAlarmsLoadedAt = nanoClock.getAsLong();
+            setActiveAlarms(loaded, activeAlarmsLoadedAt);
+        } else if (nanoClock.getAsLong() - activeAlarmsLoadedAt > TimeUnit.SECONDS.toNanos(configuration.getAlarmCacheRefreshInterval())
+                && activeAlarmsRefreshing.compareAndSet(false, true)) {
+            boolean submitted = false;
+            try {
+                // the task resets the flag itself, this covers a task which is not run, e.g. for an unsubscribed tenant
+                writeBehind.runInBackground(tenant, this::refreshActiveAlarms)
+                        .whenComplete((ignored, ex) -> activeAlarmsRefreshing.set(false));
+                submitted = true;
+            } finally {
+                if (!submitted) {
+                    activeAlarmsRefreshing.set(false);
+                }
+            }
+        }
+        return activeAlarms;
+    }
 
-        if (activeAlarm != null) {
-            activeAlarm.setDateTime(dateTime);
-            activeAlarm.setStatus(newStatus);
-            return alarms.update(activeAlarm);
-        } else {
-            newAlarm.setDateTime(dateTime);
-            newAlarm.setStatus(newStatus);
-            return alarms.create(newAlarm);
+    private void refreshActiveAlarms() {
+        try {
+            long version;
+            synchronized (this) {
+                version = activeAlarmsVersion;
+            }
+            Map<String, AlarmRepresentation> loaded = loadActiveAlarms();
+            synchronized (this) {
+                // alarms raised or cleared meanwhile are newer than what was loaded, try again later
+                if (version == activeAlarmsVersion) {
+                    activeAlarmsLoadedAt = nanoClock.getAsLong();
+                    setActiveAlarms(loaded, activeAlarmsLoadedAt);
+                }
+            }
+        } finally {
+            activeAlarmsRefreshing.set(false);
+        }
+    }
+
+    private void setActiveAlarms(Map<String, AlarmRepresentation> loaded, long loadedAt) {
+        activeAlarms.clear();
+        activeAlarms.putAll(loaded);
+        activeAlarmsConfirmedAt.clear();
+        for (String type : loaded.keySet()) {
+            activeAlarmsConfirmedAt.put(type, loadedAt);
         }
     }
 
-    public AlarmRepresentation findActiveAlarm(String type) throws SDKException {
+    private Map<String, AlarmRepresentation> loadActiveAlarms() {
+        Map<String, AlarmRepresentation> result = new HashMap<>();
         for (AlarmRepresentation alarm : alarms.getAlarmsByFilter(alarmFilter).get().allPages()) {
-            if (type.equals(alarm.getType())) {
-                return alarm;
-            }
+            result.putIfAbsent(alarm.getType(), alarm);
         }
-        return null;
+        logger.debug("Loaded {} active alarm(s) of {}.", result.size(), imei);
+        return result;
     }
 
     public EventRepresentation findLastEvent(String type) throws SDKException {
-        for (EventRepresentation event : events.getEventsByFilter(eventFilter).get().allPages()) {
-            if (type.equals(event.getType())) {
-                return event;
-            }
-        }
-        return null;
+        EventFilter filter = new EventFilter()
+                .bySource(getGId())
+                .byType(type);
+        return Iterables.getFirst(events.getEventsByFilter(filter).get().getEvents(), null);
     }
 
     public EventRepresentation aLocationUpdateEvent() {
@@ -476,6 +617,27 @@ public class TrackerDevice {
         return locationUpdate;
     }
 
+    /**
+     * Events are sent asynchronously, so each one is a new instance instead of the mutated template.
+     */
+    private EventRepresentation anEvent(EventRepresentation template, DateTime dateTime) {
+        EventRepresentation event = new EventRepresentation();
+        event.setType(template.getType());
+        event.setText(template.getText());
+        event.setSource(asSource());
+        event.setDateTime(dateTime);
+        return event;
+    }
+
+    private MeasurementRepresentation aMeasurement(String type, Object fragment) {
+        MeasurementRepresentation measurement = new MeasurementRepresentation();
+        measurement.setType(type);
+        measurement.set(fragment);
+        measurement.setSource(asSource());
+        measurement.setDateTime(new DateTime());
+        return measurement;
+    }
+
     private void setupTemplates(GId agentGid) throws SDKException {
         ManagedObjectRepresentation source = asSource();
 
@@ -526,16 +688,6 @@ public class TrackerDevice {
 
         alarmFilter.bySource(source.getId());
         alarmFilter.byStatus(CumulocityAlarmStatuses.ACTIVE);
-
-        eventFilter.bySource(source.getId());
-
-        batteryMsrmt.setType(BAT_TYPE);
-        batteryMsrmt.set(battery);
-        batteryMsrmt.setSource(source);
-
-        gprsSignalMsrmt.setType(SIG_TYPE);
-        gprsSignalMsrmt.set(gprsSignal);
-        gprsSignalMsrmt.setSource(source);
     }
 
     private ManagedObjectRepresentation asSource() {
@@ -602,7 +754,7 @@ public class TrackerDevice {
 
     public void createMeasurement(MeasurementRepresentation measurement) {
         logger.debug("Create measurement with fragments {} for device {}", measurement.getAttrs(), imei);
-        measurements.create(measurement);
+        writeBehind.createMeasurement(tenant, measurement);
     }
 
     public CobanDevice getCobanDevice() {
@@ -612,6 +764,9 @@ public class TrackerDevice {
         return cobanDevice;
     }
 
+    /**
+     * Updates the config synchronously: commands read, modify and write it back via {@link #getRFV16Config()}.
+     */
     public void set(RFV16Config newDeviceConfig) {
         logger.info("Update {} for imei: {}", newDeviceConfig, imei);
         ManagedObjectRepresentation device = aDevice();
@@ -624,11 +779,31 @@ public class TrackerDevice {
         return result == null ? new RFV16Config() : result;
     }
 
-    public void updateMobile(Mobile mobile) {
-        ManagedObjectRepresentation device = aDevice();
-        logger.debug("Updating mobile of {} to {}.", imei, mobile);
-        device.set(mobile);
-        inventory.update(device);
+    /**
+     * Sets the non empty values of given mobile fragment (mcc, mnc, lac, cell id) and sends them if any has changed.
+     */
+    public synchronized void updateMobile(Mobile update) {
+        boolean changed = false;
+        if (!isEmpty(update.getMcc()) && !update.getMcc().equals(mobile.getMcc())) {
+            mobile.setMcc(update.getMcc());
+            changed = true;
+        }
+        if (!isEmpty(update.getMnc()) && !update.getMnc().equals(mobile.getMnc())) {
+            mobile.setMnc(update.getMnc());
+            changed = true;
+        }
+        if (!isEmpty(update.getLac()) && !update.getLac().equals(mobile.getLac())) {
+            mobile.setLac(update.getLac());
+            changed = true;
+        }
+        if (!isEmpty(update.getCellId()) && !update.getCellId().equals(mobile.getCellId())) {
+            mobile.setCellId(update.getCellId());
+            changed = true;
+        }
+        if (changed) {
+            logger.debug("Updating mobile of {} to {}.", imei, mobile);
+            sendMobile();
+        }
     }
 
     public void setOperationSuccessful(OperationRepresentation operation) {
@@ -684,17 +859,16 @@ public class TrackerDevice {
     }
 
     private void createOrRetrieveMobile() {
-        ManagedObjectRepresentation mo = aDevice();
-        if (inventory.get(gid) != null) {
-            mobile = inventory.get(gid).get(Mobile.class);
-            if (mobile == null) {
-                mobile = new Mobile();
-                mobile.setImei(imei);
-            }
-        } else {
+        ManagedObjectRepresentation current = inventory.get(gid);
+        mobile = current == null ? null : current.get(Mobile.class);
+        if (mobile != null && mobile.getImei() != null) {
+            return;
+        }
+        if (mobile == null) {
             mobile = new Mobile();
-            mobile.setImei(imei);
         }
+        mobile.setImei(imei);
+        ManagedObjectRepresentation mo = aDevice();
         mo.set(mobile);
         inventory.update(mo);
     }
@@ -814,18 +988,15 @@ public class TrackerDevice {
     }
 
     public void ignitionOnEvent(DateTime dateTime) {
-        ignitionOnEvent.setDateTime(dateTime);
-        events.create(ignitionOnEvent);
+        writeBehind.createEvent(tenant, anEvent(ignitionOnEvent, dateTime));
     }
 
     public void ignitionOffEvent(DateTime dateTime) {
-        ignitionOffEvent.setDateTime(dateTime);
-        events.create(ignitionOffEvent);
+        writeBehind.createEvent(tenant, anEvent(ignitionOffEvent, dateTime));
     }
 
     public void towEvent(DateTime dateTime) {
-        towEvent.setDateTime(dateTime);
-        events.create(towEvent);
+        writeBehind.createEvent(tenant, anEvent(towEvent, dateTime));
     }
 
 }
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA,
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Use, reproduction, transfer, publication or disclosure is prohibited except as specifically provided
+ * for in your License Agreement with Software AG.
+ */
+
+package c8y.trackeragent.device;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.cumulocity.model.idtype.GId;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import c8y.trackeragent.configuration.TrackerConfiguration;
+import c8y.trackeragent.context.DeviceContext;
+
+/**
+ * Devices known to the agent, indexed by IMEI and by the id of their managed object.
+ * Devices which did not report for the configured idle time, or exceed the configured size,
+ * are evicted together with their {@link DeviceContext}.
+ */
+@Component
+public class TrackerDeviceCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(TrackerDeviceCache.class);
+
+    private final Cache<String, TrackerDevice> devices;
+    private final Cache<String, DeviceContext> contexts;
+    private final ConcurrentMap<GId, String> imeiByGid = new ConcurrentHashMap<>();
+
+    @Autowired
+    public TrackerDeviceCache(TrackerConfiguration configuration) {
+        this.devices = CacheBuilder.newBuilder()
+                .maximumSize(configuration.getDeviceCacheMaxSize())
+                .expireAfterAccess(configuration.getDeviceCacheIdleTimeout(), TimeUnit.MINUTES)
+                .recordStats()
+                .removalListener(this::onRemoval)
+                .build();
+        this.contexts = CacheBuilder.newBuilder()
+                .maximumSize(configuration.getDeviceCacheMaxSize())
+                .expireAfterAccess(configuration.getDeviceCacheIdleTimeout(), TimeUnit.MINUTES)
+                .build();
+    }
+
+    public TrackerDevice get(String imei) {
+        return devices.getIfPresent(imei);
+    }
+
+    public TrackerDevice get(GId gid) {
+        String imei = imeiByGid.get(gid);
+        return imei == null ? null : devices.getIfPresent(imei);
+    }
+
+    /**
+     * Returns the cached device or loads it; concurrent calls for the same IMEI wait for a single load.
+     */
+    public TrackerDevice get(String imei, Callable<TrackerDevice> loader) {
+        try {
+            return devices.get(imei, () -> {
+                TrackerDevice device = loader.call();
+                if (device.getGId() != null) {
+                    imeiByGid.put(device.getGId(), imei);
+                }
+                return device;
+            });
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    public void evict(String imei) {
+        if (imei != null) {
+            devices.invalidate(imei);
+        }
+    }
+
+    public DeviceContext getDeviceContext(String imei) {
+        try {
+            return contexts.get(imei, DeviceContext::new);
+        } catch (ExecutionException e) {
+            // should never happen
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    public long size() {
+        return devices.size();
+    }
+
+    public CacheStats getStats() {
+        return devices.stats();
+    }
+
+    private void onRemoval(RemovalNotification<String, TrackerDevice> notification) {
+        TrackerDevice device = notification.getValue();
+        if (device == null || device.getGId() == null) {
+            return;
+        }
+        TrackerDevice current = devices.asMap().get(notification.getKey());
+        if (current == null || !device.getGId().equals(current.getGId())) {
+            imeiByGid.remove(device.getGId(), notification.getKey());
+        }
+        if (notification.wasEvicted()) {
+            logger.debug("Device {} evicted from cache: {}", notification.getKey(), notification.getCause());
+        }
+    }
+}
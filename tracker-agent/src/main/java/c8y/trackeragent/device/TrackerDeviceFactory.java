@@ -35,12 +35,14 @@ public class TrackerDeviceFactory {
     private final InventoryApi inventory;
     private final UpdateIntervalProvider updateIntervalProvider;
     private final MicroserviceSubscriptionsServiceWrapper microserviceSubscriptionsServiceWrapper;
+    private final PlatformWriteBehind writeBehind;
 
     @Autowired
 	public TrackerDeviceFactory(TrackerConfiguration configuration,
 								EventApi events, AlarmApi alarms, MeasurementApi measurements, DeviceControlApi deviceControl,
 								IdentityApi registry, InventoryApi inventory, UpdateIntervalProvider updateIntervalProvider,
-								MicroserviceSubscriptionsServiceWrapper microserviceSubscriptionsServiceWrapper) {
+								MicroserviceSubscriptionsServiceWrapper microserviceSubscriptionsServiceWrapper,
+								PlatformWriteBehind writeBehind) {
 		this.configuration = configuration;
 		this.events = events;
 		this.alarms = alarms;
@@ -50,6 +52,7 @@ public class TrackerDeviceFactory {
 		this.inventory = inventory;
 		this.updateIntervalProvider = updateIntervalProvider;
 		this.microserviceSubscriptionsServiceWrapper = microserviceSubscriptionsServiceWrapper;
+		this.writeBehind = writeBehind;
 	}
 
 	/**
@@ -57,7 +60,8 @@ public class TrackerDeviceFactory {
 	 */
 	public TrackerDevice newTrackerDevice(String tenant, String imei) {
 		TrackerDevice device = new TrackerDevice(
-				tenant, imei, configuration, events, alarms, measurements, deviceControl, registry, inventory, updateIntervalProvider
+				tenant, imei, configuration, events, alarms, measurements, deviceControl, registry, inventory, updateIntervalProvider,
+				writeBehind
 		);
 		microserviceSubscriptionsServiceWrapper.runForTenant(tenant, () -> {
 			device.init();
@@ -10,6 +10,9 @@
 package c8y.trackeragent.device;
 
 import c8y.trackeragent.devicebootstrap.MicroserviceSubscriptionsServiceWrapper;
+import com.cumulocity.model.idtype.GId;
+import com.cumulocity.rest.representation.identity.ExternalIDRepresentation;
+import com.cumulocity.sdk.client.identity.IdentityApi;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -22,29 +25,49 @@ public class TrackerDeviceProvider {
 
 	private final TrackerDeviceFactory trackerDeviceFactory;
 	private final MicroserviceSubscriptionsServiceWrapper microserviceSubscriptionsServiceWrapper;
+	private final TrackerDeviceCache trackerDeviceCache;
+	private final IdentityApi identityApi;
 
 	@Autowired
 	public TrackerDeviceProvider(TrackerDeviceFactory trackerDeviceFactory,
-								 MicroserviceSubscriptionsServiceWrapper microserviceSubscriptionsServiceWrapper) {
+								 MicroserviceSubscriptionsServiceWrapper microserviceSubscriptionsServiceWrapper,
+								 TrackerDeviceCache trackerDeviceCache,
+								 IdentityApi identityApi) {
 		this.trackerDeviceFactory = trackerDeviceFactory;
 		this.microserviceSubscriptionsServiceWrapper = microserviceSubscriptionsServiceWrapper;
+		this.trackerDeviceCache = trackerDeviceCache;
+		this.identityApi = identityApi;
 	}
 
 	public TrackerDevice getOrCreate(String tenant, String imei) {
-		TrackerDevice device = ManagedObjectCache.instance().get(imei);
-		if (device == null) {
-			device = doCreate(tenant, imei);
+		return trackerDeviceCache.get(imei, () -> newTrackerDevice(tenant, imei));
+	}
+
+	/**
+	 * Must be called in the context of the tenant, as a device not cached (anymore) is looked up by its IMEI.
+	 *
+	 * @return device with given id, created again if it is not cached, or null if it has no IMEI
+	 */
+	public TrackerDevice findOrLoad(String tenant, GId gid) {
+		TrackerDevice device = trackerDeviceCache.get(gid);
+		if (device != null) {
+			return device;
+		}
+		String imei = findImei(gid);
+		if (imei == null) {
+			return null;
 		}
-		return device;
+		logger.debug("Load device {} with id {} missing in the cache", imei, gid);
+		return getOrCreate(tenant, imei);
 	}
 
-	private synchronized TrackerDevice doCreate(String tenant, String imei) {
-		TrackerDevice device = ManagedObjectCache.instance().get(imei);
-		if (device == null) {
-			device = newTrackerDevice(tenant, imei);
-			ManagedObjectCache.instance().put(device);
+	private String findImei(GId gid) {
+		for (ExternalIDRepresentation externalId : identityApi.getExternalIdsOfGlobalId(gid).get().allPages()) {
+			if (TrackerDevice.XTID_TYPE.equals(externalId.getType())) {
+				return externalId.getExternalId();
+			}
 		}
-		return device;
+		return null;
 	}
 
 	private TrackerDevice newTrackerDevice(String tenant, String imei) {
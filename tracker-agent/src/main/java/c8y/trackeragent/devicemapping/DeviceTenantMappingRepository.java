@@ -14,6 +14,8 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.http.HttpStatus;
 import org.springframework.stereotype.Component;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 
 @Slf4j
@@ -40,11 +42,21 @@ class DeviceTenantMappingRepository {
         }
     }
 
+    Map<String, String> findAllDeviceTenants() {
+        Map<String, String> result = new HashMap<>();
+        for (ManagedObjectRepresentation t : findTenantObjects()) {
+            String tenant = (String) t.get(TENANT_FIELD);
+            for (ExternalIDRepresentation externalId : identityApi.getExternalIdsOfGlobalId(t.getId()).get().allPages()) {
+                if (StringUtils.equals(externalId.getType(), TYPE)) {
+                    result.put(externalId.getExternalId(), tenant);
+                }
+            }
+        }
+        return result;
+    }
+
     Optional<ManagedObjectRepresentation> findManagedObjectForTenant(String tenant) {
-        InventoryFilter filter = InventoryFilter.searchInventory()
-                .byOwner("service_tracker-agent")
-                .byFragmentType(TENANT_FIELD);
-        for (ManagedObjectRepresentation t : inventoryApi.getManagedObjectsByFilter(filter).get().allPages()) {
+        for (ManagedObjectRepresentation t : findTenantObjects()) {
             if (StringUtils.equals((String) t.get(TENANT_FIELD), tenant)) {
                 return Optional.of(t);
             }
@@ -52,6 +64,13 @@ class DeviceTenantMappingRepository {
         return Optional.empty();
     }
 
+    private Iterable<ManagedObjectRepresentation> findTenantObjects() {
+        InventoryFilter filter = InventoryFilter.searchInventory()
+                .byOwner("service_tracker-agent")
+                .byFragmentType(TENANT_FIELD);
+        return inventoryApi.getManagedObjectsByFilter(filter).get().allPages();
+    }
+
     ManagedObjectRepresentation createTenantObject(String tenant) {
         ManagedObjectRepresentation representation = new ManagedObjectRepresentation();
         representation.set(tenant, TENANT_FIELD);
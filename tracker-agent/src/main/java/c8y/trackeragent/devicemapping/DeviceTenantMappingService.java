@@ -4,14 +4,27 @@ package c8y.trackeragent.devicemapping;
 import c8y.trackeragent.exception.UnknownDeviceException;
 import com.cumulocity.microservice.subscription.service.MicroserviceSubscriptionsService;
 import com.cumulocity.rest.representation.inventory.ManagedObjectRepresentation;
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Resolves the tenant of a device by its IMEI. Resolved tenants are cached for {@code tenantCache.ttl} seconds,
+ * unknown devices for {@code tenantCache.negativeTtl} seconds; concurrent lookups of the same IMEI wait for
+ * a single platform request.
+ */
 @Slf4j
 @Component
 public class DeviceTenantMappingService {
@@ -19,33 +32,93 @@ public class DeviceTenantMappingService {
     private final DeviceTenantMappingRepository deviceTenantMappingRepository;
     private final MicroserviceSubscriptionsService microserviceSubscriptionsService;
     private final String ownerTenant;
+    private final long negativeTtlNanos;
+    private final LoadingCache<String, TenantLookup> tenants;
+
+    public DeviceTenantMappingService(DeviceTenantMappingRepository deviceTenantMappingRepository,
+                                      MicroserviceSubscriptionsService microserviceSubscriptionsService,
+                                      String ownerTenant) {
+        this(deviceTenantMappingRepository, microserviceSubscriptionsService, ownerTenant, 100000, 600, 60);
+    }
 
     @Autowired
     public DeviceTenantMappingService(DeviceTenantMappingRepository deviceTenantMappingRepository,
                                       MicroserviceSubscriptionsService microserviceSubscriptionsService,
-                                      @Value("${C8Y.bootstrap.tenant}") String ownerTenant) {
+                                      @Value("${C8Y.bootstrap.tenant}") String ownerTenant,
+                                      @Value("${tenantCache.maxSize:100000}") long maxSize,
+                                      @Value("${tenantCache.ttl:600}") long ttlSeconds,
+                                      @Value("${tenantCache.negativeTtl:60}") long negativeTtlSeconds) {
         this.deviceTenantMappingRepository = deviceTenantMappingRepository;
         this.microserviceSubscriptionsService = microserviceSubscriptionsService;
         this.ownerTenant = ownerTenant;
+        this.negativeTtlNanos = TimeUnit.SECONDS.toNanos(negativeTtlSeconds);
+        this.tenants = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build(new CacheLoader<String, TenantLookup>() {
+                    @Override
+                    public TenantLookup load(String externalDeviceId) {
+                        return new TenantLookup(microserviceSubscriptionsService.callForTenant(ownerTenant,
+                                () -> deviceTenantMappingRepository.findTenantOptional(externalDeviceId)));
+                    }
+                });
     }
 
     public String findTenant(String externalDeviceId) {
-        return microserviceSubscriptionsService.callForTenant(ownerTenant, () -> {
-            Optional<String> tenantOptional = deviceTenantMappingRepository.findTenantOptional(externalDeviceId);
-            if (tenantOptional.isPresent()) {
-                return tenantOptional.get();
-            } else {
-                throw UnknownDeviceException.forImei(externalDeviceId);
+        TenantLookup lookup = lookup(externalDeviceId);
+        if (lookup.isUnknownSince(negativeTtlNanos)) {
+            // unknown devices are retried sooner than the ttl of resolved tenants
+            tenants.asMap().remove(externalDeviceId, lookup);
+            lookup = lookup(externalDeviceId);
+        }
+        return lookup.tenant.orElseThrow(() -> UnknownDeviceException.forImei(externalDeviceId));
+    }
+
+    private TenantLookup lookup(String externalDeviceId) {
+        try {
+            return tenants.getUnchecked(externalDeviceId);
+        } catch (UncheckedExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw e;
+        }
+    }
+
+    /**
+     * Loads all device to tenant mappings at once, so that reports of known devices
+     * do not hit the platform after startup.
+     */
+    public void warmUpCache() {
+        try {
+            Map<String, String> mappings = microserviceSubscriptionsService.callForTenant(ownerTenant,
+                    deviceTenantMappingRepository::findAllDeviceTenants);
+            for (Map.Entry<String, String> mapping : mappings.entrySet()) {
+                tenants.put(mapping.getKey(), new TenantLookup(Optional.of(mapping.getValue())));
             }
-        });
+            log.info("Loaded {} device tenant mapping(s) into cache", mappings.size());
+        } catch (Exception e) {
+            log.warn("Cannot warm up device tenant cache, tenants will be resolved on demand", e);
+        }
+    }
+
+    public CacheStats getCacheStats() {
+        return tenants.stats();
+    }
+
+    public long getCacheSize() {
+        return tenants.size();
     }
 
     public void addDeviceToTenant(String externalDeviceId, String tenant) {
         log.info("Started adding device: {} to tenant: {}", externalDeviceId, tenant);
-        microserviceSubscriptionsService.runForTenant(ownerTenant, () -> {
-            ManagedObjectRepresentation tenantObject = getOrCreateTenantManagementObjectRepresentation(tenant);
-            addDeviceToExistingTenant(tenantObject, externalDeviceId);
-        });
+        try {
+            microserviceSubscriptionsService.runForTenant(ownerTenant, () -> {
+                ManagedObjectRepresentation tenantObject = getOrCreateTenantManagementObjectRepresentation(tenant);
+                addDeviceToExistingTenant(tenantObject, externalDeviceId);
+            });
+        } finally {
+            tenants.invalidate(externalDeviceId);
+        }
     }
 
     private ManagedObjectRepresentation getOrCreateTenantManagementObjectRepresentation(String tenant) {
@@ -75,4 +148,18 @@ public class DeviceTenantMappingService {
             return true;
         }
     }
+
+    private static final class TenantLookup {
+
+        private final Optional<String> tenant;
+        private final long loadedAt = System.nanoTime();
+
+        private TenantLookup(Optional<String> tenant) {
+            this.tenant = tenant;
+        }
+
+        private boolean isUnknownSince(long nanos) {
+            return !tenant.isPresent() && System.nanoTime() - loadedAt > nanos;
+        }
+    }
 }
@@ -22,7 +22,6 @@
 
 package c8y.trackeragent.operations;
 
-import c8y.trackeragent.device.ManagedObjectCache;
 import c8y.trackeragent.device.TrackerDevice;
 import c8y.trackeragent.devicebootstrap.DeviceCredentials;
 import c8y.trackeragent.service.TrackerDeviceContextService;
@@ -85,10 +84,11 @@ public class OperationDispatcher implements Runnable {
         for (OperationRepresentation operation : getOperationsByStatus(OperationStatus.PENDING)) {
         	// TODO lest enter the context here 
         	GId deviceId = operation.getDeviceId();
-        	TrackerDevice device = ManagedObjectCache.instance().get(deviceId);
+        	// devices idle longer than the device cache timeout are not cached anymore, load them again
+        	TrackerDevice device = contextService.findOrLoadDevice(tenantCredentials.getTenant(), deviceId);
         	if (device == null) {
-        		logger.trace("Ignore operation with ID {} -> device with id {} hasn't been identified yet", operation.getId(), deviceId);
-        		continue; // Device hasn't been identified yet
+        		logger.debug("Ignore operation with ID {} -> device with id {} has no IMEI", operation.getId(), deviceId);
+        		continue;
         	}
         	contextService.executeWithContext(
         	        tenantCredentials.getTenant(),
@@ -113,6 +113,11 @@ public class OperationExecutor {
         if (connection == null) {
             // if connection is null, set the tracking protocol            
             final TrackingProtocol trackingProtocol = device.getTrackingProtocolInfo();
+            if (trackingProtocol == null) {
+                // device loaded again after it was evicted from the cache, the protocol is known once it connects
+                logger.info("[OperationId : {}] " + "left pending, tracking protocol of device {} not known yet", operation.getId(), device.getImei());
+                return null;
+            }
             tracker = baseTracker.getTrackerForTrackingProtocol(trackingProtocol);
             ConnectionDetails connectionDetails = new ConnectionDetails(trackingProtocol, null, null);
             connectionDetails.setImei(device.getImei());
@@ -45,6 +45,12 @@ public class AplicomDReportSplitter extends BaseReportSplitter {
         return result;
     }
 
+    @Override
+    public List<String> decode(byte[] data, boolean moreData) {
+        // reports are length prefixed, separators are not used
+        return split(data);
+    }
+
     private String getHexReport(byte[] reports, int startingByte) {
         if (startingByte + SNAPSHOT_MSB + SNAPSHOT_LENGHT > reports.length)
             return "";
@@ -14,11 +14,12 @@ import org.slf4j.LoggerFactory;
 
 import com.cumulocity.model.idtype.GId;
 import com.cumulocity.rest.representation.inventory.ManagedObjectRepresentation;
+import com.cumulocity.sdk.client.inventory.InventoryApi;
 
 import c8y.Hardware;
 import c8y.trackeragent.TrackerAgent;
-import c8y.trackeragent.device.ManagedObjectCache;
 import c8y.trackeragent.device.TrackerDevice;
+import c8y.trackeragent.device.TrackerDeviceCache;
 import c8y.trackeragent.protocol.queclink.QueclinkConstants;
 
 public class QueclinkDevice {
@@ -28,7 +29,17 @@ public class QueclinkDevice {
     private GL300 gl300 = new GL300();
     private GL500 gl500 = new GL500();
     private GL505 gl505 = new GL505();
+    private TrackerDeviceCache trackerDeviceCache;
+    private InventoryApi inventoryApi;
     
+    public void setTrackerDeviceCache(TrackerDeviceCache trackerDeviceCache) {
+        this.trackerDeviceCache = trackerDeviceCache;
+    }
+
+    public void setInventoryApi(InventoryApi inventoryApi) {
+        this.inventoryApi = inventoryApi;
+    }
+
     public GL200 getGL200() {
         return gl200;
     }
@@ -115,7 +126,11 @@ public class QueclinkDevice {
     }
 
     public ManagedObjectRepresentation getManagedObjectFromGId(GId id) {
-         TrackerDevice trackerDevice = ManagedObjectCache.instance().get(id);
+         TrackerDevice trackerDevice = trackerDeviceCache.get(id);
+         if (trackerDevice == null) {
+             // not cached (yet or anymore), e.g. an operation for a device which has not reported since it was evicted
+             return inventoryApi.get(id);
+         }
          ManagedObjectRepresentation mo = trackerDevice.getManagedObject();
         return mo;    
     }
@@ -9,8 +9,12 @@
 
 package c8y.trackeragent.protocol.queclink.parser;
 
+import org.springframework.beans.factory.annotation.Autowired;
+
 import com.cumulocity.sdk.client.SDKException;
+import com.cumulocity.sdk.client.inventory.InventoryApi;
 
+import c8y.trackeragent.device.TrackerDeviceCache;
 import c8y.trackeragent.protocol.queclink.device.QueclinkDevice;
 import c8y.trackeragent.protocol.queclink.device.QueclinkReport;
 import c8y.trackeragent.tracker.Parser;
@@ -30,4 +34,14 @@ public abstract class QueclinkParser implements Parser, QueclinkFragment {
         return queclinkDevice;
     }
 
+    @Autowired
+    public void setTrackerDeviceCache(TrackerDeviceCache trackerDeviceCache) {
+        queclinkDevice.setTrackerDeviceCache(trackerDeviceCache);
+    }
+
+    @Autowired
+    public void setInventoryApi(InventoryApi inventoryApi) {
+        queclinkDevice.setInventoryApi(inventoryApi);
+    }
+
 }
@@ -18,7 +18,6 @@ import org.springframework.stereotype.Component;
 
 import com.cumulocity.rest.representation.alarm.AlarmRepresentation;
 import com.cumulocity.sdk.client.SDKException;
-import com.google.common.base.Strings;
 
 import c8y.Mobile;
 import c8y.trackeragent.TrackerAgent;
@@ -55,32 +54,12 @@ public class MultiBaseStationDataRFV16Parser extends RFV16Parser implements Pars
         
         createAlarms(reportCtx, device);
         
-        Mobile mobile = device.getManagedObject().get(Mobile.class);
-        if (mobile == null) {
-            mobile = new Mobile();
-        }
-        
-        boolean changedMobile = false;
-        String mcc = reportCtx.getEntry(4);
-        if (!Strings.isNullOrEmpty(mcc) && !mcc.equals(mobile.getMcc())) {
-            mobile.setMcc(mcc);
-            changedMobile = true;
-        }
-        
-        String mnc = reportCtx.getEntry(5);
-        if (!Strings.isNullOrEmpty(mnc) && !mnc.equals(mobile.getMnc())) {
-            mobile.setMnc(mnc);
-            changedMobile = true;
-        }
-        
-        String lac = reportCtx.getEntry(8);
-        if (!Strings.isNullOrEmpty(lac) && !lac.equals(mobile.getLac())) {
-            mobile.setLac(lac);
-            changedMobile = true;
-        }
-        if (changedMobile) {
-            device.updateMobile(mobile);
-        }
+        // the device sends only changed values to the inventory
+        Mobile mobile = new Mobile();
+        mobile.setMcc(reportCtx.getEntry(4));
+        mobile.setMnc(reportCtx.getEntry(5));
+        mobile.setLac(reportCtx.getEntry(8));
+        device.updateMobile(mobile);
     }
 
     private Collection<AlarmRepresentation> createAlarms(ReportContext reportCtx, TrackerDevice device) {
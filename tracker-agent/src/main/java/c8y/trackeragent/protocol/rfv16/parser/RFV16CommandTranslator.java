@@ -35,6 +35,7 @@ import c8y.trackeragent.context.DeviceContext;
 import c8y.trackeragent.context.OperationContext;
 import c8y.trackeragent.context.ReportContext;
 import c8y.trackeragent.device.TrackerDevice;
+import c8y.trackeragent.device.TrackerDeviceCache;
 import c8y.trackeragent.protocol.rfv16.RFV16Constants;
 import c8y.trackeragent.protocol.rfv16.message.RFV16ServerMessages;
 import c8y.trackeragent.service.AlarmService;
@@ -50,9 +51,13 @@ public class RFV16CommandTranslator extends RFV16Parser implements Translator {
 
     private static final Logger logger = LoggerFactory.getLogger(RFV16Parser.class);
 
+    private final TrackerDeviceCache trackerDeviceCache;
+
     @Autowired
-    public RFV16CommandTranslator(RFV16ServerMessages serverMessages, TrackerAgent trackerAgent, AlarmService alarmService) {
+    public RFV16CommandTranslator(RFV16ServerMessages serverMessages, TrackerAgent trackerAgent, AlarmService alarmService,
+            TrackerDeviceCache trackerDeviceCache) {
         super(trackerAgent, serverMessages, alarmService);
+        this.trackerDeviceCache = trackerDeviceCache;
     }
 
     @Override
@@ -197,7 +202,7 @@ public class RFV16CommandTranslator extends RFV16Parser implements Translator {
     @SuppressWarnings("unchecked")
     private List<OperationRepresentation> getOperationsInExceution(ConnectionContext ctx) {
         synchronized (ctx.getImei()) {
-            DeviceContext deviceContext = ctx.getDeviceContext();
+            DeviceContext deviceContext = trackerDeviceCache.getDeviceContext(ctx.getImei());
             List<OperationRepresentation> operationsInExceution = (List<OperationRepresentation>) deviceContext
                     .get(DEVICE_PARAM_OPERATION_IN_EXECUTION);
             if (operationsInExceution == null) {
@@ -16,11 +16,17 @@ public class IncomingMessage {
     private final ConnectionDetails connectionDetails;
     private final ConnectedTracker connectedTracker;
     private final byte[] msg;
+    private final boolean moreData;
 
     public IncomingMessage(ConnectionDetails connectionDetails, ConnectedTracker connectedTracker, byte[] msg) {
+        this(connectionDetails, connectedTracker, msg, false);
+    }
+
+    public IncomingMessage(ConnectionDetails connectionDetails, ConnectedTracker connectedTracker, byte[] msg, boolean moreData) {
         this.connectionDetails = connectionDetails;
         this.connectedTracker = connectedTracker;
         this.msg = msg;
+        this.moreData = moreData;
     }
 
     @Override
@@ -29,11 +35,12 @@ public class IncomingMessage {
                 "connectionDetails=" + connectionDetails +
                 ", connectedTracker=" + connectedTracker +
                 ", msg=0x" + ByteHelper.toHexString(msg) +
+                ", moreData=" + moreData +
                 '}';
     }
 
     public void process() {
         connectionDetails.resetImei();
-        connectedTracker.executeReports(connectionDetails, msg);
+        connectedTracker.executeReports(connectionDetails, msg, moreData);
     }
 }
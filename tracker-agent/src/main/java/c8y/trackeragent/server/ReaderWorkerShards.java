@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA,
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Use, reproduction, transfer, publication or disclosure is prohibited except as specifically provided
+ * for in your License Agreement with Software AG.
+ */
+
+package c8y.trackeragent.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fixed set of single threaded workers, each with its own bounded queue.
+ * Work submitted for the same key (e.g. socket channel) always lands on the same shard,
+ * so it is executed in FIFO order, while different keys are processed in parallel.
+ * When a shard queue is full, the submitting thread blocks, which throttles reading from
+ * the socket instead of dropping reports.
+ */
+public class ReaderWorkerShards {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReaderWorkerShards.class);
+
+    private final List<Shard> shards;
+
+    public ReaderWorkerShards(int numberOfShards, int queueCapacity) {
+        if (numberOfShards < 1) {
+            throw new IllegalArgumentException("Number of shards must be positive, was " + numberOfShards);
+        }
+        this.shards = new ArrayList<>(numberOfShards);
+        for (int index = 0; index < numberOfShards; index++) {
+            Shard shard = new Shard(index, queueCapacity);
+            shards.add(shard);
+            shard.start();
+        }
+    }
+
+    public void execute(Object key, Runnable task) {
+        Shard shard = shardFor(key);
+        try {
+            shard.submit(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Interrupted while submitting task to shard {}; task dropped.", shard.index);
+        }
+    }
+
+    public void shutdown() {
+        for (Shard shard : shards) {
+            shard.stop();
+        }
+    }
+
+    public int getNumberOfShards() {
+        return shards.size();
+    }
+
+    public List<ShardStats> getStats() {
+        List<ShardStats> result = new ArrayList<>(shards.size());
+        for (Shard shard : shards) {
+            result.add(shard.stats());
+        }
+        return result;
+    }
+
+    Shard shardFor(Object key) {
+        int hash = key == null ? 0 : key.hashCode();
+        // spread the hash so that sequential identity hashes do not cluster
+        hash ^= (hash >>> 16);
+        return shards.get(Math.floorMod(hash, shards.size()));
+    }
+
+    public static class ShardStats {
+
+        private final int shard;
+        private final int queueDepth;
+        private final long lagMillis;
+        private final long processed;
+
+        public ShardStats(int shard, int queueDepth, long lagMillis, long processed) {
+            this.shard = shard;
+            this.queueDepth = queueDepth;
+            this.lagMillis = lagMillis;
+            this.processed = processed;
+        }
+
+        public int getShard() {
+            return shard;
+        }
+
+        /**
+         * Number of tasks waiting in the shard queue.
+         */
+        public int getQueueDepth() {
+            return queueDepth;
+        }
+
+        /**
+         * Time spent in the queue by the last task taken by the shard worker.
+         */
+        public long getLagMillis() {
+            return lagMillis;
+        }
+
+        public long getProcessed() {
+            return processed;
+        }
+
+        @Override
+        public String toString() {
+            return "ShardStats [shard=" + shard + ", queueDepth=" + queueDepth + ", lagMillis=" + lagMillis
+                    + ", processed=" + processed + "]";
+        }
+    }
+
+    class Shard implements Runnable {
+
+        private final int index;
+        private final BlockingQueue<QueuedTask> queue;
+        private final Thread thread;
+        private volatile boolean running = true;
+        private volatile long lagMillis;
+        private volatile long processed;
+
+        Shard(int index, int queueCapacity) {
+            this.index = index;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.thread = new Thread(this, "reader-worker-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        void start() {
+            thread.start();
+        }
+
+        void stop() {
+            running = false;
+            thread.interrupt();
+        }
+
+        void submit(Runnable task) throws InterruptedException {
+            QueuedTask queuedTask = new QueuedTask(task);
+            if (!queue.offer(queuedTask)) {
+                logger.warn("Reader worker shard {} is full ({} tasks), blocking until space is available.", index, queue.size());
+                queue.put(queuedTask);
+            }
+        }
+
+        ShardStats stats() {
+            return new ShardStats(index, queue.size(), lagMillis, processed);
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                QueuedTask task;
+                try {
+                    task = queue.poll(1, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    break;
+                }
+                if (task == null) {
+                    continue;
+                }
+                lagMillis = System.currentTimeMillis() - task.enqueuedAt;
+                try {
+                    task.task.run();
+                } catch (Exception ex) {
+                    logger.error("Error executing task on reader worker shard {}", index, ex);
+                }
+                processed++;
+            }
+            logger.info("Reader worker shard {} stopped, {} tasks left unprocessed.", index, queue.size());
+        }
+    }
+
+    private static class QueuedTask {
+
+        private final Runnable task;
+        private final long enqueuedAt = System.currentTimeMillis();
+
+        QueuedTask(Runnable task) {
+            this.task = task;
+        }
+    }
+}
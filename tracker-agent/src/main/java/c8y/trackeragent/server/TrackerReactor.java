@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA,
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Use, reproduction, transfer, publication or disclosure is prohibited except as specifically provided
+ * for in your License Agreement with Software AG.
+ */
+
+package c8y.trackeragent.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.spi.SelectorProvider;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import c8y.trackeragent.server.TrackerServerEvent.CloseConnectionEvent;
+import c8y.trackeragent.server.TrackerServerEvent.ReadDataEvent;
+
+/**
+ * Selector loop serving reads and writes of the connections assigned to it by the {@link TrackerServer} acceptor.
+ * Each connection has its own lock-free queue of outgoing buffers (attached to the selection key), which may be
+ * filled from any thread and is drained by the reactor thread only, using gathering writes.
+ */
+class TrackerReactor implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(TrackerReactor.class);
+
+    private static final int MAX_GATHERED_BUFFERS = 16;
+
+    private final TrackerServer server;
+    private final TrackerServerEventHandler eventHandler;
+    private final DirectBufferPool bufferPool;
+    private final Selector selector;
+    private final ByteBuffer readBuffer;
+    private final ByteBuffer[] gatherBuffers = new ByteBuffer[MAX_GATHERED_BUFFERS];
+    private final Queue<SocketChannel> pendingRegistrations = new ConcurrentLinkedQueue<>();
+    private final Queue<SelectionKey> pendingWrites = new ConcurrentLinkedQueue<>();
+    private volatile boolean running = true;
+
+    TrackerReactor(TrackerServer server, TrackerServerEventHandler eventHandler, DirectBufferPool bufferPool) throws IOException {
+        this.server = server;
+        this.eventHandler = eventHandler;
+        this.bufferPool = bufferPool;
+        this.selector = SelectorProvider.provider().openSelector();
+        this.readBuffer = bufferPool.acquire();
+    }
+
+    void register(SocketChannel channel) {
+        pendingRegistrations.add(channel);
+        selector.wakeup();
+    }
+
+    /**
+     * Copies the data into a buffer borrowed from the pool, which is returned once the data is written
+     * or the connection is closed.
+     *
+     * @return false if the channel is not served by this reactor or was closed
+     */
+    boolean send(SocketChannel channel, byte[] data) {
+        SelectionKey key = channel.keyFor(selector);
+        if (key == null || !key.isValid()) {
+            return false;
+        }
+        outgoingOf(key).add(toBuffer(data));
+        pendingWrites.add(key);
+        selector.wakeup();
+        return true;
+    }
+
+    void stop() {
+        running = false;
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                registerPendingChannels();
+                enableWriteInterest();
+                selector.select();
+
+                Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+                while (selectedKeys.hasNext()) {
+                    SelectionKey key = selectedKeys.next();
+                    selectedKeys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isReadable()) {
+                        read(key);
+                    } else if (key.isWritable()) {
+                        write(key);
+                    }
+                }
+            } catch (Exception e) {
+                logger.error("Error in reactor loop", e);
+            }
+        }
+        closeSelector();
+    }
+
+    private void registerPendingChannels() {
+        SocketChannel channel;
+        while ((channel = pendingRegistrations.poll()) != null) {
+            try {
+                channel.register(selector, SelectionKey.OP_READ, new ConcurrentLinkedQueue<ByteBuffer>());
+            } catch (ClosedChannelException e) {
+                logger.info("Channel {} closed before it was registered.", channel);
+            }
+        }
+    }
+
+    private void enableWriteInterest() {
+        SelectionKey key;
+        while ((key = pendingWrites.poll()) != null) {
+            if (!key.isValid()) {
+                logger.info("The channel {} is not valid. Connection was probably closed. Drop pending data.", key.channel());
+                releaseAll(outgoingOf(key));
+                continue;
+            }
+            key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+        }
+    }
+
+    private void read(SelectionKey key) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        readBuffer.clear();
+
+        int numRead;
+        try {
+            numRead = channel.read(readBuffer);
+        } catch (IOException e) {
+            // The remote forcibly closed the connection, cancel
+            // the selection key and close the channel.
+            key.cancel();
+            channel.close();
+            releaseAll(outgoingOf(key));
+            return;
+        }
+
+        if (numRead == -1) {
+            logger.info("Remote entity shut the socket {} down cleanly", channel);
+            channel.close();
+            key.cancel();
+            releaseAll(outgoingOf(key));
+            eventHandler.handle(new CloseConnectionEvent(server, channel));
+            return;
+        }
+
+        // the only copy on the read path: off-heap buffer into exactly sized array owned by the worker
+        boolean bufferFilled = !readBuffer.hasRemaining();
+        byte[] data = new byte[numRead];
+        readBuffer.flip();
+        readBuffer.get(data);
+        eventHandler.handle(new ReadDataEvent(server, channel, data, numRead, bufferFilled));
+    }
+
+    private void write(SelectionKey key) {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Queue<ByteBuffer> outgoing = outgoingOf(key);
+        try {
+            if (flush(channel, outgoing)) {
+                // We wrote away all data, so we're no longer interested
+                // in writing on this socket. Data enqueued meanwhile
+                // re-enables the interest through pendingWrites.
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        } catch (Exception ex) {
+            logger.error("Cannot write to channel " + channel + "; drop pending data", ex);
+            releaseAll(outgoing);
+            key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    private boolean flush(SocketChannel channel, Queue<ByteBuffer> outgoing) throws IOException {
+        try {
+            while (!outgoing.isEmpty()) {
+                int count = 0;
+                for (ByteBuffer buffer : outgoing) {
+                    if (count == MAX_GATHERED_BUFFERS) {
+                        break;
+                    }
+                    gatherBuffers[count++] = buffer;
+                }
+                channel.write(gatherBuffers, 0, count);
+                for (int index = 0; index < count; index++) {
+                    if (gatherBuffers[index].hasRemaining()) {
+                        // the socket's buffer is full
+                        return false;
+                    }
+                    bufferPool.release(outgoing.poll());
+                }
+            }
+            return true;
+        } finally {
+            Arrays.fill(gatherBuffers, null);
+        }
+    }
+
+    private ByteBuffer toBuffer(byte[] data) {
+        if (data.length > bufferPool.getBufferSize()) {
+            return ByteBuffer.wrap(data);
+        }
+        ByteBuffer buffer = bufferPool.acquire();
+        buffer.put(data);
+        buffer.flip();
+        return buffer;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Queue<ByteBuffer> outgoingOf(SelectionKey key) {
+        return (Queue<ByteBuffer>) key.attachment();
+    }
+
+    private void releaseAll(Queue<ByteBuffer> outgoing) {
+        ByteBuffer buffer;
+        while ((buffer = outgoing.poll()) != null) {
+            bufferPool.release(buffer);
+        }
+    }
+
+    private void closeSelector() {
+        for (SelectionKey key : selector.keys()) {
+            releaseAll(outgoingOf(key));
+        }
+        bufferPool.release(readBuffer);
+        try {
+            selector.close();
+        } catch (IOException e) {
+            logger.warn("Cannot close reactor selector", e);
+        }
+    }
+}
@@ -33,11 +33,17 @@ public class TrackerServerEvent {
 
         private final byte[] data;
         private final int numRead;
+        private final boolean bufferFilled;
 
         public ReadDataEvent(TrackerServer server, SocketChannel channel, byte[] data, int numRead) {
+            this(server, channel, data, numRead, false);
+        }
+
+        public ReadDataEvent(TrackerServer server, SocketChannel channel, byte[] data, int numRead, boolean bufferFilled) {
             super(server, channel);
             this.data = data;
             this.numRead = numRead;
+            this.bufferFilled = bufferFilled;
         }
 
         public byte[] getData() {
@@ -48,6 +54,13 @@ public class TrackerServerEvent {
             return numRead;
         }
 
+        /**
+         * Whether the read filled the read buffer, so more data of the connection is likely pending.
+         */
+        public boolean isBufferFilled() {
+            return bufferFilled;
+        }
+
     }
 
     public static class CloseConnectionEvent extends TrackerServerEvent {
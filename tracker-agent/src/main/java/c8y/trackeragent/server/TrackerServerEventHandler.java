@@ -9,10 +9,8 @@
 
 package c8y.trackeragent.server;
 
-import static java.util.concurrent.Executors.newFixedThreadPool;
-
 import java.util.Arrays;
-import java.util.concurrent.ExecutorService;
+import java.util.List;
 
 import javax.annotation.PostConstruct;
 
@@ -23,6 +21,7 @@ import org.springframework.stereotype.Component;
 
 import c8y.trackeragent.configuration.TrackerConfiguration;
 import c8y.trackeragent.protocol.TrackingProtocol;
+import c8y.trackeragent.server.ReaderWorkerShards.ShardStats;
 import c8y.trackeragent.server.TrackerServerEvent.CloseConnectionEvent;
 import c8y.trackeragent.server.TrackerServerEvent.ReadDataEvent;
 import c8y.trackeragent.server.writer.OutWriter;
@@ -35,7 +34,7 @@ public class TrackerServerEventHandler {
 
     private static final Logger logger = LoggerFactory.getLogger(TrackerServerEventHandler.class);
 
-    private final ExecutorService workers;
+    private final ReaderWorkerShards workers;
     private final ConnectedTrackerFactory connectedTrackerFactory;    
     private final ConnectionsContainer connectionsContainer;
     private final TrackerConfiguration trackerConfiguration;
@@ -45,12 +44,18 @@ public class TrackerServerEventHandler {
         this.connectedTrackerFactory = connectedTrackerFactory;
         this.connectionsContainer = connectionsContainer;
         this.trackerConfiguration = trackerConfiguration;
-        this.workers = newFixedThreadPool(trackerConfiguration.getNumberOfReaderWorkers());
+        this.workers = new ReaderWorkerShards(trackerConfiguration.getNumberOfReaderWorkers(),
+                trackerConfiguration.getReaderWorkerQueueSize());
     }
 
     @PostConstruct
     public void init() {
-        logger.info("Number of reader workers: {}.", trackerConfiguration.getNumberOfReaderWorkers());
+        logger.info("Number of reader workers: {}, queue size per worker: {}.",
+                trackerConfiguration.getNumberOfReaderWorkers(), trackerConfiguration.getReaderWorkerQueueSize());
+    }
+
+    public List<ShardStats> getWorkerStats() {
+        return workers.getStats();
     }
     
     public void shutdownWorkers(){
@@ -64,18 +69,37 @@ public class TrackerServerEventHandler {
                     new IncomingMessage(
                             connection.getConnectionDetails(),
                             connection.getConnectedTracker(),
-                            Arrays.copyOf(readDataEvent.getData(), readDataEvent.getNumRead()))
+                            dataOf(readDataEvent),
+                            readDataEvent.isBufferFilled())
             );
-            workers.execute(worker);
+            // reads of one connection always go to the same worker, so reports are processed in order
+            workers.execute(readDataEvent.getChannel(), worker);
         } catch (Exception e) {
             logger.error("Exception handling read event " + readDataEvent, e);
         }
     }
     
+    private static byte[] dataOf(ReadDataEvent readDataEvent) {
+        byte[] data = readDataEvent.getData();
+        if (data.length == readDataEvent.getNumRead()) {
+            // reactor already handed over an exactly sized copy
+            return data;
+        }
+        return Arrays.copyOf(data, readDataEvent.getNumRead());
+    }
+
     public void handle(CloseConnectionEvent closeConnectionEvent) {
+        ActiveConnection connection;
         synchronized (connectionsContainer) {
+            connection = connectionsContainer.get(closeConnectionEvent.getChannel());
             connectionsContainer.remove(closeConnectionEvent.getChannel());
         }
+        if (connection != null) {
+            // an empty final read processes a report still held back for the rest of it,
+            // after the reads queued before on the same worker
+            workers.execute(closeConnectionEvent.getChannel(), new ReaderWorker(new IncomingMessage(
+                    connection.getConnectionDetails(), connection.getConnectedTracker(), new byte[0])));
+        }
     }
 
     private ActiveConnection getActiveConnection(ReadDataEvent readEvent) throws Exception {
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA,
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Use, reproduction, transfer, publication or disclosure is prohibited except as specifically provided
+ * for in your License Agreement with Software AG.
+ */
+
+
+package c8y.trackeragent.service;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import c8y.trackeragent.device.TrackerDeviceCache;
+import c8y.trackeragent.devicemapping.DeviceTenantMappingService;
+import c8y.trackeragent.server.ReaderWorkerShards.ShardStats;
+import c8y.trackeragent.server.TrackerServerEventHandler;
+
+/**
+ * Logs the statistics of the reader workers and the caches of the agent every minute, on debug level.
+ */
+@Component
+public class AgentStatsLogger {
+
+    private static final Logger logger = LoggerFactory.getLogger(AgentStatsLogger.class);
+
+    private static final long LOG_INTERVAL_SECONDS = 60;
+
+    private final TrackerServerEventHandler trackerServerEventHandler;
+    private final DeviceTenantMappingService deviceTenantMappingService;
+    private final TrackerDeviceCache trackerDeviceCache;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "agent-stats-logger");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    public AgentStatsLogger(TrackerServerEventHandler trackerServerEventHandler,
+                            DeviceTenantMappingService deviceTenantMappingService,
+                            TrackerDeviceCache trackerDeviceCache) {
+        this.trackerServerEventHandler = trackerServerEventHandler;
+        this.deviceTenantMappingService = deviceTenantMappingService;
+        this.trackerDeviceCache = trackerDeviceCache;
+    }
+
+    @PostConstruct
+    public void init() {
+        scheduler.scheduleWithFixedDelay(this::logStatsIfEnabled, LOG_INTERVAL_SECONDS, LOG_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private void logStatsIfEnabled() {
+        if (logger.isDebugEnabled()) {
+            try {
+                logStats();
+            } catch (Exception ex) {
+                logger.warn("Failed to log the agent statistics: {}", ex.getMessage());
+            }
+        }
+    }
+
+    void logStats() {
+        for (ShardStats stats : trackerServerEventHandler.getWorkerStats()) {
+            logger.debug("Reader worker {}", stats);
+        }
+        logger.debug("Device tenant cache: size {}, {}", deviceTenantMappingService.getCacheSize(),
+                deviceTenantMappingService.getCacheStats());
+        logger.debug("Tracker device cache: size {}, {}", trackerDeviceCache.size(), trackerDeviceCache.getStats());
+    }
+}
@@ -10,6 +10,7 @@
 package c8y.trackeragent.service;
 
 import c8y.trackeragent.devicebootstrap.MicroserviceSubscriptionsServiceWrapper;
+import com.cumulocity.model.idtype.GId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -47,6 +48,15 @@ public class TrackerDeviceContextService {
 		executeForTenant(tenant, runnable);
     }
 	
+	/**
+	 * Must be called in the context of the tenant.
+	 *
+	 * @return device with given id, loaded again if it is not cached (anymore), or null if it has no IMEI
+	 */
+	public TrackerDevice findOrLoadDevice(String tenant, GId gid) {
+		return trackerDeviceFactory.findOrLoad(tenant, gid);
+	}
+
 	private void executeForTenant(String tenant, Runnable r) {
 		microserviceSubscriptionsServiceWrapper.runForTenant(tenant, r);
 	}
@@ -39,7 +39,7 @@ import com.google.common.collect.Iterables;
 
 import c8y.trackeragent.context.OperationContext;
 import c8y.trackeragent.context.ReportContext;
-import c8y.trackeragent.device.ManagedObjectCache;
+import c8y.trackeragent.device.TrackerDeviceCache;
 import c8y.trackeragent.devicebootstrap.DeviceBootstrapProcessor;
 import c8y.trackeragent.devicebootstrap.DeviceCredentials;
 import c8y.trackeragent.devicebootstrap.DeviceCredentialsRepository;
@@ -69,6 +69,9 @@ public abstract class BaseConnectedTracker<F extends Fragment> implements Connec
     @Autowired
     protected TrackerDeviceContextService contextService;
 
+    @Autowired
+    protected TrackerDeviceCache trackerDeviceCache;
+
     protected final ReportSplitter reportSplitter;
 
     BaseConnectedTracker(List<F> fragments,
@@ -93,9 +96,14 @@ public abstract class BaseConnectedTracker<F extends Fragment> implements Connec
 
     @Override
     public void executeReports(ConnectionDetails connectionDetails, byte[] reportsBytes) {
-        List<String> reports = reportSplitter.split(reportsBytes);
-        if (reports.isEmpty()) {
-            logger.warn("Report too short for connection {} : {}", connectionDetails, ByteHelper.getString(reportsBytes));
+        executeReports(connectionDetails, reportsBytes, false);
+    }
+
+    @Override
+    public void executeReports(ConnectionDetails connectionDetails, byte[] reportsBytes, boolean moreData) {
+        List<String> reports = reportSplitter.decode(reportsBytes, moreData);
+        if (reports.isEmpty() && moreData) {
+            logger.debug("No complete report yet for connection {} : {}", connectionDetails, ByteHelper.getString(reportsBytes));
         }
         for (String report : reports) {
             executeReport(connectionDetails, report);
@@ -117,11 +125,11 @@ public abstract class BaseConnectedTracker<F extends Fragment> implements Connec
             /*
              * What might have happened here? Either the connection to the
              * platform is down or the object has been deleted from the
-             * platform. We'll evict the object from the ManagedObjectCache and
+             * platform. We'll evict the object from the TrackerDeviceCache and
              * try again after a while. If that fails, we give up.
              */
             if (reportContext.getImei() != null) {
-                ManagedObjectCache.instance().evict(reportContext.getImei());
+                trackerDeviceCache.evict(reportContext.getImei());
             }
             try {
                 Thread.sleep(1000);
@@ -9,41 +9,143 @@
 
 package c8y.trackeragent.tracker;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
-import c8y.trackeragent.utils.ByteHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+/**
+ * Splits the data read from a connection into reports terminated by the report separator.
+ * Reports are located by index over the read buffer, so each report costs a single copy
+ * into its {@code String}. An instance belongs to a single connection: {@link #decode(byte[], boolean)}
+ * keeps the unterminated tail of a read which filled the read buffer and prepends it to the next one.
+ */
 public class BaseReportSplitter implements ReportSplitter {
 
-    private final char reportSep;
+    private static final Logger logger = LoggerFactory.getLogger(BaseReportSplitter.class);
+
+    private static final int MAX_PENDING_BYTES = 64 * 1024;
+    private static final byte[] EMPTY = new byte[0];
+
+    private final byte reportSep;
+    private boolean connectionHeaderSkipped;
+    private byte[] pending = EMPTY;
 
     public BaseReportSplitter(String reportSeparator) {
-        this.reportSep = reportSeparator.charAt(0);
+        this.reportSep = (byte) reportSeparator.charAt(0);
     }
 
     @Override
     public List<String> split(byte[] reports) {
         List<String> result = new ArrayList<String>();
-        while (reports != null && reports.length > 0) {
-            reports = extractNext(result, reports);
+        if (reports == null) {
+            return result;
+        }
+        int offset = 0;
+        if (!connectionHeaderSkipped) {
+            connectionHeaderSkipped = true;
+            offset = getConnectionHeaderLength();
+        }
+        while (offset < reports.length) {
+            offset = extractNext(result, reports, offset, reports.length, true);
+            if (offset < 0) {
+                break;
+            }
         }
         return result;
     }
 
-    protected byte[] extractNext(List<String> result, byte[] tail) {
-        StringBuilder report = new StringBuilder();
-        int headLength = 0;
-        for (byte reportByte : tail) {
-            char reportChar = (char) reportByte;
-            headLength++;
-            if (reportChar == reportSep) {
+    @Override
+    public List<String> decode(byte[] data, boolean moreData) {
+        List<String> result = new ArrayList<String>();
+        byte[] buffer = append(pending, data);
+        int offset = 0;
+        if (!connectionHeaderSkipped) {
+            if (buffer.length < getConnectionHeaderLength()) {
+                pending = buffer;
+                return result;
+            }
+            connectionHeaderSkipped = true;
+            offset = getConnectionHeaderLength();
+        }
+        while (offset < buffer.length) {
+            int next = extractNext(result, buffer, offset, buffer.length, !moreData);
+            if (next < 0) {
                 break;
             }
-            report.append(reportChar);
+            offset = next;
+        }
+        pending = remainingTail(buffer, offset);
+        return result;
+    }
+
+    /**
+     * Number of bytes at the beginning of a connection, which precede the first report.
+     */
+    protected int getConnectionHeaderLength() {
+        return 0;
+    }
+
+    /**
+     * Number of bytes preceding each report.
+     */
+    protected int getReportHeaderLength() {
+        return 0;
+    }
+
+    /**
+     * Adds the report starting at {@code offset} to the result.
+     *
+     * @param flush whether unterminated data up to {@code limit} is a complete report
+     * @return offset of the next report or -1 if the report is not complete yet
+     */
+    protected int extractNext(List<String> result, byte[] buffer, int offset, int limit, boolean flush) {
+        int start = offset + getReportHeaderLength();
+        if (start > limit) {
+            return -1;
+        }
+        int end = indexOf(buffer, reportSep, start, limit);
+        if (end < 0) {
+            if (!flush) {
+                return -1;
+            }
+            end = limit;
+        }
+        result.add(new String(buffer, start, end - start, StandardCharsets.ISO_8859_1));
+        return end + 1;
+    }
+
+    protected static int indexOf(byte[] buffer, byte value, int from, int to) {
+        for (int index = from; index < to; index++) {
+            if (buffer[index] == value) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private static byte[] append(byte[] head, byte[] tail) {
+        if (head.length == 0) {
+            return tail;
+        }
+        byte[] result = Arrays.copyOf(head, head.length + tail.length);
+        System.arraycopy(tail, 0, result, head.length, tail.length);
+        return result;
+    }
+
+    private static byte[] remainingTail(byte[] buffer, int offset) {
+        int remaining = buffer.length - offset;
+        if (remaining <= 0) {
+            return EMPTY;
+        }
+        if (remaining > MAX_PENDING_BYTES) {
+            logger.warn("Drop {} bytes of unterminated report data.", remaining);
+            return EMPTY;
         }
-        result.add(report.toString());
-        return ByteHelper.stripHead(tail, headLength);
+        return Arrays.copyOfRange(buffer, offset, buffer.length);
     }
 
 }
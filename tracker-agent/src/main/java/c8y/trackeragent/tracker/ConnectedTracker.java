@@ -18,6 +18,14 @@ public interface ConnectedTracker {
     void executeOperation(OperationContext operation) throws Exception;
 
     void executeReports(ConnectionDetails connectionDetails, byte[] reports);
+
+    /**
+     * @param moreData whether the read filled the read buffer, so an unterminated trailing
+     *                 report may continue with the next read
+     */
+    default void executeReports(ConnectionDetails connectionDetails, byte[] reports, boolean moreData) {
+        executeReports(connectionDetails, reports);
+    }
     
     TrackingProtocol getTrackingProtocol();
 
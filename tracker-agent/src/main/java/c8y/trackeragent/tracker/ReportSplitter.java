@@ -15,4 +15,13 @@ public interface ReportSplitter {
     
     List<String> split(byte[] data);
 
+    /**
+     * Splits data read from the connection. An unterminated trailing report is kept until the
+     * rest of it arrives with the next read only if {@code moreData} is set, i.e. the read filled
+     * the read buffer; otherwise it is returned as a complete report, like {@link #split(byte[])} does.
+     */
+    default List<String> decode(byte[] data, boolean moreData) {
+        return split(data);
+    }
+
 }
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA,
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Use, reproduction, transfer, publication or disclosure is prohibited except as specifically provided
+ * for in your License Agreement with Software AG.
+ */
+
+package c8y.trackeragent.device;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.cumulocity.model.idtype.GId;
+import com.cumulocity.rest.representation.event.EventRepresentation;
+import com.cumulocity.rest.representation.inventory.ManagedObjectRepresentation;
+import com.cumulocity.rest.representation.measurement.MeasurementCollectionRepresentation;
+import com.cumulocity.rest.representation.measurement.MeasurementRepresentation;
+import com.cumulocity.sdk.client.event.EventApi;
+import com.cumulocity.sdk.client.inventory.InventoryApi;
+import com.cumulocity.sdk.client.measurement.MeasurementApi;
+
+import c8y.trackeragent.configuration.TrackerConfiguration;
+import c8y.trackeragent.devicebootstrap.MicroserviceSubscriptionsServiceWrapper;
+
+public class PlatformWriteBehindTest {
+
+    private static final String TENANT = "tenant";
+
+    private final MicroserviceSubscriptionsServiceWrapper subscriptions = mock(MicroserviceSubscriptionsServiceWrapper.class);
+    private final MeasurementApi measurements = mock(MeasurementApi.class);
+    private final EventApi events = mock(EventApi.class);
+    private final InventoryApi inventory = mock(InventoryApi.class);
+    private PlatformWriteBehind writeBehind;
+
+    @Before
+    public void setUp() {
+        doAnswer(invocation -> {
+            Runnable runnable = invocation.getArgument(1);
+            runnable.run();
+            return null;
+        }).when(subscriptions).runForTenant(anyString(), any(Runnable.class));
+        TrackerConfiguration configuration = new TrackerConfiguration().setWriteBehindMaxBatchSize(2);
+        writeBehind = new PlatformWriteBehind(subscriptions, measurements, events, inventory, configuration);
+    }
+
+    @Test
+    public void shouldSendBufferedMeasurementsInBulk() {
+        for (int i = 0; i < 3; i++) {
+            writeBehind.createMeasurement(TENANT, new MeasurementRepresentation());
+        }
+        verifyNoInteractions(measurements);
+
+        writeBehind.shutdown();
+
+        ArgumentCaptor<MeasurementCollectionRepresentation> captor = ArgumentCaptor.forClass(MeasurementCollectionRepresentation.class);
+        verify(measurements, times(2)).createBulkWithoutResponse(captor.capture());
+        assertThat(captor.getAllValues().get(0).getMeasurements()).hasSize(2);
+        assertThat(captor.getAllValues().get(1).getMeasurements()).hasSize(1);
+    }
+
+    @Test
+    public void shouldMergeUpdatesOfTheSameManagedObject() {
+        writeBehind.updateInventory(TENANT, anUpdate("c8y_Position", "first"));
+        writeBehind.updateInventory(TENANT, anUpdate("c8y_Mobile", "mobile"));
+        writeBehind.updateInventory(TENANT, anUpdate("c8y_Position", "last"));
+
+        writeBehind.shutdown();
+
+        ArgumentCaptor<ManagedObjectRepresentation> captor = ArgumentCaptor.forClass(ManagedObjectRepresentation.class);
+        verify(inventory).update(captor.capture());
+        assertThat(captor.getValue().getId()).isEqualTo(GId.asGId("1"));
+        assertThat(captor.getValue().getAttrs()).containsEntry("c8y_Position", "last");
+        assertThat(captor.getValue().getAttrs()).containsEntry("c8y_Mobile", "mobile");
+    }
+
+    @Test
+    public void shouldSendEventsInOrder() {
+        EventRepresentation first = new EventRepresentation();
+        EventRepresentation second = new EventRepresentation();
+        writeBehind.createEvent(TENANT, first);
+        writeBehind.createEvent(TENANT, second);
+
+        writeBehind.shutdown();
+
+        ArgumentCaptor<EventRepresentation> captor = ArgumentCaptor.forClass(EventRepresentation.class);
+        verify(events, times(2)).create(captor.capture());
+        assertThat(captor.getAllValues()).containsExactly(first, second);
+    }
+
+    @Test
+    public void shouldSendFailedItemsAgainWithNextFlush() {
+        EventRepresentation first = anEvent("first");
+        EventRepresentation second = anEvent("second");
+        doThrow(new RuntimeException("unavailable")).doReturn(first).when(events).create(same(first));
+        writeBehind.createEvent(TENANT, first);
+
+        writeBehind.flushAll();
+        writeBehind.createEvent(TENANT, second);
+        writeBehind.flushAll();
+
+        ArgumentCaptor<EventRepresentation> captor = ArgumentCaptor.forClass(EventRepresentation.class);
+        verify(events, times(3)).create(captor.capture());
+        assertThat(captor.getAllValues()).containsExactly(first, first, second);
+    }
+
+    @Test
+    public void shouldDropFailedItemsAfterMaxAttempts() {
+        EventRepresentation event = anEvent("event");
+        doThrow(new RuntimeException("unavailable")).when(events).create(same(event));
+        writeBehind.createEvent(TENANT, event);
+
+        for (int i = 0; i < PlatformWriteBehind.MAX_SEND_ATTEMPTS + 1; i++) {
+            writeBehind.flushAll();
+        }
+
+        verify(events, times(PlatformWriteBehind.MAX_SEND_ATTEMPTS)).create(same(event));
+    }
+
+    @Test
+    public void shouldKeepBufferedItemsWhileRetryFails() {
+        EventRepresentation failing = anEvent("failing");
+        EventRepresentation buffered = anEvent("buffered");
+        doThrow(new RuntimeException("unavailable")).doThrow(new RuntimeException("unavailable")).doReturn(failing)
+                .when(events).create(same(failing));
+        writeBehind.createEvent(TENANT, failing);
+        writeBehind.flushAll();
+        writeBehind.createEvent(TENANT, buffered);
+
+        writeBehind.flushAll();
+        verify(events, times(2)).create(same(failing));
+        verify(events, times(0)).create(same(buffered));
+
+        writeBehind.flushAll();
+        verify(events).create(same(buffered));
+    }
+
+    private static EventRepresentation anEvent(String type) {
+        EventRepresentation event = new EventRepresentation();
+        event.setType(type);
+        return event;
+    }
+
+    private static ManagedObjectRepresentation anUpdate(String fragment, String value) {
+        ManagedObjectRepresentation update = new ManagedObjectRepresentation();
+        update.setId(GId.asGId("1"));
+        update.set(value, fragment);
+        return update;
+    }
+}
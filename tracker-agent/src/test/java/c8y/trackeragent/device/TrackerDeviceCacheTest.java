@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA,
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Use, reproduction, transfer, publication or disclosure is prohibited except as specifically provided
+ * for in your License Agreement with Software AG.
+ */
+
+package c8y.trackeragent.device;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.cumulocity.model.idtype.GId;
+
+import c8y.trackeragent.configuration.TrackerConfiguration;
+
+public class TrackerDeviceCacheTest {
+
+    private final TrackerDeviceCache cache = new TrackerDeviceCache(new TrackerConfiguration().setDeviceCacheMaxSize(2));
+
+    @Test
+    public void shouldLoadDeviceOnceAndIndexItByImeiAndGId() {
+        TrackerDevice device = aDevice("1");
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get("imei1", () -> {
+            loads.incrementAndGet();
+            return device;
+        });
+        TrackerDevice cached = cache.get("imei1", () -> {
+            loads.incrementAndGet();
+            return device;
+        });
+
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(cached).isSameAs(device);
+        assertThat(cache.get("imei1")).isSameAs(device);
+        assertThat(cache.get(GId.asGId("1"))).isSameAs(device);
+        assertThat(cache.getStats().hitCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldRemoveBothIndexesOnEvict() {
+        cache.get("imei1", () -> aDevice("1"));
+
+        cache.evict("imei1");
+
+        assertThat(cache.get("imei1")).isNull();
+        assertThat(cache.get(GId.asGId("1"))).isNull();
+    }
+
+    @Test
+    public void shouldEvictWhenSizeExceeded() {
+        cache.get("imei1", () -> aDevice("1"));
+        cache.get("imei2", () -> aDevice("2"));
+        cache.get("imei3", () -> aDevice("3"));
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.getStats().evictionCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldKeepDeviceContextPerImei() {
+        assertThat(cache.getDeviceContext("imei1")).isSameAs(cache.getDeviceContext("imei1"));
+        assertThat(cache.getDeviceContext("imei1")).isNotSameAs(cache.getDeviceContext("imei2"));
+    }
+
+    private static TrackerDevice aDevice(String gid) {
+        TrackerDevice device = mock(TrackerDevice.class);
+        when(device.getGId()).thenReturn(GId.asGId(gid));
+        return device;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA,
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Use, reproduction, transfer, publication or disclosure is prohibited except as specifically provided
+ * for in your License Agreement with Software AG.
+ */
+
+package c8y.trackeragent.device;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.concurrent.Callable;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.cumulocity.model.idtype.GId;
+import com.cumulocity.rest.representation.identity.ExternalIDRepresentation;
+import com.cumulocity.sdk.client.identity.IdentityApi;
+
+import c8y.trackeragent.configuration.TrackerConfiguration;
+import c8y.trackeragent.devicebootstrap.MicroserviceSubscriptionsServiceWrapper;
+
+public class TrackerDeviceProviderTest {
+
+    private static final GId GID = GId.asGId("1");
+
+    private final TrackerDeviceFactory trackerDeviceFactory = mock(TrackerDeviceFactory.class);
+    private final MicroserviceSubscriptionsServiceWrapper subscriptionsService = mock(MicroserviceSubscriptionsServiceWrapper.class);
+    private final IdentityApi identityApi = mock(IdentityApi.class, RETURNS_DEEP_STUBS);
+    private final TrackerDeviceProvider provider = new TrackerDeviceProvider(
+            trackerDeviceFactory, subscriptionsService, new TrackerDeviceCache(new TrackerConfiguration()), identityApi);
+
+    @Before
+    public void setUp() {
+        when(subscriptionsService.callForTenant(any(), any())).thenAnswer(invocation -> ((Callable<?>) invocation.getArgument(1)).call());
+    }
+
+    @Test
+    public void shouldCreateDeviceNotCachedAgainByItsImei() {
+        TrackerDevice device = aDevice();
+        when(identityApi.getExternalIdsOfGlobalId(GID).get().allPages()).thenReturn(Collections.singletonList(anExternalId("c8y_Imei", "imei1")));
+        when(trackerDeviceFactory.newTrackerDevice("tenant", "imei1")).thenReturn(device);
+
+        assertThat(provider.findOrLoad("tenant", GID)).isSameAs(device);
+        assertThat(provider.findOrLoad("tenant", GID)).isSameAs(device);
+
+        verify(trackerDeviceFactory, times(1)).newTrackerDevice("tenant", "imei1");
+    }
+
+    @Test
+    public void shouldNotCreateDeviceWithoutImei() {
+        when(identityApi.getExternalIdsOfGlobalId(GID).get().allPages()).thenReturn(Collections.singletonList(anExternalId("c8y_Serial", "serial1")));
+
+        assertThat(provider.findOrLoad("tenant", GID)).isNull();
+
+        verify(trackerDeviceFactory, times(0)).newTrackerDevice(any(), any());
+    }
+
+    private static TrackerDevice aDevice() {
+        TrackerDevice device = mock(TrackerDevice.class);
+        when(device.getGId()).thenReturn(GID);
+        return device;
+    }
+
+    private static ExternalIDRepresentation anExternalId(String type, String value) {
+        ExternalIDRepresentation externalId = new ExternalIDRepresentation();
+        externalId.setType(type);
+        externalId.setExternalId(value);
+        return externalId;
+    }
+}
@@ -9,17 +9,40 @@
 
 package c8y.trackeragent.device;
 
+import c8y.Mobile;
+import c8y.trackeragent.configuration.TrackerConfiguration;
 import com.cumulocity.model.ID;
+import com.cumulocity.model.event.CumulocityAlarmStatuses;
+import com.cumulocity.model.idtype.GId;
+import com.cumulocity.rest.representation.alarm.AlarmCollectionRepresentation;
+import com.cumulocity.rest.representation.alarm.AlarmRepresentation;
+import com.cumulocity.rest.representation.inventory.ManagedObjectRepresentation;
 import com.cumulocity.sdk.client.SDKException;
+import com.cumulocity.sdk.client.alarm.AlarmApi;
+import com.cumulocity.sdk.client.alarm.AlarmCollection;
+import com.cumulocity.sdk.client.alarm.PagedAlarmCollectionRepresentation;
 import com.cumulocity.sdk.client.identity.IdentityApi;
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.nullable;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -28,9 +51,25 @@ public class TrackerDeviceTest {
     @Mock
     private IdentityApi identityApi;
 
+    @Mock
+    private AlarmApi alarmApi;
+
+    @Mock
+    private PlatformWriteBehind writeBehind;
+
+    @Spy
+    private TrackerConfiguration configuration = new TrackerConfiguration();
+
     @InjectMocks
     private TrackerDevice trackerDevice;
 
+    private final AtomicLong nanoTime = new AtomicLong();
+
+    @Before
+    public void setUp() {
+        ReflectionTestUtils.setField(trackerDevice, "nanoClock", (LongSupplier) nanoTime::get);
+    }
+
     @Test
     public void shouldNotRethrowExceptionWhenNotFound() {
         when(identityApi.getExternalId(any(ID.class))).thenThrow(new RuntimeException(new SDKException(404, "")));
@@ -46,4 +85,128 @@ public class TrackerDeviceTest {
 
         trackerDevice.tryGetBinding(mock(ID.class));
     }
+
+    @Test
+    public void shouldLoadActiveAlarmsOnceAndNotRaiseActiveAlarmAgain() {
+        noActiveAlarms();
+        when(alarmApi.create(any(AlarmRepresentation.class))).thenReturn(anAlarm("1"));
+
+        trackerDevice.createAlarm(anAlarm(null));
+        trackerDevice.createAlarm(anAlarm(null));
+
+        verify(alarmApi, times(1)).getAlarmsByFilter(any());
+        verify(alarmApi, times(1)).create(any(AlarmRepresentation.class));
+        assertThat(trackerDevice.findActiveAlarm("c8y_TestAlarm").getId()).isEqualTo(GId.asGId("1"));
+    }
+
+    @Test
+    public void shouldRaiseCachedActiveAlarmAgainWhenRecheckIsDue() {
+        noActiveAlarms();
+        when(alarmApi.create(any(AlarmRepresentation.class))).thenReturn(anAlarm("1"), anAlarm("2"));
+
+        trackerDevice.createAlarm(anAlarm(null));
+        advanceClock(configuration.getAlarmCacheRaiseRecheckInterval() + 1);
+        trackerDevice.createAlarm(anAlarm(null));
+        advanceClock(1);
+        trackerDevice.createAlarm(anAlarm(null));
+
+        verify(alarmApi, times(2)).create(any(AlarmRepresentation.class));
+        assertThat(trackerDevice.findActiveAlarm("c8y_TestAlarm").getId()).isEqualTo(GId.asGId("2"));
+    }
+
+    @Test
+    public void shouldClearCachedActiveAlarmOnce() {
+        noActiveAlarms();
+        when(alarmApi.create(any(AlarmRepresentation.class))).thenReturn(anAlarm("1"));
+        trackerDevice.createAlarm(anAlarm(null));
+
+        trackerDevice.clearAlarm(anAlarm(null));
+        trackerDevice.clearAlarm(anAlarm(null));
+
+        ArgumentCaptor<AlarmRepresentation> captor = ArgumentCaptor.forClass(AlarmRepresentation.class);
+        verify(alarmApi, times(1)).update(captor.capture());
+        assertThat(captor.getValue().getId()).isEqualTo(GId.asGId("1"));
+        assertThat(captor.getValue().getStatus()).isEqualTo(CumulocityAlarmStatuses.CLEARED.toString());
+        assertThat(trackerDevice.findActiveAlarm("c8y_TestAlarm")).isNull();
+    }
+
+    @Test
+    public void shouldRefreshActiveAlarmsAgainAfterRefreshWasNotRun() {
+        noActiveAlarms();
+        when(writeBehind.runInBackground(nullable(String.class), any(Runnable.class)))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("not subscribed")));
+
+        trackerDevice.findActiveAlarm("c8y_TestAlarm");
+        advanceClock(configuration.getAlarmCacheRefreshInterval() + 1);
+        trackerDevice.findActiveAlarm("c8y_TestAlarm");
+        trackerDevice.findActiveAlarm("c8y_TestAlarm");
+
+        verify(writeBehind, times(2)).runInBackground(nullable(String.class), any(Runnable.class));
+    }
+
+    @Test
+    public void shouldSendMobileOnlyWhenChanged() {
+        ReflectionTestUtils.setField(trackerDevice, "mobile", new Mobile());
+
+        trackerDevice.updateMobile(aMobile("262", "01", "1", "100"));
+        trackerDevice.updateMobile(aMobile("262", "01", "1", "100"));
+        trackerDevice.updateMobile(aMobile(null, "", null, null));
+        trackerDevice.updateMobile(aMobile(null, null, null, "200"));
+
+        ArgumentCaptor<ManagedObjectRepresentation> captor = ArgumentCaptor.forClass(ManagedObjectRepresentation.class);
+        verify(writeBehind, times(2)).updateInventory(nullable(String.class), captor.capture());
+        Mobile first = captor.getAllValues().get(0).get(Mobile.class);
+        Mobile second = captor.getAllValues().get(1).get(Mobile.class);
+        assertThat(first.getCellId()).isEqualTo("100");
+        assertThat(second.getMcc()).isEqualTo("262");
+        assertThat(second.getCellId()).isEqualTo("200");
+    }
+
+    @Test
+    public void shouldKeepOtherMobilePropertiesWhenSendingMobile() {
+        Mobile mobile = new Mobile();
+        mobile.setImei("123456789012345");
+        mobile.setImsi("262011234567890");
+        mobile.setCurrentOperator("Operator");
+        ReflectionTestUtils.setField(trackerDevice, "mobile", mobile);
+
+        trackerDevice.updateMobile(aMobile("262", "01", "1", "100"));
+
+        ArgumentCaptor<ManagedObjectRepresentation> captor = ArgumentCaptor.forClass(ManagedObjectRepresentation.class);
+        verify(writeBehind).updateInventory(nullable(String.class), captor.capture());
+        Mobile sent = captor.getValue().get(Mobile.class);
+        assertThat(sent).isNotSameAs(mobile);
+        assertThat(sent.getImei()).isEqualTo("123456789012345");
+        assertThat(sent.getImsi()).isEqualTo("262011234567890");
+        assertThat(sent.getCurrentOperator()).isEqualTo("Operator");
+        assertThat(sent.getCellId()).isEqualTo("100");
+    }
+
+    private static Mobile aMobile(String mcc, String mnc, String lac, String cellId) {
+        Mobile mobile = new Mobile();
+        mobile.setMcc(mcc);
+        mobile.setMnc(mnc);
+        mobile.setLac(lac);
+        mobile.setCellId(cellId);
+        return mobile;
+    }
+
+    private void advanceClock(long seconds) {
+        nanoTime.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+    }
+
+    private void noActiveAlarms() {
+        AlarmCollection collection = mock(AlarmCollection.class);
+        when(collection.get()).thenReturn(new PagedAlarmCollectionRepresentation(new AlarmCollectionRepresentation(), null));
+        when(alarmApi.getAlarmsByFilter(any())).thenReturn(collection);
+    }
+
+    private static AlarmRepresentation anAlarm(String id) {
+        AlarmRepresentation alarm = new AlarmRepresentation();
+        alarm.setType("c8y_TestAlarm");
+        if (id != null) {
+            alarm.setId(GId.asGId(id));
+        }
+        return alarm;
+    }
 }
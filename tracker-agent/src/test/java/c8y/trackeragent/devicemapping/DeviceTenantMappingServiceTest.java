@@ -1,6 +1,7 @@
 package c8y.trackeragent.devicemapping;
 
 import c8y.MicroserviceSubscriptionsServiceMock;
+import c8y.trackeragent.exception.UnknownDeviceException;
 import com.cumulocity.microservice.subscription.service.MicroserviceSubscriptionsService;
 import com.cumulocity.model.ID;
 import com.cumulocity.model.idtype.GId;
@@ -74,6 +75,58 @@ class DeviceTenantMappingServiceTest {
         assertThat(resultTenant).isEqualTo(MY_TENANT);
     }
 
+    @Test
+    void shouldResolveTenantFromCache() {
+        //given
+        Mockito.when(identityApi.getExternalId(new ID(TYPE, IMEI)))
+                .thenReturn(createExternalIDRepresentation(new GId(TYPE, IMEI, null)));
+        Mockito.when(inventoryApi.get(new GId(TYPE, IMEI, null)))
+                .thenReturn(createRepresentationFromTenant(MY_TENANT, "aaa1"));
+
+        //when
+        deviceTenantMappingService.findTenant(IMEI);
+        String resultTenant = deviceTenantMappingService.findTenant(IMEI);
+
+        //then
+        assertThat(resultTenant).isEqualTo(MY_TENANT);
+        Mockito.verify(identityApi, Mockito.times(1)).getExternalId(new ID(TYPE, IMEI));
+        assertThat(deviceTenantMappingService.getCacheStats().hitCount()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldCacheUnknownDevice() {
+        //given
+        Mockito.when(identityApi.getExternalId(new ID(TYPE, IMEI)))
+                .thenThrow(new SDKException(HttpStatus.SC_NOT_FOUND, "Not found"));
+
+        //when
+        Assertions.assertThrows(UnknownDeviceException.class, () -> deviceTenantMappingService.findTenant(IMEI));
+        Assertions.assertThrows(UnknownDeviceException.class, () -> deviceTenantMappingService.findTenant(IMEI));
+
+        //then
+        Mockito.verify(identityApi, Mockito.times(1)).getExternalId(new ID(TYPE, IMEI));
+    }
+
+    @Test
+    void shouldInvalidateCachedTenantWhenDeviceIsAdded() {
+        //given
+        Mockito.when(identityApi.getExternalId(new ID(TYPE, IMEI)))
+                .thenThrow(new SDKException(HttpStatus.SC_NOT_FOUND, "Not found"))
+                .thenThrow(new SDKException(HttpStatus.SC_NOT_FOUND, "Not found"))
+                .thenReturn(createExternalIDRepresentation(new GId(TYPE, IMEI, null)));
+        Mockito.when(inventoryApi.getManagedObjectsByFilter(Mockito.any()))
+                .thenReturn(createManagedObjectCollectionWithTenants());
+        Mockito.when(inventoryApi.get(new GId(TYPE, IMEI, null)))
+                .thenReturn(createRepresentationFromTenant(MY_TENANT, MY_TENANT_ID));
+        Assertions.assertThrows(UnknownDeviceException.class, () -> deviceTenantMappingService.findTenant(IMEI));
+
+        //when
+        deviceTenantMappingService.addDeviceToTenant(IMEI, MY_TENANT);
+
+        //then
+        assertThat(deviceTenantMappingService.findTenant(IMEI)).isEqualTo(MY_TENANT);
+    }
+
     @Test
     void shouldNotFoundTenantBecauseOfIdentityApiThrowIssue() {
         //given
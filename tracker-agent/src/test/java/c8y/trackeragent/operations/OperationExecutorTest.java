@@ -83,6 +83,17 @@ public class OperationExecutorTest {
         
     }
     
+    @Test
+    public void shouldLeaveSmsOperationPendingWhenTrackingProtocolNotKnown() {
+        when(operationSmsDelivery.isSmsMode(operation)).thenReturn(true);
+        when(connectionsContainer.get(anyString())).thenReturn(null);
+
+        operationExecutor.execute(operation, device);
+        verify(baseTracker, never()).getTrackerForTrackingProtocol(any(TrackingProtocol.class));
+        verify(deviceControlApi, never()).update(any(OperationRepresentation.class));
+        verify(operationSmsDelivery, never()).deliverSms(anyString(), any(GId.class), anyString());
+    }
+
     @Test
     public void shouldExecuteSmsWhenConnectionExist() {
         setupForSmsOperation();
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA,
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Use, reproduction, transfer, publication or disclosure is prohibited except as specifically provided
+ * for in your License Agreement with Software AG.
+ */
+
+package c8y.trackeragent.protocol.queclink;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.cumulocity.model.idtype.GId;
+import com.cumulocity.rest.representation.inventory.ManagedObjectRepresentation;
+import com.cumulocity.sdk.client.inventory.InventoryApi;
+
+import c8y.trackeragent.configuration.TrackerConfiguration;
+import c8y.trackeragent.device.TrackerDeviceCache;
+import c8y.trackeragent.protocol.queclink.device.QueclinkDevice;
+
+public class QueclinkDeviceTest {
+
+    private final InventoryApi inventoryApi = mock(InventoryApi.class);
+    private final QueclinkDevice queclinkDevice = new QueclinkDevice();
+
+    @Before
+    public void setUp() {
+        queclinkDevice.setTrackerDeviceCache(new TrackerDeviceCache(new TrackerConfiguration()));
+        queclinkDevice.setInventoryApi(inventoryApi);
+    }
+
+    @Test
+    public void shouldLoadManagedObjectOfDeviceNotCached() {
+        GId gid = GId.asGId("1");
+        ManagedObjectRepresentation mo = new ManagedObjectRepresentation();
+        mo.setId(gid);
+        when(inventoryApi.get(gid)).thenReturn(mo);
+
+        assertThat(queclinkDevice.getManagedObjectFromGId(gid)).isSameAs(mo);
+    }
+}
@@ -12,14 +12,11 @@ package c8y.trackeragent.protocol.rfv16.parser;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.verify;
-import static org.mockito.Mockito.when;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 
-import com.cumulocity.rest.representation.inventory.ManagedObjectRepresentation;
-
 import c8y.Mobile;
 import c8y.trackeragent.context.ReportContext;
 import c8y.trackeragent.device.TrackerDevice;
@@ -39,8 +36,6 @@ public class MultiBaseStationRFV16ReportTest extends RFV16ParserTestSupport {
     
     @Test    
     public void shouldParseMultiBaseStationReport() throws Exception {
-        when(deviceMock.getManagedObject()).thenReturn(aManagedObjectWithMobileFragment());
-        
         TrackerMessage deviceMessage = deviceMessages.multiBaseStationDataReport("DB", IMEI, "262", "1", "16834", "FFFFFFFD");
         ReportContext reportCtx = new ReportContext(connectionDetails, deviceMessage.asArray());
         
@@ -48,13 +43,9 @@ public class MultiBaseStationRFV16ReportTest extends RFV16ParserTestSupport {
         
         verify(alarmService).createAlarm(any(ReportContext.class), alarmTypeCaptor.capture(), any(TrackerDevice.class));
         assertThat(alarmTypeCaptor.getValue()).isEqualTo(RFV16AlarmType.SOS);
-    }
-    
-    private static ManagedObjectRepresentation aManagedObjectWithMobileFragment() {
-        ManagedObjectRepresentation mo = new ManagedObjectRepresentation();
-        Mobile mobile = new Mobile();
-        mobile.setImei("12345");
-        mo.set(mobile);
-        return mo;
+        verify(deviceMock).updateMobile(mobileCaptor.capture());
+        assertThat(mobileCaptor.getValue().getMcc()).isEqualTo("262");
+        assertThat(mobileCaptor.getValue().getMnc()).isEqualTo("1");
+        assertThat(mobileCaptor.getValue().getLac()).isEqualTo("16834");
     }
 }
@@ -22,7 +22,9 @@ import c8y.MeasurementRequestOperation;
 import c8y.RFV16Config;
 import c8y.Restart;
 import c8y.SetSosNumber;
+import c8y.trackeragent.configuration.TrackerConfiguration;
 import c8y.trackeragent.context.OperationContext;
+import c8y.trackeragent.device.TrackerDeviceCache;
 import c8y.trackeragent.protocol.rfv16.RFV16ParserTestSupport;
 
 public class RFV16CommandTranslatorTest extends RFV16ParserTestSupport {
@@ -32,7 +34,8 @@ public class RFV16CommandTranslatorTest extends RFV16ParserTestSupport {
 
     @Before
     public void init() {
-        commandTranslator = new RFV16CommandTranslator(serverMessages, trackerAgent, alarmService);
+        commandTranslator = new RFV16CommandTranslator(serverMessages, trackerAgent, alarmService,
+                new TrackerDeviceCache(new TrackerConfiguration()));
         currentDeviceConfigIs(rFV16Config);
     }
 
@@ -25,6 +25,16 @@ public class TelicReportSplitterTest {
         assertThat(splitter.split(getBytes(leftPadding("abc\0", 28 + 4) + leftPadding("cde\0", 4)))).containsExactly("abc", "cde");
     }
     
+    @Test
+    public void decodeReportsSplitAcrossReads() throws Exception {
+        TelicReportSplitter splitter = new TelicReportSplitter();
+
+        assertThat(splitter.decode(getBytes(leftPadding("", 20)), true)).isEmpty();
+        assertThat(splitter.decode(getBytes(leftPadding("ab", 8 + 4)), true)).isEmpty();
+        assertThat(splitter.decode(getBytes(leftPadding("c\0", 0) + leftPadding("cd", 4)), true)).containsExactly("abc");
+        assertThat(splitter.decode(getBytes("e\0"), false)).containsExactly("cde");
+    }
+
     @Test
     public void shouldReturnEmptyListForTooShortReport() throws Exception {
         TelicReportSplitter splitter = new TelicReportSplitter();
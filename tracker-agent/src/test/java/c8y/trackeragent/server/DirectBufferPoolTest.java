@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA,
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Use, reproduction, transfer, publication or disclosure is prohibited except as specifically provided
+ * for in your License Agreement with Software AG.
+ */
+
+
+package c8y.trackeragent.server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class DirectBufferPoolTest {
+
+    private final DirectBufferPool pool = new DirectBufferPool(64, 2);
+
+    @Test
+    public void shouldReuseReleasedBuffer() {
+        ByteBuffer buffer = pool.acquire();
+        buffer.put((byte) 1);
+
+        pool.release(buffer);
+
+        assertThat(pool.getPooledCount()).isEqualTo(1);
+        ByteBuffer reused = pool.acquire();
+        assertThat(reused).isSameAs(buffer);
+        assertThat(reused.position()).isEqualTo(0);
+        assertThat(pool.getPooledCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldAllocateDirectBufferWhenPoolIsEmpty() {
+        ByteBuffer buffer = pool.acquire();
+
+        assertThat(buffer.isDirect()).isTrue();
+        assertThat(buffer.capacity()).isEqualTo(64);
+    }
+
+    @Test
+    public void shouldNotPoolMoreThanMaxBuffers() {
+        pool.release(pool.acquire());
+        pool.release(ByteBuffer.allocateDirect(64));
+        pool.release(ByteBuffer.allocateDirect(64));
+
+        assertThat(pool.getPooledCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldNotPoolForeignBuffers() {
+        pool.release(ByteBuffer.allocate(64));
+        pool.release(ByteBuffer.allocateDirect(128));
+        pool.release(null);
+
+        assertThat(pool.getPooledCount()).isEqualTo(0);
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA,
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Use, reproduction, transfer, publication or disclosure is prohibited except as specifically provided
+ * for in your License Agreement with Software AG.
+ */
+
+package c8y.trackeragent.server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class ReaderWorkerShardsTest {
+
+    private final ReaderWorkerShards shards = new ReaderWorkerShards(4, 10);
+
+    @After
+    public void after() {
+        shards.shutdown();
+    }
+
+    @Test
+    public void shouldProcessTasksOfTheSameKeyInOrder() throws Exception {
+        final int count = 200;
+        final List<Integer> processed = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch latch = new CountDownLatch(count);
+        Object key = new Object();
+
+        for (int i = 0; i < count; i++) {
+            final int value = i;
+            shards.execute(key, () -> {
+                processed.add(value);
+                latch.countDown();
+            });
+        }
+
+        assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+        for (int i = 0; i < count; i++) {
+            assertThat(processed.get(i)).isEqualTo(i);
+        }
+    }
+
+    @Test
+    public void shouldAlwaysSelectTheSameShardForKey() throws Exception {
+        Object key = new Object();
+
+        assertThat(shards.shardFor(key)).isSameAs(shards.shardFor(key));
+    }
+
+    @Test
+    public void shouldReportStatsPerShard() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        shards.execute("key", latch::countDown);
+        latch.await(10, TimeUnit.SECONDS);
+
+        assertThat(shards.getStats()).hasSize(4);
+    }
+}
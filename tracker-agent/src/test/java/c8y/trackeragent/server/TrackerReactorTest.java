@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA,
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Use, reproduction, transfer, publication or disclosure is prohibited except as specifically provided
+ * for in your License Agreement with Software AG.
+ */
+
+
+package c8y.trackeragent.server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import c8y.trackeragent.server.TrackerServerEvent.CloseConnectionEvent;
+import c8y.trackeragent.server.TrackerServerEvent.ReadDataEvent;
+
+public class TrackerReactorTest {
+
+    private final TrackerServer server = mock(TrackerServer.class);
+    private final TrackerServerEventHandler eventHandler = mock(TrackerServerEventHandler.class);
+    private final DirectBufferPool bufferPool = new DirectBufferPool(64, 10);
+
+    private ServerSocketChannel serverChannel;
+    private SocketChannel client;
+    private SocketChannel accepted;
+    private TrackerReactor reactor;
+    private Thread reactorThread;
+
+    @Before
+    public void before() throws Exception {
+        serverChannel = ServerSocketChannel.open().bind(new InetSocketAddress("127.0.0.1", 0));
+        client = SocketChannel.open(serverChannel.getLocalAddress());
+        accepted = serverChannel.accept();
+        accepted.configureBlocking(false);
+
+        reactor = new TrackerReactor(server, eventHandler, bufferPool);
+        reactorThread = new Thread(reactor);
+        reactorThread.start();
+        reactor.register(accepted);
+    }
+
+    @After
+    public void after() throws Exception {
+        reactor.stop();
+        reactorThread.join(5000);
+        client.close();
+        accepted.close();
+        serverChannel.close();
+    }
+
+    @Test(timeout = 10000)
+    public void shouldDispatchReadDataToEventHandler() throws Exception {
+        client.write(ByteBuffer.wrap("ABC;".getBytes(StandardCharsets.US_ASCII)));
+
+        ArgumentCaptor<ReadDataEvent> event = ArgumentCaptor.forClass(ReadDataEvent.class);
+        verify(eventHandler, timeout(5000)).handle(event.capture());
+        assertThat(event.getValue().getChannel()).isSameAs(accepted);
+        assertThat(new String(event.getValue().getData(), StandardCharsets.US_ASCII)).isEqualTo("ABC;");
+        assertThat(event.getValue().isBufferFilled()).isFalse();
+    }
+
+    @Test(timeout = 10000)
+    public void shouldWriteSentDataAndReturnBufferToPool() throws Exception {
+        awaitRegistration();
+
+        assertThat(reactor.send(accepted, "OK".getBytes(StandardCharsets.US_ASCII))).isTrue();
+
+        ByteBuffer received = ByteBuffer.allocate(2);
+        while (received.hasRemaining()) {
+            client.read(received);
+        }
+        assertThat(new String(received.array(), StandardCharsets.US_ASCII)).isEqualTo("OK");
+        while (bufferPool.getPooledCount() != 1) {
+            Thread.sleep(10);
+        }
+
+        // the next send borrows the returned buffer instead of allocating a new one
+        reactor.send(accepted, "OK".getBytes(StandardCharsets.US_ASCII));
+        received.clear();
+        while (received.hasRemaining()) {
+            client.read(received);
+        }
+        while (bufferPool.getPooledCount() != 1) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void shouldDispatchCloseWhenRemoteShutsDown() throws Exception {
+        awaitRegistration();
+
+        client.close();
+
+        verify(eventHandler, timeout(5000)).handle(any(CloseConnectionEvent.class));
+    }
+
+    @Test
+    public void shouldNotSendToChannelOfOtherReactor() throws Exception {
+        try (SocketChannel other = SocketChannel.open()) {
+            assertThat(reactor.send(other, "OK".getBytes(StandardCharsets.US_ASCII))).isFalse();
+        }
+    }
+
+    private void awaitRegistration() throws InterruptedException {
+        while (!accepted.isRegistered()) {
+            Thread.sleep(10);
+        }
+    }
+}
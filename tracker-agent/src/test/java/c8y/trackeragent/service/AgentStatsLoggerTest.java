@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2012-2020 Cumulocity GmbH
+ * Copyright (c) 2021 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA,
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * Use, reproduction, transfer, publication or disclosure is prohibited except as specifically provided
+ * for in your License Agreement with Software AG.
+ */
+
+
+package c8y.trackeragent.service;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import org.junit.Test;
+
+import c8y.trackeragent.device.TrackerDeviceCache;
+import c8y.trackeragent.devicemapping.DeviceTenantMappingService;
+import c8y.trackeragent.server.TrackerServerEventHandler;
+
+public class AgentStatsLoggerTest {
+
+    private final TrackerServerEventHandler trackerServerEventHandler = mock(TrackerServerEventHandler.class);
+
+    private final DeviceTenantMappingService deviceTenantMappingService = mock(DeviceTenantMappingService.class);
+
+    private final TrackerDeviceCache trackerDeviceCache = mock(TrackerDeviceCache.class);
+
+    private final AgentStatsLogger statsLogger = new AgentStatsLogger(trackerServerEventHandler, deviceTenantMappingService,
+            trackerDeviceCache);
+
+    @Test
+    public void shouldLogWorkerStats() {
+        statsLogger.logStats();
+
+        verify(trackerServerEventHandler).getWorkerStats();
+    }
+
+    @Test
+    public void shouldLogDeviceTenantCacheStats() {
+        statsLogger.logStats();
+
+        verify(deviceTenantMappingService).getCacheStats();
+        verify(deviceTenantMappingService).getCacheSize();
+    }
+
+    @Test
+    public void shouldLogTrackerDeviceCacheStats() {
+        statsLogger.logStats();
+
+        verify(trackerDeviceCache).getStats();
+        verify(trackerDeviceCache).size();
+    }
+}
@@ -25,4 +25,24 @@ public class BaseReportSplitterTest {
         assertThat(splitter.split(getBytes("abc;cde"))).containsExactly("abc", "cde");
     }
 
+    @Test
+    public void decodeReportsSplitAcrossReads() throws Exception {
+        BaseReportSplitter splitter = new BaseReportSplitter(";");
+
+        assertThat(splitter.decode(getBytes("abc;cd"), true)).containsExactly("abc");
+        assertThat(splitter.decode(getBytes("e"), true)).isEmpty();
+        assertThat(splitter.decode(getBytes(";fgh;"), false)).containsExactly("cde", "fgh");
+        assertThat(splitter.decode(getBytes("ijk;"), false)).containsExactly("ijk");
+    }
+
+    @Test
+    public void decodeUnterminatedReportOfCompleteRead() throws Exception {
+        BaseReportSplitter splitter = new BaseReportSplitter(";");
+
+        assertThat(splitter.decode(getBytes("abc;cde"), false)).containsExactly("abc", "cde");
+        assertThat(splitter.decode(getBytes("fg"), true)).isEmpty();
+        assertThat(splitter.decode(getBytes("h"), false)).containsExactly("fgh");
+        assertThat(splitter.decode(getBytes(""), false)).isEmpty();
+    }
+
 }